@@ -0,0 +1,129 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.bulkedit;
+
+import org.dspace.core.Context;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+
+/**
+ * A CSV file read a chunk of lines at a time, so that large files can be
+ * imported without holding every line in memory. The headings are read and
+ * checked when the file is opened; {@link #getCSVLines()} then returns the
+ * lines of the current chunk only.
+ *
+ * @see MetadataImport#runChunkedImport
+ */
+public class ChunkedDSpaceCSV extends DSpaceCSV implements Closeable
+{
+    /** The CSV file */
+    protected File file;
+
+    /** The CSV file, positioned after the last line read */
+    protected transient BufferedReader input;
+
+    /** The number of lines read or skipped so far, not counting the headings */
+    protected int position;
+
+    /**
+     * Open a CSV file and read its headings
+     *
+     * @param f The file to read from
+     * @param c The DSpace Context
+     *
+     * @throws Exception thrown if there is an error reading the file or if its headings are not valid
+     */
+    public ChunkedDSpaceCSV(File f, Context c) throws Exception
+    {
+        super(false);
+        file = f;
+        input = new BufferedReader(new InputStreamReader(new FileInputStream(f), "UTF-8"));
+        try
+        {
+            readHeadings(input, c);
+        }
+        catch (Exception e)
+        {
+            input.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Skip lines without parsing them, for instance the lines already imported
+     * by an interrupted run
+     *
+     * @param count The number of lines to skip
+     * @return The number of lines skipped, less than count at the end of the file
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    public int skip(int count) throws IOException
+    {
+        int skipped = 0;
+        while ((skipped < count) && (readRecord(input) != null))
+        {
+            skipped++;
+        }
+        position += skipped;
+        return skipped;
+    }
+
+    /**
+     * Replace the current chunk with the next lines of the file
+     *
+     * @param size The maximum number of lines in the chunk
+     * @return Whether any line was read, false at the end of the file
+     *
+     * @throws Exception thrown if there is an error reading or parsing the lines
+     */
+    public boolean nextChunk(int size) throws Exception
+    {
+        lines.clear();
+        counter = 0;
+        String record;
+        while ((counter < size) && ((record = readRecord(input)) != null))
+        {
+            addItem(record);
+            position++;
+        }
+        return counter > 0;
+    }
+
+    /**
+     * Get the number of lines read or skipped so far, which includes the
+     * current chunk
+     *
+     * @return The position in the file, in lines after the headings
+     */
+    public int getPosition()
+    {
+        return position;
+    }
+
+    /**
+     * Get the CSV file
+     *
+     * @return The file being read
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    @Override
+    public void close() throws IOException
+    {
+        input.close();
+    }
+}
@@ -119,131 +119,139 @@ public class DSpaceCSV implements Serializable
             input = new BufferedReader(new InputStreamReader(new FileInputStream(f),"UTF-8"));
 
             // Read the heading line
-            String head = input.readLine();
-            String[] headingElements = head.split(escapedFieldSeparator);
-            int columnCounter = 0;
-            for (String element : headingElements)
+            readHeadings(input, c);
+
+            // Read each subsequent line
+            String record;
+            while ((record = readRecord(input)) != null)
             {
-                columnCounter++;
+                addItem(record);
+            }
+        }
+        finally
+        {
+            if (input != null)
+            {
+                input.close();
+            }
+        }
+    }
 
-                // Remove surrounding quotes if there are any
-                if ((element.startsWith("\"")) && (element.endsWith("\"")))
-                {
-                    element = element.substring(1, element.length() - 1);
-                }
+    /**
+     * Read and validate the heading line of a CSV file
+     *
+     * @param input The CSV file, positioned at its start
+     * @param c The DSpace Context
+     *
+     * @throws Exception thrown if the headings are not valid
+     */
+    protected void readHeadings(BufferedReader input, Context c) throws Exception
+    {
+        String head = input.readLine();
+        String[] headingElements = head.split(escapedFieldSeparator);
+        int columnCounter = 0;
+        for (String element : headingElements)
+        {
+            columnCounter++;
 
+            // Remove surrounding quotes if there are any
+            if ((element.startsWith("\"")) && (element.endsWith("\"")))
+            {
+                element = element.substring(1, element.length() - 1);
+            }
+
+            // Store the heading
+            if ("collection".equals(element))
+            {
                 // Store the heading
-                if ("collection".equals(element))
-                {
-                    // Store the heading
-                    headings.add(element);
-                }
-                // Store the action
-                else if ("action".equals(element))
-                {
-                    // Store the heading
-                    headings.add(element);
+                headings.add(element);
+            }
+            // Store the action
+            else if ("action".equals(element))
+            {
+                // Store the heading
+                headings.add(element);
+            }
+            else if (!"id".equals(element))
+            {
+                String authorityPrefix = "";
+                AuthorityValue authorityValueType = authorityValueService.getAuthorityValueType(element);
+                if (authorityValueType != null) {
+                    String authorityType = authorityValueType.getAuthorityType();
+                    authorityPrefix = element.substring(0, authorityType.length() + 1);
+                    element = element.substring(authorityPrefix.length());
                 }
-                else if (!"id".equals(element))
-                {
-                    String authorityPrefix = "";
-                    AuthorityValue authorityValueType = authorityValueService.getAuthorityValueType(element);
-                    if (authorityValueType != null) {
-                        String authorityType = authorityValueType.getAuthorityType();
-                        authorityPrefix = element.substring(0, authorityType.length() + 1);
-                        element = element.substring(authorityPrefix.length());
-                    }
-
-                    // Verify that the heading is valid in the metadata registry
-                    String[] clean = element.split("\\[");
-                    String[] parts = clean[0].split("\\.");
 
-                    if (parts.length < 2) {
-                        throw new MetadataImportInvalidHeadingException(element,
-                                                                        MetadataImportInvalidHeadingException.ENTRY,
-                                                                        columnCounter);
-                    }
-
-                    String metadataSchema = parts[0];
-                    String metadataElement = parts[1];
-                    String metadataQualifier = null;
-                    if (parts.length > 2) {
-                        metadataQualifier = parts[2];
-                    }
-
-                    // Check that the scheme exists
-                    MetadataSchema foundSchema = metadataSchemaService.find(c, metadataSchema);
-                    if (foundSchema == null) {
-                        throw new MetadataImportInvalidHeadingException(clean[0],
-                                                                        MetadataImportInvalidHeadingException.SCHEMA,
-                                                                        columnCounter);
-                    }
-
-                    // Check that the metadata element exists in the schema
-                    MetadataField foundField = metadataFieldService.findByElement(c, foundSchema, metadataElement, metadataQualifier);
-                    if (foundField == null) {
-                        throw new MetadataImportInvalidHeadingException(clean[0],
-                                                                        MetadataImportInvalidHeadingException.ELEMENT,
-                                                                        columnCounter);
-                    }
+                // Verify that the heading is valid in the metadata registry
+                String[] clean = element.split("\\[");
+                String[] parts = clean[0].split("\\.");
 
-                    // Store the heading
-                    headings.add(authorityPrefix + element);
+                if (parts.length < 2) {
+                    throw new MetadataImportInvalidHeadingException(element,
+                                                                    MetadataImportInvalidHeadingException.ENTRY,
+                                                                    columnCounter);
                 }
-            }
-
-            // Read each subsequent line
-            StringBuilder lineBuilder = new StringBuilder();
-            String lineRead;
 
-            while (StringUtils.isNotBlank(lineRead = input.readLine()))
-            {
-                if (lineBuilder.length() > 0) {
-                    // Already have a previously read value - add this line
-                    lineBuilder.append("\n").append(lineRead);
-
-                    // Count the number of quotes in the buffer
-                    int quoteCount = 0;
-                    for (int pos = 0; pos < lineBuilder.length(); pos++) {
-                        if (lineBuilder.charAt(pos) == '"') {
-                            quoteCount++;
-                        }
-                    }
+                String metadataSchema = parts[0];
+                String metadataElement = parts[1];
+                String metadataQualifier = null;
+                if (parts.length > 2) {
+                    metadataQualifier = parts[2];
+                }
 
-                    if (quoteCount % 2 == 0) {
-                        // Number of quotes is a multiple of 2, add the item
-                        addItem(lineBuilder.toString());
-                        lineBuilder = new StringBuilder();
-                    }
-                } else if (lineRead.indexOf('"') > -1) {
-                    // Get the number of quotes in the line
-                    int quoteCount = 0;
-                    for (int pos = 0; pos < lineRead.length(); pos++) {
-                        if (lineRead.charAt(pos) == '"') {
-                            quoteCount++;
-                        }
-                    }
+                // Check that the scheme exists
+                MetadataSchema foundSchema = metadataSchemaService.find(c, metadataSchema);
+                if (foundSchema == null) {
+                    throw new MetadataImportInvalidHeadingException(clean[0],
+                                                                    MetadataImportInvalidHeadingException.SCHEMA,
+                                                                    columnCounter);
+                }
 
-                    if (quoteCount % 2 == 0) {
-                        // Number of quotes is a multiple of 2, add the item
-                        addItem(lineRead);
-                    } else {
-                        // Uneven quotes - add to the buffer and leave for later
-                        lineBuilder.append(lineRead);
-                    }
-                } else {
-                    // No previously read line, and no quotes in the line - add item
-                    addItem(lineRead);
+                // Check that the metadata element exists in the schema
+                MetadataField foundField = metadataFieldService.findByElement(c, foundSchema, metadataElement, metadataQualifier);
+                if (foundField == null) {
+                    throw new MetadataImportInvalidHeadingException(clean[0],
+                                                                    MetadataImportInvalidHeadingException.ELEMENT,
+                                                                    columnCounter);
                 }
+
+                // Store the heading
+                headings.add(authorityPrefix + element);
             }
         }
-        finally
+    }
+
+    /**
+     * Read the next CSV line, which spans several lines of the file when a
+     * quoted value contains new lines. The file ends at the first blank line.
+     *
+     * @param input The CSV file, positioned after the headings or a previous line
+     * @return The CSV line, or null at the end of the file
+     *
+     * @throws IOException thrown if the file cannot be read
+     */
+    protected String readRecord(BufferedReader input) throws IOException
+    {
+        StringBuilder lineBuilder = new StringBuilder();
+        int quoteCount = 0;
+        String lineRead;
+        while (StringUtils.isNotBlank(lineRead = input.readLine()))
         {
-            if (input != null)
+            if (lineBuilder.length() > 0)
             {
-                input.close();
+                // Already have a previously read value - add this line
+                lineBuilder.append("\n");
+            }
+            lineBuilder.append(lineRead);
+
+            // Number of quotes is a multiple of 2, this is a complete line
+            quoteCount += StringUtils.countMatches(lineRead, "\"");
+            if (quoteCount % 2 == 0)
+            {
+                return lineBuilder.toString();
             }
         }
+        return null;
     }
 
     /**
@@ -36,9 +36,15 @@ import org.dspace.workflow.factory.WorkflowServiceFactory;
 
 import java.util.*;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 import java.sql.SQLException;
 
 /**
@@ -412,6 +418,147 @@ public class MetadataImport
         return changes;
     }
 
+    /**
+     * Run an import of a CSV file read in chunks, which requires this importer
+     * to have been created with a {@link ChunkedDSpaceCSV}. The items of each
+     * chunk are loaded with one query, the chunk is imported as by
+     * {@link #runImport(boolean, boolean, boolean, boolean)} and its changes
+     * are displayed, then the context cache is cleared, so that memory use does
+     * not grow with the size of the file.
+     *
+     * When writing changes, each chunk is committed on its own and the position
+     * of the last committed line is then recorded in the checkpoint file, so
+     * that an interrupted import can be resumed by skipping that many lines.
+     *
+     * @param change Whether or not to write the changes to the database
+     * @param useWorkflow Whether the workflows should be used when creating new items
+     * @param workflowNotify If the workflows should be used, whether to send notifications or not
+     * @param useTemplate Use collection template if create new item
+     * @param chunkSize The number of lines to import at a time
+     * @param checkpoint The checkpoint file to write after each commit, or null
+     * @return The number of items that have changed
+     *
+     * @throws MetadataImportException if something goes wrong
+     */
+    public int runChunkedImport(boolean change,
+                                boolean useWorkflow,
+                                boolean workflowNotify,
+                                boolean useTemplate,
+                                int chunkSize,
+                                File checkpoint) throws MetadataImportException
+    {
+        if (!(csv instanceof ChunkedDSpaceCSV))
+        {
+            throw new MetadataImportException("A chunked import must read its file with a ChunkedDSpaceCSV");
+        }
+        ChunkedDSpaceCSV chunks = (ChunkedDSpaceCSV) csv;
+
+        int changeCounter = 0;
+        try
+        {
+            while (chunks.nextChunk(chunkSize))
+            {
+                // Load the items of the chunk with one query rather than one per line
+                List<UUID> ids = new ArrayList<UUID>();
+                for (DSpaceCSVLine line : toImport)
+                {
+                    if (line.getID() != null)
+                    {
+                        ids.add(line.getID());
+                    }
+                }
+                itemService.findByIds(c, ids);
+
+                List<BulkEditChange> changes = runImport(change, useWorkflow, workflowNotify, useTemplate);
+                changeCounter += displayChanges(changes, change);
+
+                if (change)
+                {
+                    c.commit();
+                    if (checkpoint != null)
+                    {
+                        writeCheckpoint(checkpoint, chunks.getFile(), chunks.getPosition());
+                    }
+                    log.info(LogManager.getHeader(c, "metadata_import",
+                            "committed_lines=" + chunks.getPosition()));
+                }
+
+                // Forget the items of this chunk
+                c.clearCache();
+            }
+        }
+        catch (MetadataImportException mie)
+        {
+            throw mie;
+        }
+        catch (Exception e)
+        {
+            throw new MetadataImportException("Error importing the lines after line "
+                    + (chunks.getPosition() - toImport.size()) + ": " + e.getMessage(), e);
+        }
+
+        return changeCounter;
+    }
+
+    /**
+     * Read the number of lines of a CSV file which have already been imported
+     *
+     * @param checkpoint The checkpoint file written by a chunked import
+     * @param file The CSV file
+     * @return The number of lines to skip to resume the import
+     *
+     * @throws IOException if there is no valid checkpoint for this file
+     */
+    protected static int readCheckpoint(File checkpoint, File file) throws IOException
+    {
+        if (!checkpoint.exists())
+        {
+            throw new IOException("There is no checkpoint " + checkpoint);
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(checkpoint))
+        {
+            properties.load(in);
+        }
+        if (!String.valueOf(file.length()).equals(properties.getProperty("length")))
+        {
+            throw new IOException(file + " has changed since the checkpoint " + checkpoint + " was written");
+        }
+        try
+        {
+            return Integer.parseInt(properties.getProperty("lines"));
+        }
+        catch (NumberFormatException nfe)
+        {
+            throw new IOException("Invalid checkpoint " + checkpoint);
+        }
+    }
+
+    /**
+     * Record the number of lines of a CSV file which have been imported
+     *
+     * @param checkpoint The checkpoint file, which is replaced
+     * @param file The CSV file
+     * @param lines The number of lines imported
+     *
+     * @throws IOException if the checkpoint cannot be written
+     */
+    protected static void writeCheckpoint(File checkpoint, File file, int lines) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty("file", file.getAbsolutePath());
+        properties.setProperty("length", String.valueOf(file.length()));
+        properties.setProperty("lines", String.valueOf(lines));
+
+        File temp = new File(checkpoint.getPath() + ".tmp");
+        try (OutputStream out = new FileOutputStream(temp))
+        {
+            properties.store(out, "Metadata import checkpoint");
+        }
+        Files.move(temp.toPath(), checkpoint.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                   StandardCopyOption.ATOMIC_MOVE);
+    }
+
     /**
      * Compare an item metadata with a line from CSV, and optionally update the item
      *
@@ -1201,6 +1348,8 @@ public class MetadataImport
         options.addOption("w", "workflow", false, "workflow - when adding new items, use collection workflow");
         options.addOption("n", "notify", false, "notify - when adding new items using a workflow, send notification emails");
         options.addOption("t", "template", false, "template - when adding new items, use the collection template (if it exists)");        
+        options.addOption("c", "chunk", true, "chunk - import the file this many lines at a time, committing the changes after each chunk");
+        options.addOption("r", "resume", false, "resume - with the 'c' option, skip the lines committed by an interrupted import");
         options.addOption("h", "help", false, "help");
 
         // Parse the command line arguments
@@ -1253,6 +1402,30 @@ public class MetadataImport
             System.exit(1);
         }
 
+        // Option to import the file in chunks
+        int chunkSize = 0;
+        if (line.hasOption('c'))
+        {
+            try
+            {
+                chunkSize = Integer.parseInt(line.getOptionValue('c'));
+            }
+            catch (NumberFormatException nfe)
+            {
+                chunkSize = 0;
+            }
+            if (chunkSize < 1)
+            {
+                System.err.println("Invalid option 'c': (chunk) must be a number of lines greater than 0.");
+                System.exit(1);
+            }
+        }
+        else if (line.hasOption('r'))
+        {
+            System.err.println("Invalid option 'r': (resume) can only be specified with the 'c' (chunk) option.");
+            System.exit(1);
+        }
+
         // Create a context
         Context c;
         try
@@ -1296,6 +1469,14 @@ public class MetadataImport
             return;
         }
 
+        // Large files are read, and committed, a chunk at a time
+        if (chunkSize > 0)
+        {
+            System.exit(importInChunks(c, new File(filename), chunkSize, line.hasOption('r'), line.hasOption('s'),
+                                       useWorkflow, workflowNotify, useTemplate));
+            return;
+        }
+
         // Is this a silent run?
         boolean change = false;
 
@@ -1410,4 +1591,145 @@ public class MetadataImport
             System.exit(1);
         }
     }
+
+    /**
+     * Import a CSV file in chunks, as the main method does for a whole file.
+     * Unless the run is silent, the file is read a first time to display the
+     * changes and ask for confirmation. The changes are then made and committed
+     * a chunk at a time, recording the progress in a checkpoint file next to the
+     * CSV file, which is removed once the whole file has been imported.
+     *
+     * @param c The context, which is completed
+     * @param file The CSV file
+     * @param chunkSize The number of lines to import at a time
+     * @param resume Whether to skip the lines recorded in the checkpoint file
+     * @param silent Whether to make the changes without asking for confirmation
+     * @param useWorkflow Whether the workflows should be used when creating new items
+     * @param workflowNotify If the workflows should be used, whether to send notifications or not
+     * @param useTemplate Use collection template if create new item
+     * @return The exit code
+     */
+    private static int importInChunks(Context c, File file, int chunkSize, boolean resume, boolean silent,
+                                      boolean useWorkflow, boolean workflowNotify, boolean useTemplate)
+    {
+        File checkpoint = new File(file.getPath() + ".checkpoint");
+        int start = 0;
+        if (resume)
+        {
+            try
+            {
+                start = readCheckpoint(checkpoint, file);
+                System.out.println("Resuming the import after line " + start);
+            }
+            catch (IOException ioe)
+            {
+                System.err.println("Unable to resume the import: " + ioe.getMessage());
+                c.abort();
+                return 1;
+            }
+        }
+
+        try
+        {
+            boolean change = silent;
+            if (!silent)
+            {
+                // See what has changed
+                int changeCounter = importChunks(c, file, start, chunkSize, false,
+                                                 useWorkflow, workflowNotify, useTemplate, null);
+                if (changeCounter > 0)
+                {
+                    // Ask the user if they want to make the changes
+                    System.out.println("\n" + changeCounter + " item(s) will be changed\n");
+                    System.out.print("Do you want to make these changes? [y/n] ");
+                    String yn = (new BufferedReader(new InputStreamReader(System.in))).readLine();
+                    if ("y".equalsIgnoreCase(yn))
+                    {
+                        change = true;
+                    }
+                    else
+                    {
+                        System.out.println("No data has been changed.");
+                    }
+                }
+                else
+                {
+                    System.out.println("There were no changes detected");
+                }
+            }
+
+            // If required, make the changes
+            if (change)
+            {
+                importChunks(c, file, start, chunkSize, true, useWorkflow, workflowNotify, useTemplate, checkpoint);
+                if (checkpoint.exists() && !checkpoint.delete())
+                {
+                    log.warn("Unable to delete the import checkpoint " + checkpoint);
+                }
+            }
+
+            // Finsh off and tidy up
+            c.restoreAuthSystemState();
+            c.complete();
+            return 0;
+        }
+        catch (MetadataImportInvalidHeadingException miihe)
+        {
+            System.err.println(miihe.getMessage());
+        }
+        catch (MetadataImportException mie)
+        {
+            System.err.println("Error: " + mie.getMessage());
+        }
+        catch (Exception e)
+        {
+            System.err.println("Error importing file: " + e.getMessage());
+        }
+
+        c.abort();
+        System.err.println("Aborting most recent changes.");
+        if (checkpoint.exists())
+        {
+            System.err.println("The lines imported so far are recorded in " + checkpoint
+                               + ", use the 'r' (resume) option to continue the import.");
+        }
+        return 1;
+    }
+
+    /**
+     * Read a CSV file in chunks and import them
+     *
+     * @param c The context
+     * @param file The CSV file
+     * @param start The number of lines to skip
+     * @param chunkSize The number of lines to import at a time
+     * @param change Whether or not to write the changes to the database
+     * @param useWorkflow Whether the workflows should be used when creating new items
+     * @param workflowNotify If the workflows should be used, whether to send notifications or not
+     * @param useTemplate Use collection template if create new item
+     * @param checkpoint The checkpoint file to write after each commit, or null
+     * @return The number of items that have changed
+     *
+     * @throws Exception if something goes wrong
+     */
+    private static int importChunks(Context c, File file, int start, int chunkSize, boolean change,
+                                    boolean useWorkflow, boolean workflowNotify, boolean useTemplate,
+                                    File checkpoint) throws Exception
+    {
+        ChunkedDSpaceCSV csv = new ChunkedDSpaceCSV(file, c);
+        try
+        {
+            if (csv.skip(start) < start)
+            {
+                throw new MetadataImportException("The file has fewer than " + start + " lines to skip");
+            }
+            MetadataImport importer = new MetadataImport(c, csv);
+            return importer.runChunkedImport(change, useWorkflow, workflowNotify, useTemplate,
+                                             chunkSize, checkpoint);
+        }
+        finally
+        {
+            csv.close();
+        }
+    }
 }
@@ -7,7 +7,10 @@
  */
 package org.dspace.app.checker;
 
+import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 import java.sql.SQLException;
 import java.util.*;
 
@@ -19,13 +22,17 @@ import org.apache.commons.cli.OptionBuilder;
 import org.apache.commons.cli.Options;
 import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
+import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Logger;
 import org.dspace.checker.*;
 import org.dspace.content.Bitstream;
 import org.dspace.content.factory.ContentServiceFactory;
 import org.dspace.content.service.BitstreamService;
 import org.dspace.core.Context;
+import org.dspace.core.ThroughputLimiter;
 import org.dspace.core.Utils;
+import org.dspace.services.ConfigurationService;
+import org.dspace.services.factory.DSpaceServicesFactory;
 
 /**
  * Command line access to the checksum checker. Options are listed in the 
@@ -71,6 +78,12 @@ public final class ChecksumChecker
      *            <dd>Report only errors in the logs</dd>
      *            <dt>-p</dt>
      *            <dd>Don't prune results before running checker</dd>
+     *            <dt>-t [threads]</dt>
+     *            <dd>number of threads reading bitstreams</dd>
+     *            <dt>-w [MB/s]</dt>
+     *            <dd>bandwidth limit of all threads together</dd>
+     *            <dt>-r</dt>
+     *            <dd>resume an interrupted '-l' run</dd>
      *            </dl>
      * @throws SQLException if error
      */
@@ -90,6 +103,9 @@ public final class ChecksumChecker
         options.addOption("c", "count", true, "Check count");
         options.addOption("a", "handle", true, "Specify a handle to check");
         options.addOption("v", "verbose", false, "Report all processing");
+        options.addOption("t", "threads", true, "Number of threads reading bitstreams");
+        options.addOption("w", "bandwidth", true, "Maximum read bandwidth in MB/s (0 for no limit)");
+        options.addOption("r", "resume", false, "Resume an interrupted loop through bitstreams");
 
         OptionBuilder.withArgName("bitstream-ids").hasArgs().withDescription(
                 "Space separated list of bitstream ids");
@@ -150,10 +166,25 @@ public final class ChecksumChecker
 
             BitstreamDispatcher dispatcher = null;
 
+            // A single loop records its start date, so that it can be
+            // resumed with the bitstreams not checked since then
+            File checkpoint = null;
+
             // process should loop infinitely through
             // most_recent_checksum table
             if (line.hasOption('l'))
             {
+                checkpoint = getCheckpointFile();
+                if (line.hasOption('r'))
+                {
+                    Date resumed = readCheckpoint(checkpoint);
+                    if (resumed != null)
+                    {
+                        processStart = resumed;
+                        System.out.println("Resuming the loop started at " + processStart);
+                    }
+                }
+                writeCheckpoint(checkpoint, processStart);
                 dispatcher = new SimpleDispatcher(context, processStart, false);
             }
             else if (line.hasOption('L'))
@@ -226,12 +257,28 @@ public final class ChecksumChecker
                 checker.setReportVerbose(true);
             }
 
+            if (line.hasOption('t'))
+            {
+                checker.setThreads(Integer.parseInt(line.getOptionValue('t')));
+            }
+            if (line.hasOption('w'))
+            {
+                checker.setThroughputLimiter(ThroughputLimiter.ofMegabytesPerSecond(
+                        Double.parseDouble(line.getOptionValue('w'))));
+            }
+
             checker.setProcessStartDate(processStart);
             checker.setDispatcher(dispatcher);
             checker.setCollector(logger);
             checker.process();
             context.complete();
             context = null;
+
+            if (checkpoint != null && checkpoint.exists() && !checkpoint.delete())
+            {
+                LOG.warn("Unable to delete checkpoint file " + checkpoint);
+            }
+            System.out.print(checker.getThroughput().getReport());
         } finally {
             if(context != null){
                 context.abort();
@@ -239,6 +286,60 @@ public final class ChecksumChecker
         }
     }
 
+    /**
+     * Get the file recording the start date of the current loop, configured by
+     * <code>checker.checkpoint.file</code>.
+     * 
+     * @return the checkpoint file
+     */
+    private static File getCheckpointFile()
+    {
+        ConfigurationService configurationService = DSpaceServicesFactory.getInstance().getConfigurationService();
+        return new File(configurationService.getProperty("checker.checkpoint.file",
+                configurationService.getProperty("dspace.dir") + File.separator + "var" + File.separator + "checker.checkpoint"));
+    }
+
+    /**
+     * Read the start date of an interrupted loop.
+     * 
+     * @param checkpoint the checkpoint file
+     * @return the start date, or null if there is no valid checkpoint
+     */
+    private static Date readCheckpoint(File checkpoint)
+    {
+        if (!checkpoint.exists())
+        {
+            return null;
+        }
+        try
+        {
+            return new Date(Long.parseLong(FileUtils.readFileToString(checkpoint, StandardCharsets.UTF_8).trim()));
+        }
+        catch (IOException | NumberFormatException e)
+        {
+            LOG.warn("Ignoring invalid checkpoint file " + checkpoint, e);
+            return null;
+        }
+    }
+
+    /**
+     * Record the start date of a loop.
+     * 
+     * @param checkpoint the checkpoint file
+     * @param processStart the start date
+     */
+    private static void writeCheckpoint(File checkpoint, Date processStart)
+    {
+        try
+        {
+            FileUtils.writeStringToFile(checkpoint, String.valueOf(processStart.getTime()), StandardCharsets.UTF_8);
+        }
+        catch (IOException e)
+        {
+            LOG.warn("Unable to write checkpoint file " + checkpoint + ", this loop cannot be resumed", e);
+        }
+    }
+
     /**
      * Print the help options for the user
      * 
@@ -263,6 +364,8 @@ public final class ChecksumChecker
         System.out
                 .println("\nCheck a defined number of bitstreams: ChecksumChecker -c 10");
         System.out.println("\nReport all processing (verbose)(default reports only errors): ChecksumChecker -v");
+        System.out.println("\nLoop once with 4 threads reading at most 50 MB/s: ChecksumChecker -l -t 4 -w 50");
+        System.out.println("\nResume an interrupted loop: ChecksumChecker -l -r");
         System.out.println("\nDefault (no arguments) is equivalent to '-c 1'");
         System.exit(0);
     }
@@ -85,6 +85,10 @@ public class ItemImportCLITool {
             options.addOption("R", "resume", false,
                     "resume a failed import (add only)");
             options.addOption("q", "quiet", false, "don't display metadata");
+            options.addOption("T", "threads", true,
+                    "number of threads reading the files of items ahead (add only), committing every batch of items");
+            options.addOption("B", "batch", true,
+                    "number of items committed at a time with --threads (default 100)");
 
             options.addOption("h", "help", false, "help");
 
@@ -185,6 +189,23 @@ public class ItemImportCLITool {
                 isQuiet = true;
             }
 
+            int threads = 0;
+            int batchSize = 100;
+            try {
+                if (line.hasOption('T')) {
+                    threads = Integer.parseInt(line.getOptionValue('T'));
+                }
+                if (line.hasOption('B')) {
+                    batchSize = Integer.parseInt(line.getOptionValue('B'));
+                }
+            } catch (NumberFormatException e) {
+                threads = -1;
+            }
+            if (threads < 0 || batchSize < 1) {
+                System.out.println("Error - the number of threads and the batch size must be positive numbers");
+                System.exit(1);
+            }
+
             boolean zip = false;
             String zipfilename = "";
             if (line.hasOption('z')) {
@@ -292,6 +313,8 @@ public class ItemImportCLITool {
             myloader.setUseWorkflow(useWorkflow);
             myloader.setUseWorkflowSendEmail(useWorkflowSendEmail);
             myloader.setQuiet(isQuiet);
+            myloader.setThreads(threads);
+            myloader.setBatchSize(batchSize);
 
             // create a context
             Context c = new Context();
@@ -20,6 +20,12 @@ import java.net.URL;
 import java.sql.SQLException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.zip.ZipFile;
 import java.util.zip.ZipEntry;
 
@@ -125,6 +131,17 @@ public class ItemImportServiceImpl implements ItemImportService, InitializingBea
     protected boolean useWorkflow = false;
     protected boolean useWorkflowSendEmail = false;
     protected boolean isQuiet = false;
+    protected int threads = 0;
+    protected int batchSize = 100;
+
+    /** Number of items each thread may prepare ahead of the item being added */
+    protected static final int PREPARED_PER_THREAD = 4;
+
+    /** Files of the item being added which have already been read, in a concurrent import */
+    protected PreparedItem prepared = null;
+
+    /** XML parser of each thread */
+    protected final ThreadLocal<DocumentBuilder> documentBuilder = new ThreadLocal<>();
 
     @Override
     public void afterPropertiesSet() throws Exception {
@@ -318,6 +335,12 @@ public class ItemImportServiceImpl implements ItemImportService, InitializingBea
 
             Arrays.sort(dircontents, ComparatorUtils.naturalComparator());
 
+            if (threads > 0 && !isTest)
+            {
+                addItemsConcurrently(c, mycollections, sourceDir, dircontents, skipItems, mapOut, template);
+                return;
+            }
+
         for (int i = 0; i < dircontents.length; i++)
         {
             if (skipItems.containsKey(dircontents[i]))
@@ -360,6 +383,173 @@ public class ItemImportServiceImpl implements ItemImportService, InitializingBea
         }
     }
 
+    /**
+     * Add the items of a source directory, with a pool of threads reading the
+     * metadata files of the items and storing their content files in the
+     * assetstore ahead of this thread, which creates and installs the items in
+     * directory order. The context is committed after every batch of items, and
+     * only then are the map file lines of the batch written and flushed, so that
+     * the map file only lists committed items and a failed import can be resumed
+     * from the last batch committed.
+     *
+     * @param c current Context
+     * @param mycollections add the items to these Collections, or null to read the collections file of each item
+     * @param sourceDir directory containing the item directories
+     * @param dircontents the item directories, in import order
+     * @param skipItems items to skip as they have already been imported
+     * @param mapOut mapfile we're writing
+     * @param template whether to use collection template item as starting point
+     * @throws Exception if error occurs
+     */
+    protected void addItemsConcurrently(Context c, List<Collection> mycollections, String sourceDir,
+            String[] dircontents, Map<String, String> skipItems, PrintWriter mapOut, boolean template)
+            throws Exception
+    {
+        List<String> itemnames = new ArrayList<>();
+        for (String itemname : dircontents)
+        {
+            if (skipItems.containsKey(itemname))
+            {
+                System.out.println("Skipping import of " + itemname);
+            }
+            else
+            {
+                itemnames.add(itemname);
+            }
+        }
+
+        // The collections are reloaded after each commit
+        List<Collection> collections = mycollections == null ? null : new ArrayList<>(mycollections);
+
+        ExecutorService workers = Executors.newFixedThreadPool(threads);
+        LinkedList<Future<PreparedItem>> pending = new LinkedList<>();
+        List<PreparedItem> uncommitted = new ArrayList<>();
+        // Map file lines of the uncommitted items
+        StringWriter batchMap = new StringWriter();
+        PrintWriter batchOut = new PrintWriter(batchMap);
+        int submitted = 0;
+        int imported = 0;
+        long start = System.currentTimeMillis();
+        boolean completed = false;
+        try
+        {
+            for (int i = 0; i < itemnames.size(); i++)
+            {
+                // Keep the workers ahead, but not too far ahead to keep memory use bounded
+                while (submitted < itemnames.size() && submitted - i < threads * PREPARED_PER_THREAD)
+                {
+                    pending.add(workers.submit(new ItemPreparer(sourceDir, itemnames.get(submitted))));
+                    submitted++;
+                }
+
+                String itemname = itemnames.get(i);
+                PreparedItem item;
+                try
+                {
+                    item = pending.removeFirst().get();
+                }
+                catch (ExecutionException e)
+                {
+                    throw new Exception("Error preparing item " + itemname + ": " + e.getCause().getMessage(),
+                            e.getCause());
+                }
+                uncommitted.add(item);
+
+                List<Collection> clist = collections;
+                if (collections == null) {
+                    String path = sourceDir + File.separatorChar + itemname;
+                    try {
+                        clist = processCollectionFile(c, path, "collections");
+                        if (clist == null) {
+                            System.out.println("No collections specified for item " + itemname + ". Skipping.");
+                        }
+                    }
+                    catch (IllegalArgumentException e)
+                    {
+                        System.out.println(e.getMessage() + " Skipping." );
+                        clist = null;
+                    }
+                }
+
+                if (clist != null)
+                {
+                    prepared = item;
+                    try
+                    {
+                        addItem(c, clist, sourceDir, itemname, batchOut, template);
+                    }
+                    finally
+                    {
+                        prepared = null;
+                    }
+                    imported++;
+                    System.out.println(i + " " + itemname);
+                }
+
+                if (uncommitted.size() >= batchSize || i == itemnames.size() - 1)
+                {
+                    c.commit();
+                    batchOut.flush();
+                    mapOut.print(batchMap.toString());
+                    mapOut.flush();
+                    batchMap.getBuffer().setLength(0);
+                    for (PreparedItem committed : uncommitted)
+                    {
+                        // Files of items which were skipped
+                        committed.discard(false);
+                    }
+                    uncommitted.clear();
+                    if (collections != null)
+                    {
+                        for (int j = 0; j < collections.size(); j++)
+                        {
+                            collections.set(j, c.reloadEntity(collections.get(j)));
+                        }
+                    }
+
+                    long elapsed = Math.max(System.currentTimeMillis() - start, 1);
+                    String progress = "Committed " + imported + " of " + itemnames.size() + " items ("
+                            + (imported * 1000L / elapsed) + " items/s)";
+                    System.out.println(progress);
+                    log.info(LogManager.getHeader(c, "item_import", progress));
+                }
+            }
+            completed = true;
+        }
+        finally
+        {
+            workers.shutdownNow();
+            if (!completed)
+            {
+                // The uncommitted items will be rolled back, remove all the files stored for them.
+                // Files which are not removed here are left as deleted bitstreams for the cleanup.
+                for (PreparedItem item : uncommitted)
+                {
+                    item.discard(true);
+                }
+                if (!workers.awaitTermination(1, TimeUnit.MINUTES))
+                {
+                    log.warn("Item import workers still running, the files they store will be removed"
+                            + " by the bitstore cleanup");
+                }
+                for (Future<PreparedItem> future : pending)
+                {
+                    if (future.isDone() && !future.isCancelled())
+                    {
+                        try
+                        {
+                            future.get().discard(true);
+                        }
+                        catch (ExecutionException e)
+                        {
+                            // Nothing was left stored
+                        }
+                    }
+                }
+            }
+        }
+    }
+
     @Override
     public void replaceItems(Context c, List<Collection> mycollections,
             String sourceDir, String mapFile, boolean template) throws Exception
@@ -1164,9 +1354,15 @@ public class ItemImportServiceImpl implements ItemImportService, InitializingBea
     {
         String fullpath = path + File.separatorChar + fileName;
 
+        // the file may already be stored, in a concurrent import
+        Bitstream stored = prepared == null ? null : prepared.take(fullpath);
+
         // get an input stream
-        BufferedInputStream bis = new BufferedInputStream(new FileInputStream(
-                fullpath));
+        BufferedInputStream bis = null;
+        if (stored == null)
+        {
+            bis = new BufferedInputStream(new FileInputStream(fullpath));
+        }
 
         Bitstream bs = null;
         String newBundleName = bundleName;
@@ -1203,7 +1399,14 @@ public class ItemImportServiceImpl implements ItemImportService, InitializingBea
             }
 
             // now add the bitstream
-            bs = bitstreamService.create(c, targetBundle, bis);
+            if (stored != null)
+            {
+                bs = bitstreamService.create(c, targetBundle, stored);
+            }
+            else
+            {
+                bs = bitstreamService.create(c, targetBundle, bis);
+            }
 
             bs.setName(c, fileName);
 
@@ -1223,7 +1426,10 @@ public class ItemImportServiceImpl implements ItemImportService, InitializingBea
             bitstreamService.update(c, bs);
         }
 
-        bis.close();
+        if (bis != null)
+        {
+            bis.close();
+        }
     }
 
     /**
@@ -1570,8 +1776,37 @@ public class ItemImportServiceImpl implements ItemImportService, InitializingBea
     protected Document loadXML(String filename) throws IOException,
             ParserConfigurationException, SAXException
     {
-        DocumentBuilder builder = DocumentBuilderFactory.newInstance()
-                .newDocumentBuilder();
+        if (prepared != null && prepared.documents.containsKey(filename))
+        {
+            return prepared.documents.get(filename);
+        }
+        return parseXML(filename);
+    }
+
+    /**
+     * Parse an XML file, with a parser kept by the current thread.
+     *
+     * @param filename
+     *            the filename to load from
+     *
+     * @return the DOM representation of the XML file
+     * @throws IOException if IO error
+     * @throws ParserConfigurationException if config error
+     * @throws SAXException if XML error
+     */
+    protected Document parseXML(String filename) throws IOException,
+            ParserConfigurationException, SAXException
+    {
+        DocumentBuilder builder = documentBuilder.get();
+        if (builder == null)
+        {
+            builder = DocumentBuilderFactory.newInstance().newDocumentBuilder();
+            documentBuilder.set(builder);
+        }
+        else
+        {
+            builder.reset();
+        }
 
         return builder.parse(new File(filename));
     }
@@ -2077,4 +2312,150 @@ public class ItemImportServiceImpl implements ItemImportService, InitializingBea
     public void setQuiet(boolean isQuiet) {
         this.isQuiet = isQuiet;
     }
+
+    @Override
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    @Override
+    public void setBatchSize(int batchSize) {
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * The files of an item directory which have been read ahead of adding the
+     * item: its parsed metadata files, and the content files listed in its
+     * contents file, which are stored but not yet created.
+     */
+    protected class PreparedItem
+    {
+        /** Parsed metadata files, by file name as given to {@link #loadXML(String)} */
+        protected final Map<String, Document> documents = new HashMap<>();
+
+        /** Stored content files, by path */
+        protected final Map<String, Bitstream> bitstreams = new HashMap<>();
+
+        /** Stored content files which have been created, and are lost if the item is rolled back */
+        protected final List<Bitstream> created = new ArrayList<>();
+
+        /**
+         * Get a stored content file, to create its bitstream
+         * @param fullpath path of the content file
+         * @return the stored bitstream, or null if the file has not been stored
+         */
+        protected Bitstream take(String fullpath)
+        {
+            Bitstream stored = bitstreams.remove(fullpath);
+            if (stored != null)
+            {
+                created.add(stored);
+            }
+            return stored;
+        }
+
+        /**
+         * Remove the stored files which will not be created
+         * @param rollback whether the created bitstreams are being rolled back too
+         */
+        protected void discard(boolean rollback)
+        {
+            List<Bitstream> unused = new ArrayList<>(bitstreams.values());
+            if (rollback)
+            {
+                unused.addAll(created);
+                created.clear();
+            }
+            bitstreams.clear();
+            for (Bitstream stored : unused)
+            {
+                try
+                {
+                    bitstreamService.discard(stored);
+                }
+                catch (IOException e)
+                {
+                    log.warn("Unable to remove stored file " + stored.getInternalId(), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Reads the metadata files of an item directory and stores its content
+     * files, as deleted bitstreams committed in a context of its own.
+     */
+    protected class ItemPreparer implements Callable<PreparedItem>
+    {
+        protected final String sourceDir;
+        protected final String itemname;
+
+        protected ItemPreparer(String sourceDir, String itemname)
+        {
+            this.sourceDir = sourceDir;
+            this.itemname = itemname;
+        }
+
+        @Override
+        public PreparedItem call() throws Exception
+        {
+            PreparedItem item = new PreparedItem();
+            // The stored files are committed as deleted bitstreams, which the importing thread creates
+            Context context = new Context();
+            try
+            {
+                // Same file names as loadMetadata
+                String path = sourceDir + File.separatorChar + itemname + File.separatorChar;
+                item.documents.put(path + "dublin_core.xml", parseXML(path + "dublin_core.xml"));
+                File[] files = new File(path).listFiles(metadataFileFilter);
+                for (int i = 0; i < files.length; i++)
+                {
+                    item.documents.put(files[i].getAbsolutePath(), parseXML(files[i].getAbsolutePath()));
+                }
+
+                // Same paths as processContentsFile, registered files are left to it
+                String itemPath = sourceDir + File.separatorChar + itemname;
+                File contentsFile = new File(itemPath + File.separatorChar + "contents");
+                if (contentsFile.exists())
+                {
+                    try (BufferedReader is = new BufferedReader(new FileReader(contentsFile)))
+                    {
+                        String line;
+                        while ((line = is.readLine()) != null)
+                        {
+                            if ("".equals(line.trim()) || line.trim().startsWith("-r "))
+                            {
+                                continue;
+                            }
+                            int bitstreamEndIndex = line.indexOf('\t');
+                            String fileName = bitstreamEndIndex == -1 ? line : line.substring(0, bitstreamEndIndex);
+                            String fullpath = itemPath + File.separatorChar + fileName;
+                            File file = new File(fullpath);
+                            if (file.isFile() && !item.bitstreams.containsKey(fullpath))
+                            {
+                                try (InputStream in = new BufferedInputStream(new FileInputStream(file)))
+                                {
+                                    item.bitstreams.put(fullpath, bitstreamService.store(context, in));
+                                }
+                            }
+                        }
+                    }
+                }
+                context.complete();
+                return item;
+            }
+            catch (Exception e)
+            {
+                item.discard(true);
+                throw e;
+            }
+            finally
+            {
+                if (context.isValid())
+                {
+                    context.abort();
+                }
+            }
+        }
+    }
 }
@@ -235,4 +235,21 @@ public interface ItemImportService {
      * @param isQuiet true or false
      */
     public void setQuiet(boolean isQuiet);
+
+    /**
+     * Set the number of threads preparing items when adding items from a
+     * directory. With 0, the default, items are prepared and added one at a
+     * time in the given context, which is only committed by the caller.
+     * Otherwise the items are prepared concurrently and the context is
+     * committed after every batch of items.
+     * @param threads number of threads
+     */
+    public void setThreads(int threads);
+
+    /**
+     * Set the number of items added between commits when items are prepared
+     * concurrently
+     * @param batchSize number of items
+     */
+    public void setBatchSize(int batchSize);
 }
@@ -12,6 +12,8 @@ import java.io.IOException;
 import java.lang.reflect.Method;
 import java.util.List;
 import java.util.TreeMap;
+import org.dspace.discovery.IndexingQueue;
+import org.dspace.event.AsyncDispatcher;
 import org.dspace.servicemanager.DSpaceKernelImpl;
 import org.dspace.servicemanager.DSpaceKernelInit;
 import org.dspace.services.RequestService;
@@ -80,6 +82,11 @@ public class ScriptLauncher
         int status;
         status = runOneCommand(commandConfigs, args);
 
+        // Finish the background work queued by the command while the services are still up.
+        // The asynchronous event consumers may queue index updates.
+        AsyncDispatcher.shutdown();
+        IndexingQueue.shutdown();
+
         // Destroy the service kernel if it is still alive
         if (kernelImpl != null)
         {
@@ -20,8 +20,10 @@ import org.dspace.core.SelfNamedPlugin;
 import org.dspace.core.factory.CoreServiceFactory;
 import org.dspace.handle.factory.HandleServiceFactory;
 
+import java.io.File;
 import java.util.*;
 import org.apache.commons.lang.ArrayUtils;
+import org.apache.commons.lang.StringUtils;
 import org.dspace.services.factory.DSpaceServicesFactory;
 
 /**
@@ -66,6 +68,8 @@ public class MediaFilterCLITool {
                 "ONLY process bitstreams belonging to identifier");
         options.addOption("m", "maximum", true,
                 "process no more than maximum items");
+        options.addOption("t", "threads", true,
+                "filter bitstreams in parallel, with this many threads per filter");
         options.addOption("h", "help", false, "help");
 
         //create a "plugin" option (to specify specific MediaFilter plugins to run)
@@ -96,6 +100,8 @@ public class MediaFilterCLITool {
         boolean isForce = false; // default to not forced
         String identifier = null; // object scope limiter
         int max2Process = Integer.MAX_VALUE;
+        int threads = DSpaceServicesFactory.getInstance().getConfigurationService()
+                .getIntProperty("filter-media.threads", 0);
         Map<String, List<String>> filterFormats = new HashMap<>();
 
         CommandLine line = null;
@@ -147,6 +153,11 @@ public class MediaFilterCLITool {
             }
         }
 
+        if (line.hasOption('t'))
+        {
+            threads = Integer.parseInt(line.getOptionValue('t'));
+        }
+
         String filterNames[] = null;
         if(line.hasOption('p'))
         {
@@ -173,6 +184,17 @@ public class MediaFilterCLITool {
         mediaFilterService.setQuiet(isQuiet);
         mediaFilterService.setVerbose(isVerbose);
         mediaFilterService.setMax2Process(max2Process);
+        mediaFilterService.setThreads(threads);
+
+        // record of the bitstreams processed by previous runs, if any
+        ProcessedBitstreams processedBitstreams = null;
+        String processedFile = DSpaceServicesFactory.getInstance().getConfigurationService()
+                .getProperty("filter-media.processed.file");
+        if (StringUtils.isNotBlank(processedFile))
+        {
+            processedBitstreams = new ProcessedBitstreams(new File(processedFile));
+            mediaFilterService.setProcessedBitstreams(processedBitstreams);
+        }
 
         //initialize an array of our enabled filters
         List<FormatFilter> filterList = new ArrayList<FormatFilter>();
@@ -317,8 +339,15 @@ public class MediaFilterCLITool {
                 }
             }
 
+            mediaFilterService.finishFiltering(c);
+
             c.complete();
             c = null;
+
+            if (processedBitstreams != null)
+            {
+                processedBitstreams.save();
+            }
         }
         catch (Exception e)
         {
@@ -7,8 +7,24 @@
  */
 package org.dspace.app.mediafilter;
 
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.dspace.app.mediafilter.service.MediaFilterService;
 import org.dspace.authorize.service.AuthorizeService;
@@ -32,6 +48,15 @@ import org.springframework.beans.factory.annotation.Autowired;
  * recreate index after processing bitstreams; -i [identifier] limits processing 
  * scope to a community, collection or item; and -m [max] limits processing to a
  * maximum number of items.
+ * <p>
+ * When filter threads are set, each filter runs in its own pool of that many
+ * threads, so that different filters and different bitstreams are filtered at
+ * the same time. The output of each filter is spooled to a temporary file, and
+ * the renditions are stored by the calling thread, in the order the bitstreams
+ * were found, at the latest by {@link #finishFiltering}. Bitstreams larger
+ * than <code>filter-media.max.source.size</code> bytes are skipped, and
+ * renditions larger than <code>filter-media.max.output.size</code> bytes or
+ * taking longer than <code>filter-media.timeout</code> seconds are abandoned.
  */
 public class MediaFilterServiceImpl implements MediaFilterService, InitializingBean
 {
@@ -72,6 +97,16 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
     protected boolean isQuiet = false;
     protected boolean isForce = false; // default to not forced
 
+    protected int threads = 0; // threads per filter, 0 to filter in the calling thread
+    protected long maxSourceSize = 0; // bytes, 0 for no limit
+    protected long maxOutputSize = 0; // bytes, 0 for no limit
+    protected long timeout = 0; // milliseconds, 0 for no limit
+
+    protected ProcessedBitstreams processedBitstreams = null; // bitstreams filtered by previous runs
+
+    protected final Map<String, FilterPool> pools = new HashMap<>();
+    protected final Deque<Rendition> pending = new ArrayDeque<>(); // renditions being filtered, in order
+
     protected MediaFilterServiceImpl()
     {
 
@@ -86,6 +121,10 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
                 publicFiltersClasses.add(filter.trim());
             }
         }
+
+        maxSourceSize = configurationService.getLongProperty("filter-media.max.source.size", maxSourceSize);
+        maxOutputSize = configurationService.getLongProperty("filter-media.max.output.size", maxOutputSize);
+        timeout = configurationService.getLongProperty("filter-media.timeout", 0) * 1000;
     }
 
     @Override
@@ -207,15 +246,24 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
             //  <class-name><separator><plugin-name>
             //For other MediaFilters, map key is just:
             //  <class-name>
-            List<String> fmts = filterFormats.get(filterClass.getClass().getName() +
-                    (pluginName != null ? FILTER_PLUGIN_SEPARATOR + pluginName : ""));
+            String filterKey = filterClass.getClass().getName() +
+                    (pluginName != null ? FILTER_PLUGIN_SEPARATOR + pluginName : "");
+            List<String> fmts = filterFormats.get(filterKey);
+
+            // skip bitstreams filtered by a previous run
+            if (!isForce && processedBitstreams != null
+                    && processedBitstreams.contains(myBitstream.getID(), filterKey)) {
+                continue;
+            }
 
             if (fmts.contains(myBitstream.getFormat(context).getShortDescription())) {
                 try {
                     // only update item if bitstream not skipped
-                    if (processBitstream(context, myItem, myBitstream, filterClass)) {
-                        itemService.update(context, myItem); // Make sure new bitstream has a sequence
-                        // number
+                    if (applyFilter(context, myItem, myBitstream, filterClass, filterKey)) {
+                        if (!isParallel()) {
+                            itemService.update(context, myItem); // Make sure new bitstream has a sequence
+                            // number
+                        }
                         filtered = true;
                     }
                 } catch (Exception e) {
@@ -282,9 +330,11 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
                 if (applyFilter) {
                     try {
                         // only update item if bitstream not skipped
-                        if (processBitstream(context, myItem, myBitstream, filterClass)) {
-                            itemService.update(context, myItem); // Make sure new bitstream has a sequence
-                            // number
+                        if (applyFilter(context, myItem, myBitstream, filterClass, filterKey)) {
+                            if (!isParallel()) {
+                                itemService.update(context, myItem); // Make sure new bitstream has a sequence
+                                // number
+                            }
                             filtered = true;
                         }
                     } catch (Exception e) {
@@ -301,51 +351,123 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
     @Override
     public boolean processBitstream(Context context, Item item, Bitstream source, FormatFilter formatFilter)
             throws Exception
+    {
+        Rendition rendition = prepareRendition(context, item, source, formatFilter, null);
+        return rendition != null && !rendition.exists && filterRendition(context, rendition);
+    }
+
+    /**
+     * Apply a filter to a bitstream, or hand it to the filter's threads if
+     * bitstreams are filtered in parallel, and record it as processed once
+     * its rendition exists.
+     *
+     * @param context context
+     * @param item item containing bitstream to process
+     * @param source source bitstream to process
+     * @param formatFilter FormatFilter to perform filtering
+     * @param filterKey key of the filter in the map of filter formats
+     * @return true if a new rendition is created, or being created by the
+     *         filter's threads
+     * @throws Exception if error occurs
+     */
+    protected boolean applyFilter(Context context, Item item, Bitstream source, FormatFilter formatFilter,
+                                  String filterKey) throws Exception
+    {
+        Rendition rendition = prepareRendition(context, item, source, formatFilter, filterKey);
+        if (rendition == null)
+        {
+            return false;
+        }
+        if (rendition.exists)
+        {
+            recordProcessed(rendition);
+            return false;
+        }
+        if (isParallel())
+        {
+            return dispatchRendition(context, rendition);
+        }
+        boolean filtered = filterRendition(context, rendition);
+        if (filtered)
+        {
+            recordProcessed(rendition);
+        }
+        return filtered;
+    }
+
+    /**
+     * Pre-process a bitstream and find its existing rendition.
+     *
+     * @param context context
+     * @param item item containing bitstream to process
+     * @param source source bitstream to process
+     * @param formatFilter FormatFilter to perform filtering
+     * @param filterKey key of the filter in the map of filter formats
+     * @return the rendition to create, which {@link Rendition#exists} if it
+     *         exists and overWrite is not set, or null if pre-processing
+     *         skipped the bitstream
+     * @throws Exception if error occurs
+     */
+    protected Rendition prepareRendition(Context context, Item item, Bitstream source, FormatFilter formatFilter,
+                                         String filterKey) throws Exception
     {
         //do pre-processing of this bitstream, and if it fails, skip this bitstream!
     	if(!formatFilter.preProcessBitstream(context, item, source, isVerbose))
         {
-            return false;
+            return null;
         }
         	
     	boolean overWrite = isForce;
         
-        // get bitstream filename, calculate destination filename
-        String newName = formatFilter.getFilteredName(source.getName());
+        Rendition rendition = new Rendition(item, source, formatFilter, filterKey);
 
-        Bitstream existingBitstream = null; // is there an existing rendition?
-        Bundle targetBundle = null; // bundle we're modifying
+        // get bitstream filename, calculate destination filename
+        rendition.name = formatFilter.getFilteredName(source.getName());
 
-        List<Bundle> bundles = itemService.getBundles(item, formatFilter.getBundleName());
+        rendition.bundles = itemService.getBundles(item, formatFilter.getBundleName());
 
         // check if destination bitstream exists
-        if (bundles.size() > 0)
+        if (rendition.bundles.size() > 0)
         {
             // only finds the last match (FIXME?)
-            for (Bundle bundle : bundles) {
+            for (Bundle bundle : rendition.bundles) {
                 List<Bitstream> bitstreams = bundle.getBitstreams();
 
                 for (Bitstream bitstream : bitstreams) {
-                    if (bitstream.getName().equals(newName)) {
-                        targetBundle = bundle;
-                        existingBitstream = bitstream;
+                    if (bitstream.getName().equals(rendition.name)) {
+                        rendition.existingBitstream = bitstream;
                     }
                 }
             }
         }
 
         // if exists and overwrite = false, exit
-        if (!overWrite && (existingBitstream != null))
+        if (!overWrite && (rendition.existingBitstream != null))
         {
             if (!isQuiet)
             {
                 System.out.println("SKIPPED: bitstream " + source.getID()
-                        + " (item: " + item.getHandle() + ") because '" + newName + "' already exists");
+                        + " (item: " + item.getHandle() + ") because '" + rendition.name + "' already exists");
             }
 
-            return false;
+            rendition.exists = true;
         }
-        
+        return rendition;
+    }
+
+    /**
+     * Filter a bitstream in the calling thread and create its rendition.
+     *
+     * @param context context
+     * @param rendition the rendition to create
+     * @return true if the rendition is created, false if filtering was unsuccessful
+     * @throws Exception if error occurs
+     */
+    protected boolean filterRendition(Context context, Rendition rendition) throws Exception
+    {
+        Item item = rendition.item;
+        Bitstream source = rendition.source;
+
         if(isVerbose) {
             System.out.println("PROCESSING: bitstream " + source.getID()
                 + " (item: " + item.getHandle() + ")");
@@ -353,8 +475,8 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
 
         InputStream destStream;
         try {
-            System.out.println("File: " + newName);
-            destStream = formatFilter.getDestinationStream(item, bitstreamService.retrieve(context, source), isVerbose);
+            System.out.println("File: " + rendition.name);
+            destStream = rendition.filter.getDestinationStream(item, bitstreamService.retrieve(context, source), isVerbose);
             if (destStream == null) {
                 if (!isQuiet) {
                     System.out.println("SKIPPED: bitstream " + source.getID()
@@ -368,6 +490,29 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
             return false;
         }
 
+        createRendition(context, rendition, destStream);
+        return true;
+    }
+
+    /**
+     * Store the output of a filter as the rendition of a bitstream.
+     *
+     * @param context context
+     * @param rendition the rendition to create
+     * @param destStream output of the filter
+     * @throws Exception if error occurs
+     */
+    protected void createRendition(Context context, Rendition rendition, InputStream destStream) throws Exception
+    {
+        Item item = rendition.item;
+        Bitstream source = rendition.source;
+        FormatFilter formatFilter = rendition.filter;
+        Bundle targetBundle; // bundle we're modifying
+
+        // look again, a rendition of another bitstream may have created the bundle meanwhile
+        List<Bundle> bundles = rendition.bundles.isEmpty()
+                ? itemService.getBundles(item, formatFilter.getBundleName()) : rendition.bundles;
+
         // create new bundle if needed
         if (bundles.size() < 1)
         {
@@ -382,7 +527,7 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
         Bitstream b = bitstreamService.create(context, targetBundle, destStream);
 
         // Now set the format and name of the bitstream
-        b.setName(context, newName);
+        b.setName(context, rendition.name);
         b.setSource(context, "Written by FormatFilter " + formatFilter.getClass().getName() +
         			" on " + DCDate.getCurrent() + " (GMT)."); 
         b.setDescription(context, formatFilter.getDescription());
@@ -409,23 +554,222 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
 
         // fixme - set date?
         // we are overwriting, so remove old bitstream
-        if (existingBitstream != null)
+        if (rendition.existingBitstream != null)
         {
-            bundleService.removeBitstream(context, targetBundle, existingBitstream);
+            bundleService.removeBitstream(context, targetBundle, rendition.existingBitstream);
         }
 
         if (!isQuiet)
         {
             System.out.println("FILTERED: bitstream " + source.getID()
-                    + " (item: " + item.getHandle() + ") and created '" + newName + "'");
+                    + " (item: " + item.getHandle() + ") and created '" + rendition.name + "'");
         }
 
         //do post-processing of the generated bitstream
         formatFilter.postProcessBitstream(context, item, b);
-        
+    }
+
+    /**
+     * @return true if bitstreams are currently handed to the filters' threads
+     */
+    protected boolean isParallel()
+    {
+        return 0 < threads;
+    }
+
+    /**
+     * Hand a bitstream to the threads of its filter. The rendition is created
+     * later by {@link #completeRendition}, in the calling thread.
+     *
+     * @param context context
+     * @param rendition the rendition to create
+     * @return true if the bitstream is being filtered, false if it is too large
+     * @throws Exception if error occurs
+     */
+    protected boolean dispatchRendition(Context context, Rendition rendition) throws Exception
+    {
+        Item item = rendition.item;
+        Bitstream source = rendition.source;
+        if (0 < maxSourceSize && maxSourceSize < source.getSize())
+        {
+            if (!isQuiet)
+            {
+                System.out.println("SKIPPED: bitstream " + source.getID()
+                        + " (item: " + item.getHandle() + ") because it is larger than " + maxSourceSize + " bytes");
+            }
+            return false;
+        }
+
+        if (isVerbose)
+        {
+            System.out.println("PROCESSING: bitstream " + source.getID()
+                    + " (item: " + item.getHandle() + ")");
+        }
+
+        FilterPool pool = pools.get(rendition.filterKey);
+        if (pool == null)
+        {
+            pool = new FilterPool(rendition.filter, threads);
+            pools.put(rendition.filterKey, pool);
+        }
+        // store the renditions which are ready while the filter's threads are busy
+        while (!pool.permits.tryAcquire(1, TimeUnit.SECONDS))
+        {
+            completePending(context, pending.size() - 1);
+        }
+
+        // the filters may use the item's handle, load it in this thread
+        item.getHandle();
+        InputStream sourceStream;
+        try
+        {
+            sourceStream = bitstreamService.retrieve(context, source);
+        }
+        catch (Exception e)
+        {
+            pool.permits.release();
+            throw e;
+        }
+        rendition.task = new FilterTask(rendition.filter, item, sourceStream, pool.permits);
+        rendition.result = pool.executor.submit(rendition.task);
+        pending.add(rendition);
+
+        completePending(context, 2 * threads * pools.size());
         return true;
     }
-    
+
+    /**
+     * Create the renditions which are ready, in the order the bitstreams were
+     * dispatched, and wait for the oldest ones until no more than a number of
+     * bitstreams are being filtered.
+     *
+     * @param context context
+     * @param maxPending maximum number of renditions left pending
+     * @throws Exception if error occurs
+     */
+    protected void completePending(Context context, int maxPending) throws Exception
+    {
+        while (!pending.isEmpty() && (pending.peek().result.isDone() || maxPending < pending.size()))
+        {
+            completeRendition(context, pending.poll());
+        }
+    }
+
+    /**
+     * Wait for the filter of a bitstream and create its rendition. Errors are
+     * logged to STDOUT and swallowed, like in {@link #filterBitstream}.
+     *
+     * @param context context
+     * @param rendition the rendition to create
+     */
+    protected void completeRendition(Context context, Rendition rendition)
+    {
+        Item item = rendition.item;
+        Bitstream source = rendition.source;
+        File output = null;
+        try
+        {
+            output = awaitFilter(rendition);
+            if (output == null)
+            {
+                if (!isQuiet)
+                {
+                    System.out.println("SKIPPED: bitstream " + source.getID()
+                            + " (item: " + item.getHandle() + ") because filtering was unsuccessful");
+                }
+                return;
+            }
+            try (InputStream destStream = new FileInputStream(output))
+            {
+                createRendition(context, rendition, destStream);
+            }
+            itemService.update(context, item); // Make sure new bitstream has a sequence number
+            recordProcessed(rendition);
+        }
+        catch (Exception e)
+        {
+            System.out.println("ERROR filtering, skipping bitstream #"
+                    + source.getID() + " (item: " + item.getHandle() + ") " + e);
+            e.printStackTrace();
+        }
+        finally
+        {
+            if (output != null)
+            {
+                output.delete();
+            }
+        }
+    }
+
+    /**
+     * Wait for the filter of a bitstream, cancelling it if it takes too long.
+     *
+     * @param rendition the rendition being filtered
+     * @return the output of the filter, or null if filtering was unsuccessful
+     * @throws Exception if the filter failed or took too long
+     */
+    protected File awaitFilter(Rendition rendition) throws Exception
+    {
+        while (true)
+        {
+            try
+            {
+                return rendition.result.get(1, TimeUnit.SECONDS);
+            }
+            catch (TimeoutException e)
+            {
+                if (0 < timeout && rendition.task.getRunningTime() > timeout)
+                {
+                    rendition.result.cancel(true);
+                    throw new IOException("Filtering took more than " + timeout / 1000 + " seconds");
+                }
+            }
+            catch (ExecutionException e)
+            {
+                if (e.getCause() instanceof Exception)
+                {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+    }
+
+    @Override
+    public void finishFiltering(Context context) throws Exception
+    {
+        try
+        {
+            completePending(context, 0);
+        }
+        finally
+        {
+            for (Rendition rendition : pending)
+            {
+                rendition.result.cancel(true);
+            }
+            pending.clear();
+            for (FilterPool pool : pools.values())
+            {
+                pool.executor.shutdownNow();
+            }
+            pools.clear();
+        }
+    }
+
+    /**
+     * Record a bitstream as processed by a filter, if processed bitstreams are recorded.
+     *
+     * @param rendition the rendition which exists
+     */
+    protected void recordProcessed(Rendition rendition)
+    {
+        if (processedBitstreams != null && rendition.filterKey != null)
+        {
+            processedBitstreams.add(rendition.source.getID(), rendition.filterKey);
+        }
+    }
+
     @Override
     public Item getCurrentItem()
     {
@@ -483,4 +827,169 @@ public class MediaFilterServiceImpl implements MediaFilterService, InitializingB
     public void setFilterFormats(Map<String, List<String>> filterFormats) {
         this.filterFormats = filterFormats;
     }
+
+    @Override
+    public void setThreads(int threads) {
+        this.threads = threads;
+    }
+
+    @Override
+    public void setProcessedBitstreams(ProcessedBitstreams processedBitstreams) {
+        this.processedBitstreams = processedBitstreams;
+    }
+
+    /**
+     * A rendition of a bitstream to be created by a filter.
+     */
+    protected static class Rendition
+    {
+        protected final Item item;
+        protected final Bitstream source;
+        protected final FormatFilter filter;
+        protected final String filterKey;
+
+        protected String name; // name of the rendition
+        protected List<Bundle> bundles; // bundles the rendition belongs in
+        protected Bitstream existingBitstream; // existing rendition, if any
+        protected boolean exists = false; // true if the existing rendition is kept
+
+        protected FilterTask task;
+        protected Future<File> result;
+
+        protected Rendition(Item item, Bitstream source, FormatFilter filter, String filterKey)
+        {
+            this.item = item;
+            this.source = source;
+            this.filter = filter;
+            this.filterKey = filterKey;
+        }
+    }
+
+    /**
+     * Threads running one filter, with permits to dispatch bitstreams to them.
+     */
+    protected static class FilterPool
+    {
+        protected final ExecutorService executor;
+        protected final Semaphore permits;
+
+        protected FilterPool(FormatFilter filter, int threads)
+        {
+            executor = Executors.newFixedThreadPool(threads, new FilterThreadFactory(filter.getClass().getSimpleName()));
+            permits = new Semaphore(2 * threads);
+        }
+    }
+
+    /**
+     * Runs a filter over a bitstream and spools its output to a temporary file.
+     */
+    protected class FilterTask implements Callable<File>
+    {
+        private final FormatFilter filter;
+        private final Item item;
+        private final InputStream source;
+        private final Semaphore permits;
+
+        private volatile long started = 0;
+
+        protected FilterTask(FormatFilter filter, Item item, InputStream source, Semaphore permits)
+        {
+            this.filter = filter;
+            this.item = item;
+            this.source = source;
+            this.permits = permits;
+        }
+
+        /**
+         * @return time in milliseconds the filter has been running, 0 if it has not started yet
+         */
+        protected long getRunningTime()
+        {
+            return started == 0 ? 0 : (System.nanoTime() - started) / 1000000;
+        }
+
+        @Override
+        public File call() throws Exception
+        {
+            started = System.nanoTime();
+            File output = null;
+            boolean success = false;
+            try
+            {
+                InputStream destStream;
+                try
+                {
+                    destStream = filter.getDestinationStream(item, source, isVerbose);
+                }
+                catch (OutOfMemoryError oome)
+                {
+                    System.out.println("!!! OutOfMemoryError !!!");
+                    return null;
+                }
+                if (destStream == null)
+                {
+                    return null;
+                }
+
+                output = File.createTempFile("dspace-filter", ".tmp");
+                output.deleteOnExit();
+                try (InputStream in = destStream; OutputStream out = new FileOutputStream(output))
+                {
+                    byte[] buffer = new byte[65536];
+                    long size = 0;
+                    int read;
+                    while ((read = in.read(buffer)) != -1)
+                    {
+                        size += read;
+                        if (0 < maxOutputSize && maxOutputSize < size)
+                        {
+                            throw new IOException("Rendition is larger than " + maxOutputSize + " bytes");
+                        }
+                        if (Thread.interrupted())
+                        {
+                            throw new InterruptedIOException("Filtering cancelled");
+                        }
+                        out.write(buffer, 0, read);
+                    }
+                }
+                success = true;
+                return output;
+            }
+            finally
+            {
+                try
+                {
+                    source.close();
+                }
+                catch (IOException e)
+                {
+                    // already closed by the filter
+                }
+                permits.release();
+                if (!success && output != null)
+                {
+                    output.delete();
+                }
+            }
+        }
+    }
+
+    private static class FilterThreadFactory implements ThreadFactory
+    {
+        private final String name;
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        private FilterThreadFactory(String name)
+        {
+            this.name = name;
+        }
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "media-filter-" + name + "-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
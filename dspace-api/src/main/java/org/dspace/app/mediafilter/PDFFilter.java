@@ -12,11 +12,13 @@ import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStreamWriter;
 import java.io.Writer;
 
 import org.apache.log4j.Logger;
+import org.apache.pdfbox.io.MemoryUsageSetting;
 import org.apache.pdfbox.pdmodel.PDDocument;
 import org.apache.pdfbox.text.PDFTextStripper;
 import org.dspace.content.Item;
@@ -106,7 +108,11 @@ public class PDFFilter extends MediaFilter
             
             try
             {
-                pdfDoc = PDDocument.load(source);
+                // keep no more than the configured memory, the rest in a scratch file
+                long maxMemory = ConfigurationManager.getLongProperty("pdffilter.maxmemory", -1);
+                MemoryUsageSetting memoryUsage = maxMemory < 0 ? MemoryUsageSetting.setupMainMemoryOnly()
+                        : MemoryUsageSetting.setupMixed(maxMemory * 1024 * 1024);
+                pdfDoc = PDDocument.load(source, memoryUsage);
                 pts.writeText(pdfDoc, writer);
             }
             finally
@@ -135,7 +141,17 @@ public class PDFFilter extends MediaFilter
 
             if (useTemporaryFile)
             {
-                return new FileInputStream(tempTextFile);
+                // delete the extract as soon as it has been read
+                final File extract = tempTextFile;
+                return new FileInputStream(extract)
+                {
+                    @Override
+                    public void close() throws IOException
+                    {
+                        super.close();
+                        extract.delete();
+                    }
+                };
             }
             else
             {
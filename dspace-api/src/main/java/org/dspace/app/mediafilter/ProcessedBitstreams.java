@@ -0,0 +1,132 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.mediafilter;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Record of the bitstreams a filter has already been applied to, kept in a
+ * file between runs of the media filters, so that a new run can skip them
+ * without looking at the bundles of their items again.
+ * <p>
+ * A bitstream is recorded once its rendition has been created, or found to
+ * exist already. New records are only written by {@link #save()}, which is
+ * called once the renditions have been committed. Forcing the filters to run
+ * ignores the record.
+ */
+public class ProcessedBitstreams
+{
+    private static final String SEPARATOR = "\t";
+
+    private final File file;
+
+    private final Set<String> processed = new HashSet<>();
+
+    private final List<String> added = new ArrayList<>();
+
+    /**
+     * Read the record of processed bitstreams.
+     *
+     * @param file the record, which does not have to exist yet
+     * @throws IOException if the record cannot be read
+     */
+    public ProcessedBitstreams(File file) throws IOException
+    {
+        this.file = file;
+        if (file.exists())
+        {
+            try (BufferedReader reader = new BufferedReader(
+                    new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)))
+            {
+                String line;
+                while ((line = reader.readLine()) != null)
+                {
+                    if (!line.isEmpty())
+                    {
+                        processed.add(line);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param bitstream identifier of the source bitstream
+     * @param filterKey the filter, as a key of the map of filter formats
+     * @return true if the filter has already been applied to the bitstream
+     */
+    public boolean contains(UUID bitstream, String filterKey)
+    {
+        return processed.contains(bitstream + SEPARATOR + filterKey);
+    }
+
+    /**
+     * Record that a filter has been applied to a bitstream.
+     *
+     * @param bitstream identifier of the source bitstream
+     * @param filterKey the filter, as a key of the map of filter formats
+     */
+    public void add(UUID bitstream, String filterKey)
+    {
+        String record = bitstream + SEPARATOR + filterKey;
+        if (processed.add(record))
+        {
+            added.add(record);
+        }
+    }
+
+    /**
+     * Append the bitstreams recorded since the last save to the file.
+     *
+     * @throws IOException if the record cannot be written
+     */
+    public void save() throws IOException
+    {
+        if (added.isEmpty())
+        {
+            return;
+        }
+        File parent = file.getAbsoluteFile().getParentFile();
+        if (parent != null && !parent.exists())
+        {
+            parent.mkdirs();
+        }
+        try (Writer writer = new BufferedWriter(
+                new OutputStreamWriter(new FileOutputStream(file, true), StandardCharsets.UTF_8)))
+        {
+            for (String record : added)
+            {
+                writer.write(record);
+                writer.write('\n');
+            }
+        }
+        added.clear();
+    }
+
+    /**
+     * @return number of bitstreams recorded
+     */
+    public int size()
+    {
+        return processed.size();
+    }
+}
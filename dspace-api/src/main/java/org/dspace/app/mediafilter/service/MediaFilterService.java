@@ -8,6 +8,7 @@
 package org.dspace.app.mediafilter.service;
 
 import org.dspace.app.mediafilter.FormatFilter;
+import org.dspace.app.mediafilter.ProcessedBitstreams;
 import org.dspace.content.Bitstream;
 import org.dspace.content.Collection;
 import org.dspace.content.Community;
@@ -130,4 +131,31 @@ public interface MediaFilterService {
     public void setSkipList(List<String> skipList);
 
     public void setFilterFormats(Map<String, List<String>> filterFormats);
+
+    /**
+     * Filter bitstreams in parallel. Each filter gets its own pool of threads,
+     * and renditions are created as their filters complete, in the order the
+     * bitstreams were found. {@link #finishFiltering} has to be called once all
+     * bitstreams have been handed out.
+     *
+     * @param threads number of threads per filter, 0 to filter in the calling thread
+     */
+    public void setThreads(int threads);
+
+    /**
+     * Skip the bitstreams recorded as processed by previous runs, unless
+     * forced, and record the bitstreams processed by this run.
+     *
+     * @param processedBitstreams the record, null to look at every bitstream
+     */
+    public void setProcessedBitstreams(ProcessedBitstreams processedBitstreams);
+
+    /**
+     * Wait for the bitstreams being filtered in parallel, create their
+     * renditions and stop the filters' threads.
+     *
+     * @param context context
+     * @throws Exception if error
+     */
+    public void finishFiltering(Context context) throws Exception;
 }
@@ -0,0 +1,513 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.util;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.sql.SQLException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TimeZone;
+import java.util.UUID;
+
+import org.apache.commons.lang.StringUtils;
+import org.dspace.authorize.AuthorizeException;
+import org.dspace.content.Bitstream;
+import org.dspace.content.factory.ContentServiceFactory;
+import org.dspace.core.Context;
+import org.dspace.services.ConfigurationService;
+import org.dspace.services.factory.DSpaceServicesFactory;
+
+/**
+ * Decides how to answer a bitstream download request and writes the response body.
+ * Shared by the XMLUI, JSPUI and REST downloads so that they all support:
+ * <ul>
+ * <li>conditional requests: <code>If-None-Match</code> against an ETag derived from the
+ * stored checksum, and <code>If-Modified-Since</code>, answered with 304 Not Modified</li>
+ * <li>single and multiple byte ranges (<code>Range</code>, <code>If-Range</code>), answered
+ * with 206 Partial Content, as <code>multipart/byteranges</code> for several ranges, or with
+ * 416 Range Not Satisfiable</li>
+ * </ul>
+ * Usage: create an instance for the bitstream, call {@link #evaluate}, copy {@link #getStatus()}
+ * and {@link #getHeaders()} to the response, then call {@link #write} unless
+ * {@link #hasBody()} is false. The content of a bitstream is best opened with
+ * {@link #retrieve}, which only asks the assetstore for the range when a single one is sent;
+ * {@link #write} stops at the end of the range whichever stream the assetstore returned.
+ * <p>
+ * Streams opened on a file (such as those of the <code>DSBitStoreService</code> assetstore)
+ * are written through their {@link FileChannel}: ranges are reached by positioning the
+ * channel instead of reading the skipped bytes, and the data is moved with
+ * {@link FileChannel#transferTo}.
+ * <p>
+ * Range support is enabled by <code>bitstream.download.ranges</code> (true by default); at most
+ * <code>bitstream.download.ranges.max</code> ranges (default 20) are served per request, a
+ * request for more gets the whole bitstream.
+ */
+public class BitstreamDownload
+{
+    public static final int SC_OK = 200;
+    public static final int SC_PARTIAL_CONTENT = 206;
+    public static final int SC_NOT_MODIFIED = 304;
+    public static final int SC_RANGE_NOT_SATISFIABLE = 416;
+
+    private static final int BUFFER_SIZE = 8192;
+
+    private static final String CRLF = "\r\n";
+
+    private final long size;
+    private final String etag;
+    private final long lastModified;
+    private final String contentType;
+
+    private int status = SC_OK;
+    private final Map<String, String> headers = new LinkedHashMap<>();
+    private List<long[]> ranges = null;
+
+    /** Position in the bitstream of the first byte of the stream opened by {@link #retrieve} */
+    private long streamOffset = 0;
+    private String boundary = null;
+
+    /**
+     * @param size size of the bitstream in bytes, -1 if unknown (disables ranges)
+     * @param etag entity tag without quotes, e.g. the stored checksum, or null
+     * @param lastModified last modification time in milliseconds, or -1 if unknown
+     * @param contentType MIME type of the bitstream
+     */
+    public BitstreamDownload(long size, String etag, long lastModified, String contentType)
+    {
+        this.size = size;
+        this.etag = StringUtils.isBlank(etag) ? null : "\"" + etag.replace("\"", "") + "\"";
+        this.lastModified = lastModified;
+        this.contentType = contentType;
+    }
+
+    /**
+     * Decide on the status and headers of the response.
+     *
+     * @param ifNoneMatch value of the If-None-Match header, or null
+     * @param ifModifiedSince value of the If-Modified-Since header in milliseconds, or -1
+     * @param range value of the Range header, or null
+     * @param ifRange value of the If-Range header, or null
+     * @return the status code
+     */
+    public int evaluate(String ifNoneMatch, long ifModifiedSince, String range, String ifRange)
+    {
+        ConfigurationService configurationService = DSpaceServicesFactory.getInstance().getConfigurationService();
+        boolean rangesEnabled = configurationService.getBooleanProperty("bitstream.download.ranges", true);
+
+        if (etag != null)
+        {
+            headers.put("ETag", etag);
+        }
+        if (rangesEnabled && size >= 0)
+        {
+            headers.put("Accept-Ranges", "bytes");
+        }
+
+        if (isNotModified(ifNoneMatch, ifModifiedSince))
+        {
+            status = SC_NOT_MODIFIED;
+            return status;
+        }
+
+        if (rangesEnabled && size >= 0 && range != null && (ifRange == null || matchesIfRange(ifRange)))
+        {
+            List<long[]> requested = parseRanges(range);
+            if (requested != null)
+            {
+                if (requested.isEmpty())
+                {
+                    status = SC_RANGE_NOT_SATISFIABLE;
+                    headers.put("Content-Range", "bytes */" + size);
+                    headers.put("Content-Length", "0");
+                    return status;
+                }
+                if (requested.size() <= configurationService.getIntProperty("bitstream.download.ranges.max", 20))
+                {
+                    ranges = coalesce(requested);
+                }
+            }
+        }
+
+        if (ranges == null)
+        {
+            status = SC_OK;
+            if (size >= 0)
+            {
+                headers.put("Content-Length", String.valueOf(size));
+            }
+        }
+        else if (ranges.size() == 1)
+        {
+            status = SC_PARTIAL_CONTENT;
+            long[] only = ranges.get(0);
+            headers.put("Content-Range", "bytes " + only[0] + "-" + only[1] + "/" + size);
+            headers.put("Content-Length", String.valueOf(only[1] - only[0] + 1));
+        }
+        else
+        {
+            status = SC_PARTIAL_CONTENT;
+            boundary = UUID.randomUUID().toString().replace("-", "");
+            long length = 0;
+            for (long[] part : ranges)
+            {
+                length += partHeader(part).length + part[1] - part[0] + 1;
+            }
+            length += (CRLF + "--" + boundary + "--" + CRLF).length();
+            headers.put("Content-Type", "multipart/byteranges; boundary=" + boundary);
+            headers.put("Content-Length", String.valueOf(length));
+        }
+        return status;
+    }
+
+    /**
+     * @return the status code decided by {@link #evaluate}
+     */
+    public int getStatus()
+    {
+        return status;
+    }
+
+    /**
+     * @return the response headers decided by {@link #evaluate}. Content-Type is only
+     *         included for multipart responses; otherwise the caller sets it as before.
+     */
+    public Map<String, String> getHeaders()
+    {
+        return headers;
+    }
+
+    /**
+     * @return true if the response has a body that must be written with {@link #write}
+     */
+    public boolean hasBody()
+    {
+        return status == SC_OK || status == SC_PARTIAL_CONTENT;
+    }
+
+    /**
+     * Partial requests are sent by viewers and players to read a bitstream piece by
+     * piece, so only those starting at its first byte are counted as views.
+     *
+     * @return true if the response should be recorded as a view of the bitstream:
+     *         the whole bitstream, or ranges starting at its first byte
+     */
+    public boolean isView()
+    {
+        if (status == SC_OK)
+        {
+            return true;
+        }
+        return status == SC_PARTIAL_CONTENT && ranges.get(0)[0] == 0;
+    }
+
+    /**
+     * Open the content of a bitstream for {@link #write}, once the request has been
+     * evaluated: only the range is read from the assetstore when a single one is sent,
+     * the whole bitstream otherwise. Retrieving the bitstream checks READ access.
+     *
+     * @param context the DSpace context
+     * @param bitstream the bitstream being downloaded
+     * @return the content to pass to {@link #write}
+     * @throws IOException if the content cannot be opened
+     * @throws SQLException if database error
+     * @throws AuthorizeException if the current user may not read the bitstream
+     */
+    public InputStream retrieve(Context context, Bitstream bitstream)
+            throws IOException, SQLException, AuthorizeException
+    {
+        if (status == SC_PARTIAL_CONTENT && ranges.size() == 1)
+        {
+            long[] only = ranges.get(0);
+            InputStream in = ContentServiceFactory.getInstance().getBitstreamService()
+                    .retrieve(context, bitstream, only[0], only[1] - only[0] + 1);
+            streamOffset = only[0];
+            return in;
+        }
+        streamOffset = 0;
+        return ContentServiceFactory.getInstance().getBitstreamService().retrieve(context, bitstream);
+    }
+
+    /**
+     * Write the response body: the whole bitstream, one range or a multipart body.
+     * The input stream is not closed.
+     *
+     * @param in the bitstream content, from its start or as opened by {@link #retrieve}
+     * @param out the response body
+     * @throws IOException if reading or writing fails
+     */
+    public void write(InputStream in, OutputStream out) throws IOException
+    {
+        if (!hasBody())
+        {
+            return;
+        }
+        FileChannel channel = in instanceof FileInputStream ? ((FileInputStream) in).getChannel() : null;
+
+        if (ranges == null)
+        {
+            if (channel != null && size >= 0)
+            {
+                transfer(channel, 0, size, out);
+            }
+            else
+            {
+                copy(in, out, Long.MAX_VALUE);
+            }
+        }
+        else
+        {
+            long position = streamOffset;
+            for (long[] part : ranges)
+            {
+                if (boundary != null)
+                {
+                    out.write(partHeader(part));
+                }
+                long length = part[1] - part[0] + 1;
+                if (channel != null)
+                {
+                    transfer(channel, part[0], length, out);
+                }
+                else
+                {
+                    skip(in, part[0] - position);
+                    copy(in, out, length);
+                    position = part[1] + 1;
+                }
+            }
+            if (boundary != null)
+            {
+                out.write((CRLF + "--" + boundary + "--" + CRLF).getBytes(StandardCharsets.US_ASCII));
+            }
+        }
+        out.flush();
+    }
+
+    /**
+     * Check the conditional headers. If-None-Match takes precedence over If-Modified-Since.
+     */
+    protected boolean isNotModified(String ifNoneMatch, long ifModifiedSince)
+    {
+        if (ifNoneMatch != null)
+        {
+            if (etag == null)
+            {
+                return false;
+            }
+            for (String candidate : ifNoneMatch.split(","))
+            {
+                String tag = candidate.trim();
+                if (tag.equals("*") || weak(tag).equals(weak(etag)))
+                {
+                    return true;
+                }
+            }
+            return false;
+        }
+        // HTTP dates have a precision of one second
+        return ifModifiedSince != -1 && lastModified != -1 && lastModified / 1000 <= ifModifiedSince / 1000;
+    }
+
+    /**
+     * Check whether the representation still matches the If-Range validator (strong ETag or date).
+     */
+    protected boolean matchesIfRange(String ifRange)
+    {
+        String validator = ifRange.trim();
+        if (validator.startsWith("\"") || validator.startsWith("W/"))
+        {
+            return etag != null && validator.equals(etag);
+        }
+        if (lastModified == -1)
+        {
+            return false;
+        }
+        SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss zzz", Locale.US);
+        format.setTimeZone(TimeZone.getTimeZone("GMT"));
+        try {
+            Date date = format.parse(validator);
+            return lastModified / 1000 == date.getTime() / 1000;
+        } catch (java.text.ParseException e)
+        {
+            return false;
+        }
+    }
+
+    private static String weak(String tag)
+    {
+        return tag.startsWith("W/") ? tag.substring(2) : tag;
+    }
+
+    /**
+     * Parse a Range header into inclusive [first, last] byte positions, limited to the bitstream size.
+     *
+     * @param range the header value
+     * @return the satisfiable ranges (empty if none is satisfiable), or null if the header
+     *         is not a valid byte range request and must be ignored
+     */
+    protected List<long[]> parseRanges(String range)
+    {
+        String value = range.trim();
+        if (!value.toLowerCase(Locale.ROOT).startsWith("bytes="))
+        {
+            return null;
+        }
+        List<long[]> result = new ArrayList<>();
+        for (String spec : value.substring("bytes=".length()).split(","))
+        {
+            String trimmed = spec.trim();
+            int dash = trimmed.indexOf('-');
+            if (dash < 0)
+            {
+                return null;
+            }
+            String first = trimmed.substring(0, dash).trim();
+            String last = trimmed.substring(dash + 1).trim();
+            long start;
+            long end;
+            try {
+                if (first.isEmpty())
+                {
+                    // Suffix range: the last N bytes
+                    long suffix = Long.parseLong(last);
+                    if (suffix <= 0)
+                    {
+                        continue;
+                    }
+                    start = Math.max(0, size - suffix);
+                    end = size - 1;
+                }
+                else
+                {
+                    start = Long.parseLong(first);
+                    long requestedEnd = last.isEmpty() ? Long.MAX_VALUE : Long.parseLong(last);
+                    if (requestedEnd < start)
+                    {
+                        return null;
+                    }
+                    end = Math.min(requestedEnd, size - 1);
+                }
+            } catch (NumberFormatException e)
+            {
+                return null;
+            }
+            if (start < size && start <= end)
+            {
+                result.add(new long[]{ start, end });
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sort ranges and merge those that overlap or are adjacent.
+     */
+    protected static List<long[]> coalesce(List<long[]> requested)
+    {
+        List<long[]> sorted = new ArrayList<>(requested);
+        Collections.sort(sorted, new Comparator<long[]>()
+        {
+            @Override
+            public int compare(long[] a, long[] b)
+            {
+                return a[0] < b[0] ? -1 : (a[0] == b[0] ? 0 : 1);
+            }
+        });
+        List<long[]> merged = new ArrayList<>();
+        for (long[] range : sorted)
+        {
+            long[] last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && range[0] <= last[1] + 1)
+            {
+                last[1] = Math.max(last[1], range[1]);
+            }
+            else
+            {
+                merged.add(new long[]{ range[0], range[1] });
+            }
+        }
+        return merged;
+    }
+
+    private byte[] partHeader(long[] part)
+    {
+        StringBuilder header = new StringBuilder();
+        header.append(CRLF).append("--").append(boundary).append(CRLF);
+        if (contentType != null)
+        {
+            header.append("Content-Type: ").append(contentType).append(CRLF);
+        }
+        header.append("Content-Range: bytes ").append(part[0]).append('-').append(part[1])
+                .append('/').append(size).append(CRLF).append(CRLF);
+        return header.toString().getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private static void transfer(FileChannel channel, long position, long length, OutputStream out) throws IOException
+    {
+        WritableByteChannel target = Channels.newChannel(out);
+        long done = 0;
+        while (done < length)
+        {
+            long transferred = channel.transferTo(position + done, length - done, target);
+            if (transferred <= 0)
+            {
+                // End of file reached before the expected size
+                break;
+            }
+            done += transferred;
+        }
+    }
+
+    private static void skip(InputStream in, long count) throws IOException
+    {
+        long remaining = count;
+        while (remaining > 0)
+        {
+            long skipped = in.skip(remaining);
+            if (skipped <= 0)
+            {
+                if (in.read() == -1)
+                {
+                    return;
+                }
+                skipped = 1;
+            }
+            remaining -= skipped;
+        }
+    }
+
+    private static void copy(InputStream in, OutputStream out, long length) throws IOException
+    {
+        byte[] buffer = new byte[BUFFER_SIZE];
+        long remaining = length;
+        while (remaining > 0)
+        {
+            int read = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+            if (read == -1)
+            {
+                return;
+            }
+            out.write(buffer, 0, read);
+            remaining -= read;
+        }
+    }
+}
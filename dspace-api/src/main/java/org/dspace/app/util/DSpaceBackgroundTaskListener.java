@@ -0,0 +1,54 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.util;
+
+import javax.servlet.ServletContextEvent;
+import javax.servlet.ServletContextListener;
+
+import org.apache.log4j.Logger;
+import org.dspace.discovery.IndexingQueue;
+import org.dspace.event.AsyncDispatcher;
+
+/**
+ * Finishes the work queued for background threads when the application is
+ * stopped, and stops those threads. Must be declared after the
+ * DSpaceKernelServletContextListener, so that it is destroyed while the
+ * services are still running.
+ */
+public class DSpaceBackgroundTaskListener implements ServletContextListener
+{
+    private static Logger log = Logger.getLogger(DSpaceBackgroundTaskListener.class);
+
+    @Override
+    public void contextInitialized(ServletContextEvent event)
+    {
+        // the queues are started on first use
+    }
+
+    @Override
+    public void contextDestroyed(ServletContextEvent event)
+    {
+        // The asynchronous event consumers may queue index updates
+        try
+        {
+            AsyncDispatcher.shutdown();
+        }
+        catch (RuntimeException e)
+        {
+            log.error("Failed to shut down the asynchronous event dispatchers", e);
+        }
+        try
+        {
+            IndexingQueue.shutdown();
+        }
+        catch (RuntimeException e)
+        {
+            log.error("Failed to shut down the discovery indexing queue", e);
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.authorize;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * Cache of authorization decisions made by the {@link AuthorizeServiceImpl} within a single
+ * {@link org.dspace.core.Context}. Decisions are keyed by the user, the object, the action
+ * and whether inheritance was used.
+ * <p>
+ * The Context clears the cache whenever something that may change a decision happens:
+ * the current user or its special groups change, or a content or group event is added.
+ * Resource policy changes clear it through the {@link ResourcePolicyServiceImpl}.
+ * The cache holds at most {@link #MAX_SIZE} decisions, the oldest ones are evicted first.
+ */
+public class AuthorizationDecisionCache
+{
+    /** Maximum number of decisions kept per Context */
+    public static final int MAX_SIZE = 10000;
+
+    private final Map<Key, Boolean> decisions = new LinkedHashMap<Key, Boolean>()
+    {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, Boolean> eldest)
+        {
+            return size() > MAX_SIZE;
+        }
+    };
+
+    private long hits = 0;
+
+    private long misses = 0;
+
+    /**
+     * Look up a cached decision.
+     *
+     * @param eperson the user, or null for anonymous
+     * @param dsoId the object identifier
+     * @param action the action, from <code>org.dspace.core.Constants</code>
+     * @param useInheritance whether admin rights on parent objects were considered
+     * @return the cached decision, or null if this decision is not cached
+     */
+    public Boolean get(UUID eperson, UUID dsoId, int action, boolean useInheritance)
+    {
+        Boolean decision = decisions.get(new Key(eperson, dsoId, action, useInheritance));
+        if (decision == null)
+        {
+            misses++;
+        }
+        else
+        {
+            hits++;
+        }
+        return decision;
+    }
+
+    /**
+     * Store a decision.
+     *
+     * @param eperson the user, or null for anonymous
+     * @param dsoId the object identifier
+     * @param action the action, from <code>org.dspace.core.Constants</code>
+     * @param useInheritance whether admin rights on parent objects were considered
+     * @param decision whether the action is authorized
+     */
+    public void put(UUID eperson, UUID dsoId, int action, boolean useInheritance, boolean decision)
+    {
+        decisions.put(new Key(eperson, dsoId, action, useInheritance), decision);
+    }
+
+    /**
+     * Forget all cached decisions. The hit and miss counters are kept.
+     */
+    public void clear()
+    {
+        decisions.clear();
+    }
+
+    /**
+     * @return number of decisions currently cached
+     */
+    public int size()
+    {
+        return decisions.size();
+    }
+
+    /**
+     * @return number of lookups answered from the cache
+     */
+    public long getHits()
+    {
+        return hits;
+    }
+
+    /**
+     * @return number of lookups that were not cached
+     */
+    public long getMisses()
+    {
+        return misses;
+    }
+
+    private static class Key
+    {
+        private final UUID eperson;
+        private final UUID dsoId;
+        private final int action;
+        private final boolean useInheritance;
+
+        private Key(UUID eperson, UUID dsoId, int action, boolean useInheritance)
+        {
+            this.eperson = eperson;
+            this.dsoId = dsoId;
+            this.action = action;
+            this.useInheritance = useInheritance;
+        }
+
+        @Override
+        public boolean equals(Object o)
+        {
+            if (this == o)
+            {
+                return true;
+            }
+            if (!(o instanceof Key))
+            {
+                return false;
+            }
+            Key other = (Key) o;
+            return action == other.action
+                    && useInheritance == other.useInheritance
+                    && dsoId.equals(other.dsoId)
+                    && (eperson == null ? other.eperson == null : eperson.equals(other.eperson));
+        }
+
+        @Override
+        public int hashCode()
+        {
+            int result = eperson != null ? eperson.hashCode() : 0;
+            result = 31 * result + dsoId.hashCode();
+            result = 31 * result + action;
+            result = 31 * result + (useInheritance ? 1 : 0);
+            return result;
+        }
+    }
+}
@@ -169,43 +169,14 @@ public class AuthorizeServiceImpl implements AuthorizeService
     @Override
     public boolean authorizeActionBoolean(Context c, DSpaceObject o, int a, boolean useInheritance) throws SQLException
     {
-        boolean isAuthorized = true;
-
-        if (o == null)
-        {
-            return false;
-        }
-
-        try
-        {
-            authorizeAction(c, o, a, useInheritance);
-        } catch (AuthorizeException e)
-        {
-            isAuthorized = false;
-        }
-
-        return isAuthorized;
+        return authorizeActionBoolean(c, c.getCurrentUser(), o, a, useInheritance);
     }
 
     @Override
     public boolean authorizeActionBoolean(Context c, EPerson e, DSpaceObject o, int a, boolean useInheritance) throws SQLException
     {
-        boolean isAuthorized = true;
-
-        if (o == null)
-        {
-            return false;
-        }
-
-        try
-        {
-            authorizeAction(c, e, o, a, useInheritance);
-        } catch (AuthorizeException ex)
-        {
-            isAuthorized = false;
-        }
-
-        return isAuthorized;
+        // same decision as authorizeAction, without building an exception on denial
+        return authorize(c, o, a, e, useInheritance);
     }
     
     /**
@@ -244,6 +215,46 @@ public class AuthorizeServiceImpl implements AuthorizeService
             return true;
         }
 
+        // has this decision already been made in this context?
+        AuthorizationDecisionCache cache = c.getAuthorizationCache();
+        UUID epersonId = e != null ? e.getID() : null;
+        if (o.getID() == null)
+        {
+            return authorizeUncached(c, o, action, e, useInheritance);
+        }
+        Boolean decision = cache.get(epersonId, o.getID(), action, useInheritance);
+        if (decision == null)
+        {
+            decision = authorizeUncached(c, o, action, e, useInheritance);
+            cache.put(epersonId, o.getID(), action, useInheritance, decision);
+        }
+        return decision;
+    }
+
+    /**
+     * Check to see if the given user can perform the given action on the given
+     * object, without consulting the authorization decision cache of the
+     * context. Called by {@link #authorize(Context, DSpaceObject, int, EPerson, boolean)}
+     * after the null object and "ignore authorization" checks.
+     *
+     * @param c
+     *         current context
+     * @param o
+     *         object action is being attempted on
+     * @param action
+     *         ID of action being attempted, from
+     *         <code>org.dspace.core.Constants</code>
+     * @param e
+     *         user attempting action
+     * @param useInheritance
+     *         flag to say if ADMIN action on the current object or parent
+     *         object can be used
+     * @return <code>true</code> if user is authorized to perform the given
+     *         action, <code>false</code> otherwise
+     * @throws SQLException if database error
+     */
+    protected boolean authorizeUncached(Context c, DSpaceObject o, int action, EPerson e, boolean useInheritance) throws SQLException
+    {
         // is eperson set? if not, userToCheck = null (anonymous)
         EPerson userToCheck = null;
         if (e != null)
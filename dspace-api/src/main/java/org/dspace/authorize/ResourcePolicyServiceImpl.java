@@ -76,6 +76,7 @@ public class ResourcePolicyServiceImpl implements ResourcePolicyService
         // FIXME: Check authorisation
         // Create a table row
         ResourcePolicy resourcePolicy = resourcePolicyDAO.create(context, new ResourcePolicy());
+        context.getAuthorizationCache().clear();
         return resourcePolicy;
     }
 
@@ -127,6 +128,7 @@ public class ResourcePolicyServiceImpl implements ResourcePolicyService
         // FIXME: authorizations
         // Remove ourself
         resourcePolicyDAO.delete(context, resourcePolicy);
+        context.getAuthorizationCache().clear();
     }
 
 
@@ -205,30 +207,35 @@ public class ResourcePolicyServiceImpl implements ResourcePolicyService
     public void removeAllPolicies(Context c, DSpaceObject o) throws SQLException, AuthorizeException {
         contentServiceFactory.getDSpaceObjectService(o).updateLastModified(c, o);
         resourcePolicyDAO.deleteByDso(c, o);
+        c.getAuthorizationCache().clear();
     }
 
     @Override
     public void removePolicies(Context c, DSpaceObject o, String type) throws SQLException, AuthorizeException {
         contentServiceFactory.getDSpaceObjectService(o).updateLastModified(c, o);
         resourcePolicyDAO.deleteByDsoAndType(c, o, type);
+        c.getAuthorizationCache().clear();
     }
 
     @Override
     public void removeDsoGroupPolicies(Context context, DSpaceObject dso, Group group) throws SQLException, AuthorizeException {
         contentServiceFactory.getDSpaceObjectService(dso).updateLastModified(context, dso);
         resourcePolicyDAO.deleteByDsoGroupPolicies(context, dso, group);
+        context.getAuthorizationCache().clear();
     }
 
     @Override
     public void removeDsoEPersonPolicies(Context context, DSpaceObject dso, EPerson ePerson) throws SQLException, AuthorizeException {
         contentServiceFactory.getDSpaceObjectService(dso).updateLastModified(context, dso);
         resourcePolicyDAO.deleteByDsoEPersonPolicies(context, dso, ePerson);
+        context.getAuthorizationCache().clear();
 
     }
 
     @Override
     public void removeGroupPolicies(Context c, Group group) throws SQLException {
         resourcePolicyDAO.deleteByGroup(c, group);
+        c.getAuthorizationCache().clear();
     }
 
     @Override
@@ -239,6 +246,7 @@ public class ResourcePolicyServiceImpl implements ResourcePolicyService
         }else{
             contentServiceFactory.getDSpaceObjectService(o).updateLastModified(c, o);
             resourcePolicyDAO.deleteByDsoAndAction(c, o, actionId);
+            c.getAuthorizationCache().clear();
         }
     }
 
@@ -246,6 +254,7 @@ public class ResourcePolicyServiceImpl implements ResourcePolicyService
     public void removeDsoAndTypeNotEqualsToPolicies(Context c, DSpaceObject o, String type) throws SQLException, AuthorizeException {
         contentServiceFactory.getDSpaceObjectService(o).updateLastModified(c, o);
         resourcePolicyDAO.deleteByDsoAndTypeNotEqualsTo(c, o, type);
+        c.getAuthorizationCache().clear();
     }
 
 
@@ -277,6 +286,7 @@ public class ResourcePolicyServiceImpl implements ResourcePolicyService
                 // FIXME: Check authorisation
                 resourcePolicyDAO.save(context, resourcePolicy);
             }
+            context.getAuthorizationCache().clear();
 
             //Update the last modified timestamp of all related DSpace Objects
             for (DSpaceObject dSpaceObject : relatedDSpaceObjects) {
@@ -7,10 +7,13 @@
  */
 package org.dspace.browse;
 
-import java.io.Serializable;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.apache.log4j.Logger;
+import org.dspace.authorize.factory.AuthorizeServiceFactory;
+import org.dspace.authorize.service.AuthorizeService;
 import org.dspace.content.DSpaceObject;
 import org.dspace.content.Item;
 import org.dspace.core.Constants;
@@ -24,6 +27,9 @@ import org.dspace.discovery.DiscoverResult.SearchDocument;
 import org.dspace.discovery.SearchService;
 import org.dspace.discovery.SearchServiceException;
 import org.dspace.discovery.configuration.DiscoveryConfigurationParameters;
+import org.dspace.eperson.Group;
+import org.dspace.eperson.factory.EPersonServiceFactory;
+import org.dspace.eperson.service.GroupService;
 import org.dspace.services.factory.DSpaceServicesFactory;
 
 /**
@@ -41,33 +47,39 @@ public class SolrBrowseDAO implements BrowseDAO
         this.context = context;
     }
 
-    static private class FacetValueComparator
-            implements Comparator, Serializable
+    /**
+     * The number of distinct values of an index in a scope, counted at some
+     * point in time.
+     */
+    static private class DistinctCount
     {
-        @Override
-        public int compare(Object o1, Object o2)
+        private final int count;
+
+        private final long expires;
+
+        private DistinctCount(int count, long expires)
         {
-            String s1 = "", s2 = "";
-            if (o1 instanceof FacetResult && o2 instanceof String)
-            {
-                FacetResult c = (FacetResult) o1;
-                s1 = c.getSortValue();
-                s2 = (String) o2;
-            }
-            else if (o2 instanceof FacetResult && o1 instanceof String)
-            {
-                FacetResult c = (FacetResult) o2;
-                s1 = (String) o1;
-                s2 = c.getSortValue();
-            }
-            // both object are FacetResult so they are already sorted
-            return s1.compareTo(s2);
+            this.count = count;
+            this.expires = expires;
         }
     }
 
     /** Log4j log */
     private static final Logger log = Logger.getLogger(SolrBrowseDAO.class);
 
+    /**
+     * Distinct value counts by index, scope and audience, which can only be
+     * computed by reading every value, shared by the browses for a few minutes
+     */
+    private static final Map<String, DistinctCount> distinctCounts = new ConcurrentHashMap<>();
+
+    /** Number of distinct value counts above which expired counts are removed before adding one */
+    private static final int MAX_DISTINCT_COUNTS = 1000;
+
+    /** Milliseconds during which a distinct value count is reused */
+    private static final long distinctCountTimeToLive = DSpaceServicesFactory.getInstance().getConfigurationService()
+            .getLongProperty("browseDAO.distinct-count.cache-seconds", 300) * 1000;
+
     /** The DSpace context */
     private final Context context;
 
@@ -128,6 +140,10 @@ public class SolrBrowseDAO implements BrowseDAO
     // administrative attributes for this class
 
 
+    AuthorizeService authorizeService = AuthorizeServiceFactory.getInstance().getAuthorizeService();
+
+    GroupService groupService = EPersonServiceFactory.getInstance().getGroupService();
+
     SearchService searcher = DSpaceServicesFactory.getInstance().getServiceManager().getServiceByName(
             SearchService.class.getName(), SearchService.class);
 
@@ -138,6 +154,10 @@ public class SolrBrowseDAO implements BrowseDAO
 
     private boolean showFrequencies;
 
+    /** the distinct value count of this browse, and the index and scope it counts */
+    private DistinctCount distinctCount = null;
+    private String distinctCountKey = null;
+
     private DiscoverResult getSolrResponse() throws BrowseException
     {
         if (sResponse == null)
@@ -145,57 +165,191 @@ public class SolrBrowseDAO implements BrowseDAO
             DiscoverQuery query = new DiscoverQuery();
             addLocationScopeFilter(query);
             addStatusFilter(query);
-            if (distinct)
+            query.setMaxResults(limit/* > 0 ? limit : 20*/);
+            if (offset > 0)
+            {
+                query.setStart(offset);
+            }
+
+            // caution check first authority, value is always present!
+            if (authority != null)
+            {
+                query.addFilterQueries("{!field f="+facetField + "_authority_filter}"
+                        + authority);
+            }
+            else if (value != null && !valuePartial)
+            {
+                query.addFilterQueries("{!field f="+facetField + "_value_filter}" + value);
+            }
+            else if (valuePartial)
+            {
+                query.addFilterQueries("{!field f="+facetField + "_partial}" + value);
+            }
+            // filter on item to be sure to don't include any other object
+            // indexed in the Discovery Search core
+            query.addFilterQueries("search.resourcetype:" + Constants.ITEM);
+            if (orderField != null)
+            {
+                query.setSortField("bi_" + orderField + "_sort",
+                        ascending ? SORT_ORDER.asc : SORT_ORDER.desc);
+            }
+            sResponse = search(query);
+        }
+        return sResponse;
+    }
+
+    private DiscoverResult search(DiscoverQuery query) throws BrowseException
+    {
+        try
+        {
+            return searcher.search(context, query, itemsWithdrawn
+                    || !itemsDiscoverable);
+        }
+        catch (SearchServiceException e)
+        {
+            throw new BrowseException(e);
+        }
+    }
+
+    /**
+     * Read a page of the distinct values, in ascending order. Solr only
+     * returns the values of the page.
+     *
+     * @param start the position of the first value
+     * @param rows the number of values, or -1 for all the values from start
+     * @return the values
+     * @throws BrowseException if the values cannot be read
+     */
+    private List<FacetResult> getDistinctValues(int start, int rows) throws BrowseException
+    {
+        DiscoverQuery query = new DiscoverQuery();
+        addLocationScopeFilter(query);
+        addStatusFilter(query);
+        DiscoverFacetField dff = new DiscoverFacetField(facetField,
+                DiscoveryConfigurationParameters.TYPE_TEXT, rows,
+                DiscoveryConfigurationParameters.SORT.VALUE, start);
+        query.addFacetField(dff);
+        query.setFacetMinCount(1);
+        query.setMaxResults(0);
+        return search(query).getFacetResult(facetField);
+    }
+
+    /**
+     * Count the distinct values, reusing a recent count of the same index and
+     * scope since they all have to be read to be counted. A count is only
+     * shared by users who see the same items (administrators, anonymous users,
+     * or the same user with the same groups), and checked against the index
+     * before it is reused.
+     *
+     * @return the number of distinct values
+     * @throws BrowseException if the values cannot be read
+     */
+    private int getDistinctCount() throws BrowseException
+    {
+        String key = facetField + "|" + containerID + "|" + itemsWithdrawn + "|" + itemsDiscoverable;
+        if (distinctCount == null || !key.equals(distinctCountKey))
+        {
+            distinctCountKey = key;
+            distinctCount = null;
+
+            String sharedKey = key + "|" + getAudience();
+            long now = System.currentTimeMillis();
+            DistinctCount shared = distinctCounts.get(sharedKey);
+            if (shared != null && now <= shared.expires && isCurrent(shared.count))
             {
-                DiscoverFacetField dff = new DiscoverFacetField(facetField,
-                        DiscoveryConfigurationParameters.TYPE_TEXT, -1,
-                        DiscoveryConfigurationParameters.SORT.VALUE);
-                query.addFacetField(dff);
-                query.setFacetMinCount(1);
-                query.setMaxResults(0);
+                distinctCount = shared;
             }
             else
             {
-                query.setMaxResults(limit/* > 0 ? limit : 20*/);
-                if (offset > 0)
+                distinctCount = new DistinctCount(getDistinctValues(0, -1).size(), now + distinctCountTimeToLive);
+                if (distinctCountTimeToLive > 0)
                 {
-                    query.setStart(offset);
+                    if (distinctCounts.size() >= MAX_DISTINCT_COUNTS)
+                    {
+                        removeExpiredCounts(now);
+                    }
+                    if (distinctCounts.size() < MAX_DISTINCT_COUNTS)
+                    {
+                        distinctCounts.put(sharedKey, distinctCount);
+                    }
                 }
+            }
+        }
+        return distinctCount.count;
+    }
 
-                // caution check first authority, value is always present!
-                if (authority != null)
-                {
-                    query.addFilterQueries("{!field f="+facetField + "_authority_filter}"
-                            + authority);
-                }
-                else if (value != null && !valuePartial)
-                {
-                    query.addFilterQueries("{!field f="+facetField + "_value_filter}" + value);
-                }
-                else if (valuePartial)
-                {
-                    query.addFilterQueries("{!field f="+facetField + "_partial}" + value);
-                }
-                // filter on item to be sure to don't include any other object
-                // indexed in the Discovery Search core
-                query.addFilterQueries("search.resourcetype:" + Constants.ITEM);
-                if (orderField != null)
-                {
-                    query.setSortField("bi_" + orderField + "_sort",
-                            ascending ? SORT_ORDER.asc : SORT_ORDER.desc);
-                }
+    /**
+     * Remove the distinct value counts which have expired.
+     *
+     * @param now the current time in milliseconds
+     */
+    private static void removeExpiredCounts(long now)
+    {
+        Iterator<DistinctCount> counts = distinctCounts.values().iterator();
+        while (counts.hasNext())
+        {
+            if (counts.next().expires < now)
+            {
+                counts.remove();
+            }
+        }
+    }
+
+    /**
+     * The search results are restricted to the items the current user may read,
+     * unless it is an administrator: those readable by the user itself or by
+     * one of its groups, as in <code>SolrServiceResourceRestrictionPlugin</code>.
+     *
+     * @return the users who see the same values as the current one
+     * @throws BrowseException if the groups cannot be read
+     */
+    private String getAudience() throws BrowseException
+    {
+        try
+        {
+            if (authorizeService.isAdmin(context))
+            {
+                return "admin";
+            }
+            if (context.getCurrentUser() == null && context.getSpecialGroups().isEmpty())
+            {
+                return "anonymous";
             }
-            try
+            List<String> groups = new ArrayList<>();
+            for (Group group : groupService.allMemberGroups(context, context.getCurrentUser()))
             {
-				sResponse = searcher.search(context, query, itemsWithdrawn
-						|| !itemsDiscoverable);
+                groups.add(group.getID().toString());
             }
-            catch (SearchServiceException e)
+            Collections.sort(groups);
+            StringBuilder audience = new StringBuilder();
+            audience.append('e').append(context.getCurrentUser() == null ? "" : context.getCurrentUser().getID());
+            for (String group : groups)
             {
-                throw new BrowseException(e);
+                audience.append(",g").append(group);
             }
+            return audience.toString();
+        }
+        catch (SQLException e)
+        {
+            throw new BrowseException(e);
         }
-        return sResponse;
+    }
+
+    /**
+     * Check that a count of the distinct values still matches the index, by
+     * reading the values at its last position and after it.
+     *
+     * @param count the number of distinct values
+     * @return true if there are still that many values
+     * @throws BrowseException if the values cannot be read
+     */
+    private boolean isCurrent(int count) throws BrowseException
+    {
+        if (count == 0)
+        {
+            return getDistinctValues(0, 1).isEmpty();
+        }
+        return getDistinctValues(count - 1, 2).size() == 1;
     }
 
     private void addStatusFilter(DiscoverQuery query)
@@ -228,15 +382,14 @@ public class SolrBrowseDAO implements BrowseDAO
     @Override
     public int doCountQuery() throws BrowseException
     {
-        DiscoverResult resp = getSolrResponse();
         int count = 0;
         if (distinct)
         {
-            List<FacetResult> facetResults = resp.getFacetResult(facetField);
-            count = facetResults.size();
+            count = getDistinctCount();
         }
         else
         {
+            DiscoverResult resp = getSolrResponse();
             // we need to cast to int to respect the BrowseDAO contract...
             count = (int) resp.getTotalSearchResults();
             // FIXME null the response cache
@@ -250,34 +403,33 @@ public class SolrBrowseDAO implements BrowseDAO
     @Override
     public List doValueQuery() throws BrowseException
     {
-        DiscoverResult resp = getSolrResponse();
-        List<FacetResult> facet = resp.getFacetResult(facetField);
-        int count = doCountQuery();
         int start = offset > 0 ? offset : 0;
-        int max = limit > 0 ? limit : count; //if negative, return everything
-        List<String[]> result = new ArrayList<>();
+        List<FacetResult> facet;
         if (ascending)
         {
-            for (int i = start; i < (start + max) && i < count; i++)
-            {
-                FacetResult c = facet.get(i);
-                String freq = showFrequencies ? String.valueOf(c.getCount())
-                        : "";
-                result.add(new String[] { c.getDisplayedValue(),
-                        c.getAuthorityKey(), freq });
-            }
+            //if negative, return everything
+            facet = getDistinctValues(start, limit > 0 ? limit : -1);
         }
         else
         {
-            for (int i = count - start - 1; i >= count - (start + max)
-                    && i >= 0; i--)
+            // Solr only sorts values ascending: read the page counted from the end
+            int end = getDistinctCount() - start;
+            int first = limit > 0 ? Math.max(0, end - limit) : 0;
+            facet = new ArrayList<>();
+            if (end > 0)
             {
-                FacetResult c = facet.get(i);
-                String freq = showFrequencies ? String.valueOf(c.getCount())
-                        : "";
-                result.add(new String[] { c.getDisplayedValue(),
-                        c.getAuthorityKey(), freq });
+                facet.addAll(getDistinctValues(first, end - first));
             }
+            Collections.reverse(facet);
+        }
+
+        List<String[]> result = new ArrayList<>();
+        for (FacetResult c : facet)
+        {
+            String freq = showFrequencies ? String.valueOf(c.getCount())
+                    : "";
+            result.add(new String[] { c.getDisplayedValue(),
+                    c.getAuthorityKey(), freq });
         }
 
         return result;
@@ -376,19 +528,33 @@ public class SolrBrowseDAO implements BrowseDAO
     public int doDistinctOffsetQuery(String column, String value,
             boolean isAscending) throws BrowseException
     {
-        DiscoverResult resp = getSolrResponse();
-        List<FacetResult> facets = resp.getFacetResult(facetField);
-        Comparator comparator = new SolrBrowseDAO.FacetValueComparator();
-        Collections.sort(facets, comparator);
-        int x = Collections.binarySearch(facets, value, comparator);
-        int ascValue = (x >= 0) ? x : -(x + 1);
+        // binary search of the position of the first value not lower than
+        // value, reading a single value at each step
+        int count = getDistinctCount();
+        int low = 0;
+        int high = count;
+        while (low < high)
+        {
+            int middle = (low + high) >>> 1;
+            List<FacetResult> facets = getDistinctValues(middle, 1);
+            if (facets.isEmpty() || facets.get(0).getSortValue().compareTo(value) >= 0)
+            {
+                // past the end if values were removed since they were counted
+                high = middle;
+            }
+            else
+            {
+                low = middle + 1;
+            }
+        }
+        int ascValue = low;
         if (isAscending)
         {
             return ascValue;
         }
         else
         {
-            return doCountQuery() - ascValue;
+            return count - ascValue;
         }
     }
 
@@ -8,9 +8,26 @@
 package org.dspace.checker;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.apache.commons.collections.MapUtils;
 import org.apache.log4j.Logger;
@@ -20,6 +37,10 @@ import org.dspace.checker.service.ChecksumResultService;
 import org.dspace.checker.service.MostRecentChecksumService;
 import org.dspace.content.Bitstream;
 import org.dspace.core.Context;
+import org.dspace.core.ThroughputLimiter;
+import org.dspace.core.Utils;
+import org.dspace.services.ConfigurationService;
+import org.dspace.services.factory.DSpaceServicesFactory;
 import org.dspace.storage.bitstore.factory.StorageServiceFactory;
 import org.dspace.storage.bitstore.service.BitstreamStorageService;
 
@@ -30,6 +51,13 @@ import org.dspace.storage.bitstore.service.BitstreamStorageService;
  * against the last calculated checksum for that bitstream.
  * </p>
  * 
+ * <p>
+ * Bitstreams are read by <code>checker.threads</code> reader threads, at no
+ * more than <code>checker.bandwidth</code> MB/s overall. Results are committed
+ * every <code>checker.batch.size</code> bitstreams, so an interrupted run only
+ * loses the current batch and can be resumed from the same process start date.
+ * </p>
+ * 
  * @author Jim Downing
  * @author Grace Carpenter
  * @author Nathan Sarr
@@ -43,6 +71,12 @@ public final class CheckerCommand
     /** Usual Log4J logger. */
     private static final Logger LOG = Logger.getLogger(CheckerCommand.class);
 
+    /** Size of the buffer in which bitstreams are read within the bandwidth limit */
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Checksum algorithm of the bitstreams without one */
+    private static final String DEFAULT_CHECKSUM_ALGORITHM = "MD5";
+
     private Context context;
 
     /** BitstreamInfoDAO dependency. */
@@ -71,6 +105,18 @@ public final class CheckerCommand
     /** Report all processing */
     private boolean reportVerbose = false;
 
+    /** Number of threads reading bitstreams */
+    private int threads;
+
+    /** Number of bitstreams checked per transaction */
+    private int batchSize;
+
+    /** Bandwidth limit shared by all reader threads */
+    private ThroughputLimiter limiter;
+
+    /** Statistics of the bitstreams read by this run */
+    private final StoreThroughput throughput = new StoreThroughput();
+
     /**
      * Default constructor uses DSpace plugin manager to construct dependencies.
      * @param context Context
@@ -82,6 +128,11 @@ public final class CheckerCommand
         bitstreamStorageService = StorageServiceFactory.getInstance().getBitstreamStorageService();
         checksumResultService = CheckerServiceFactory.getInstance().getChecksumResultService();
         this.context = context;
+
+        ConfigurationService configurationService = DSpaceServicesFactory.getInstance().getConfigurationService();
+        threads = Math.max(1, configurationService.getIntProperty("checker.threads", 1));
+        batchSize = Math.max(1, configurationService.getIntProperty("checker.batch.size", 100));
+        limiter = ThroughputLimiter.ofMegabytesPerSecond(configurationService.getIntProperty("checker.bandwidth", 0));
     }
 
     /**
@@ -114,21 +165,106 @@ public final class CheckerCommand
         // bitstream table - this always done.
         checksumService.updateMissingBitstreams(context);
 
-        Bitstream bitstream = dispatcher.next();
+        ExecutorService readers = threads > 1 ? Executors.newFixedThreadPool(threads, new ReaderThreadFactory()) : null;
+        try
+        {
+            List<PendingCheck> batch = new ArrayList<>(batchSize);
+            Set<UUID> batchIds = new HashSet<>();
+            Bitstream bitstream = dispatcher.next();
+
+            while (bitstream != null)
+            {
+                // A looping dispatcher may hand out a claimed bitstream again
+                if (batch.size() < batchSize && batchIds.add(bitstream.getID()))
+                {
+                    LOG.debug("Processing bitstream id = " + bitstream.getID());
+                    batch.add(dispatchBitstream(bitstream, readers));
+                    bitstream = dispatcher.next();
+                }
+                else
+                {
+                    completeBatch(batch);
+                    batchIds.clear();
+                }
+            }
+            completeBatch(batch);
+        }
+        finally
+        {
+            if (readers != null)
+            {
+                readers.shutdownNow();
+            }
+        }
+
+        LOG.info("Checksum checker throughput:\n" + throughput.getReport());
+    }
+
+    /**
+     * Start checking a bitstream. Bitstreams that need to be read are claimed by
+     * setting their process dates, so that the dispatcher moves on to the next one,
+     * and read by a reader thread (or at once if there are none).
+     *
+     * @param bitstream the bitstream
+     * @param readers reader threads, or null to read in this thread
+     * @return the check, to be completed by {@link #completeBatch(List)}
+     * @throws SQLException if database error
+     */
+    protected PendingCheck dispatchBitstream(Bitstream bitstream, ExecutorService readers) throws SQLException {
+        MostRecentChecksum info = checksumService.findByBitstream(context, bitstream);
+
+        if (info == null || !info.isToBeProcessed() || info.getBitstream().isDeleted())
+        {
+            // Nothing to read
+            return new PendingCheck(checkBitstream(bitstream), null);
+        }
+
+        info.setProcessStartDate(new Date());
+        info.setProcessEndDate(info.getProcessStartDate());
+        checksumService.update(context, info);
+
+        Callable<Map> read = new ChecksumReader(info.getBitstream());
+        Future<Map> checksum;
+        if (readers == null)
+        {
+            FutureTask<Map> task = new FutureTask<>(read);
+            task.run();
+            checksum = task;
+        }
+        else
+        {
+            checksum = readers.submit(read);
+        }
+        return new PendingCheck(info, checksum);
+    }
 
-        while (bitstream != null)
+    /**
+     * Record the results of a batch of checks, report them and commit them.
+     *
+     * @param batch the checks, emptied afterwards
+     * @throws SQLException if database error
+     */
+    protected void completeBatch(List<PendingCheck> batch) throws SQLException {
+        if (batch.isEmpty())
         {
-            LOG.debug("Processing bitstream id = " + bitstream.getID());
-            MostRecentChecksum info = checkBitstream(bitstream);
+            return;
+        }
+        for (PendingCheck check : batch)
+        {
+            MostRecentChecksum info = check.info;
+            if (check.checksum != null)
+            {
+                processBitstream(info, check.checksum);
+            }
 
             if (reportVerbose
                     || !ChecksumResultCode.CHECKSUM_MATCH.equals(info.getChecksumResult().getResultCode()))
             {
                 collector.collect(context, info);
             }
-
-            bitstream = dispatcher.next();
         }
+        batch.clear();
+        context.commit();
     }
 
     /**
@@ -257,9 +393,24 @@ public final class CheckerCommand
     protected void processBitstream(MostRecentChecksum info) throws SQLException {
         info.setProcessStartDate(new Date());
 
+        FutureTask<Map> checksum = new FutureTask<>(new ChecksumReader(info.getBitstream()));
+        checksum.run();
+        processBitstream(info, checksum);
+    }
+
+    /**
+     * Record the checksum read for a general case bitstream.
+     *
+     * @param info
+     *            BitstreamInfo to handle, with its process start date set
+     * @param checksum
+     *            the checksum map being computed for the bitstream
+     * @throws SQLException if database error
+     */
+    protected void processBitstream(MostRecentChecksum info, Future<Map> checksum) throws SQLException {
         try
         {
-            Map checksumMap = bitstreamStorageService.computeChecksum(context, info.getBitstream());
+            Map checksumMap = getChecksum(checksum);
             if(MapUtils.isNotEmpty(checksumMap)) {
                 info.setBitstreamFound(true);
                 if(checksumMap.containsKey("checksum")) {
@@ -300,6 +451,43 @@ public final class CheckerCommand
         }
     }
 
+    /**
+     * Wait for a checksum being computed, unwrapping the exception it failed with.
+     */
+    private Map getChecksum(Future<Map> checksum) throws IOException, SQLException {
+        try
+        {
+            return checksum.get();
+        }
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            checksum.cancel(true);
+            throw new IllegalStateException("Interrupted while waiting for a checksum", e);
+        }
+        catch (ExecutionException e)
+        {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException)
+            {
+                throw (IOException) cause;
+            }
+            if (cause instanceof SQLException)
+            {
+                throw (SQLException) cause;
+            }
+            if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException) cause;
+            }
+            if (cause instanceof Error)
+            {
+                throw (Error) cause;
+            }
+            throw new IOException(cause);
+        }
+    }
+
     protected ChecksumResult getChecksumResultByCode(ChecksumResultCode checksumResultCode) throws SQLException {
         return checksumResultService.findByCode(context, checksumResultCode);
     }
@@ -387,4 +575,177 @@ public final class CheckerCommand
     {
         this.reportVerbose = reportVerbose;
     }
+
+    /**
+     * Get the number of threads reading bitstreams.
+     *
+     * @return number of reader threads
+     */
+    public int getThreads()
+    {
+        return threads;
+    }
+
+    /**
+     * Set the number of threads reading bitstreams, defaults to
+     * <code>checker.threads</code>.
+     *
+     * @param threads
+     *            number of reader threads, 1 to read in the calling thread
+     */
+    public void setThreads(int threads)
+    {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Set the number of bitstreams checked per transaction, defaults to
+     * <code>checker.batch.size</code>.
+     *
+     * @param batchSize
+     *            number of bitstreams per batch
+     */
+    public void setBatchSize(int batchSize)
+    {
+        this.batchSize = Math.max(1, batchSize);
+    }
+
+    /**
+     * Set the bandwidth limit of all reader threads together, defaults to
+     * <code>checker.bandwidth</code>.
+     *
+     * @param limiter
+     *            the limit
+     */
+    public void setThroughputLimiter(ThroughputLimiter limiter)
+    {
+        this.limiter = limiter;
+    }
+
+    /**
+     * Get the statistics of the bitstreams read by this run, per asset store.
+     *
+     * @return the statistics
+     */
+    public StoreThroughput getThroughput()
+    {
+        return throughput;
+    }
+
+    /**
+     * A bitstream being checked, and the checksum being read for it.
+     */
+    protected static class PendingCheck
+    {
+        private final MostRecentChecksum info;
+
+        /** null if the bitstream does not need to be read */
+        private final Future<Map> checksum;
+
+        protected PendingCheck(MostRecentChecksum info, Future<Map> checksum)
+        {
+            this.info = info;
+            this.checksum = checksum;
+        }
+    }
+
+    /**
+     * Computes the checksum of a bitstream within the bandwidth limit. The
+     * bitstream's fields are read when the reader is created, so that reader
+     * threads do not touch the database session.
+     */
+    protected class ChecksumReader implements Callable<Map>
+    {
+        private final Bitstream bitstream;
+        private final int storeNumber;
+        private final long size;
+        private final String checksumAlgorithm;
+
+        protected ChecksumReader(Bitstream bitstream)
+        {
+            this.bitstream = bitstream;
+            this.storeNumber = bitstream.getStoreNumber();
+            this.size = bitstream.getSize();
+            this.checksumAlgorithm = bitstream.getChecksumAlgorithm() == null
+                    ? DEFAULT_CHECKSUM_ALGORITHM : bitstream.getChecksumAlgorithm();
+            // Also initializes the bitstream if it is a lazy proxy
+            bitstream.getInternalId();
+        }
+
+        @Override
+        public Map call() throws IOException, SQLException
+        {
+            long start = System.nanoTime();
+            boolean failed = true;
+            try
+            {
+                Map checksumMap;
+                if (limiter.isLimited())
+                {
+                    // read the bits here, so that each buffer waits for its share of the bandwidth
+                    checksumMap = readChecksum();
+                }
+                else
+                {
+                    checksumMap = bitstreamStorageService.computeChecksum(context, bitstream);
+                }
+                failed = MapUtils.isEmpty(checksumMap);
+                return checksumMap;
+            }
+            finally
+            {
+                throughput.record(storeNumber, size, System.nanoTime() - start, failed);
+            }
+        }
+
+        /**
+         * Compute the checksum of the bitstream with its recorded algorithm,
+         * reading it within the bandwidth limit.
+         *
+         * @return the checksum and its algorithm
+         * @throws IOException if the bitstream cannot be read
+         * @throws SQLException if database error
+         */
+        protected Map readChecksum() throws IOException, SQLException
+        {
+            MessageDigest digest;
+            try
+            {
+                digest = MessageDigest.getInstance(checksumAlgorithm);
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IOException("Unsupported checksum algorithm " + checksumAlgorithm, e);
+            }
+            try (InputStream in = limiter.wrap(bitstreamStorageService.retrieve(context, bitstream)))
+            {
+                byte[] buffer = new byte[BUFFER_SIZE];
+                int read;
+                while ((read = in.read(buffer)) != -1)
+                {
+                    digest.update(buffer, 0, read);
+                }
+            }
+            Map checksumMap = new HashMap();
+            checksumMap.put("checksum", Utils.toHex(digest.digest()));
+            checksumMap.put("checksum_algorithm", checksumAlgorithm);
+            return checksumMap;
+        }
+    }
+
+    /**
+     * Creates named daemon reader threads.
+     */
+    private static class ReaderThreadFactory implements ThreadFactory
+    {
+        private final AtomicInteger count = new AtomicInteger(0);
+
+        @Override
+        public Thread newThread(Runnable runnable)
+        {
+            Thread thread = new Thread(runnable, "checksum-reader-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
 }
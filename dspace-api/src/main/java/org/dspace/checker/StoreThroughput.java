@@ -0,0 +1,112 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.checker;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Thread safe statistics of the bitstreams read by a checker run, per asset store.
+ */
+public class StoreThroughput
+{
+    private final Map<Integer, Totals> stores = new TreeMap<>();
+
+    private final long started = System.currentTimeMillis();
+
+    /**
+     * Record a bitstream that was read.
+     *
+     * @param storeNumber asset store of the bitstream
+     * @param bytes size of the bitstream
+     * @param nanos time spent reading and digesting it
+     * @param failed true if the bitstream could not be read
+     */
+    public synchronized void record(int storeNumber, long bytes, long nanos, boolean failed)
+    {
+        Totals totals = stores.get(storeNumber);
+        if (totals == null)
+        {
+            totals = new Totals();
+            stores.put(storeNumber, totals);
+        }
+        totals.bitstreams++;
+        totals.bytes += bytes;
+        totals.nanos += nanos;
+        if (failed)
+        {
+            totals.failures++;
+        }
+    }
+
+    /**
+     * @return number of bitstreams read from all stores
+     */
+    public synchronized long getBitstreamCount()
+    {
+        long count = 0;
+        for (Totals totals : stores.values())
+        {
+            count += totals.bitstreams;
+        }
+        return count;
+    }
+
+    /**
+     * @return number of bytes read from all stores
+     */
+    public synchronized long getByteCount()
+    {
+        long count = 0;
+        for (Totals totals : stores.values())
+        {
+            count += totals.bytes;
+        }
+        return count;
+    }
+
+    /**
+     * Describe the throughput of each store, and the overall throughput since this object was created.
+     * The read rate of a store is per reader thread, the overall rate is the elapsed time rate.
+     *
+     * @return one line per store followed by a total line
+     */
+    public synchronized String getReport()
+    {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<Integer, Totals> entry : stores.entrySet())
+        {
+            Totals totals = entry.getValue();
+            report.append(String.format("Store %d: %d bitstreams (%d unreadable), %.1f MB in %.1f s read time, %.2f MB/s per reader%n",
+                    entry.getKey(), totals.bitstreams, totals.failures, megabytes(totals.bytes),
+                    totals.nanos / 1e9, rate(totals.bytes, totals.nanos / 1000000)));
+        }
+        long elapsed = System.currentTimeMillis() - started;
+        report.append(String.format("Total: %d bitstreams, %.1f MB in %.1f s, %.2f MB/s%n",
+                getBitstreamCount(), megabytes(getByteCount()), elapsed / 1e3, rate(getByteCount(), elapsed)));
+        return report.toString();
+    }
+
+    private static double megabytes(long bytes)
+    {
+        return bytes / (1024.0 * 1024.0);
+    }
+
+    private static double rate(long bytes, long millis)
+    {
+        return millis <= 0 ? 0 : megabytes(bytes) * 1000 / millis;
+    }
+
+    private static class Totals
+    {
+        private long bitstreams;
+        private long bytes;
+        private long nanos;
+        private long failures;
+    }
+}
@@ -122,6 +122,43 @@ public class BitstreamServiceImpl extends DSpaceObjectServiceImpl<Bitstream> imp
         return b;
     }
 
+    @Override
+    public Bitstream store(Context context, InputStream is) throws IOException, SQLException {
+        Bitstream bitstream = bitstreamDAO.create(context, new Bitstream());
+        bitstreamStorageService.put(context, bitstream, is);
+        return bitstream;
+    }
+
+    @Override
+    public Bitstream create(Context context, Bundle bundle, Bitstream stored) throws IOException, SQLException, AuthorizeException {
+        // Check authorisation
+        authorizeService.authorizeAction(context, bundle, Constants.ADD);
+
+        // Stored and committed by another context
+        Bitstream bitstream = bitstreamDAO.findByID(context, Bitstream.class, stored.getID());
+        if (bitstream == null)
+        {
+            throw new IllegalArgumentException("Bitstream " + stored.getID() + " has not been stored");
+        }
+        bitstream.setDeleted(false);
+
+        log.info(LogManager.getHeader(context, "create_bitstream",
+                "bitstream_id=" + bitstream.getID()));
+
+        // Set the format to "unknown"
+        setFormat(context, bitstream, null);
+
+        context.addEvent(new Event(Event.CREATE, Constants.BITSTREAM, bitstream.getID(), null, getIdentifiers(context, bitstream)));
+
+        bundleService.addBitstream(context, bundle, bitstream);
+        return bitstream;
+    }
+
+    @Override
+    public void discard(Bitstream stored) throws IOException {
+        bitstreamStorageService.remove(stored);
+    }
+
     @Override
     public Bitstream register(Context context, Bundle bundle, int assetstore, String bitstreamPath) throws IOException, SQLException, AuthorizeException {
         // check authorisation
@@ -274,6 +311,13 @@ public class BitstreamServiceImpl extends DSpaceObjectServiceImpl<Bitstream> imp
         return bitstreamStorageService.retrieve(context, bitstream);
     }
 
+    @Override
+    public InputStream retrieve(Context context, Bitstream bitstream, long offset, long length) throws IOException, SQLException, AuthorizeException {
+        authorizeService.authorizeAction(context, bitstream, Constants.READ);
+
+        return bitstreamStorageService.retrieve(context, bitstream, offset, length);
+    }
+
     @Override
     public boolean isRegisteredBitstream(Bitstream bitstream) {
         return bitstreamStorageService.isRegisteredBitstream(bitstream.getInternalId());
@@ -401,11 +445,21 @@ public class BitstreamServiceImpl extends DSpaceObjectServiceImpl<Bitstream> imp
         return bitstreamDAO.findByStoreNumber(context, storeNumber);
     }
 
+    @Override
+    public List<Bitstream> findByStoreNumber(Context context, Integer storeNumber, int offset, int limit) throws SQLException {
+        return bitstreamDAO.findByStoreNumber(context, storeNumber, offset, limit);
+    }
+
     @Override
     public Long countByStoreNumber(Context context, Integer storeNumber) throws SQLException {
         return bitstreamDAO.countByStoreNumber(context, storeNumber);
     }
 
+    @Override
+    public Long sumSizeByStoreNumber(Context context, Integer storeNumber) throws SQLException {
+        return bitstreamDAO.sumSizeByStoreNumber(context, storeNumber);
+    }
+
     @Override
     public int countTotal(Context context) throws SQLException {
         return bitstreamDAO.countRows(context);
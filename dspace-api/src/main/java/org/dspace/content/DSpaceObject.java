@@ -64,6 +64,13 @@ public abstract class DSpaceObject implements Serializable, ReloadableEntity<jav
     @Transient
     private boolean modified = false;
 
+    /**
+     * Metadata values by field, built on first lookup and dropped whenever the metadata changes.
+     * See {@link #getMetadataByField(String, String, String)}.
+     */
+    @Transient
+    private Map<String, List<MetadataValue>> metadataIndex = null;
+
     protected DSpaceObject()
     {
 
@@ -153,6 +160,7 @@ public abstract class DSpaceObject implements Serializable, ReloadableEntity<jav
 
     public void setMetadata(List<MetadataValue> metadata) {
         this.metadata = metadata;
+        this.metadataIndex = null;
     }
 
     protected void removeMetadata(MetadataValue metadataValue)
@@ -174,6 +182,55 @@ public abstract class DSpaceObject implements Serializable, ReloadableEntity<jav
         addDetails(metadataValue.getMetadataField().toString());
     }
 
+    /**
+     * Get the metadata values of a field, in the order of {@link #getMetadata()}, without
+     * scanning all values of this object. Values are looked up in an index that is built
+     * on the first call and dropped whenever metadata is added or removed.
+     *
+     * @param schema the schema name, not a wildcard
+     * @param element the element name, not a wildcard
+     * @param qualifier the qualifier, <code>null</code> for unqualified values or
+     *                  <code>Item.ANY</code> for all qualifiers
+     * @return the matching values, an empty list if there are none. The list must not be modified.
+     */
+    protected List<MetadataValue> getMetadataByField(String schema, String element, String qualifier)
+    {
+        if (metadataIndex == null)
+        {
+            Map<String, List<MetadataValue>> index = new HashMap<>();
+            for (MetadataValue metadataValue : getMetadata())
+            {
+                MetadataField field = metadataValue.getMetadataField();
+                String schemaName = field.getMetadataSchema() == null ? null : field.getMetadataSchema().getName();
+                addToIndex(index, metadataIndexKey(schemaName, field.getElement(), field.getQualifier()), metadataValue);
+                addToIndex(index, metadataIndexKey(schemaName, field.getElement(), Item.ANY), metadataValue);
+            }
+            metadataIndex = index;
+        }
+        List<MetadataValue> values = metadataIndex.get(metadataIndexKey(schema, element, qualifier));
+        return values == null ? Collections.<MetadataValue>emptyList() : values;
+    }
+
+    private static void addToIndex(Map<String, List<MetadataValue>> index, String key, MetadataValue metadataValue)
+    {
+        List<MetadataValue> values = index.get(key);
+        if (values == null)
+        {
+            values = new ArrayList<>(1);
+            index.put(key, values);
+        }
+        values.add(metadataValue);
+    }
+
+    private static String metadataIndexKey(String schema, String element, String qualifier)
+    {
+        if (qualifier == null)
+        {
+            return schema + "." + element;
+        }
+        return schema + "." + element + "." + qualifier;
+    }
+
     public List<ResourcePolicy> getResourcePolicies() {
         return resourcePolicies;
     }
@@ -184,6 +241,7 @@ public abstract class DSpaceObject implements Serializable, ReloadableEntity<jav
 
     protected void setMetadataModified() {
         this.modifiedMetadata = true;
+        this.metadataIndex = null;
     }
 
     public boolean isModified() {
@@ -27,6 +27,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service implementation class for the DSpaceObject.
@@ -41,6 +42,11 @@ public abstract class DSpaceObjectServiceImpl<T extends DSpaceObject> implements
     /** log4j category */
     private static final Logger log = Logger.getLogger(DSpaceObjectServiceImpl.class);
 
+    /** Maximum number of distinct metadata field strings kept by {@link #parseMetadataString(String)} */
+    protected static final int MAX_PARSED_FIELDS = 1000;
+
+    private static final Map<String, String[]> parsedFields = new ConcurrentHashMap<>();
+
     @Autowired(required = true)
     protected ChoiceAuthorityService choiceAuthorityService;
     @Autowired(required = true)
@@ -124,9 +130,20 @@ public abstract class DSpaceObjectServiceImpl<T extends DSpaceObject> implements
 
     @Override
     public List<MetadataValue> getMetadata(T dso, String schema, String element, String qualifier, String lang) {
+        // Without wildcards in schema or element, only the values of the field itself need to be checked
+        Collection<MetadataValue> candidates;
+        if (schema != null && !schema.equals(Item.ANY) && !element.equals(Item.ANY))
+        {
+            candidates = dso.getMetadataByField(schema, element, qualifier);
+        }
+        else
+        {
+            candidates = dso.getMetadata();
+        }
+
         // Build up list of matching values
         List<MetadataValue> values = new ArrayList<MetadataValue>();
-        for (MetadataValue dcv : dso.getMetadata())
+        for (MetadataValue dcv : candidates)
         {
             if (match(schema, element, qualifier, lang, dcv))
             {
@@ -141,15 +158,7 @@ public abstract class DSpaceObjectServiceImpl<T extends DSpaceObject> implements
     @Override
     public List<MetadataValue> getMetadataByMetadataString(T dso, String mdString)
     {
-        StringTokenizer dcf = new StringTokenizer(mdString, ".");
-
-        String[] tokens = { "", "", "" };
-        int i = 0;
-        while(dcf.hasMoreTokens())
-        {
-            tokens[i] = dcf.nextToken().trim();
-            i++;
-        }
+        String[] tokens = parseMetadataString(mdString);
         String schema = tokens[0];
         String element = tokens[1];
         String qualifier = tokens[2];
@@ -171,6 +180,36 @@ public abstract class DSpaceObjectServiceImpl<T extends DSpaceObject> implements
         return values;
     }
 
+    /**
+     * Split a "schema.element[.qualifier]" string into its three parts, a missing part is
+     * returned as an empty string. The same strings are requested over and over again, so
+     * the result is cached (up to {@link #MAX_PARSED_FIELDS} distinct strings).
+     *
+     * @param mdString the metadata field string
+     * @return array of schema, element and qualifier. It must not be modified.
+     */
+    protected String[] parseMetadataString(String mdString)
+    {
+        String[] tokens = parsedFields.get(mdString);
+        if (tokens == null)
+        {
+            StringTokenizer dcf = new StringTokenizer(mdString, ".");
+
+            tokens = new String[]{ "", "", "" };
+            int i = 0;
+            while(dcf.hasMoreTokens())
+            {
+                tokens[i] = dcf.nextToken().trim();
+                i++;
+            }
+            if (parsedFields.size() < MAX_PARSED_FIELDS)
+            {
+                parsedFields.put(mdString, tokens);
+            }
+        }
+        return tokens;
+    }
+
     @Override
     public String getMetadata(T dso, String value) {
         List<MetadataValue> metadataValues = getMetadataByMetadataString(dso, value);
@@ -183,6 +183,27 @@ public class ItemServiceImpl extends DSpaceObjectServiceImpl<Item> implements It
         return itemDAO.findAll(context, true, true);
     }
 
+    @Override
+    public List<UUID> findAllUnfilteredIds(Context context, UUID after, int limit) throws SQLException {
+        return itemDAO.findAllUnfilteredIds(context, after, limit);
+    }
+
+    @Override
+    public List<Item> findByIds(Context context, List<UUID> ids) throws SQLException {
+        return itemDAO.findByIds(context, ids);
+    }
+
+    @Override
+    public List<Item> findByIdsWithMetadata(Context context, List<UUID> ids) throws SQLException {
+        return itemDAO.findByIdsWithMetadata(context, ids);
+    }
+
+    @Override
+    public List<Item> findAllUnfilteredAfter(Context context, boolean byLastModified, Date lastModified,
+            UUID after, int limit) throws SQLException {
+        return itemDAO.findAllAfter(context, byLastModified, lastModified, after, limit);
+    }
+
     @Override
     public Iterator<Item> findBySubmitter(Context context, EPerson eperson) throws SQLException {
         return itemDAO.findBySubmitter(context, eperson);
@@ -205,6 +226,12 @@ public class ItemServiceImpl extends DSpaceObjectServiceImpl<Item> implements It
         return itemDAO.findArchivedByCollection(context, collection, limit, offset);
     }
 
+    @Override
+    public List<Item> findByCollectionAfter(Context context, Collection collection, boolean byLastModified,
+            Date lastModified, UUID after, int limit) throws SQLException {
+        return itemDAO.findArchivedByCollectionAfter(context, collection, byLastModified, lastModified, after, limit);
+    }
+
     @Override
     public Iterator<Item> findAllByCollection(Context context, Collection collection) throws SQLException {
         return itemDAO.findAllByCollection(context, collection);
@@ -217,6 +244,13 @@ public class ItemServiceImpl extends DSpaceObjectServiceImpl<Item> implements It
         return itemDAO.findAll(context, true, true, true, since);
     }
 
+    @Override
+    public List<UUID> findInArchiveOrWithdrawnDiscoverableModifiedSinceIds(Context context, Date since,
+            UUID after, int limit) throws SQLException
+    {
+        return itemDAO.findIds(context, true, true, true, since, after, limit);
+    }
+
     @Override
     public void updateLastModified(Context context, Item item) throws SQLException, AuthorizeException {
         item.setLastModified(new Date());
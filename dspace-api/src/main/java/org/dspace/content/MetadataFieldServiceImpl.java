@@ -7,6 +7,7 @@
  */
 package org.dspace.content;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.dspace.authorize.AuthorizeException;
 import org.dspace.authorize.service.AuthorizeService;
@@ -69,6 +70,7 @@ public class MetadataFieldServiceImpl implements MetadataFieldService {
         metadataField.setMetadataSchema(metadataSchema);
         metadataField = metadataFieldDAO.create(context, metadataField);
         metadataFieldDAO.save(context, metadataField);
+        MetadataRegistrySnapshot.invalidate(context);
 
         log.info(LogManager.getHeader(context, "create_metadata_field",
                 "metadata_field_id=" + metadataField.getID()));
@@ -83,13 +85,32 @@ public class MetadataFieldServiceImpl implements MetadataFieldService {
 
     @Override
     public MetadataField findByElement(Context context, MetadataSchema metadataSchema, String element, String qualifier) throws SQLException {
-        return metadataFieldDAO.findByElement(context, metadataSchema, element, qualifier);
+        return findByElement(context, metadataSchema.getName(), element, qualifier);
     }
 
 
     @Override
     public MetadataField findByElement(Context context, String metadataSchemaName, String element, String qualifier) throws SQLException {
-        return metadataFieldDAO.findByElement(context, metadataSchemaName, element, qualifier);
+        Integer id = MetadataRegistrySnapshot.get(context).getFieldID(metadataSchemaName, element, qualifier);
+        if (id != null)
+        {
+            MetadataField metadataField = find(context, id);
+            if (metadataField != null
+                    && StringUtils.equals(metadataField.getMetadataSchema().getName(), metadataSchemaName)
+                    && StringUtils.equals(metadataField.getElement(), element)
+                    && StringUtils.equals(metadataField.getQualifier(), qualifier))
+            {
+                return metadataField;
+            }
+        }
+
+        // Not in the snapshot, or modified since it was taken
+        MetadataField metadataField = metadataFieldDAO.findByElement(context, metadataSchemaName, element, qualifier);
+        if (metadataField != null || id != null)
+        {
+            MetadataRegistrySnapshot.invalidate();
+        }
+        return metadataField;
     }
 
     @Override
@@ -125,6 +146,7 @@ public class MetadataFieldServiceImpl implements MetadataFieldService {
         }
 
         metadataFieldDAO.save(context, metadataField);
+        MetadataRegistrySnapshot.invalidate(context);
 
         log.info(LogManager.getHeader(context, "update_metadatafieldregistry",
                 "metadata_field_id=" + metadataField.getID() + "element=" + metadataField.getElement()
@@ -145,6 +167,7 @@ public class MetadataFieldServiceImpl implements MetadataFieldService {
 
         metadataValueService.deleteByMetadataField(context, metadataField);
         metadataFieldDAO.delete(context, metadataField);
+        MetadataRegistrySnapshot.invalidate(context);
     }
 
     /**
@@ -0,0 +1,159 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content;
+
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.dspace.content.factory.ContentServiceFactory;
+import org.dspace.core.Context;
+
+/**
+ * An immutable snapshot of the metadata registry, mapping schema names and
+ * <code>schema.element[.qualifier]</code> keys to the identifiers of the
+ * schemas and fields. A single snapshot is shared by all threads: it is built
+ * on first use and replaced as a whole once the registry is modified, so that
+ * readers never see it half updated.
+ * <p>
+ * Only identifiers are kept, as the schemas and fields themselves belong to the
+ * database session they were loaded in: the services load them by identifier in
+ * the session of the caller, which Hibernate serves from its caches. The
+ * services also check what they load against what was asked for, since the
+ * registry may have been modified by another process since the snapshot was
+ * taken.
+ */
+public final class MetadataRegistrySnapshot
+{
+    /** The snapshot in use, or null until it is next built */
+    private static volatile MetadataRegistrySnapshot current = null;
+
+    /** Number of modifications of the registry, so that a stale snapshot is not published */
+    private static long generation = 0;
+
+    private final Map<String, Integer> fieldIDs;
+
+    private final Map<String, Integer> schemaIDs;
+
+    private MetadataRegistrySnapshot(List<MetadataSchema> schemas, List<MetadataField> fields)
+    {
+        Map<String, Integer> schemaIDs = new HashMap<String, Integer>();
+        for (MetadataSchema schema : schemas)
+        {
+            schemaIDs.put(schema.getName(), schema.getID());
+        }
+        Map<String, Integer> fieldIDs = new HashMap<String, Integer>();
+        for (MetadataField field : fields)
+        {
+            fieldIDs.put(field.toString('.'), field.getID());
+        }
+        this.schemaIDs = Collections.unmodifiableMap(schemaIDs);
+        this.fieldIDs = Collections.unmodifiableMap(fieldIDs);
+    }
+
+    /**
+     * Get the current snapshot of the registry, building it if the registry was
+     * modified since it was last built.
+     *
+     * @param context
+     *            DSpace context, used to read the registry
+     * @return the snapshot
+     * @throws SQLException if database error
+     */
+    public static MetadataRegistrySnapshot get(Context context) throws SQLException
+    {
+        MetadataRegistrySnapshot snapshot = current;
+        if (snapshot == null)
+        {
+            long built;
+            synchronized (MetadataRegistrySnapshot.class)
+            {
+                built = generation;
+            }
+            ContentServiceFactory factory = ContentServiceFactory.getInstance();
+            snapshot = new MetadataRegistrySnapshot(factory.getMetadataSchemaService().findAll(context),
+                    factory.getMetadataFieldService().findAll(context));
+            synchronized (MetadataRegistrySnapshot.class)
+            {
+                // the registry may have been modified while it was read
+                if (built == generation)
+                {
+                    current = snapshot;
+                }
+            }
+        }
+        return snapshot;
+    }
+
+    /**
+     * Discard the current snapshot, now and once the transaction of the
+     * context is committed, after the registry was modified.
+     *
+     * @param context
+     *            DSpace context modifying the registry
+     */
+    public static void invalidate(Context context)
+    {
+        invalidate();
+        context.runAfterCommit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                invalidate();
+            }
+        });
+    }
+
+    /**
+     * Discard the current snapshot, so that the next lookup builds a new one.
+     */
+    public static synchronized void invalidate()
+    {
+        generation++;
+        current = null;
+    }
+
+    /**
+     * @return the key of a field in the snapshot, as in <code>dc.contributor.author</code>
+     */
+    public static String getKey(String schema, String element, String qualifier)
+    {
+        if (qualifier == null)
+        {
+            return schema + "." + element;
+        }
+        return schema + "." + element + "." + qualifier;
+    }
+
+    /**
+     * @param schema
+     *            short name of the schema
+     * @param element
+     *            element of the field
+     * @param qualifier
+     *            qualifier of the field, or null
+     * @return the ID of the field, or null if it was not in the registry
+     */
+    public Integer getFieldID(String schema, String element, String qualifier)
+    {
+        return fieldIDs.get(getKey(schema, element, qualifier));
+    }
+
+    /**
+     * @param schema
+     *            short name of the schema
+     * @return the ID of the schema, or null if it was not in the registry
+     */
+    public Integer getSchemaID(String schema)
+    {
+        return schemaIDs.get(schema);
+    }
+}
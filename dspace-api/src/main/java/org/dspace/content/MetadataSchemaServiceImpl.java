@@ -71,6 +71,7 @@ public class MetadataSchemaServiceImpl implements MetadataSchemaService {
         metadataSchema.setNamespace(namespace);
         metadataSchema.setName(name);
         metadataSchemaDAO.save(context, metadataSchema);
+        MetadataRegistrySnapshot.invalidate(context);
         log.info(LogManager.getHeader(context, "create_metadata_schema",
                 "metadata_schema_id="
                         + metadataSchema.getID()));
@@ -105,6 +106,7 @@ public class MetadataSchemaServiceImpl implements MetadataSchemaService {
                     + " unique");
         }
         metadataSchemaDAO.save(context, metadataSchema);
+        MetadataRegistrySnapshot.invalidate(context);
         log.info(LogManager.getHeader(context, "update_metadata_schema",
                 "metadata_schema_id=" + metadataSchema.getID() + "namespace="
                         + metadataSchema.getNamespace() + "name=" + metadataSchema.getName()));
@@ -123,6 +125,7 @@ public class MetadataSchemaServiceImpl implements MetadataSchemaService {
                 "metadata_schema_id=" + metadataSchema.getID()));
 
         metadataSchemaDAO.delete(context, metadataSchema);
+        MetadataRegistrySnapshot.invalidate(context);
     }
 
     @Override
@@ -142,7 +145,23 @@ public class MetadataSchemaServiceImpl implements MetadataSchemaService {
         {
             return null;
         }
-        return metadataSchemaDAO.find(context, shortName);
+        Integer id = MetadataRegistrySnapshot.get(context).getSchemaID(shortName);
+        if (id != null)
+        {
+            MetadataSchema metadataSchema = find(context, id);
+            if (metadataSchema != null && shortName.equals(metadataSchema.getName()))
+            {
+                return metadataSchema;
+            }
+        }
+
+        // Not in the snapshot, or modified since it was taken
+        MetadataSchema metadataSchema = metadataSchemaDAO.find(context, shortName);
+        if (metadataSchema != null || id != null)
+        {
+            MetadataRegistrySnapshot.invalidate();
+        }
+        return metadataSchema;
     }
 
 
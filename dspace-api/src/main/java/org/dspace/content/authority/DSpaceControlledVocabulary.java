@@ -11,18 +11,11 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.io.File;
+import java.io.IOException;
 
 import org.apache.commons.lang.ArrayUtils;
 import org.dspace.content.Collection;
 import org.dspace.services.factory.DSpaceServicesFactory;
-import org.w3c.dom.Node;
-import org.w3c.dom.NodeList;
-import javax.xml.xpath.XPath;
-import javax.xml.xpath.XPathConstants;
-import javax.xml.xpath.XPathExpressionException;
-import javax.xml.xpath.XPathFactory;
-
-import org.xml.sax.InputSource;
 
 import org.apache.log4j.Logger;
 
@@ -51,8 +44,13 @@ import org.dspace.services.ConfigurationService;
  *   vocabulary.plugin._plugin_.hierarchy.store = <true|false>    # Store entire hierarchy along with selected value. Default: TRUE
  *   vocabulary.plugin._plugin_.hierarchy.suggest = <true|false>  # Display entire hierarchy in the suggestion list.  Default: TRUE
  *   vocabulary.plugin._plugin_.delimiter = "<string>"              # Delimiter to use when building hierarchy strings. Default: "::"
+ *   vocabulary.plugin._plugin_.match = <contains|prefix>         # Match the text anywhere in labels, or at their start. Default: contains
  *  }
  *
+ * The vocabulary is loaded into a {@link VocabularyIndex} the first time it is
+ * used, and matched ignoring case and diacritics. The file is checked for changes
+ * at most every few seconds and reloaded when it has been modified.
+ *
  * @author Michael B. Klein
  *
  */
@@ -61,15 +59,24 @@ public class DSpaceControlledVocabulary extends SelfNamedPlugin implements Choic
 {
 
     private static Logger log = Logger.getLogger(DSpaceControlledVocabulary.class);
-    protected static String xpathTemplate = "//node[contains(translate(@label,'ABCDEFGHIJKLMNOPQRSTUVWXYZ','abcdefghijklmnopqrstuvwxyz'),'%s')]";
-    protected static String idTemplate = "//node[@id = '%s']";
     protected static String pluginNames[] = null;
 
+    /** Minimum time between two checks for changes of the vocabulary file, in milliseconds */
+    protected static final long RELOAD_CHECK_INTERVAL = 5000;
+
     protected String vocabularyName = null;
-    protected InputSource vocabulary = null;
+    protected File vocabularyFile = null;
+    protected volatile VocabularyIndex vocabulary = null;
     protected Boolean suggestHierarchy = true;
     protected Boolean storeHierarchy = true;
     protected String hierarchyDelimiter = "::";
+    protected boolean prefixMatch = false;
+
+    /** Modification time of the loaded vocabulary file */
+    protected long loadedModified = 0;
+
+    /** Time of the last check for changes of the vocabulary file */
+    protected volatile long lastChecked = 0;
 
     public DSpaceControlledVocabulary()
     {
@@ -113,12 +120,24 @@ public class DSpaceControlledVocabulary extends SelfNamedPlugin implements Choic
 
     protected void init()
     {
-    	if (vocabulary == null)
+        if (vocabulary == null)
+        {
+            load();
+        }
+        else if (System.currentTimeMillis() - lastChecked > RELOAD_CHECK_INTERVAL)
+        {
+            reloadIfModified();
+        }
+    }
+
+    private synchronized void load()
+    {
+        if (vocabulary == null)
         {
             ConfigurationService config = DSpaceServicesFactory.getInstance().getConfigurationService();
 
-        	log.info("Initializing " + this.getClass().getName());
-        	vocabularyName = this.getPluginInstanceName();
+            log.info("Initializing " + this.getClass().getName());
+            vocabularyName = this.getPluginInstanceName();
             String vocabulariesPath = config.getProperty("dspace.dir") + "/config/controlled-vocabularies/";
             String configurationPrefix = "vocabulary.plugin." + vocabularyName;
             storeHierarchy = config.getBooleanProperty(configurationPrefix + ".hierarchy.store", storeHierarchy);
@@ -126,41 +145,54 @@ public class DSpaceControlledVocabulary extends SelfNamedPlugin implements Choic
             String configuredDelimiter = config.getProperty(configurationPrefix + ".delimiter");
             if (configuredDelimiter != null)
             {
-            	hierarchyDelimiter = configuredDelimiter.replaceAll("(^\"|\"$)","");
+                hierarchyDelimiter = configuredDelimiter.replaceAll("(^\"|\"$)","");
+            }
+            prefixMatch = "prefix".equalsIgnoreCase(config.getProperty(configurationPrefix + ".match"));
+            vocabularyFile = new File(vocabulariesPath + vocabularyName + ".xml");
+            lastChecked = System.currentTimeMillis();
+            loadedModified = vocabularyFile.lastModified();
+            log.info("Loading " + vocabularyFile);
+            try
+            {
+                vocabulary = VocabularyIndex.load(vocabularyFile, hierarchyDelimiter);
             }
-        	String filename = vocabulariesPath + vocabularyName + ".xml";
-        	log.info("Loading " + filename);
-            vocabulary = new InputSource(filename);
-    	}
+            catch (IOException e)
+            {
+                log.error("Unable to load vocabulary " + vocabularyFile + ": " + e.getMessage(), e);
+                vocabulary = new VocabularyIndex(new String[0], new String[0], new String[0]);
+            }
+        }
     }
 
-    protected String buildString(Node node)
+    /**
+     * Reload the vocabulary if its file changed since it was loaded. The
+     * previous vocabulary is kept, and used meanwhile, if the new one cannot
+     * be loaded.
+     */
+    private synchronized void reloadIfModified()
     {
-    	if (node.getNodeType() == Node.DOCUMENT_NODE)
+        long now = System.currentTimeMillis();
+        if (now - lastChecked <= RELOAD_CHECK_INTERVAL)
         {
-    		return("");
-    	}
-        else
+            return;
+        }
+        lastChecked = now;
+        long modified = vocabularyFile.lastModified();
+        if (modified == loadedModified)
         {
-    		String parentValue = buildString(node.getParentNode());
-    		Node currentLabel = node.getAttributes().getNamedItem("label");
-    		if (currentLabel != null)
-            {
-    			String currentValue = currentLabel.getNodeValue();
-    			if (parentValue.equals(""))
-                {
-    				return currentValue;
-    			}
-                else
-                {
-    				return(parentValue + this.hierarchyDelimiter + currentValue);
-    			}
-    		}
-            else
-            {
-    			return(parentValue);
-    		}
-    	}
+            return;
+        }
+        loadedModified = modified;
+        log.info("Reloading modified vocabulary " + vocabularyFile);
+        try
+        {
+            vocabulary = VocabularyIndex.load(vocabularyFile, hierarchyDelimiter);
+        }
+        catch (IOException e)
+        {
+            log.error("Unable to reload vocabulary " + vocabularyFile + ", keeping the previous one: "
+                    + e.getMessage(), e);
+        }
     }
 
     @Override
@@ -168,54 +200,20 @@ public class DSpaceControlledVocabulary extends SelfNamedPlugin implements Choic
     {
     	init();
     	log.debug("Getting matches for '" + text + "'");
-    	String xpathExpression = String.format(xpathTemplate, text.replaceAll("'", "&apos;").toLowerCase());
-    	XPath xpath = XPathFactory.newInstance().newXPath();
-    	Choice[] choices;
-    	try {
-            NodeList results = (NodeList) xpath.evaluate(xpathExpression,
-                    vocabulary, XPathConstants.NODESET);
-            String[] authorities = new String[results.getLength()];
-            String[] values = new String[results.getLength()];
-            String[] labels = new String[results.getLength()];
-            for (int i = 0; i < results.getLength(); i++)
-            {
-                Node node = results.item(i);
-                String hierarchy = this.buildString(node);
-                if (this.suggestHierarchy)
-                {
-                    labels[i] = hierarchy;
-                }
-                else
-                {
-                    labels[i] = node.getAttributes().getNamedItem("label").getNodeValue();
-                }
-                if (this.storeHierarchy)
-                {
-                    values[i] = hierarchy;
-                }
-                else
-                {
-                    values[i] = node.getAttributes().getNamedItem("label").getNodeValue();
-                }
-                Node idAttr = node.getAttributes().getNamedItem("id");
-                if (null != idAttr) // 'id' is optional
-                    authorities[i] = idAttr.getNodeValue();
-            }
-            int resultCount = labels.length - start;
-            if ((limit > 0) && (resultCount > limit)) // limit = 0 means no limit
-                resultCount = limit;
-            choices = new Choice[resultCount];
-            if (resultCount > 0)
-            {
-                for (int i = 0; i < resultCount; i++)
-                {
-                    choices[i] = new Choice(authorities[start + i], values[start
-                            + i], labels[start + i]);
-                }
-            }
-    	} catch(XPathExpressionException e) {
-    		choices = new Choice[0];
-    	}
+        VocabularyIndex index = vocabulary;
+        int[] results = index.search(text, prefixMatch, limit > 0 ? start + limit : 0);
+        int resultCount = Math.max(0, results.length - start);
+        if ((limit > 0) && (resultCount > limit)) // limit = 0 means no limit
+            resultCount = limit;
+        Choice[] choices = new Choice[resultCount];
+        for (int i = 0; i < resultCount; i++)
+        {
+            int term = results[start + i];
+            String label = index.getLabel(term);
+            String hierarchy = index.getPath(term);
+            choices[i] = new Choice(index.getId(term), this.storeHierarchy ? hierarchy : label,
+                    this.suggestHierarchy ? hierarchy : label);
+        }
     	return new Choices(choices, 0, choices.length, Choices.CF_AMBIGUOUS, false);
     }
 
@@ -231,13 +229,8 @@ public class DSpaceControlledVocabulary extends SelfNamedPlugin implements Choic
     public String getLabel(String field, String key, String locale)
     {
     	init();
-    	String xpathExpression = String.format(idTemplate, key);
-    	XPath xpath = XPathFactory.newInstance().newXPath();
-    	try {
-    		Node node = (Node)xpath.evaluate(xpathExpression, vocabulary, XPathConstants.NODE);
-    		return node.getAttributes().getNamedItem("label").getNodeValue();
-    	} catch(XPathExpressionException e) {
-    		return("");
-    	}
+        VocabularyIndex index = vocabulary;
+        int term = index.indexOf(key);
+        return term < 0 ? "" : index.getLabel(term);
     }
 }
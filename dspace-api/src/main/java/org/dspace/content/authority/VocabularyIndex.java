@@ -0,0 +1,355 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content.authority;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+import javax.xml.parsers.DocumentBuilder;
+import javax.xml.parsers.DocumentBuilderFactory;
+import javax.xml.parsers.ParserConfigurationException;
+
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+import org.xml.sax.SAXException;
+
+/**
+ * Immutable search index of the terms of a controlled vocabulary, as used by
+ * {@link DSpaceControlledVocabulary}.
+ * <p>
+ * Each <code>node</code> element of the vocabulary is a term, with its optional
+ * <code>id</code>, its <code>label</code> and the path of labels from the root,
+ * which is computed once. Labels are matched after case folding and removal of
+ * diacritics. Every substring of up to three characters of a label is indexed, so
+ * that short queries are answered straight from the index and longer ones only
+ * check the labels containing their rarest three character substring. Matches are
+ * returned in document order.
+ */
+public class VocabularyIndex
+{
+    /** Length of the longest indexed substrings */
+    private static final int GRAM = 3;
+
+    private static final Pattern DIACRITICS = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+
+    private static final int[] NONE = new int[0];
+
+    private final String[] ids;
+    private final String[] labels;
+    private final String[] paths;
+
+    /** Normalized labels */
+    private final String[] keys;
+
+    /** Terms containing each substring of up to {@link #GRAM} characters, in document order */
+    private final Map<String, int[]> grams;
+
+    private final Map<String, Integer> byId = new HashMap<>();
+
+    /**
+     * Index a list of terms.
+     *
+     * @param ids identifier of each term, null if it has none
+     * @param labels label of each term
+     * @param paths hierarchical label of each term
+     */
+    protected VocabularyIndex(String[] ids, String[] labels, String[] paths)
+    {
+        this.ids = ids;
+        this.labels = labels;
+        this.paths = paths;
+        this.keys = new String[labels.length];
+
+        Map<String, int[]> postings = new HashMap<>();
+        Map<String, Integer> sizes = new HashMap<>();
+        for (int i = 0; i < labels.length; i++)
+        {
+            keys[i] = normalize(labels[i]);
+            if (ids[i] != null && !byId.containsKey(ids[i]))
+            {
+                byId.put(ids[i], i);
+            }
+            for (int length = 1; length <= GRAM; length++)
+            {
+                for (int offset = 0; offset + length <= keys[i].length(); offset++)
+                {
+                    add(postings, sizes, keys[i].substring(offset, offset + length), i);
+                }
+            }
+        }
+        for (Map.Entry<String, int[]> posting : postings.entrySet())
+        {
+            posting.setValue(Arrays.copyOf(posting.getValue(), sizes.get(posting.getKey())));
+        }
+        this.grams = postings;
+    }
+
+    private static void add(Map<String, int[]> postings, Map<String, Integer> sizes, String gram, int term)
+    {
+        int[] posting = postings.get(gram);
+        int size = posting == null ? 0 : sizes.get(gram);
+        if (size > 0 && posting[size - 1] == term)
+        {
+            // Substring occurring more than once in the label
+            return;
+        }
+        if (posting == null || size == posting.length)
+        {
+            posting = posting == null ? new int[4] : Arrays.copyOf(posting, size * 2);
+            postings.put(gram, posting);
+        }
+        posting[size] = term;
+        sizes.put(gram, size + 1);
+    }
+
+    /**
+     * Read a vocabulary file.
+     *
+     * @param file the vocabulary
+     * @param delimiter separator of the labels in hierarchical labels
+     * @return the index of its terms
+     * @throws IOException if the file cannot be read or parsed
+     */
+    public static VocabularyIndex load(File file, String delimiter) throws IOException
+    {
+        return load(new Parser().parse(file, delimiter));
+    }
+
+    /**
+     * Read a vocabulary.
+     *
+     * @param in the vocabulary XML
+     * @param delimiter separator of the labels in hierarchical labels
+     * @return the index of its terms
+     * @throws IOException if the vocabulary cannot be read or parsed
+     */
+    public static VocabularyIndex load(InputStream in, String delimiter) throws IOException
+    {
+        return load(new Parser().parse(in, delimiter));
+    }
+
+    private static VocabularyIndex load(Terms terms)
+    {
+        int size = terms.labels.size();
+        return new VocabularyIndex(terms.ids.toArray(new String[size]), terms.labels.toArray(new String[size]),
+                terms.paths.toArray(new String[size]));
+    }
+
+    /**
+     * Fold case and remove diacritics.
+     *
+     * @param text the text
+     * @return the text as matched by the index
+     */
+    public static String normalize(String text)
+    {
+        String decomposed = Normalizer.normalize(text, Normalizer.Form.NFD);
+        return DIACRITICS.matcher(decomposed).replaceAll("").toLowerCase(Locale.ROOT);
+    }
+
+    /**
+     * Find the terms whose label contains, or starts with, a text.
+     *
+     * @param text the text, matched after {@link #normalize(String)}
+     * @param prefix true to only match labels starting with the text
+     * @param max maximum number of terms to return, 0 or less for all
+     * @return the positions of the matching terms, in document order
+     */
+    public int[] search(String text, boolean prefix, int max)
+    {
+        String query = normalize(text);
+        int[] candidates;
+        boolean exact = !prefix;
+        if (query.isEmpty())
+        {
+            candidates = null;
+            exact = true;
+        }
+        else if (query.length() <= GRAM)
+        {
+            candidates = grams.get(query);
+            if (candidates == null)
+            {
+                return NONE;
+            }
+        }
+        else
+        {
+            // Only check the terms containing the rarest substring
+            candidates = null;
+            exact = false;
+            for (int offset = 0; offset + GRAM <= query.length(); offset++)
+            {
+                int[] posting = grams.get(query.substring(offset, offset + GRAM));
+                if (posting == null)
+                {
+                    return NONE;
+                }
+                if (candidates == null || posting.length < candidates.length)
+                {
+                    candidates = posting;
+                }
+            }
+        }
+
+        int count = candidates == null ? keys.length : candidates.length;
+        int[] matches = new int[0 < max ? Math.min(max, count) : count];
+        int found = 0;
+        for (int c = 0; c < count && found < matches.length; c++)
+        {
+            int term = candidates == null ? c : candidates[c];
+            if (exact || (prefix ? keys[term].startsWith(query) : keys[term].contains(query)))
+            {
+                matches[found++] = term;
+            }
+        }
+        return found == matches.length ? matches : Arrays.copyOf(matches, found);
+    }
+
+    /**
+     * Find a term by identifier.
+     *
+     * @param id the identifier
+     * @return position of the first term with this identifier, or -1 if there is none
+     */
+    public int indexOf(String id)
+    {
+        Integer term = byId.get(id);
+        return term == null ? -1 : term;
+    }
+
+    /**
+     * @return number of terms
+     */
+    public int size()
+    {
+        return labels.length;
+    }
+
+    /**
+     * @param term position of the term
+     * @return its identifier, or null if it has none
+     */
+    public String getId(int term)
+    {
+        return ids[term];
+    }
+
+    /**
+     * @param term position of the term
+     * @return its label, or an empty string if it has none
+     */
+    public String getLabel(int term)
+    {
+        return labels[term];
+    }
+
+    /**
+     * @param term position of the term
+     * @return the labels of the term and its ancestors, from the root, separated by the delimiter
+     */
+    public String getPath(int term)
+    {
+        return paths[term];
+    }
+
+    /**
+     * Terms of a vocabulary in document order.
+     */
+    private static class Terms
+    {
+        private final List<String> ids = new ArrayList<>();
+        private final List<String> labels = new ArrayList<>();
+        private final List<String> paths = new ArrayList<>();
+    }
+
+    /**
+     * Collects the <code>node</code> elements of a vocabulary.
+     */
+    private static class Parser
+    {
+        private Terms parse(File file, String delimiter) throws IOException
+        {
+            try
+            {
+                return collect(builder().parse(file), delimiter);
+            }
+            catch (SAXException e)
+            {
+                throw new IOException("Invalid vocabulary " + file + ": " + e.getMessage(), e);
+            }
+        }
+
+        private Terms parse(InputStream in, String delimiter) throws IOException
+        {
+            try
+            {
+                return collect(builder().parse(in), delimiter);
+            }
+            catch (SAXException e)
+            {
+                throw new IOException("Invalid vocabulary: " + e.getMessage(), e);
+            }
+        }
+
+        private DocumentBuilder builder() throws IOException
+        {
+            try
+            {
+                DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
+                factory.setExpandEntityReferences(false);
+                return factory.newDocumentBuilder();
+            }
+            catch (ParserConfigurationException e)
+            {
+                throw new IOException(e);
+            }
+        }
+
+        private Terms collect(Node root, String delimiter)
+        {
+            Terms terms = new Terms();
+            collect(root, "", delimiter, terms);
+            return terms;
+        }
+
+        private void collect(Node parent, String parentPath, String delimiter, Terms terms)
+        {
+            for (Node child = parent.getFirstChild(); child != null; child = child.getNextSibling())
+            {
+                if (child.getNodeType() != Node.ELEMENT_NODE)
+                {
+                    continue;
+                }
+                Element element = (Element) child;
+                String path = parentPath;
+                if ("node".equals(element.getNodeName()))
+                {
+                    String label = element.hasAttribute("label") ? element.getAttribute("label") : null;
+                    if (label != null)
+                    {
+                        path = parentPath.isEmpty() ? label : parentPath + delimiter + label;
+                    }
+                    terms.ids.add(element.hasAttribute("id") ? element.getAttribute("id") : null);
+                    terms.labels.add(label == null ? "" : label);
+                    terms.paths.add(path);
+                }
+                collect(element, path, delimiter, terms);
+            }
+        }
+    }
+}
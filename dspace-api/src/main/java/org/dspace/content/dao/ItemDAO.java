@@ -32,6 +32,59 @@ public interface ItemDAO extends DSpaceObjectLegacySupportDAO<Item>
 
     public Iterator<Item> findAll(Context context, boolean archived, boolean withdrawn) throws SQLException;
 
+    /**
+     * Find the identifiers of archived or withdrawn Items in identifier order, starting after the given
+     * identifier. Used to walk the item table in bounded ranges without loading the entities themselves.
+     *
+     * @param context Context
+     * @param after only identifiers greater than this one are returned, or null to start at the beginning
+     * @param limit maximum number of identifiers to return
+     * @return ordered list of item identifiers
+     * @throws SQLException if database error
+     */
+    public List<UUID> findAllUnfilteredIds(Context context, UUID after, int limit) throws SQLException;
+
+    /**
+     * Find the Items with the given identifiers in a single query, for instance to load a batch of
+     * Items into the session before processing them one by one.
+     *
+     * @param context Context
+     * @param ids identifiers of the Items, which should be a bounded number
+     * @return the Items found, in no particular order
+     * @throws SQLException if database error
+     */
+    public List<Item> findByIds(Context context, List<UUID> ids) throws SQLException;
+
+    /**
+     * Find the Items with the given identifiers together with their metadata values, handles and
+     * bundles, in a few queries for the whole batch, so that displaying them does not load these
+     * one Item at a time.
+     *
+     * @param context Context
+     * @param ids identifiers of the Items, which should be a bounded number
+     * @return the Items found, in no particular order
+     * @throws SQLException if database error
+     */
+    public List<Item> findByIdsWithMetadata(Context context, List<UUID> ids) throws SQLException;
+
+    /**
+     * Find the identifiers of Items matching the same criteria as
+     * {@link #findAll(Context, boolean, boolean, boolean, Date)}, in identifier order and starting
+     * after the given identifier, so that they can be processed in bounded pages.
+     *
+     * @param context Context
+     * @param archived whether to find archived Items
+     * @param withdrawn whether to find withdrawn Items
+     * @param discoverable whether to find discoverable Items
+     * @param lastModified only Items modified after this date, or null for no date test
+     * @param after only identifiers greater than this one are returned, or null to start at the beginning
+     * @param limit maximum number of identifiers to return
+     * @return ordered list of item identifiers
+     * @throws SQLException if database error
+     */
+    public List<UUID> findIds(Context context, boolean archived, boolean withdrawn, boolean discoverable,
+                              Date lastModified, UUID after, int limit) throws SQLException;
+
     /**
      * Find all Items modified since a Date.
      *
@@ -55,6 +108,38 @@ public interface ItemDAO extends DSpaceObjectLegacySupportDAO<Item>
 
     public Iterator<Item> findArchivedByCollection(Context context, Collection collection, Integer limit, Integer offset) throws SQLException;
 
+    /**
+     * Find a page of the archived Items of a Collection, ordered by identifier or by last modification
+     * date (then identifier), starting after the position of the last Item of the previous page.
+     * Unlike an offset, the position is found through the index, whatever the page number.
+     *
+     * @param context Context
+     * @param collection Collection (parent)
+     * @param byLastModified order by last modification date instead of identifier
+     * @param lastModified last modification date of the last Item of the previous page (byLastModified only)
+     * @param after identifier of the last Item of the previous page, or null for the first page
+     * @param limit maximum number of Items to return
+     * @return ordered list of Items
+     * @throws SQLException if database error
+     */
+    public List<Item> findArchivedByCollectionAfter(Context context, Collection collection, boolean byLastModified,
+                                                    Date lastModified, UUID after, int limit) throws SQLException;
+
+    /**
+     * Find a page of the archived or withdrawn Items, ordered as
+     * {@link #findArchivedByCollectionAfter(Context, Collection, boolean, Date, UUID, int)}.
+     *
+     * @param context Context
+     * @param byLastModified order by last modification date instead of identifier
+     * @param lastModified last modification date of the last Item of the previous page (byLastModified only)
+     * @param after identifier of the last Item of the previous page, or null for the first page
+     * @param limit maximum number of Items to return
+     * @return ordered list of Items
+     * @throws SQLException if database error
+     */
+    public List<Item> findAllAfter(Context context, boolean byLastModified, Date lastModified, UUID after, int limit)
+            throws SQLException;
+
     public Iterator<Item> findAllByCollection(Context context, Collection collection) throws SQLException;
 
     /**
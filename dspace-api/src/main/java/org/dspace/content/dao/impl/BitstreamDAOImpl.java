@@ -120,6 +120,15 @@ public class BitstreamDAOImpl extends AbstractHibernateDSODAO<Bitstream> impleme
         return iterate(query);
     }
 
+    @Override
+    public List<Bitstream> findByStoreNumber(Context context, Integer storeNumber, int offset, int limit) throws SQLException {
+        Query query = createQuery(context, "select b from Bitstream b where b.storeNumber = :storeNumber order by b.id");
+        query.setParameter("storeNumber", storeNumber);
+        query.setFirstResult(offset);
+        query.setMaxResults(limit);
+        return list(query);
+    }
+
     @Override
     public Long countByStoreNumber(Context context, Integer storeNumber) throws SQLException {
         Criteria criteria = createCriteria(context, Bitstream.class);
@@ -127,6 +136,14 @@ public class BitstreamDAOImpl extends AbstractHibernateDSODAO<Bitstream> impleme
         return countLong(criteria);
     }
 
+    @Override
+    public Long sumSizeByStoreNumber(Context context, Integer storeNumber) throws SQLException {
+        Query query = createQuery(context, "select sum(b.sizeBytes) from Bitstream b where b.storeNumber = :storeNumber");
+        query.setParameter("storeNumber", storeNumber);
+        Long sum = (Long) query.uniqueResult();
+        return (sum == null) ? 0L : sum;
+    }
+
     @Override
     public int countRows(Context context) throws SQLException {
         return count(createQuery(context, "SELECT count(*) from Bitstream"));
@@ -63,6 +63,65 @@ public class ItemDAOImpl extends AbstractHibernateDSODAO<Item> implements ItemDA
         return iterate(query);
     }
 
+    @Override
+    public List<UUID> findAllUnfilteredIds(Context context, UUID after, int limit) throws SQLException {
+        StringBuilder queryStr = new StringBuilder();
+        queryStr.append("SELECT i.id FROM Item i WHERE (i.inArchive = :in_archive OR i.withdrawn = :withdrawn)");
+        if(after != null)
+        {
+            queryStr.append(" AND i.id > :after");
+        }
+        queryStr.append(" ORDER BY i.id");
+
+        Query query = createQuery(context, queryStr.toString());
+        query.setParameter("in_archive", true);
+        query.setParameter("withdrawn", true);
+        if(after != null)
+        {
+            query.setParameter("after", after);
+        }
+        query.setMaxResults(limit);
+        @SuppressWarnings("unchecked")
+        List<UUID> result = query.list();
+        return result;
+    }
+
+    @Override
+    public List<Item> findByIds(Context context, List<UUID> ids) throws SQLException
+    {
+        if (ids.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        Query query = createQuery(context, "SELECT i FROM Item i WHERE i.id IN (:ids)");
+        query.setParameterList("ids", ids);
+        return list(query);
+    }
+
+    @Override
+    public List<Item> findByIdsWithMetadata(Context context, List<UUID> ids) throws SQLException
+    {
+        if (ids.isEmpty())
+        {
+            return Collections.emptyList();
+        }
+        // Each collection is fetched by its own query: joining several of them at once would
+        // multiply the rows returned
+        Query query = createQuery(context, "SELECT DISTINCT i FROM Item i LEFT JOIN FETCH i.metadata m"
+                + " LEFT JOIN FETCH m.metadataField WHERE i.id IN (:ids)");
+        query.setParameterList("ids", ids);
+        List<Item> items = list(query);
+
+        query = createQuery(context, "SELECT DISTINCT i FROM Item i LEFT JOIN FETCH i.handles WHERE i.id IN (:ids)");
+        query.setParameterList("ids", ids);
+        list(query);
+
+        query = createQuery(context, "SELECT DISTINCT i FROM Item i LEFT JOIN FETCH i.bundles WHERE i.id IN (:ids)");
+        query.setParameterList("ids", ids);
+        list(query);
+        return items;
+    }
+
     @Override
     public Iterator<Item> findAll(Context context, boolean archived,
             boolean withdrawn, boolean discoverable, Date lastModified)
@@ -89,6 +148,42 @@ public class ItemDAOImpl extends AbstractHibernateDSODAO<Item> implements ItemDA
         return iterate(query);
     }
 
+    @Override
+    public List<UUID> findIds(Context context, boolean archived, boolean withdrawn, boolean discoverable,
+                              Date lastModified, UUID after, int limit) throws SQLException
+    {
+        StringBuilder queryStr = new StringBuilder();
+        queryStr.append("SELECT i.id FROM Item i");
+        queryStr.append(" WHERE (i.inArchive = :in_archive OR i.withdrawn = :withdrawn)");
+        queryStr.append(" AND i.discoverable = :discoverable");
+        if(lastModified != null)
+        {
+            queryStr.append(" AND i.lastModified > :last_modified");
+        }
+        if(after != null)
+        {
+            queryStr.append(" AND i.id > :after");
+        }
+        queryStr.append(" ORDER BY i.id");
+
+        Query query = createQuery(context, queryStr.toString());
+        query.setParameter("in_archive", archived);
+        query.setParameter("withdrawn", withdrawn);
+        query.setParameter("discoverable", discoverable);
+        if(lastModified != null)
+        {
+            query.setTimestamp("last_modified", lastModified);
+        }
+        if(after != null)
+        {
+            query.setParameter("after", after);
+        }
+        query.setMaxResults(limit);
+        @SuppressWarnings("unchecked")
+        List<UUID> result = query.list();
+        return result;
+    }
+
     @Override
     public Iterator<Item> findBySubmitter(Context context, EPerson eperson) throws SQLException {
         Query query = createQuery(context, "FROM Item WHERE inArchive= :in_archive and submitter= :submitter");
@@ -224,6 +319,69 @@ public class ItemDAOImpl extends AbstractHibernateDSODAO<Item> implements ItemDA
         return iterate(query);
     }
 
+    @Override
+    public List<Item> findArchivedByCollectionAfter(Context context, Collection collection, boolean byLastModified,
+                                                    Date lastModified, UUID after, int limit) throws SQLException {
+        Query query = createPageQuery(context,
+                "select i from Item i join i.collections c WHERE :collection IN c AND i.inArchive=:in_archive",
+                byLastModified, lastModified, after, limit);
+        query.setParameter("collection", collection);
+        query.setParameter("in_archive", true);
+        return list(query);
+    }
+
+    @Override
+    public List<Item> findAllAfter(Context context, boolean byLastModified, Date lastModified, UUID after, int limit)
+            throws SQLException {
+        Query query = createPageQuery(context,
+                "select i from Item i WHERE (i.inArchive=:in_archive OR i.withdrawn=:withdrawn)",
+                byLastModified, lastModified, after, limit);
+        query.setParameter("in_archive", true);
+        query.setParameter("withdrawn", true);
+        return list(query);
+    }
+
+    /**
+     * Add the keyset condition and order of a page to a query.
+     *
+     * @param context Context
+     * @param select query selecting Items as "i", ending with a WHERE condition
+     * @param byLastModified order by last modification date instead of identifier
+     * @param lastModified last modification date of the last Item of the previous page
+     * @param after identifier of the last Item of the previous page, or null for the first page
+     * @param limit maximum number of Items to return
+     * @return the query, with the page parameters set
+     * @throws SQLException if database error
+     */
+    protected Query createPageQuery(Context context, String select, boolean byLastModified, Date lastModified,
+                                    UUID after, int limit) throws SQLException {
+        StringBuilder queryStr = new StringBuilder(select);
+        if(after != null)
+        {
+            if(byLastModified)
+            {
+                queryStr.append(" AND (i.lastModified > :last_modified OR (i.lastModified = :last_modified AND i.id > :after))");
+            }
+            else
+            {
+                queryStr.append(" AND i.id > :after");
+            }
+        }
+        queryStr.append(byLastModified ? " ORDER BY i.lastModified, i.id" : " ORDER BY i.id");
+
+        Query query = createQuery(context, queryStr.toString());
+        if(after != null)
+        {
+            query.setParameter("after", after);
+            if(byLastModified)
+            {
+                query.setTimestamp("last_modified", lastModified);
+            }
+        }
+        query.setMaxResults(limit);
+        return query;
+    }
+
     @Override
     public Iterator<Item> findAllByCollection(Context context, Collection collection) throws SQLException {
         Query query = createQuery(context, "select i from Item i join i.collections c WHERE :collection IN c");
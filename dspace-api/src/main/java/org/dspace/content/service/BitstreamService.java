@@ -63,6 +63,58 @@ public interface BitstreamService extends DSpaceObjectService<Bitstream>, DSpace
      */
     public Bitstream create(Context context, Bundle bundle, InputStream is) throws IOException, SQLException, AuthorizeException;
 
+    /**
+     * Store the bits of a new bitstream without creating it. The checksum and
+     * file size are calculated. The bitstream is committed in the given
+     * context with the deleted flag set, before and after its bits are stored,
+     * so that the bits of a batch of bitstreams can be stored concurrently,
+     * each thread with its own context, and are removed by the storage cleanup
+     * unless the bitstream is created with
+     * {@link #create(Context, Bundle, Bitstream)} and committed. The bits of a
+     * bitstream which will not be created can be removed at once with
+     * {@link #discard(Bitstream)}.
+     *
+     * @param context
+     *            DSpace context used only to store bits, as it is committed
+     * @param is
+     *            the bits to put in the bitstream
+     *
+     * @return the stored bitstream, which is deleted
+     * @throws IOException if IO error
+     * @throws SQLException if database error
+     */
+    public Bitstream store(Context context, InputStream is) throws IOException, SQLException;
+
+    /**
+     * Create a new bitstream from bits stored with
+     * {@link #store(Context, InputStream)}, by clearing its deleted flag.
+     * The newly created bitstream has the "unknown" format.
+     *
+     * @param context
+     *            DSpace context object
+     * @param bundle
+     *            The bundle in which our bitstream should be added.
+     * @param stored
+     *            the stored bitstream
+     *
+     * @return the newly created bitstream
+     * @throws IOException if IO error
+     * @throws SQLException if database error
+     * @throws AuthorizeException if authorization error
+     */
+    public Bitstream create(Context context, Bundle bundle, Bitstream stored) throws IOException, SQLException, AuthorizeException;
+
+    /**
+     * Remove the bits of a bitstream stored with {@link #store(Context, InputStream)}
+     * which will not be created, or whose creation has been rolled back. Its
+     * deleted entry is left to the storage cleanup.
+     *
+     * @param stored
+     *            the stored bitstream
+     * @throws IOException if IO error
+     */
+    public void discard(Bitstream stored) throws IOException;
+
     /**
      * Register a new bitstream, with a new ID.  The checksum and file size
      * are calculated. The newly created bitstream has the "unknown"
@@ -145,6 +197,20 @@ public interface BitstreamService extends DSpaceObjectService<Bitstream>, DSpace
      */
     public InputStream retrieve(Context context, Bitstream bitstream) throws IOException, SQLException, AuthorizeException;
 
+    /**
+     * Retrieve a range of the contents of the bitstream
+     *
+     * @param  context DSpace context object
+     * @param  bitstream DSpace bitstream
+     * @param  offset position of the first byte to read
+     * @param  length number of bytes to read, or -1 to read to the end
+     * @return a stream starting at the first byte of the range, which may go on past its end.
+     * @throws IOException if IO error
+     * @throws SQLException if database error
+     * @throws AuthorizeException if authorization error
+     */
+    public InputStream retrieve(Context context, Bitstream bitstream, long offset, long length) throws IOException, SQLException, AuthorizeException;
+
     /**
      * Determine if this bitstream is registered (available elsewhere on
      * filesystem than in assetstore). More about registered items:
@@ -191,8 +257,28 @@ public interface BitstreamService extends DSpaceObjectService<Bitstream>, DSpace
 
     public Iterator<Bitstream> findByStoreNumber(Context context, Integer storeNumber) throws SQLException;
 
+    /**
+     * Find a page of the bitstreams in an assetstore, ordered by identifier
+     *
+     * @param context DSpace context object
+     * @param storeNumber the assetstore
+     * @param offset the number of bitstreams to skip
+     * @param limit the maximum number of bitstreams to return
+     * @return the bitstreams
+     * @throws SQLException if database error
+     */
+    public List<Bitstream> findByStoreNumber(Context context, Integer storeNumber, int offset, int limit) throws SQLException;
+
     public Long countByStoreNumber(Context context, Integer storeNumber) throws SQLException;
 
+    /**
+     * @param context DSpace context object
+     * @param storeNumber the assetstore
+     * @return the total size of the bitstreams in the assetstore, in bytes
+     * @throws SQLException if database error
+     */
+    public Long sumSizeByStoreNumber(Context context, Integer storeNumber) throws SQLException;
+
     int countTotal(Context context) throws SQLException;
 
     int countDeletedBitstreams(Context context) throws SQLException;
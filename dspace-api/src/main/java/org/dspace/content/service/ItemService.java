@@ -80,6 +80,61 @@ public interface ItemService extends DSpaceObjectService<Item>, DSpaceObjectLega
      */
     public Iterator<Item> findAllUnfiltered(Context context) throws SQLException;
 
+    /**
+     * Get the identifiers of all "final" items (archived or withdrawn), ordered by identifier and
+     * starting after the given identifier. Allows callers to split the item table into ranges
+     * and process them independently.
+     *
+     * @param context
+     *            DSpace context object
+     * @param after
+     *            only identifiers greater than this one are returned, or null to start at the beginning
+     * @param limit
+     *            maximum number of identifiers to return
+     * @return the ordered list of item identifiers
+     * @throws SQLException if database error
+     */
+    public List<UUID> findAllUnfilteredIds(Context context, UUID after, int limit) throws SQLException;
+
+    /**
+     * Find a batch of items by identifier with one query. The items are then
+     * held by the context, so that finding them one by one does not go to
+     * the database again.
+     *
+     * @param context DSpace context object
+     * @param ids identifiers of the items, which should be a bounded number
+     * @return the items found, in no particular order
+     * @throws SQLException if database error
+     */
+    public List<Item> findByIds(Context context, List<UUID> ids) throws SQLException;
+
+    /**
+     * Find a batch of items by identifier, as {@link #findByIds(Context, List)},
+     * together with their metadata values, handles and bundles. Used to
+     * load a page of search or browse results for display.
+     *
+     * @param context DSpace context object
+     * @param ids identifiers of the items, which should be a bounded number
+     * @return the items found, in no particular order
+     * @throws SQLException if database error
+     */
+    public List<Item> findByIdsWithMetadata(Context context, List<UUID> ids) throws SQLException;
+
+    /**
+     * Get a page of all "final" items (archived or withdrawn), ordered as
+     * {@link #findByCollectionAfter(Context, Collection, boolean, Date, UUID, int)}.
+     *
+     * @param context DSpace context object
+     * @param byLastModified order by last modification date instead of identifier
+     * @param lastModified last modification date of the last item of the previous page (byLastModified only)
+     * @param after identifier of the last item of the previous page, or null for the first page
+     * @param limit maximum number of items to return
+     * @return the ordered list of items
+     * @throws SQLException if database error
+     */
+    public List<Item> findAllUnfilteredAfter(Context context, boolean byLastModified, Date lastModified,
+            UUID after, int limit) throws SQLException;
+
     /**
      * Find all the items in the archive by a given submitter. The order is
      * indeterminate. Only items with the "in archive" flag set are included.
@@ -126,6 +181,23 @@ public interface ItemService extends DSpaceObjectService<Item>, DSpaceObjectLega
      */
     public Iterator<Item> findByCollection(Context context, Collection collection, Integer limit, Integer offset) throws SQLException;
 
+    /**
+     * Get a page of the items in this collection, ordered by identifier or by last modification
+     * date (then identifier), starting after the last item of the previous page. Only items with
+     * the "in archive" flag set are included. The cost of a page does not depend on its position.
+     *
+     * @param context DSpace context object
+     * @param collection Collection (parent)
+     * @param byLastModified order by last modification date instead of identifier
+     * @param lastModified last modification date of the last item of the previous page (byLastModified only)
+     * @param after identifier of the last item of the previous page, or null for the first page
+     * @param limit maximum number of items to return
+     * @return the ordered list of items
+     * @throws SQLException if database error
+     */
+    public List<Item> findByCollectionAfter(Context context, Collection collection, boolean byLastModified,
+            Date lastModified, UUID after, int limit) throws SQLException;
+
     /**
      * Get all Items installed or withdrawn, discoverable, and modified since a Date.
      * @param context context
@@ -136,6 +208,20 @@ public interface ItemService extends DSpaceObjectService<Item>, DSpaceObjectLega
     public Iterator<Item> findInArchiveOrWithdrawnDiscoverableModifiedSince(Context context, Date since)
             throws SQLException;
 
+    /**
+     * Get the identifiers of all Items installed or withdrawn, discoverable, and modified since a Date,
+     * ordered by identifier and starting after the given identifier. Allows callers to walk these
+     * items in bounded pages.
+     * @param context context
+     * @param since earliest interesting last-modified date, or null for no date test.
+     * @param after only identifiers greater than this one are returned, or null to start at the beginning
+     * @param limit maximum number of identifiers to return
+     * @return the ordered list of item identifiers
+     * @throws SQLException if database error
+     */
+    public List<UUID> findInArchiveOrWithdrawnDiscoverableModifiedSinceIds(Context context, Date since,
+            UUID after, int limit) throws SQLException;
+
     /**
      * Get all the items in this collection. The order is indeterminate.
      *
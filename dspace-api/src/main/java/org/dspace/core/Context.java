@@ -8,8 +8,10 @@
 package org.dspace.core;
 
 import org.apache.log4j.Logger;
+import org.dspace.authorize.AuthorizationDecisionCache;
 import org.dspace.eperson.EPerson;
 import org.dspace.eperson.Group;
+import org.dspace.eperson.GroupMembershipIndex;
 import org.dspace.eperson.factory.EPersonServiceFactory;
 import org.dspace.event.Dispatcher;
 import org.dspace.event.Event;
@@ -76,9 +78,18 @@ public class Context
     /** Event dispatcher name */
     private String dispName = null;
 
+    /** Tasks to run once the current transaction is committed */
+    private List<Runnable> afterCommitTasks = null;
+
     /** options */
     private short options = 0;
 
+    /** Authorization decisions made in this context */
+    private AuthorizationDecisionCache authorizationCache;
+
+    /** Group hierarchy as modified by the current transaction, until it is committed */
+    private GroupMembershipIndex groupMembershipIndex;
+
     protected EventService eventService;
 
     private DBConnection dbConnection;
@@ -144,6 +155,8 @@ public class Context
 
         specialGroups = new ArrayList<>();
 
+        authorizationCache = new AuthorizationDecisionCache();
+
         authStateChangeHistory = new Stack<Boolean>();
         authStateClassCallHistory = new Stack<String>();
     }
@@ -178,6 +191,7 @@ public class Context
     public void setCurrentUser(EPerson user)
     {
         currentUser = user;
+        authorizationCache.clear();
     }
 
     /**
@@ -398,12 +412,52 @@ public class Context
                 log.debug("Cache size on commit is " + getCacheSize());
             }
 
+            // tasks registered while events were dispatched only run if the commit succeeds
+            List<Runnable> tasks = afterCommitTasks;
+            afterCommitTasks = null;
             if(dbConnection != null)
             {
                 //Commit our changes
                 dbConnection.commit();
+                groupMembershipIndex = null;
                 reloadContextBoundEntities();
             }
+            runAfterCommitTasks(tasks);
+        }
+    }
+
+    /**
+     * Run a task once the current transaction has been committed, for
+     * instance to hand events over to consumers which must only see committed
+     * changes. The task is dropped if the transaction is aborted or its commit
+     * fails.
+     *
+     * @param task the task to run after the next commit
+     */
+    public void runAfterCommit(Runnable task)
+    {
+        if (afterCommitTasks == null)
+        {
+            afterCommitTasks = new ArrayList<Runnable>();
+        }
+        afterCommitTasks.add(task);
+    }
+
+    private void runAfterCommitTasks(List<Runnable> tasks)
+    {
+        if (tasks != null)
+        {
+            for (Runnable task : tasks)
+            {
+                try
+                {
+                    task.run();
+                }
+                catch (RuntimeException e)
+                {
+                    log.error("Error running a task after commit", e);
+                }
+            }
         }
     }
 
@@ -467,6 +521,9 @@ public class Context
         }
 
         events.add(event);
+
+        // content and group membership changes may change authorization decisions
+        authorizationCache.clear();
     }
 
     /**
@@ -541,6 +598,8 @@ public class Context
                 log.error("Exception aborting context", ex);
             }
             events = null;
+            afterCommitTasks = null;
+            groupMembershipIndex = null;
         }
     }
 
@@ -572,6 +631,7 @@ public class Context
     public void setSpecialGroup(UUID groupID)
     {
         specialGroups.add(groupID);
+        authorizationCache.clear();
 
         // System.out.println("Added " + groupID);
     }
@@ -611,6 +671,42 @@ public class Context
         return myGroups;
     }
 
+    /**
+     * Get the cache of authorization decisions made in this context. Used by the
+     * authorization system, which is also responsible for clearing it when
+     * resource policies change.
+     *
+     * @return the authorization decision cache
+     */
+    public AuthorizationDecisionCache getAuthorizationCache()
+    {
+        return authorizationCache;
+    }
+
+    /**
+     * Get the group hierarchy as modified by the current transaction. Used by the
+     * group service, so that this context sees its own changes to the hierarchy
+     * before they are committed and shared with other threads.
+     *
+     * @return the group membership index of the transaction, or null if the
+     *         transaction did not modify the group hierarchy
+     */
+    public GroupMembershipIndex getGroupMembershipIndex()
+    {
+        return groupMembershipIndex;
+    }
+
+    /**
+     * Set the group hierarchy as modified by the current transaction. It is
+     * cleared when the transaction is committed or aborted.
+     *
+     * @param groupMembershipIndex the group membership index of the transaction
+     */
+    public void setGroupMembershipIndex(GroupMembershipIndex groupMembershipIndex)
+    {
+        this.groupMembershipIndex = groupMembershipIndex;
+    }
+
     @Override
     protected void finalize() throws Throwable
     {
@@ -0,0 +1,169 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.core;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+
+/**
+ * Limits the rate at which bytes are read, shared by all the threads reading
+ * for a task (such as a checker run or an assetstore migration).
+ * <p>
+ * Readers reserve the bytes they read, and wait until the allowed rate has
+ * caught up with all reservations including their own. Streams are best read through
+ * {@link #wrap(InputStream)}, which reserves each buffer as it is read, so that the reads
+ * are spread evenly instead of coming in bursts. At most one second's worth of
+ * unused bandwidth is saved up, so an idle period does not allow a long burst.
+ */
+public class ThroughputLimiter
+{
+    private static final long NANOS_PER_SECOND = 1000000000L;
+
+    private final long bytesPerSecond;
+
+    /** Time at which all reserved bytes will have been read at the allowed rate, as of {@link System#nanoTime()} */
+    private long nextFree;
+
+    /**
+     * @param bytesPerSecond maximum average number of bytes read per second, 0 or less for no limit
+     */
+    public ThroughputLimiter(long bytesPerSecond)
+    {
+        this.bytesPerSecond = bytesPerSecond;
+        this.nextFree = System.nanoTime() - NANOS_PER_SECOND;
+    }
+
+    /**
+     * Create a limiter from a limit in megabytes per second.
+     *
+     * @param megabytesPerSecond maximum number of megabytes (2^20 bytes) per second, 0 or less for no limit
+     * @return the limiter
+     */
+    public static ThroughputLimiter ofMegabytesPerSecond(double megabytesPerSecond)
+    {
+        return new ThroughputLimiter((long) (megabytesPerSecond * 1024 * 1024));
+    }
+
+    /**
+     * @return true if reads are limited at all
+     */
+    public boolean isLimited()
+    {
+        return 0 < bytesPerSecond;
+    }
+
+    /**
+     * @return maximum number of bytes per second, 0 or less if there is no limit
+     */
+    public long getBytesPerSecond()
+    {
+        return bytesPerSecond;
+    }
+
+    /**
+     * Reserve bytes, waiting as long as needed to stay below the limit.
+     *
+     * @param bytes number of bytes about to be read
+     * @throws InterruptedException if interrupted while waiting
+     */
+    public void acquire(long bytes) throws InterruptedException
+    {
+        long wait = reserve(bytes, System.nanoTime());
+        if (0 < wait)
+        {
+            Thread.sleep(wait / 1000000, (int) (wait % 1000000));
+        }
+    }
+
+    /**
+     * Limit the rate at which a stream is read: each read waits until the bytes
+     * it returned are within the limit.
+     *
+     * @param in the stream to read
+     * @return the limited stream, or the stream itself if there is no limit
+     */
+    public InputStream wrap(InputStream in)
+    {
+        if (!isLimited())
+        {
+            return in;
+        }
+        return new FilterInputStream(in)
+        {
+            @Override
+            public int read() throws IOException
+            {
+                int b = super.read();
+                if (b != -1)
+                {
+                    limit(1);
+                }
+                return b;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException
+            {
+                int read = super.read(b, off, len);
+                if (0 < read)
+                {
+                    limit(read);
+                }
+                return read;
+            }
+
+            @Override
+            public long skip(long n) throws IOException
+            {
+                long skipped = super.skip(n);
+                if (0 < skipped)
+                {
+                    limit(skipped);
+                }
+                return skipped;
+            }
+
+            private void limit(long bytes) throws InterruptedIOException
+            {
+                try
+                {
+                    acquire(bytes);
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while waiting for bandwidth");
+                }
+            }
+        };
+    }
+
+    /**
+     * Reserve bytes at a given time.
+     *
+     * @param bytes number of bytes about to be read
+     * @param now current value of {@link System#nanoTime()}
+     * @return time in nanoseconds the caller has to wait before reading
+     */
+    protected synchronized long reserve(long bytes, long now)
+    {
+        if (!isLimited() || bytes <= 0)
+        {
+            return 0;
+        }
+        // Do not save up more than a second of unused bandwidth
+        if (nextFree < now - NANOS_PER_SECOND)
+        {
+            nextFree = now - NANOS_PER_SECOND;
+        }
+        nextFree += (long) ((double) bytes * NANOS_PER_SECOND / bytesPerSecond);
+        return Math.max(0, nextFree - now);
+    }
+}
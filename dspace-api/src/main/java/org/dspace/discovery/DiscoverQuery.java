@@ -45,6 +45,8 @@ public class DiscoverQuery {
 
     /** Used when you want to search for a specific field value **/
     private List<String> searchFields;
+    /** Return the search fields of the results without loading their objects **/
+    private boolean projection = false;
 
     /** Misc attributes can be implementation dependent **/
     private Map<String, List<String>> properties;
@@ -236,6 +238,22 @@ public class DiscoverQuery {
         return searchFields;
     }
 
+    /**
+     * Sets whether the results are only returned as search documents, holding
+     * the search fields and the type, identifier and handle of each object,
+     * without loading the objects from the database. Hit highlighting is not
+     * returned for such results.
+     * @param projection true to only return the search documents
+     * @see DiscoverResult#getProjectedDocuments()
+     */
+    public void setProjection(boolean projection) {
+        this.projection = projection;
+    }
+
+    public boolean isProjection() {
+        return projection;
+    }
+
     /**
      * Returns the misc search properties
      * @return a map containing the properties
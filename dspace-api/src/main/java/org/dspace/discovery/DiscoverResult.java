@@ -28,10 +28,13 @@ public class DiscoverResult {
     private int searchTime;
     private Map<String, DSpaceObjectHighlightResult> highlightedResults;
     private String spellCheckQuery;
+    /** The search documents of the results, in order, when the query is a projection */
+    private List<SearchDocument> projectedDocuments;
 
 
     public DiscoverResult() {
         dspaceObjects = new ArrayList<DSpaceObject>();
+        projectedDocuments = new ArrayList<SearchDocument>();
         facetResults = new LinkedHashMap<String, List<FacetResult>>();
         searchDocuments = new LinkedHashMap<String, List<SearchDocument>>();
         highlightedResults = new HashMap<String, DSpaceObjectHighlightResult>();
@@ -206,6 +209,20 @@ public class DiscoverResult {
         }
     }
 
+    public void addProjectedDocument(SearchDocument searchDocument){
+        this.projectedDocuments.add(searchDocument);
+    }
+
+    /**
+     * Returns the results of a query which is a projection, in order
+     * @return the search documents, with the search fields and the type,
+     * identifier and handle of the objects
+     * @see DiscoverQuery#setProjection(boolean)
+     */
+    public List<SearchDocument> getProjectedDocuments(){
+        return projectedDocuments;
+    }
+
     /**
      * This class contains values from the fields searched for in DiscoveryQuery.java
      */
@@ -16,8 +16,11 @@ import org.dspace.event.Consumer;
 import org.dspace.event.Event;
 import org.dspace.services.factory.DSpaceServicesFactory;
 
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Class for updating search indices in discovery from content events.
@@ -40,9 +43,13 @@ public class IndexEventConsumer implements Consumer {
 
     IndexingService indexer = DSpaceServicesFactory.getInstance().getServiceManager().getServiceByName(IndexingService.class.getName(),IndexingService.class);
 
+    // hand the changes over to the IndexingQueue instead of indexing them on the calling thread
+    private boolean async = false;
+
     @Override
     public void initialize() throws Exception {
-
+        async = DSpaceServicesFactory.getInstance().getConfigurationService()
+                .getBooleanProperty("discovery.index.async", false);
     }
 
     /**
@@ -157,7 +164,36 @@ public class IndexEventConsumer implements Consumer {
     @Override
     public void end(Context ctx) throws Exception {
 
-        if (objectsToUpdate != null && handlesToDelete != null) {
+        if (async && objectsToUpdate != null && handlesToDelete != null) {
+            // the queue must only see committed changes
+            final List<DSpaceObject> updates = new ArrayList<>();
+            for (DSpaceObject iu : objectsToUpdate) {
+                String hdl = iu.getHandle();
+                if (hdl != null && !handlesToDelete.contains(hdl)) {
+                    updates.add(iu);
+                }
+            }
+            final int[] types = new int[updates.size()];
+            final UUID[] ids = new UUID[updates.size()];
+            for (int i = 0; i < updates.size(); i++) {
+                types[i] = updates.get(i).getType();
+                ids[i] = updates.get(i).getID();
+            }
+            final List<String> deletes = new ArrayList<>(handlesToDelete);
+            ctx.runAfterCommit(new Runnable() {
+                @Override
+                public void run() {
+                    IndexingQueue queue = IndexingQueue.getInstance();
+                    for (int i = 0; i < ids.length; i++) {
+                        queue.queueUpdate(types[i], ids[i]);
+                    }
+                    for (String hdl : deletes) {
+                        queue.queueDelete(hdl);
+                    }
+                }
+            });
+        }
+        else if (objectsToUpdate != null && handlesToDelete != null) {
 
             // update the changed Items not deleted because they were on create list
             for (DSpaceObject iu : objectsToUpdate) {
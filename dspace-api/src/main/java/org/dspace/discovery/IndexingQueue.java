@@ -0,0 +1,408 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.discovery;
+
+import org.apache.log4j.Logger;
+import org.dspace.content.DSpaceObject;
+import org.dspace.content.factory.ContentServiceFactory;
+import org.dspace.content.service.DSpaceObjectService;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+import org.dspace.services.ConfigurationService;
+import org.dspace.services.factory.DSpaceServicesFactory;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * In-memory queue of Discovery index updates, used by the {@link IndexEventConsumer}
+ * when asynchronous indexing is enabled (<code>discovery.index.async = true</code>).
+ * <p>
+ * Objects are queued by type and identifier, deletions by handle. An object that is
+ * queued again while it is still waiting is not added twice: every entry waits
+ * <code>discovery.index.async.delay</code> milliseconds after it was first queued,
+ * so repeated updates to the same object within that window are indexed once.
+ * A single background thread indexes the entries in batches of
+ * <code>discovery.index.async.batch.size</code> and commits Solr once per batch.
+ * <p>
+ * The queue is not persistent. When it is shut down, by the web application
+ * being stopped, the command line launcher finishing or a JVM shutdown hook, the
+ * entries still waiting are indexed at once; those which cannot be indexed are
+ * logged, and will only be picked up by the next <code>index-discovery</code> run.
+ */
+public class IndexingQueue implements Runnable
+{
+    private static final Logger log = Logger.getLogger(IndexingQueue.class);
+
+    private static IndexingQueue instance;
+
+    /** Entries waiting to be indexed, in the order they were first queued */
+    private final LinkedHashMap<String, Entry> pending = new LinkedHashMap<>();
+
+    private final long delay;
+
+    private final int batchSize;
+
+    private long processed = 0;
+
+    private long failed = 0;
+
+    private long lastBatchDuration = 0;
+
+    private Thread worker;
+
+    private Thread shutdownHook;
+
+    private boolean stopped = false;
+
+    protected IndexingQueue(long delay, int batchSize)
+    {
+        this.delay = delay;
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Get the queue of this JVM, starting its worker thread on first use.
+     *
+     * @return the indexing queue
+     */
+    public static synchronized IndexingQueue getInstance()
+    {
+        if (instance == null)
+        {
+            ConfigurationService configurationService = DSpaceServicesFactory.getInstance().getConfigurationService();
+            instance = new IndexingQueue(
+                    configurationService.getLongProperty("discovery.index.async.delay", 5000),
+                    configurationService.getIntProperty("discovery.index.async.batch.size", 50));
+            instance.start();
+        }
+        return instance;
+    }
+
+    /**
+     * Check whether the queue of this JVM was created.
+     *
+     * @return true if asynchronous indexing has been used since startup
+     */
+    public static synchronized boolean isStarted()
+    {
+        return instance != null;
+    }
+
+    /**
+     * Shut the queue of this JVM down, if it was created: its worker thread is
+     * stopped and the entries still waiting are indexed on the calling thread.
+     */
+    public static void shutdown()
+    {
+        IndexingQueue queue;
+        synchronized (IndexingQueue.class)
+        {
+            queue = instance;
+            instance = null;
+        }
+        if (queue != null)
+        {
+            queue.stop();
+        }
+    }
+
+    protected synchronized void start()
+    {
+        worker = new Thread(this, "discovery-indexing-queue");
+        worker.setDaemon(true);
+        worker.start();
+
+        // for the programs which do not shut the queue down themselves
+        shutdownHook = new Thread("discovery-indexing-queue-shutdown")
+        {
+            @Override
+            public void run()
+            {
+                shutdown();
+            }
+        };
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Stop the worker thread once it has indexed its current batch, then index the
+     * entries still waiting.
+     */
+    protected void stop()
+    {
+        synchronized (this)
+        {
+            stopped = true;
+            notifyAll();
+        }
+        try {
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        } catch (IllegalStateException e)
+        {
+            // already shutting down
+        }
+        try {
+            worker.join();
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        List<Entry> remaining;
+        synchronized (this)
+        {
+            remaining = new ArrayList<>(pending.values());
+            pending.clear();
+        }
+        if (!remaining.isEmpty())
+        {
+            log.info("Indexing " + remaining.size() + " queued objects before shutting down");
+        }
+        for (int start = 0; start < remaining.size(); start += batchSize)
+        {
+            List<Entry> batch = remaining.subList(start, Math.min(start + batchSize, remaining.size()));
+            int errors = process(batch);
+            synchronized (this)
+            {
+                processed += batch.size() - errors;
+                failed += errors;
+            }
+        }
+    }
+
+    /**
+     * Queue an Item, Collection or Community for (re)indexing.
+     *
+     * @param type the type of the object to index
+     * @param id the identifier of the object to index
+     */
+    public synchronized void queueUpdate(int type, UUID id)
+    {
+        String key = "u-" + type + "-" + id;
+        if (!pending.containsKey(key))
+        {
+            pending.put(key, new Entry(type, id, null));
+            notifyAll();
+        }
+    }
+
+    /**
+     * Queue the removal of a handle from the index.
+     *
+     * @param handle the handle of the deleted object
+     */
+    public synchronized void queueDelete(String handle)
+    {
+        String key = "d-" + handle;
+        if (!pending.containsKey(key))
+        {
+            pending.put(key, new Entry(-1, null, handle));
+            notifyAll();
+        }
+    }
+
+    /**
+     * @return number of entries waiting to be indexed
+     */
+    public synchronized int size()
+    {
+        return pending.size();
+    }
+
+    /**
+     * @return time in milliseconds the oldest waiting entry has been queued, 0 if the queue is empty
+     */
+    public synchronized long getLag()
+    {
+        if (pending.isEmpty())
+        {
+            return 0;
+        }
+        return System.currentTimeMillis() - pending.values().iterator().next().queued;
+    }
+
+    /**
+     * @return number of entries indexed since startup
+     */
+    public synchronized long getProcessedCount()
+    {
+        return processed;
+    }
+
+    /**
+     * @return number of entries that could not be indexed since startup
+     */
+    public synchronized long getFailedCount()
+    {
+        return failed;
+    }
+
+    /**
+     * @return duration in milliseconds of the last batch
+     */
+    public synchronized long getLastBatchDuration()
+    {
+        return lastBatchDuration;
+    }
+
+    @Override
+    public void run()
+    {
+        while (!Thread.currentThread().isInterrupted())
+        {
+            try {
+                List<Entry> batch = takeBatch();
+                if (batch == null)
+                {
+                    return;
+                }
+                long start = System.currentTimeMillis();
+                int errors = process(batch);
+                synchronized (this)
+                {
+                    processed += batch.size() - errors;
+                    failed += errors;
+                    lastBatchDuration = System.currentTimeMillis() - start;
+                }
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            } catch (Exception e)
+            {
+                log.error("Unexpected error in the discovery indexing queue", e);
+            }
+        }
+    }
+
+    /**
+     * Wait until at least one entry has been queued for longer than the delay, then
+     * remove and return up to one batch of such entries.
+     *
+     * @return the entries to index, or null once the queue is stopped
+     * @throws InterruptedException if the worker was interrupted while waiting
+     */
+    protected synchronized List<Entry> takeBatch() throws InterruptedException
+    {
+        while (true)
+        {
+            if (stopped)
+            {
+                return null;
+            }
+            if (pending.isEmpty())
+            {
+                wait();
+                continue;
+            }
+            long wait = pending.values().iterator().next().queued + delay - System.currentTimeMillis();
+            if (0 < wait)
+            {
+                wait(wait);
+                continue;
+            }
+
+            List<Entry> batch = new ArrayList<>();
+            long now = System.currentTimeMillis();
+            Iterator<Entry> iterator = pending.values().iterator();
+            while (iterator.hasNext() && batch.size() < batchSize)
+            {
+                Entry entry = iterator.next();
+                if (now < entry.queued + delay)
+                {
+                    break;
+                }
+                batch.add(entry);
+                iterator.remove();
+            }
+            return batch;
+        }
+    }
+
+    /**
+     * Index a batch of entries in a Context of its own.
+     *
+     * @param batch the entries to index
+     * @return the number of entries that failed
+     */
+    protected int process(List<Entry> batch)
+    {
+        IndexingService indexer = DSpaceServicesFactory.getInstance().getServiceManager()
+                .getServiceByName(IndexingService.class.getName(), IndexingService.class);
+        int errors = 0;
+        Context context = new Context(Context.READ_ONLY);
+        context.setIgnoreAuthorization(true);
+        try {
+            for (Entry entry : batch)
+            {
+                try {
+                    if (entry.handle != null)
+                    {
+                        indexer.unIndexContent(context, entry.handle, false);
+                    }
+                    else
+                    {
+                        DSpaceObjectService dsoService = ContentServiceFactory.getInstance()
+                                .getDSpaceObjectService(entry.type);
+                        DSpaceObject dso = dsoService.find(context, entry.id);
+                        if (dso != null && dso.getHandle() != null)
+                        {
+                            indexer.indexContent(context, dso, true);
+                        }
+                    }
+                } catch (Exception e)
+                {
+                    errors++;
+                    log.error("Failed while indexing " + entry, e);
+                }
+            }
+            indexer.commit();
+        } catch (SearchServiceException e)
+        {
+            log.error("Failed to commit the discovery index", e);
+        } finally {
+            context.abort();
+        }
+        if (log.isDebugEnabled())
+        {
+            log.debug("Indexed " + batch.size() + " queued objects, " + size() + " remaining");
+        }
+        return errors;
+    }
+
+    /**
+     * A queued index update: an object identified by type and id, or a handle to delete.
+     */
+    protected static class Entry
+    {
+        protected final int type;
+        protected final UUID id;
+        protected final String handle;
+        protected final long queued = System.currentTimeMillis();
+
+        protected Entry(int type, UUID id, String handle)
+        {
+            this.type = type;
+            this.id = id;
+            this.handle = handle;
+        }
+
+        @Override
+        public String toString()
+        {
+            if (handle != null)
+            {
+                return "deletion of handle " + handle;
+            }
+            return Constants.typeText[type] + " id=" + id;
+        }
+    }
+}
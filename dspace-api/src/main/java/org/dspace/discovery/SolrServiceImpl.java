@@ -47,6 +47,7 @@ import org.dspace.content.service.ItemService;
 import org.dspace.core.*;
 import org.dspace.discovery.configuration.*;
 import org.dspace.handle.service.HandleService;
+import org.dspace.services.ConfigurationService;
 import org.dspace.services.factory.DSpaceServicesFactory;
 import org.dspace.storage.rdbms.DatabaseUtils;
 import org.dspace.util.MultiFormatDateParser;
@@ -63,6 +64,11 @@ import java.sql.SQLException;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * SolrIndexer contains the methods that index Items and their metadata,
@@ -122,6 +128,18 @@ public class SolrServiceImpl implements SearchService, IndexingService {
      */
     private HttpSolrServer solr = null;
 
+    /**
+     * Documents waiting to be sent to Solr by the current indexing worker, null
+     * when documents should be written immediately.
+     */
+    private final ThreadLocal<List<SolrInputDocument>> documentBuffer = new ThreadLocal<>();
+
+    /**
+     * Full text extraction requests waiting to be sent to Solr by the current
+     * indexing worker, without a commit.
+     */
+    private final ThreadLocal<List<ContentStreamUpdateRequest>> extractBuffer = new ThreadLocal<>();
+
 
     protected SolrServiceImpl()
     {
@@ -212,10 +230,10 @@ public class SolrServiceImpl implements SearchService, IndexingService {
                         /**
                          * If the item is in the repository now, add it to the index
                          */
-                        if (requiresIndexing(handle, ((Item) dso).getLastModified())
-                                || force)
+                        if (force
+                                || requiresIndexing(handle, ((Item) dso).getLastModified()))
                         {
-                            unIndexContent(context, handle);
+                            // the new document replaces the old one, which has the same unique id
                             buildDocument(context, (Item) dso);
                         }
                     } else {
@@ -390,6 +408,14 @@ public class SolrServiceImpl implements SearchService, IndexingService {
     @Override
     public void updateIndex(Context context, boolean force)
     {
+        int threads = DSpaceServicesFactory.getInstance().getConfigurationService()
+                .getIntProperty("discovery.index.threads", 1);
+        if (threads > 1)
+        {
+            updateIndexParallel(context, force, threads);
+            return;
+        }
+
         try {
             Iterator<Item> items = null;
             int itemCount = 0;
@@ -426,6 +452,224 @@ public class SolrServiceImpl implements SearchService, IndexingService {
         }
     }
 
+    /**
+     * Partitioned variant of {@link #updateIndex(Context, boolean)}. The item table is
+     * split into ranges of item identifiers, each range is indexed by one of
+     * <code>threads</code> workers using its own Context, and the resulting
+     * documents are sent to Solr in batches of
+     * <code>discovery.index.batch.size</code> documents. Collections and
+     * communities are indexed afterwards on the calling thread.
+     *
+     * @param context the dspace context
+     * @param force whether or not to force the reindexing
+     * @param threads number of worker threads
+     */
+    protected void updateIndexParallel(final Context context, final boolean force, int threads)
+    {
+        ConfigurationService configurationService = DSpaceServicesFactory.getInstance().getConfigurationService();
+        final int rangeSize = configurationService.getIntProperty("discovery.index.range.size", 1000);
+        final int batchSize = configurationService.getIntProperty("discovery.index.batch.size", 100);
+        final boolean ignoreAuthorization = context.ignoreAuthorization();
+
+        final AtomicLong indexed = new AtomicLong();
+        final AtomicLong failed = new AtomicLong();
+        final long start = System.currentTimeMillis();
+
+        // Bound the number of ranges waiting for a worker so we never hold more
+        // than a few ranges worth of identifiers in memory
+        final Semaphore pending = new Semaphore(threads * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            UUID last = null;
+            List<UUID> range = itemService.findAllUnfilteredIds(context, null, rangeSize);
+            while (!range.isEmpty())
+            {
+                last = range.get(range.size() - 1);
+                final List<UUID> ids = range;
+                pending.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            indexItemRange(ids, force, ignoreAuthorization, batchSize, indexed, failed);
+                        } finally {
+                            pending.release();
+                        }
+                        logIndexProgress(indexed.get(), failed.get(), start);
+                    }
+                });
+                range = itemService.findAllUnfilteredIds(context, last, rangeSize);
+            }
+
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES))
+            {
+                logIndexProgress(indexed.get(), failed.get(), start);
+            }
+
+            List<Collection> collections = collectionService.findAll(context);
+            for (Collection collection : collections)
+            {
+                indexContent(context, collection, force);
+            }
+
+            List<Community> communities = communityService.findAll(context);
+            for (Community community : communities)
+            {
+                indexContent(context, community, force);
+            }
+
+            if(getSolr() != null)
+            {
+                getSolr().commit();
+            }
+            log.info("Finished indexing: " + indexed.get() + " items indexed, " + failed.get() + " failed, in "
+                    + ((System.currentTimeMillis() - start) / 1000) + "s");
+        } catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            log.error("Interrupted while indexing", e);
+        } catch (Exception e)
+        {
+            log.error(e.getMessage(), e);
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    /**
+     * Index a range of items in a Context of its own, buffering the resulting
+     * documents so they are sent to Solr in batches.
+     *
+     * @param ids the item identifiers to index
+     * @param force whether or not to force the reindexing
+     * @param ignoreAuthorization whether the worker Context should ignore authorization
+     * @param batchSize number of documents to send to Solr per request
+     * @param indexed counter of items processed, once their documents are sent
+     * @param failed counter of items that could not be processed or sent
+     */
+    protected void indexItemRange(List<UUID> ids, boolean force, boolean ignoreAuthorization, int batchSize,
+                                  AtomicLong indexed, AtomicLong failed)
+    {
+        Context rangeContext = new Context(Context.READ_ONLY);
+        rangeContext.setIgnoreAuthorization(ignoreAuthorization);
+        documentBuffer.set(new ArrayList<SolrInputDocument>(batchSize));
+        extractBuffer.set(new ArrayList<ContentStreamUpdateRequest>());
+        // items whose documents wait in the buffers
+        int buffered = 0;
+        try {
+            for (UUID id : ids)
+            {
+                try {
+                    Item item = itemService.find(rangeContext, id);
+                    if (item == null)
+                    {
+                        log.info("Not indexing item " + id + ", which was deleted");
+                        continue;
+                    }
+                    int size = getBufferSize();
+                    indexContent(rangeContext, item, force);
+                    if (getBufferSize() > size)
+                    {
+                        buffered++;
+                    }
+                    else
+                    {
+                        indexed.incrementAndGet();
+                    }
+                } catch (Exception e)
+                {
+                    failed.incrementAndGet();
+                    log.error("Unable to index item " + id, e);
+                }
+                if (getBufferSize() >= batchSize)
+                {
+                    flushDocumentBuffer(buffered, indexed, failed);
+                    buffered = 0;
+                }
+            }
+            flushDocumentBuffer(buffered, indexed, failed);
+        } finally {
+            documentBuffer.remove();
+            extractBuffer.remove();
+            rangeContext.abort();
+        }
+    }
+
+    /**
+     * @return the number of documents and extraction requests buffered by the current thread
+     */
+    protected int getBufferSize()
+    {
+        return documentBuffer.get().size() + extractBuffer.get().size();
+    }
+
+    /**
+     * Send the documents buffered by the current thread to Solr, counting
+     * their items as indexed if they were all sent, and as failed otherwise.
+     *
+     * @param items number of items whose documents are buffered
+     * @param indexed counter of items indexed
+     * @param failed counter of items that could not be indexed
+     */
+    protected void flushDocumentBuffer(int items, AtomicLong indexed, AtomicLong failed)
+    {
+        try {
+            flushDocumentBuffer();
+            indexed.addAndGet(items);
+        } catch (IOException e)
+        {
+            failed.addAndGet(items);
+            log.error("Unable to index a batch of " + items + " items", e);
+        }
+    }
+
+    /**
+     * Log the indexing progress and throughput.
+     *
+     * @param indexed number of items indexed so far
+     * @param failed number of items that failed so far
+     * @param start time the indexing started, in milliseconds
+     */
+    protected void logIndexProgress(long indexed, long failed, long start)
+    {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        log.info("Indexed " + indexed + " items (" + failed + " failed) in " + (elapsed / 1000) + "s, "
+                + String.format("%.1f", indexed * 1000d / elapsed) + " items/s");
+    }
+
+    /**
+     * Send the documents buffered by the current thread to Solr: the full
+     * text extraction requests one by one, the other documents in a single
+     * request. Nothing is committed.
+     *
+     * @throws IOException if any of the documents could not be sent
+     */
+    protected void flushDocumentBuffer() throws IOException
+    {
+        List<ContentStreamUpdateRequest> requests = extractBuffer.get();
+        List<SolrInputDocument> buffer = documentBuffer.get();
+        try {
+            if(getSolr() != null)
+            {
+                for (ContentStreamUpdateRequest req : requests)
+                {
+                    req.process(getSolr());
+                }
+                if (!buffer.isEmpty())
+                {
+                    getSolr().add(buffer);
+                }
+            }
+        } catch (SolrServerException e)
+        {
+            throw new IOException(e.getMessage(), e);
+        } finally {
+            requests.clear();
+            buffer.clear();
+        }
+    }
+
     /**
      * Iterates over all documents in the Lucene index and verifies they are in
      * database, if not, they are removed.
@@ -727,8 +971,20 @@ public class SolrServiceImpl implements SearchService, IndexingService {
                     req.setParam(ExtractingParams.UNKNOWN_FIELD_PREFIX, "attr_");
                     req.setParam(ExtractingParams.MAP_PREFIX + "content", "fulltext");
                     req.setParam(ExtractingParams.EXTRACT_FORMAT, "text");
-                    req.setAction(AbstractUpdateRequest.ACTION.COMMIT, true, true);
-                    req.process(getSolr());
+                    if (extractBuffer.get() != null)
+                    {
+                        // sent by the indexing worker, which commits once at the end
+                        extractBuffer.get().add(req);
+                    }
+                    else
+                    {
+                        req.setAction(AbstractUpdateRequest.ACTION.COMMIT, true, true);
+                        req.process(getSolr());
+                    }
+                }
+                else if (documentBuffer.get() != null)
+                {
+                    documentBuffer.get().add(doc);
                 }
                 else
                 {
@@ -1791,8 +2047,25 @@ public class SolrServiceImpl implements SearchService, IndexingService {
             result.setTotalSearchResults(solrQueryResponse.getResults().getNumFound());
 
             List<String> searchFields = query.getSearchFields();
+            if (query.isProjection())
+            {
+                searchFields = new ArrayList<String>(searchFields);
+                searchFields.add(RESOURCE_TYPE_FIELD);
+                searchFields.add(RESOURCE_ID_FIELD);
+                searchFields.add(HANDLE_FIELD);
+            }
+            else
+            {
+                prefetchItems(context, solrQueryResponse.getResults());
+            }
             for (SolrDocument doc : solrQueryResponse.getResults())
             {
+                if (query.isProjection())
+                {
+                    result.addProjectedDocument(toSearchDocument(doc, searchFields));
+                    continue;
+                }
+
                 DSpaceObject dso = findDSpaceObject(context, doc);
 
                 if(dso != null)
@@ -1803,18 +2076,7 @@ public class SolrServiceImpl implements SearchService, IndexingService {
                     continue;
                 }
 
-                DiscoverResult.SearchDocument resultDoc = new DiscoverResult.SearchDocument();
-                //Add information about our search fields
-                for (String field : searchFields)
-                {
-                    List<String> valuesAsString = new ArrayList<String>();
-                    for (Object o : doc.getFieldValues(field))
-                    {
-                        valuesAsString.add(String.valueOf(o));
-                    }
-                    resultDoc.addSearchField(field, valuesAsString.toArray(new String[valuesAsString.size()]));
-                }
-                result.addSearchDocument(dso, resultDoc);
+                result.addSearchDocument(dso, toSearchDocument(doc, searchFields));
 
                 if(solrQueryResponse.getHighlighting() != null)
                 {
@@ -1916,6 +2178,54 @@ public class SolrServiceImpl implements SearchService, IndexingService {
         return result;
     }
 
+    protected DiscoverResult.SearchDocument toSearchDocument(SolrDocument doc, List<String> searchFields)
+    {
+        DiscoverResult.SearchDocument resultDoc = new DiscoverResult.SearchDocument();
+        //Add information about our search fields
+        for (String field : searchFields)
+        {
+            List<String> valuesAsString = new ArrayList<String>();
+            java.util.Collection<Object> values = doc.getFieldValues(field);
+            if (values != null)
+            {
+                for (Object o : values)
+                {
+                    valuesAsString.add(String.valueOf(o));
+                }
+            }
+            resultDoc.addSearchField(field, valuesAsString.toArray(new String[valuesAsString.size()]));
+        }
+        return resultDoc;
+    }
+
+    /**
+     * Load the items of a page of results with their metadata, handles and
+     * bundles in a few queries, so that finding them one by one with
+     * {@link #findDSpaceObject(Context, SolrDocument)} and displaying them
+     * does not go to the database for each result.
+     *
+     * @param context The relevant DSpace Context.
+     * @param docs the results
+     * @throws SQLException if database error
+     */
+    protected void prefetchItems(Context context, List<SolrDocument> docs) throws SQLException
+    {
+        List<UUID> ids = new ArrayList<UUID>();
+        for (SolrDocument doc : docs)
+        {
+            Integer type = (Integer) doc.getFirstValue(RESOURCE_TYPE_FIELD);
+            String id = (String) doc.getFirstValue(RESOURCE_ID_FIELD);
+            if (type != null && type == Constants.ITEM && id != null)
+            {
+                ids.add(UUID.fromString(id));
+            }
+        }
+        if (ids.size() > 1)
+        {
+            itemService.findByIdsWithMetadata(context, ids);
+        }
+    }
+
     protected DSpaceObject findDSpaceObject(Context context, SolrDocument doc) throws SQLException {
 
         Integer type = (Integer) doc.getFirstValue(RESOURCE_TYPE_FIELD);
@@ -2115,6 +2425,7 @@ public class SolrServiceImpl implements SearchService, IndexingService {
             if(mltResults != null && mltResults.get(item.getType() + "-" + item.getID()) != null)
             {
                 SolrDocumentList relatedDocs = (SolrDocumentList) mltResults.get(item.getType() + "-" + item.getID());
+                prefetchItems(context, relatedDocs);
                 for (Object relatedDoc : relatedDocs)
                 {
                     SolrDocument relatedDocument = (SolrDocument) relatedDoc;
@@ -0,0 +1,214 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.eperson;
+
+import org.apache.commons.lang3.tuple.Pair;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+/**
+ * Immutable, in-memory transitive closure of the group hierarchy (the group2group table).
+ * <p>
+ * Every group taking part in the hierarchy gets a position; for each position the index keeps
+ * the sorted positions of all groups that contain it, directly or through other groups.
+ * This allows group membership to be resolved without querying the group2groupcache table.
+ * Groups that are not part of any group-to-group relation have no ancestors and are not stored.
+ */
+public class GroupMembershipIndex
+{
+    private static final int[] NONE = new int[0];
+
+    /** Group identifiers, by position */
+    private final UUID[] groups;
+
+    /** Position of each group */
+    private final Map<UUID, Integer> positions;
+
+    /** Sorted positions of all ancestors of each group, by position */
+    private final int[][] ancestors;
+
+    /** Time this index was built, in milliseconds */
+    private final long created;
+
+    protected GroupMembershipIndex(UUID[] groups, Map<UUID, Integer> positions, int[][] ancestors)
+    {
+        this.groups = groups;
+        this.positions = positions;
+        this.ancestors = ancestors;
+        this.created = System.currentTimeMillis();
+    }
+
+    /**
+     * Build the index from the direct parent/child relations between groups.
+     *
+     * @param relations pairs of (parent, child) group identifiers, as returned by
+     *                  {@link org.dspace.eperson.dao.GroupDAO#getGroup2GroupResults}
+     * @return the index
+     */
+    public static GroupMembershipIndex build(List<Pair<UUID, UUID>> relations)
+    {
+        Map<UUID, Integer> positions = new HashMap<>();
+        List<UUID> groups = new ArrayList<>();
+        for (Pair<UUID, UUID> relation : relations)
+        {
+            for (UUID group : Arrays.asList(relation.getLeft(), relation.getRight()))
+            {
+                if (!positions.containsKey(group))
+                {
+                    positions.put(group, groups.size());
+                    groups.add(group);
+                }
+            }
+        }
+
+        int size = groups.size();
+        List<List<Integer>> parents = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+        {
+            parents.add(new ArrayList<Integer>(2));
+        }
+        for (Pair<UUID, UUID> relation : relations)
+        {
+            parents.get(positions.get(relation.getRight())).add(positions.get(relation.getLeft()));
+        }
+
+        int[][] ancestors = new int[size][];
+        boolean[] visiting = new boolean[size];
+        for (int i = 0; i < size; i++)
+        {
+            computeAncestors(i, parents, ancestors, visiting);
+        }
+
+        return new GroupMembershipIndex(groups.toArray(new UUID[size]), positions, ancestors);
+    }
+
+    /**
+     * Compute (and memoize) the ancestors of a group from those of its parents.
+     * A cycle in the hierarchy is broken where it is detected.
+     */
+    private static int[] computeAncestors(int group, List<List<Integer>> parents, int[][] ancestors,
+                                          boolean[] visiting)
+    {
+        if (ancestors[group] != null)
+        {
+            return ancestors[group];
+        }
+        if (visiting[group])
+        {
+            return NONE;
+        }
+        visiting[group] = true;
+
+        Set<Integer> result = new HashSet<>();
+        for (int parent : parents.get(group))
+        {
+            result.add(parent);
+            for (int ancestor : computeAncestors(parent, parents, ancestors, visiting))
+            {
+                result.add(ancestor);
+            }
+        }
+        result.remove(group);
+
+        int[] sorted = new int[result.size()];
+        int i = 0;
+        for (int ancestor : result)
+        {
+            sorted[i++] = ancestor;
+        }
+        Arrays.sort(sorted);
+
+        visiting[group] = false;
+        ancestors[group] = sorted;
+        return sorted;
+    }
+
+    /**
+     * Check whether any of the given groups is, or is contained in, the target group.
+     *
+     * @param memberGroups identifiers of the groups to check
+     * @param target identifier of the target group
+     * @return true if the target group contains one of the given groups
+     */
+    public boolean isMember(Collection<UUID> memberGroups, UUID target)
+    {
+        Integer targetPosition = positions.get(target);
+        for (UUID group : memberGroups)
+        {
+            if (group.equals(target))
+            {
+                return true;
+            }
+            Integer position = positions.get(group);
+            if (targetPosition != null && position != null
+                    && Arrays.binarySearch(ancestors[position], targetPosition) >= 0)
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the given groups together with all groups that contain them.
+     *
+     * @param memberGroups identifiers of the groups
+     * @return identifiers of the given groups and all of their ancestors
+     */
+    public Set<UUID> getAncestors(Collection<UUID> memberGroups)
+    {
+        Set<UUID> result = new HashSet<>(memberGroups);
+        for (UUID group : memberGroups)
+        {
+            Integer position = positions.get(group);
+            if (position != null)
+            {
+                for (int ancestor : ancestors[position])
+                {
+                    result.add(groups[ancestor]);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Get all (ancestor, descendant) pairs of the hierarchy, i.e. the expected
+     * content of the group2groupcache table.
+     *
+     * @return set of (parent, child) pairs
+     */
+    public Set<Pair<UUID, UUID>> getClosure()
+    {
+        Set<Pair<UUID, UUID>> closure = new HashSet<>();
+        for (int i = 0; i < groups.length; i++)
+        {
+            for (int ancestor : ancestors[i])
+            {
+                closure.add(Pair.of(groups[ancestor], groups[i]));
+            }
+        }
+        return closure;
+    }
+
+    /**
+     * @return time this index was built, in milliseconds
+     */
+    public long getCreated()
+    {
+        return created;
+    }
+}
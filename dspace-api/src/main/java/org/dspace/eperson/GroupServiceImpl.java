@@ -27,6 +27,7 @@ import org.dspace.eperson.factory.EPersonServiceFactory;
 import org.dspace.eperson.service.EPersonService;
 import org.dspace.eperson.service.GroupService;
 import org.dspace.event.Event;
+import org.dspace.services.ConfigurationService;
 import org.dspace.util.UUIDUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -34,6 +35,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Service implementation for the Group object.
@@ -64,6 +66,20 @@ public class GroupServiceImpl extends DSpaceObjectServiceImpl<Group> implements
     @Autowired(required = true)
     protected AuthorizeService authorizeService;
 
+    @Autowired(required = true)
+    protected ConfigurationService configurationService;
+
+    /**
+     * In-memory closure of the committed group hierarchy, shared by all threads. Reloaded as
+     * a whole once a change to the hierarchy is committed in this JVM, and once it is
+     * older than "eperson.group.membership-index.ttl" seconds to pick up changes made by other
+     * JVMs. A transaction which changed the hierarchy uses its own index until it is committed.
+     */
+    protected volatile GroupMembershipIndex membershipIndex;
+
+    /** Held by the thread reloading the shared index */
+    protected final ReentrantLock membershipIndexLock = new ReentrantLock();
+
     protected GroupServiceImpl()
     {
         super();
@@ -158,45 +174,81 @@ public class GroupServiceImpl extends DSpaceObjectServiceImpl<Group> implements
 
     @Override
     public boolean isMember(Context context, Group group) throws SQLException {
-        return isMember(context, group.getName());
-    }
-
-    @Override
-    public boolean isMember(final Context context, final String groupName) throws SQLException {
         // special, everyone is member of group 0 (anonymous)
-        if (StringUtils.equals(groupName, Group.ANONYMOUS))
+        if (StringUtils.equals(group.getName(), Group.ANONYMOUS))
         {
             return true;
         } else if(context.getCurrentUser() != null) {
             EPerson currentUser = context.getCurrentUser();
+            GroupMembershipIndex index = getMembershipIndex(context);
 
             //First check the special groups
             List<Group> specialGroups = context.getSpecialGroups();
             if(CollectionUtils.isNotEmpty(specialGroups)) {
                 for (Group specialGroup : specialGroups)
                 {
-                    //Check if the current special group is the one we are looking for OR retrieve all groups & make a check here.
-                    if(StringUtils.equals(specialGroup.getName(), groupName) || allMemberGroups(context, currentUser).contains(findByName(context, groupName)))
+                    if(StringUtils.equals(specialGroup.getName(), group.getName()))
                     {
                         return true;
                     }
                 }
+                //Check the groups containing the special groups, the anonymous group and the eperson's own groups
+                if(index.isMember(getMemberGroupIds(context, currentUser), group.getID()))
+                {
+                    return true;
+                }
             }
             //lookup eperson in normal groups and subgroups
-            return epersonInGroup(context, groupName, currentUser);
+            List<UUID> directGroups = new ArrayList<>();
+            for (Group directGroup : currentUser.getGroups())
+            {
+                directGroups.add(directGroup.getID());
+            }
+            return index.isMember(directGroups, group.getID());
         } else {
             return false;
         }
     }
 
+    @Override
+    public boolean isMember(final Context context, final String groupName) throws SQLException {
+        // special, everyone is member of group 0 (anonymous)
+        if (StringUtils.equals(groupName, Group.ANONYMOUS))
+        {
+            return true;
+        }
+        Group group = findByName(context, groupName);
+        return group != null && isMember(context, group);
+    }
+
     @Override
     public List<Group> allMemberGroups(Context context, EPerson ePerson) throws SQLException {
+        List<Group> groups = new ArrayList<>();
+        for (UUID groupId : getMembershipIndex(context).getAncestors(getMemberGroupIds(context, ePerson)))
+        {
+            Group group = find(context, groupId);
+            if (group != null)
+            {
+                groups.add(group);
+            }
+        }
+        return groups;
+    }
+
+    /**
+     * Get the identifiers of the groups an eperson is a direct member of, including the
+     * special groups of the current user and the anonymous group.
+     *
+     * @param context The relevant DSpace Context.
+     * @param ePerson the eperson, may be null
+     * @return identifiers of the groups
+     * @throws SQLException if database error
+     */
+    protected Set<UUID> getMemberGroupIds(Context context, EPerson ePerson) throws SQLException {
         Set<Group> groups = new HashSet<>();
 
         if (ePerson != null)
         {
-            // two queries - first to get groups eperson is a member of
-            // second query gets parent groups for groups eperson is a member of
             groups.addAll(groupDAO.findByEPerson(context, ePerson));
         }
         // Also need to get all "Special Groups" user is a member of!
@@ -216,16 +268,73 @@ public class GroupServiceImpl extends DSpaceObjectServiceImpl<Group> implements
         // all the users are members of the anonymous group
         groups.add(findByName(context, Group.ANONYMOUS));
 
+        Set<UUID> groupIds = new HashSet<>();
+        for (Group group : groups)
+        {
+            if (group != null)
+            {
+                groupIds.add(group.getID());
+            }
+        }
+        return groupIds;
+    }
 
-        List<Group2GroupCache> groupCache = group2GroupCacheDAO.findByChildren(context, groups);
-        // now we have all owning groups, also grab all parents of owning groups
-        // yes, I know this could have been done as one big query and a union,
-        // but doing the Oracle port taught me to keep to simple SQL!
-        for (Group2GroupCache group2GroupCache : groupCache) {
-            groups.add(group2GroupCache.getParent());
+    /**
+     * Get the in-memory closure of the group hierarchy: the one of the current transaction
+     * if it changed the hierarchy, or else the shared one, loading it from the group2group
+     * table when it has not been loaded yet or has expired. With a time to live of 0, the
+     * hierarchy is loaded once per transaction and not shared.
+     *
+     * @param context The relevant DSpace Context.
+     * @return the group membership index
+     * @throws SQLException if database error
+     */
+    protected GroupMembershipIndex getMembershipIndex(Context context) throws SQLException {
+        GroupMembershipIndex index = context.getGroupMembershipIndex();
+        if (index != null)
+        {
+            return index;
+        }
+
+        long ttl = configurationService.getLongProperty("eperson.group.membership-index.ttl", 0) * 1000;
+        if (ttl <= 0)
+        {
+            index = GroupMembershipIndex.build(groupDAO.getGroup2GroupResults(context, false));
+            context.setGroupMembershipIndex(index);
+            return index;
         }
 
-        return new ArrayList<>(groups);
+        index = membershipIndex;
+        if (index != null && index.getCreated() + ttl >= System.currentTimeMillis())
+        {
+            return index;
+        }
+        if (index != null)
+        {
+            // expired: a single thread reloads it, the others keep using it meanwhile
+            if (!membershipIndexLock.tryLock())
+            {
+                return index;
+            }
+        }
+        else
+        {
+            membershipIndexLock.lock();
+        }
+        try
+        {
+            index = membershipIndex;
+            if (index == null || index.getCreated() + ttl < System.currentTimeMillis())
+            {
+                index = GroupMembershipIndex.build(groupDAO.getGroup2GroupResults(context, false));
+                membershipIndex = index;
+            }
+            return index;
+        }
+        finally
+        {
+            membershipIndexLock.unlock();
+        }
     }
 
     @Override
@@ -462,74 +571,65 @@ public class GroupServiceImpl extends DSpaceObjectServiceImpl<Group> implements
 
 
 
-    protected boolean epersonInGroup(Context context, String groupName, EPerson ePerson)
-            throws SQLException
-    {
-        return groupDAO.findByNameAndMembership(context, groupName, ePerson) != null;
-    }
-
-
     /**
      * Regenerate the group cache AKA the group2groupcache table in the database -
-     * meant to be called when a group is added or removed from another group
+     * meant to be called when a group is added or removed from another group.
+     * Only the rows that differ from the new closure are deleted or inserted. The
+     * new closure is used by this context until the transaction is committed, when
+     * the shared membership index is reloaded.
      *
      */
     protected void rethinkGroupCache(Context context, boolean flushQueries) throws SQLException {
 
-        Map<UUID, Set<UUID>> parents = new HashMap<>();
-
-        List<Pair<UUID, UUID>> group2groupResults = groupDAO.getGroup2GroupResults(context, flushQueries);
-        for (Pair<UUID, UUID> group2groupResult : group2groupResults) {
-            UUID parent = group2groupResult.getLeft();
-            UUID child = group2groupResult.getRight();
-
-            // if parent doesn't have an entry, create one
-            if (!parents.containsKey(parent)) {
-                Set<UUID> children = new HashSet<>();
-
-                // add child id to the list
-                children.add(child);
-                parents.put(parent, children);
-            } else {
-                // parent has an entry, now add the child to the parent's record
-                // of children
-                Set<UUID> children = parents.get(parent);
-                children.add(child);
-            }
-        }
-
-        // now parents is a hash of all of the IDs of groups that are parents
-        // and each hash entry is a hash of all of the IDs of children of those
-        // parent groups
-        // so now to establish all parent,child relationships we can iterate
-        // through the parents hash
-        for (Map.Entry<UUID, Set<UUID>> parent : parents.entrySet()) {
-            Set<UUID> myChildren = getChildren(parents, parent.getKey());
-            parent.getValue().addAll(myChildren);
-        }
+        GroupMembershipIndex index = GroupMembershipIndex.build(groupDAO.getGroup2GroupResults(context, flushQueries));
 
-        // empty out group2groupcache table
-        group2GroupCacheDAO.deleteAll(context);
+        Set<Pair<UUID, UUID>> closure = index.getClosure();
+        Set<Pair<UUID, UUID>> existing = new HashSet<>(group2GroupCacheDAO.findAllRelations(context));
 
-        // write out new one
-        for (Map.Entry<UUID, Set<UUID>> parent : parents.entrySet()) {
-            UUID key = parent.getKey();
+        // remove the relations that no longer exist
+        for (Pair<UUID, UUID> relation : existing) {
+            if (!closure.contains(relation)) {
+                group2GroupCacheDAO.deleteRelation(context, relation.getLeft(), relation.getRight());
+            }
+        }
 
-            for (UUID child : parent.getValue()) {
+        // write out the new ones
+        for (Pair<UUID, UUID> relation : closure) {
+            if (existing.contains(relation)) {
+                continue;
+            }
 
-                Group parentGroup = find(context, key);
-                Group childGroup = find(context, child);
+            Group parentGroup = find(context, relation.getLeft());
+            Group childGroup = find(context, relation.getRight());
 
+            if(parentGroup != null && childGroup != null)
+            {
+                Group2GroupCache group2GroupCache = group2GroupCacheDAO.create(context, new Group2GroupCache());
+                group2GroupCache.setParent(parentGroup);
+                group2GroupCache.setChild(childGroup);
+                group2GroupCacheDAO.save(context, group2GroupCache);
+            }
+        }
 
-                if(parentGroup != null && childGroup != null && group2GroupCacheDAO.find(context, parentGroup, childGroup) == null)
+        context.setGroupMembershipIndex(index);
+        context.runAfterCommit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                // reloaded from the committed hierarchy, which may include the changes of other
+                // transactions, after any reload which started before the commit
+                membershipIndexLock.lock();
+                try
                 {
-                    Group2GroupCache group2GroupCache = group2GroupCacheDAO.create(context, new Group2GroupCache());
-                    group2GroupCache.setParent(parentGroup);
-                    group2GroupCache.setChild(childGroup);
-                    group2GroupCacheDAO.save(context, group2GroupCache);
+                    membershipIndex = null;
+                }
+                finally
+                {
+                    membershipIndexLock.unlock();
                 }
             }
-        }
+        });
     }
 
     @Override
@@ -7,6 +7,7 @@
  */
 package org.dspace.eperson.dao;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.dspace.core.Context;
 import org.dspace.core.GenericDAO;
 import org.dspace.eperson.Group;
@@ -15,6 +16,7 @@ import org.dspace.eperson.Group2GroupCache;
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Database Access Object interface class for the Group2GroupCache object.
@@ -32,4 +34,23 @@ public interface Group2GroupCacheDAO extends GenericDAO<Group2GroupCache> {
     public Group2GroupCache find(Context context, Group parent, Group child) throws SQLException;
 
     public void deleteAll(Context context) throws SQLException;
+
+    /**
+     * Get all cached (parent, child) relations as identifier pairs, without loading the groups.
+     *
+     * @param context The relevant DSpace Context.
+     * @return list of (parent, child) identifier pairs
+     * @throws SQLException if database error
+     */
+    public List<Pair<UUID, UUID>> findAllRelations(Context context) throws SQLException;
+
+    /**
+     * Remove a (parent, child) relation from the cache.
+     *
+     * @param context The relevant DSpace Context.
+     * @param parent identifier of the parent group
+     * @param child identifier of the child group
+     * @throws SQLException if database error
+     */
+    public void deleteRelation(Context context, UUID parent, UUID child) throws SQLException;
 }
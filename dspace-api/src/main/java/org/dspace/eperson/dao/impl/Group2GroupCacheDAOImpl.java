@@ -7,18 +7,21 @@
  */
 package org.dspace.eperson.dao.impl;
 
+import org.apache.commons.lang3.tuple.Pair;
 import org.dspace.core.Context;
 import org.dspace.core.AbstractHibernateDAO;
 import org.dspace.eperson.Group;
 import org.dspace.eperson.Group2GroupCache;
 import org.dspace.eperson.dao.Group2GroupCacheDAO;
 import org.hibernate.Criteria;
+import org.hibernate.Query;
 import org.hibernate.criterion.Disjunction;
 import org.hibernate.criterion.Restrictions;
 
 import java.sql.SQLException;
 import java.util.List;
 import java.util.Set;
+import java.util.UUID;
 
 /**
  * Hibernate implementation of the Database Access Object interface class for the Group2GroupCache object.
@@ -72,4 +75,22 @@ public class Group2GroupCacheDAOImpl extends AbstractHibernateDAO<Group2GroupCac
     public void deleteAll(Context context) throws SQLException {
         createQuery(context, "delete from Group2GroupCache").executeUpdate();
     }
+
+    @Override
+    public List<Pair<UUID, UUID>> findAllRelations(Context context) throws SQLException {
+        Query query = createQuery(context, "SELECT new org.apache.commons.lang3.tuple.ImmutablePair(gc.parent.id, gc.child.id) " +
+                "FROM Group2GroupCache gc");
+
+        @SuppressWarnings("unchecked")
+        List<Pair<UUID, UUID>> results = query.list();
+        return results;
+    }
+
+    @Override
+    public void deleteRelation(Context context, UUID parent, UUID child) throws SQLException {
+        Query query = createQuery(context, "delete from Group2GroupCache where parent.id = :parent and child.id = :child");
+        query.setParameter("parent", parent);
+        query.setParameter("child", child);
+        query.executeUpdate();
+    }
 }
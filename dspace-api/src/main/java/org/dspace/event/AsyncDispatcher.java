@@ -0,0 +1,492 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.event;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.dspace.core.ConfigurationManager;
+import org.dspace.core.Context;
+
+/**
+ * AsyncDispatcher delivers events like the {@link BasicDispatcher}, except to
+ * the consumers configured with <code>event.consumer.&lt;name&gt;.async = true</code>.
+ * Those consumers are sent the events once the transaction is committed, on
+ * background threads, so that they neither delay nor affect the transaction.
+ * <p>
+ * The events are handed over to a fixed number of threads, each with its own
+ * instance of the consumers and a bounded queue: the events of an object always
+ * go to the same thread, so that they are consumed in order. An event is routed
+ * by its object when it has one (the item added to or removed from a collection),
+ * by its subject otherwise, so the events of a container are only ordered with
+ * each other when they do not concern one of its members. Each batch of
+ * events is consumed in a new context, which is committed after the consumer's
+ * end(). A batch that fails is retried after a delay which doubles at each
+ * attempt; when all attempts failed, its events are written to the
+ * <code>org.dspace.event.deadletter</code> log. The threads are configured with
+ * <ul>
+ * <li><code>event.dispatcher.&lt;name&gt;.threads</code> (default 2)</li>
+ * <li><code>event.dispatcher.&lt;name&gt;.queue</code> batches waiting per
+ * thread, before committing transactions wait (default 1000)</li>
+ * <li><code>event.dispatcher.&lt;name&gt;.retries</code> (default 3)</li>
+ * <li><code>event.dispatcher.&lt;name&gt;.retry.delay</code> milliseconds
+ * before the first retry (default 1000)</li>
+ * <li><code>event.dispatcher.&lt;name&gt;.shutdown.timeout</code> milliseconds
+ * given to the threads to consume the waiting events on shutdown (default 60000)</li>
+ * </ul>
+ * The threads are shut down by {@link #shutdown()}, when the web application
+ * is stopped, the command line launcher finishes, or from a JVM shutdown hook:
+ * the events still waiting are consumed until the shutdown timeout, and those which
+ * could not be are written to the dead letter log.
+ */
+public class AsyncDispatcher extends BasicDispatcher
+{
+    /** log4j category */
+    private static Logger log = Logger.getLogger(AsyncDispatcher.class);
+
+    /** log of the events which could not be consumed */
+    private static Logger deadLetterLog = Logger.getLogger("org.dspace.event.deadletter");
+
+    /** Threads of each dispatcher, shared by its pooled instances */
+    private static final Map<String, Lane[]> lanesByDispatcher = new HashMap<String, Lane[]>();
+
+    /** Shuts the threads down when the JVM stops, while there are any */
+    private static Thread shutdownHook = null;
+
+    /** Consumers which are sent the events after commit */
+    protected Map<String, ConsumerProfile> asyncConsumers = new LinkedHashMap<String, ConsumerProfile>();
+
+    public AsyncDispatcher(String name)
+    {
+        super(name);
+    }
+
+    @Override
+    public void addConsumerProfile(ConsumerProfile cp)
+            throws IllegalArgumentException
+    {
+        if (!cp.isAsync())
+        {
+            super.addConsumerProfile(cp);
+            return;
+        }
+        if (consumers.containsKey(cp.getName()) || asyncConsumers.containsKey(cp.getName()))
+        {
+            throw new IllegalArgumentException(
+                    "This dispatcher already has a consumer named \""
+                            + cp.getName() + "\"");
+        }
+        asyncConsumers.put(cp.getName(), cp);
+    }
+
+    @Override
+    protected boolean hasConsumers()
+    {
+        return super.hasConsumers() || !asyncConsumers.isEmpty();
+    }
+
+    @Override
+    protected void dispatch(Context ctx, List<Event> events)
+    {
+        super.dispatch(ctx, events);
+
+        if (asyncConsumers.isEmpty())
+        {
+            return;
+        }
+        final Lane[] lanes = getLanes(name);
+        final List<Batch> batches = new ArrayList<Batch>();
+        for (ConsumerProfile cp : asyncConsumers.values())
+        {
+            Map<Event, Event> coalesced = Collections.emptyMap();
+            if (cp.getCoalesceMask() != 0)
+            {
+                coalesced = coalesce(events, cp.getCoalesceMask());
+            }
+
+            // the events of an object all go to the same lane
+            Batch laneBatches[] = new Batch[lanes.length];
+            for (Event event : events)
+            {
+                if (!cp.accepts(event))
+                {
+                    continue;
+                }
+                Event consumed = event;
+                if (coalesced.containsKey(event))
+                {
+                    consumed = coalesced.get(event);
+                    if (consumed == null)
+                    {
+                        continue;
+                    }
+                }
+                int lane = laneOf(event, lanes.length);
+                if (laneBatches[lane] == null)
+                {
+                    laneBatches[lane] = new Batch(lanes[lane], cp.getName());
+                    batches.add(laneBatches[lane]);
+                }
+                laneBatches[lane].events.add(consumed);
+            }
+        }
+
+        if (!batches.isEmpty())
+        {
+            ctx.runAfterCommit(new Runnable()
+            {
+                @Override
+                public void run()
+                {
+                    for (Batch batch : batches)
+                    {
+                        batch.lane.submit(batch);
+                    }
+                }
+            });
+        }
+    }
+
+    /**
+     * @return the lane of the object of an event, or of its subject if it has
+     *         no object, among a number of lanes.
+     */
+    protected static int laneOf(Event event, int lanes)
+    {
+        UUID id = event.getObjectID() != null ? event.getObjectID() : event.getSubjectID();
+        int hash = id == null ? 0 : id.hashCode();
+        return (hash & Integer.MAX_VALUE) % lanes;
+    }
+
+    /**
+     * Get the threads of a dispatcher, starting them on first use.
+     *
+     * @param dispatcherName
+     *            the name of the dispatcher
+     * @return the lanes of the dispatcher
+     */
+    protected static synchronized Lane[] getLanes(String dispatcherName)
+    {
+        Lane[] lanes = lanesByDispatcher.get(dispatcherName);
+        if (lanes == null)
+        {
+            String prefix = "event.dispatcher." + dispatcherName;
+            int threads = Math.max(1, ConfigurationManager.getIntProperty(prefix + ".threads", 2));
+            int capacity = Math.max(1, ConfigurationManager.getIntProperty(prefix + ".queue", 1000));
+            int retries = Math.max(0, ConfigurationManager.getIntProperty(prefix + ".retries", 3));
+            long retryDelay = ConfigurationManager.getLongProperty(prefix + ".retry.delay", 1000);
+            long shutdownTimeout = ConfigurationManager.getLongProperty(prefix + ".shutdown.timeout", 60000);
+
+            lanes = new Lane[threads];
+            for (int i = 0; i < threads; i++)
+            {
+                lanes[i] = new Lane(capacity, retries, retryDelay, shutdownTimeout);
+                lanes[i].start("event-dispatcher-" + dispatcherName + "-" + i);
+            }
+            lanesByDispatcher.put(dispatcherName, lanes);
+
+            if (shutdownHook == null)
+            {
+                // for the programs which do not shut the dispatchers down themselves
+                shutdownHook = new Thread("event-dispatcher-shutdown")
+                {
+                    @Override
+                    public void run()
+                    {
+                        shutdown();
+                    }
+                };
+                Runtime.getRuntime().addShutdownHook(shutdownHook);
+            }
+        }
+        return lanes;
+    }
+
+    /**
+     * Stop the threads of all the dispatchers, once they have consumed the
+     * events waiting for them. The threads are started again if events are
+     * dispatched afterwards.
+     */
+    public static void shutdown()
+    {
+        List<Lane> lanes = new ArrayList<Lane>();
+        synchronized (AsyncDispatcher.class)
+        {
+            for (Lane[] dispatcherLanes : lanesByDispatcher.values())
+            {
+                Collections.addAll(lanes, dispatcherLanes);
+            }
+            lanesByDispatcher.clear();
+            if (shutdownHook != null)
+            {
+                try
+                {
+                    Runtime.getRuntime().removeShutdownHook(shutdownHook);
+                }
+                catch (IllegalStateException e)
+                {
+                    // already shutting down
+                }
+                shutdownHook = null;
+            }
+        }
+        // the lanes are all asked to stop before waiting for any of them
+        for (Lane lane : lanes)
+        {
+            lane.stop();
+        }
+        for (Lane lane : lanes)
+        {
+            lane.awaitStop();
+        }
+    }
+
+    /**
+     * Events of one transaction sent to one consumer in one lane.
+     */
+    protected static class Batch
+    {
+        protected final Lane lane;
+
+        protected final String consumerName;
+
+        protected final List<Event> events = new ArrayList<Event>();
+
+        protected Batch(Lane lane, String consumerName)
+        {
+            this.lane = lane;
+            this.consumerName = consumerName;
+        }
+    }
+
+    /**
+     * A thread consuming batches in order, with its own consumer instances.
+     */
+    protected static class Lane implements Runnable
+    {
+        /** Milliseconds the thread waits for a batch before checking whether it is stopping */
+        private static final long POLL_INTERVAL = 100;
+
+        private final BlockingQueue<Batch> queue;
+
+        private final int retries;
+
+        private final long retryDelay;
+
+        private final long shutdownTimeout;
+
+        private Thread thread;
+
+        /** Set once the lane is stopped: the new batches are dead lettered */
+        private volatile boolean stopping = false;
+
+        /** Set once the thread no longer takes batches from the queue */
+        private volatile boolean stopped = false;
+
+        /** Consumers by name, only used by the thread of the lane */
+        private final Map<String, Consumer> consumers = new HashMap<String, Consumer>();
+
+        protected Lane(int capacity, int retries, long retryDelay, long shutdownTimeout)
+        {
+            this.queue = new LinkedBlockingQueue<Batch>(capacity);
+            this.retries = retries;
+            this.retryDelay = retryDelay;
+            this.shutdownTimeout = shutdownTimeout;
+        }
+
+        protected void start(String name)
+        {
+            thread = new Thread(this, name);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        /**
+         * Ask the thread to stop once it has consumed the batches already
+         * queued.
+         */
+        protected void stop()
+        {
+            stopping = true;
+        }
+
+        /**
+         * Wait for the thread to stop, interrupting it after the shutdown
+         * timeout, then dead letter the batches it did not consume.
+         */
+        protected void awaitStop()
+        {
+            try
+            {
+                thread.join(shutdownTimeout);
+                if (thread.isAlive())
+                {
+                    thread.interrupt();
+                    thread.join(1000);
+                }
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+            }
+            List<Batch> remaining = new ArrayList<Batch>();
+            queue.drainTo(remaining);
+            for (Batch batch : remaining)
+            {
+                deadLetter(batch, new IllegalStateException("The dispatcher was shut down"));
+            }
+        }
+
+        /**
+         * Queue a batch, waiting while the queue is full.
+         */
+        protected void submit(Batch batch)
+        {
+            if (stopping)
+            {
+                deadLetter(batch, new IllegalStateException("The dispatcher was shut down"));
+                return;
+            }
+            try
+            {
+                queue.put(batch);
+            }
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                deadLetter(batch, e);
+                return;
+            }
+            // the lane may have stopped, and been drained, while the batch was put:
+            // unless the thread or the drain took it, it is still queued
+            if (stopped && queue.remove(batch))
+            {
+                deadLetter(batch, new IllegalStateException("The dispatcher was shut down"));
+            }
+        }
+
+        @Override
+        public void run()
+        {
+            try
+            {
+                while (!stopping || !queue.isEmpty())
+                {
+                    Batch batch;
+                    try
+                    {
+                        batch = queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    }
+                    catch (InterruptedException e)
+                    {
+                        return;
+                    }
+                    if (batch != null)
+                    {
+                        consume(batch);
+                    }
+                }
+            }
+            finally
+            {
+                stopped = true;
+            }
+        }
+
+        protected void consume(Batch batch)
+        {
+            for (int attempt = 0; ; attempt++)
+            {
+                Context context = null;
+                try
+                {
+                    Consumer consumer = getConsumer(batch.consumerName);
+                    context = new Context();
+                    context.turnOffAuthorisationSystem();
+                    for (Event event : batch.events)
+                    {
+                        consumer.consume(context, event);
+                    }
+                    consumer.end(context);
+                    context.restoreAuthSystemState();
+                    context.complete();
+                    return;
+                }
+                catch (Exception e)
+                {
+                    // the consumer may hold part of the batch: start again with a new one
+                    consumers.remove(batch.consumerName);
+                    if (attempt >= retries)
+                    {
+                        deadLetter(batch, e);
+                        return;
+                    }
+                    long delay = retryDelay << attempt;
+                    log.warn("Consumer(\"" + batch.consumerName + "\") failed on "
+                            + batch.events.size() + " events, retrying in " + delay + " ms: " + e.toString());
+                    try
+                    {
+                        Thread.sleep(delay);
+                    }
+                    catch (InterruptedException ie)
+                    {
+                        Thread.currentThread().interrupt();
+                        deadLetter(batch, e);
+                        return;
+                    }
+                }
+                finally
+                {
+                    if (context != null && context.isValid())
+                    {
+                        context.abort();
+                    }
+                }
+            }
+        }
+
+        protected void deadLetter(Batch batch, Exception cause)
+        {
+            AsyncDispatcher.deadLetter(batch, cause);
+        }
+
+        protected Consumer getConsumer(String name) throws Exception
+        {
+            Consumer consumer = consumers.get(name);
+            if (consumer == null)
+            {
+                consumer = ConsumerProfile.makeConsumerProfile(name).getConsumer();
+                consumer.initialize();
+                consumers.put(name, consumer);
+            }
+            return consumer;
+        }
+    }
+
+    /**
+     * Log the events of a batch which could not be consumed.
+     */
+    protected static void deadLetter(Batch batch, Exception cause)
+    {
+        log.error("Consumer(\"" + batch.consumerName + "\") gave up on "
+                + batch.events.size() + " events, see the dead letter log", cause);
+        for (Event event : batch.events)
+        {
+            deadLetterLog.error(batch.consumerName + " " + event.toString());
+        }
+    }
+}
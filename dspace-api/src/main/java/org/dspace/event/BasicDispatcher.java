@@ -7,8 +7,19 @@
  */
 package org.dspace.event;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
+import org.apache.commons.lang.ObjectUtils;
+import org.apache.commons.lang.StringUtils;
 import org.apache.log4j.Logger;
 import org.dspace.core.Context;
 import org.dspace.core.Utils;
@@ -17,6 +28,10 @@ import org.dspace.core.Utils;
  * BasicDispatcher implements the primary task of a Dispatcher: it delivers a
  * filtered list of events, synchronously, to a configured list of consumers. It
  * may be extended for more elaborate behavior.
+ * <p>
+ * Events of the types configured in <code>event.consumer.&lt;name&gt;.coalesce</code>
+ * are coalesced for that consumer: the events of one type with the same subject
+ * and object are sent to it once, with their details merged.
  * 
  * @version $Revision$
  */
@@ -70,7 +85,7 @@ public class BasicDispatcher extends Dispatcher
     @Override
     public void dispatch(Context ctx)
     {
-        if (!consumers.isEmpty())
+        if (hasConsumers())
         {
 
             if (!ctx.hasEvents())
@@ -91,45 +106,17 @@ public class BasicDispatcher extends Dispatcher
 
             while (ctx.hasEvents())
             {
-                Event event = ctx.pollEvent();
-                event.setDispatcher(getIdentifier());
-                event.setTransactionID(tid);
-
-                if (log.isDebugEnabled())
-                {
-                    log.debug("Iterating over "
-                            + String.valueOf(consumers.values().size())
-                            + " consumers...");
-                }
-
-                for (Iterator ci = consumers.values().iterator(); ci.hasNext();)
+                // Events added by the consumers while these are dispatched
+                // are dispatched in the next round
+                List<Event> events = new ArrayList<Event>();
+                while (ctx.hasEvents())
                 {
-                    ConsumerProfile cp = (ConsumerProfile) ci.next();
-
-                    if (event.pass(cp.getFilters()))
-                    {
-                        if (log.isDebugEnabled())
-                        {
-                            log.debug("Sending event to \"" + cp.getName()
-                                    + "\": " + event.toString());
-                        }
-
-                        try
-                        {
-                            cp.getConsumer().consume(ctx, event);
-
-                            // Record that the event has been consumed by this
-                            // consumer
-                            event.setBitSet(cp.getName());
-                        }
-                        catch (Exception e)
-                        {
-                            log.error("Consumer(\"" + cp.getName()
-                                    + "\").consume threw: " + e.toString(), e);
-                        }
-                    }
-
+                    Event event = ctx.pollEvent();
+                    event.setDispatcher(getIdentifier());
+                    event.setTransactionID(tid);
+                    events.add(event);
                 }
+                dispatch(ctx, events);
             }
 
             // Call end on the consumers that got synchronous events.
@@ -158,4 +145,149 @@ public class BasicDispatcher extends Dispatcher
         }
     }
 
+    /**
+     * @return true if some consumers may be sent events
+     */
+    protected boolean hasConsumers()
+    {
+        return !consumers.isEmpty();
+    }
+
+    /**
+     * Send a round of events to the consumers which accept them, coalesced
+     * for the consumers configured so.
+     * 
+     * @param ctx
+     *            the execution context
+     * @param events
+     *            the events, in order
+     */
+    protected void dispatch(Context ctx, List<Event> events)
+    {
+        Map<String, Map<Event, Event>> coalesced = new HashMap<String, Map<Event, Event>>();
+        for (Iterator ci = consumers.values().iterator(); ci.hasNext();)
+        {
+            ConsumerProfile cp = (ConsumerProfile) ci.next();
+            if (cp.getCoalesceMask() != 0)
+            {
+                coalesced.put(cp.getName(), coalesce(events, cp.getCoalesceMask()));
+            }
+        }
+
+        for (Event event : events)
+        {
+            if (log.isDebugEnabled())
+            {
+                log.debug("Iterating over "
+                        + String.valueOf(consumers.values().size())
+                        + " consumers...");
+            }
+
+            for (Iterator ci = consumers.values().iterator(); ci.hasNext();)
+            {
+                ConsumerProfile cp = (ConsumerProfile) ci.next();
+
+                if (cp.accepts(event))
+                {
+                    Event consumed = event;
+                    Map<Event, Event> merged = coalesced.get(cp.getName());
+                    if (merged != null && merged.containsKey(event))
+                    {
+                        consumed = merged.get(event);
+                        if (consumed == null)
+                        {
+                            if (log.isDebugEnabled())
+                            {
+                                log.debug("Coalesced event for \"" + cp.getName()
+                                        + "\": " + event.toString());
+                            }
+                            continue;
+                        }
+                    }
+
+                    if (log.isDebugEnabled())
+                    {
+                        log.debug("Sending event to \"" + cp.getName()
+                                + "\": " + consumed.toString());
+                    }
+
+                    try
+                    {
+                        cp.getConsumer().consume(ctx, consumed);
+
+                        // Record that the event has been consumed by this
+                        // consumer
+                        event.setBitSet(cp.getName());
+                    }
+                    catch (Exception e)
+                    {
+                        log.error("Consumer(\"" + cp.getName()
+                                + "\").consume threw: " + e.toString(), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Coalesce the events of the given types which have the same type, subject
+     * and object. The first event of each group stands for the group, with the
+     * distinct details of its events separated by commas; the other events of
+     * the group are left out.
+     * 
+     * @param events
+     *            the events, in order
+     * @param eventMask
+     *            the event types to coalesce
+     * @return for each coalesced event, the event to send instead, or null if
+     *         it is left out. Events which are not in the map are sent as they
+     *         are.
+     */
+    protected static Map<Event, Event> coalesce(List<Event> events, int eventMask)
+    {
+        // grouped by their own key: Event.equals also compares the details
+        Map<List<Object>, List<Event>> groups = new LinkedHashMap<List<Object>, List<Event>>();
+        for (Event event : events)
+        {
+            if ((event.getEventType() & eventMask) != 0)
+            {
+                List<Object> key = Arrays.<Object>asList(event.getEventType(),
+                        event.getSubjectType(), event.getSubjectID(),
+                        event.getObjectType(), event.getObjectID());
+                List<Event> group = groups.get(key);
+                if (group == null)
+                {
+                    group = new ArrayList<Event>();
+                    groups.put(key, group);
+                }
+                group.add(event);
+            }
+        }
+
+        Map<Event, Event> coalesced = new IdentityHashMap<Event, Event>();
+        for (List<Event> group : groups.values())
+        {
+            if (group.size() < 2)
+            {
+                continue;
+            }
+            Set<String> details = new LinkedHashSet<String>();
+            for (Event event : group)
+            {
+                if (event.getDetail() != null)
+                {
+                    details.addAll(Arrays.asList(event.getDetail().split(", ")));
+                }
+            }
+            Event first = group.get(0);
+            String detail = details.isEmpty() ? null : StringUtils.join(details, ", ");
+            coalesced.put(first, ObjectUtils.equals(detail, first.getDetail()) ? first : new Event(first, detail));
+            for (Event event : group.subList(1, group.size()))
+            {
+                coalesced.put(event, null);
+            }
+        }
+        return coalesced;
+    }
+
 }
@@ -36,6 +36,15 @@ public class ConsumerProfile
     /** Filters - each is an array of 2 bitmasks, action mask and subject mask */
     private List<int[]> filters;
 
+    /** Pairs of subject type and event type passed by the filters, see Event#getRoutingMask() */
+    private long routingMask = 0;
+
+    /** Event types which are coalesced before they are sent to the consumer */
+    private int coalesceMask = 0;
+
+    /** Whether the consumer runs after commit, see AsyncDispatcher */
+    private boolean async = false;
+
     // Prefix of keys in DSpace Configuration.
     private static final String CONSUMER_PREFIX = "event.consumer.";
 
@@ -141,8 +150,90 @@ public class ConsumerProfile
                     }
                 }
                 filters.add(filter);
+                routingMask |= toRoutingMask(filter);
+            }
+        }
+
+        // Events of these types are coalesced by subject and object: "Modify|Modify_Metadata"
+        String coalesceString = ConfigurationManager.getProperty(CONSUMER_PREFIX
+                + name + ".coalesce");
+        if (coalesceString != null)
+        {
+            String eventNames[] = coalesceString.trim().split("\\|");
+            for (int k = 0; k < eventNames.length; ++k)
+            {
+                int et = Event.parseEventType(eventNames[k].trim());
+                if (et == 0)
+                {
+                    log.error("Bad EventType in Configuration entry for "
+                            + CONSUMER_PREFIX + name + ".coalesce: "
+                            + eventNames[k]);
+                }
+                else
+                {
+                    coalesceMask |= et;
+                }
+            }
+        }
+
+        async = ConfigurationManager.getBooleanProperty(CONSUMER_PREFIX + name
+                + ".async", false);
+    }
+
+    // all the pairs of subject type and event type passed by a filter
+    private static long toRoutingMask(int filter[])
+    {
+        long mask = 0;
+        for (int s = 0; s < Integer.SIZE; ++s)
+        {
+            if ((filter[Event.SUBJECT_MASK] & (1 << s)) != 0)
+            {
+                for (int e = 0; e < Integer.SIZE; ++e)
+                {
+                    if ((filter[Event.EVENT_MASK] & (1 << e)) != 0)
+                    {
+                        mask |= Event.routingMask(1 << s, 1 << e);
+                    }
+                }
             }
         }
+        return mask;
+    }
+
+    /**
+     * Test whether an event passes the filters of this consumer, with the
+     * routing mask computed from the filters when the event has one.
+     * 
+     * @param event
+     *            the event
+     * @return true if the event should be sent to the consumer
+     */
+    public boolean accepts(Event event)
+    {
+        long mask = event.getRoutingMask();
+        if (mask == 0)
+        {
+            return event.pass(filters);
+        }
+        return (routingMask & mask) != 0;
+    }
+
+    /**
+     * @return the event types which are coalesced by subject and object for
+     *         this consumer, as a mask, or 0 if no events are coalesced.
+     */
+    public int getCoalesceMask()
+    {
+        return coalesceMask;
+    }
+
+    /**
+     * @return true if the consumer is run after the transaction is committed,
+     *         on a background thread, by an {@link AsyncDispatcher}.
+     */
+    public boolean isAsync()
+    {
+        return async;
     }
 
     public Consumer getConsumer()
@@ -295,6 +295,31 @@ public class Event implements Serializable
         this.identifiers = (ArrayList<String>) identifiers.clone();
     }
 
+    /**
+     * Copy an event with another detail, e.g. the details of several events
+     * merged into one.
+     * 
+     * @param event
+     *            the event to copy.
+     * @param detail
+     *            detail information of the copy.
+     */
+    protected Event(Event event, String detail)
+    {
+        this.dispatcher = event.dispatcher;
+        this.eventType = event.eventType;
+        this.subjectType = event.subjectType;
+        this.subjectID = event.subjectID;
+        this.objectType = event.objectType;
+        this.objectID = event.objectID;
+        this.timeStamp = event.timeStamp;
+        this.detail = detail;
+        this.identifiers = (ArrayList<String>) event.identifiers.clone();
+        this.transactionID = event.transactionID;
+        this.currentUser = event.currentUser;
+        this.extraLogInfo = event.extraLogInfo;
+    }
+
     /**
      * Compare two events. Ignore any difference in the timestamps. Also ignore
      * transactionID since that is not always set initially.
@@ -653,6 +678,44 @@ public class Event implements Serializable
         return result;
     }
 
+    /**
+     * Get the bit of the subject type and event type of this event in a
+     * routing mask, which holds the pairs of subject type and event type
+     * passed by a list of filters.
+     * 
+     * @return the bit of this event in routing masks, or 0 if its types
+     *         cannot be routed by mask.
+     * @see ConsumerProfile#accepts(Event)
+     */
+    public long getRoutingMask()
+    {
+        return routingMask(subjectType, eventType);
+    }
+
+    /**
+     * Get the bit of a subject type and an event type in a routing mask.
+     * 
+     * @param subjectMask
+     *            a single subject type, as a mask.
+     * @param eventMask
+     *            a single event type, as a mask.
+     * @return the bit, or 0 if the types are not single known types.
+     */
+    protected static long routingMask(int subjectMask, int eventMask)
+    {
+        if (Integer.bitCount(subjectMask) != 1 || Integer.bitCount(eventMask) != 1)
+        {
+            return 0;
+        }
+        int bit = Integer.numberOfTrailingZeros(subjectMask) * eventTypeText.length
+                + Integer.numberOfTrailingZeros(eventMask);
+        if (Integer.numberOfTrailingZeros(eventMask) >= eventTypeText.length || bit >= Long.SIZE)
+        {
+            return 0;
+        }
+        return 1L << bit;
+    }
+
     // dumb integer "log base 2", returns -1 if there are no 1's in number.
     protected int log2(int n)
     {
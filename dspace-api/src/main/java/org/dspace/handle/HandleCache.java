@@ -0,0 +1,384 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.handle;
+
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded cache of handle resolutions, shared by the {@link HandleServiceImpl}
+ * of a JVM and therefore by the handle server plugin and the webapps' handle
+ * lookups.
+ * <p>
+ * A cached handle records the local URL it resolves to and the object it is
+ * bound to, if any. Handles which do not exist are cached too, for a shorter
+ * time, so that repeated lookups of unknown handles do not reach the database.
+ * Entries expire after a fixed time, which bounds how long a change made by
+ * another process (e.g. the command line tools) goes unnoticed.
+ * <p>
+ * Changes made in this process go through two steps: a handle being changed
+ * is {@link #changing marked}, so that it is no longer cached while the change
+ * is not committed, then the {@link HandleCacheConsumer} invalidates it when
+ * the change is committed. A lookup which missed the cache reads the
+ * {@link #getGeneration generation} before reading the database, and its
+ * result is not cached if a handle was invalidated meanwhile, since it may
+ * have been read before that change was committed. The least recently used
+ * handles are dropped once the cache is full.
+ */
+public class HandleCache implements HandleCacheMXBean
+{
+    private final int maxSize;
+
+    private final long timeToLive;
+
+    private final long negativeTimeToLive;
+
+    private final Map<String, Entry> entries;
+
+    /** Handles changed by transactions which are not committed yet */
+    private final Set<String> changing = new HashSet<>();
+
+    /** Number of changes and invalidations so far, guarded by entries */
+    private long generation = 0;
+
+    private final AtomicLong hits = new AtomicLong();
+    private final AtomicLong negativeHits = new AtomicLong();
+    private final AtomicLong misses = new AtomicLong();
+    private final AtomicLong missNanos = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+    private final AtomicLong invalidations = new AtomicLong();
+
+    /**
+     * @param maxSize maximum number of cached handles, 0 or less to disable the cache
+     * @param timeToLive time in milliseconds a handle stays cached
+     * @param negativeTimeToLive time in milliseconds a handle which does not exist stays cached
+     */
+    public HandleCache(int maxSize, long timeToLive, long negativeTimeToLive)
+    {
+        this.maxSize = Math.max(0, maxSize);
+        this.timeToLive = timeToLive;
+        this.negativeTimeToLive = negativeTimeToLive;
+        this.entries = new LinkedHashMap<String, Entry>(16, 0.75f, true)
+        {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest)
+            {
+                if (size() > HandleCache.this.maxSize)
+                {
+                    evictions.incrementAndGet();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * @return true if handles are cached at all
+     */
+    public boolean isEnabled()
+    {
+        return 0 < maxSize;
+    }
+
+    /**
+     * Look up a handle. The caller is expected to resolve a handle which is
+     * not cached, {@link #recordMiss record} the time it took and
+     * {@link #put} it in the cache, with the {@link #getGeneration generation}
+     * read before resolving it.
+     *
+     * @param handle the handle
+     * @return the cached resolution of the handle, or null if it is not cached
+     */
+    public Entry get(String handle)
+    {
+        if (!isEnabled())
+        {
+            return null;
+        }
+        Entry entry;
+        synchronized (entries)
+        {
+            entry = changing.contains(handle) ? null : entries.get(handle);
+            if (entry != null && entry.expires <= currentTime())
+            {
+                entries.remove(handle);
+                entry = null;
+            }
+        }
+        if (entry == null)
+        {
+            return null;
+        }
+        hits.incrementAndGet();
+        if (!entry.exists())
+        {
+            negativeHits.incrementAndGet();
+        }
+        return entry;
+    }
+
+    /**
+     * @return the current generation, which changes whenever a handle is
+     *         changed or invalidated
+     */
+    public long getGeneration()
+    {
+        synchronized (entries)
+        {
+            return generation;
+        }
+    }
+
+    /**
+     * Cache the resolution of a handle, unless a handle was changed or
+     * invalidated since it was resolved.
+     *
+     * @param handle the handle
+     * @param url its local URL, null if the handle does not exist
+     * @param resourceTypeId type of the object it is bound to, null if it is not bound
+     * @param resourceId identifier of the object it is bound to, null if it is not bound
+     * @param resolvedGeneration the {@link #getGeneration generation} read before resolving the handle
+     */
+    public void put(String handle, String url, Integer resourceTypeId, UUID resourceId, long resolvedGeneration)
+    {
+        if (!isEnabled())
+        {
+            return;
+        }
+        long expires = currentTime() + (url == null ? negativeTimeToLive : timeToLive);
+        Entry entry = new Entry(url, resourceTypeId, resourceId, expires);
+        synchronized (entries)
+        {
+            if (generation == resolvedGeneration && !changing.contains(handle))
+            {
+                entries.put(handle, entry);
+            }
+        }
+    }
+
+    /**
+     * Record the resolution of a handle which was not cached.
+     *
+     * @param nanos time spent resolving it, in nanoseconds
+     */
+    public void recordMiss(long nanos)
+    {
+        misses.incrementAndGet();
+        missNanos.addAndGet(nanos);
+    }
+
+    /**
+     * Stop caching a handle which is being created, moved or deleted, until
+     * the change is committed and the handle is {@link #invalidate invalidated}.
+     * Lookups made meanwhile may see the change, which could still be rolled
+     * back, so they are not cached.
+     *
+     * @param handle the handle
+     */
+    public void changing(String handle)
+    {
+        if (handle == null || !isEnabled())
+        {
+            return;
+        }
+        synchronized (entries)
+        {
+            if (changing.size() >= maxSize)
+            {
+                // Changes which were rolled back are never invalidated, forget the oldest ones
+                changing.clear();
+            }
+            changing.add(handle);
+            generation++;
+            if (entries.remove(handle) != null)
+            {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop a handle from the cache because a change to it was committed.
+     *
+     * @param handle the handle
+     */
+    public void invalidate(String handle)
+    {
+        if (handle == null || !isEnabled())
+        {
+            return;
+        }
+        synchronized (entries)
+        {
+            changing.remove(handle);
+            generation++;
+            if (entries.remove(handle) != null)
+            {
+                invalidations.incrementAndGet();
+            }
+        }
+    }
+
+    /**
+     * Drop all handles from the cache because an unknown set of them changed.
+     */
+    public void invalidateAll()
+    {
+        synchronized (entries)
+        {
+            invalidations.addAndGet(entries.size());
+            entries.clear();
+            changing.clear();
+            generation++;
+        }
+    }
+
+    @Override
+    public void clear()
+    {
+        synchronized (entries)
+        {
+            entries.clear();
+            changing.clear();
+            generation++;
+        }
+    }
+
+    /**
+     * @return current time in milliseconds, as used for expiry
+     */
+    protected long currentTime()
+    {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public int getSize()
+    {
+        synchronized (entries)
+        {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public int getMaxSize()
+    {
+        return maxSize;
+    }
+
+    @Override
+    public long getHitCount()
+    {
+        return hits.get();
+    }
+
+    @Override
+    public long getNegativeHitCount()
+    {
+        return negativeHits.get();
+    }
+
+    @Override
+    public long getMissCount()
+    {
+        return misses.get();
+    }
+
+    @Override
+    public long getEvictionCount()
+    {
+        return evictions.get();
+    }
+
+    @Override
+    public long getInvalidationCount()
+    {
+        return invalidations.get();
+    }
+
+    @Override
+    public double getHitRatio()
+    {
+        long hitCount = hits.get();
+        long lookups = hitCount + misses.get();
+        return lookups == 0 ? 0 : (double) hitCount / lookups;
+    }
+
+    @Override
+    public double getAverageMissTime()
+    {
+        long missCount = misses.get();
+        return missCount == 0 ? 0 : missNanos.get() / 1e6 / missCount;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("Handle cache: %d/%d handles, %d hits (%d negative), %d misses (%.2f ms average), "
+                + "hit ratio %.3f, %d evictions, %d invalidations", getSize(), maxSize, getHitCount(),
+                getNegativeHitCount(), getMissCount(), getAverageMissTime(), getHitRatio(), getEvictionCount(),
+                getInvalidationCount());
+    }
+
+    /**
+     * Cached resolution of a handle.
+     */
+    public static class Entry
+    {
+        private final String url;
+        private final Integer resourceTypeId;
+        private final UUID resourceId;
+        private final long expires;
+
+        protected Entry(String url, Integer resourceTypeId, UUID resourceId, long expires)
+        {
+            this.url = url;
+            this.resourceTypeId = resourceTypeId;
+            this.resourceId = resourceId;
+            this.expires = expires;
+        }
+
+        /**
+         * @return false if the handle does not exist
+         */
+        public boolean exists()
+        {
+            return url != null;
+        }
+
+        /**
+         * @return local URL of the handle, null if it does not exist
+         */
+        public String getURL()
+        {
+            return url;
+        }
+
+        /**
+         * @return type of the object the handle is bound to, null if it is not bound
+         */
+        public Integer getResourceTypeId()
+        {
+            return resourceTypeId;
+        }
+
+        /**
+         * @return identifier of the object the handle is bound to, null if it is not bound
+         */
+        public UUID getResourceId()
+        {
+            return resourceId;
+        }
+    }
+}
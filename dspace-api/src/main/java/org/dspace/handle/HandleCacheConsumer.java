@@ -0,0 +1,92 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.handle;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.dspace.core.Context;
+import org.dspace.event.Consumer;
+import org.dspace.event.Event;
+import org.dspace.handle.factory.HandleServiceFactory;
+import org.dspace.handle.service.HandleService;
+
+/**
+ * Invalidates the cached resolutions of the handles of objects which are
+ * created, installed, modified or deleted, once the change is committed.
+ * The handles are taken from the event detail and identifiers.
+ *
+ * Recommended filter:  Community|Collection|Item+Create|Install|Modify|Delete
+ *
+ * @see HandleCache
+ */
+public class HandleCacheConsumer implements Consumer
+{
+    protected HandleService handleService;
+
+    /** Handles changed in the current transaction */
+    protected Set<String> handles = new HashSet<>();
+
+    @Override
+    public void initialize() throws Exception
+    {
+        handleService = HandleServiceFactory.getInstance().getHandleService();
+    }
+
+    @Override
+    public void consume(Context ctx, Event event) throws Exception
+    {
+        if (event.getDetail() != null)
+        {
+            handles.add(event.getDetail());
+        }
+        if (event.getIdentifiers() != null)
+        {
+            String canonicalPrefix = handleService.getCanonicalForm("");
+            for (String identifier : event.getIdentifiers())
+            {
+                if (identifier.startsWith(canonicalPrefix))
+                {
+                    handles.add(identifier.substring(canonicalPrefix.length()));
+                }
+            }
+        }
+    }
+
+    @Override
+    public void end(Context ctx) throws Exception
+    {
+        if (handles.isEmpty())
+        {
+            return;
+        }
+        // The events are dispatched before the commit: invalidating now would let a concurrent
+        // lookup cache the state before the commit, so the handles are invalidated after it
+        final HandleCache cache = handleService.getHandleCache();
+        final List<String> changed = new ArrayList<>(handles);
+        handles.clear();
+        ctx.runAfterCommit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (String handle : changed)
+                {
+                    cache.invalidate(handle);
+                }
+            }
+        });
+    }
+
+    @Override
+    public void finish(Context ctx) throws Exception
+    {
+    }
+}
@@ -0,0 +1,64 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.handle;
+
+/**
+ * MBean type for monitoring the cache of handle resolutions.
+ */
+public interface HandleCacheMXBean
+{
+    /**
+     * @return number of handles currently cached
+     */
+    public int getSize();
+
+    /**
+     * @return maximum number of handles cached
+     */
+    public int getMaxSize();
+
+    /**
+     * @return number of lookups answered from the cache, including negative hits
+     */
+    public long getHitCount();
+
+    /**
+     * @return number of lookups of handles known not to exist answered from the cache
+     */
+    public long getNegativeHitCount();
+
+    /**
+     * @return number of lookups which had to be resolved in the database
+     */
+    public long getMissCount();
+
+    /**
+     * @return number of cached handles dropped to make room for others
+     */
+    public long getEvictionCount();
+
+    /**
+     * @return number of cached handles dropped because they were changed
+     */
+    public long getInvalidationCount();
+
+    /**
+     * @return fraction of lookups answered from the cache
+     */
+    public double getHitRatio();
+
+    /**
+     * @return average time in milliseconds of the lookups which missed the cache
+     */
+    public double getAverageMissTime();
+
+    /**
+     * Drop all cached handles.
+     */
+    public void clear();
+}
@@ -170,6 +170,7 @@ public class HandlePlugin implements HandleStorage
         if (log.isInfoEnabled())
         {
             log.info("Called shutdown (not implemented)");
+            log.info(handleService.getHandleCache());
         }
     }
 
@@ -238,9 +239,18 @@ public class HandlePlugin implements HandleStorage
 
             String handle = Util.decodeString(theHandle);
 
-            context = new Context();
-
-            String url = handleService.resolveToURL(context, handle);
+            // Only open a Context for handles which are not cached
+            String url;
+            HandleCache.Entry cached = handleService.getHandleCache().get(handle);
+            if (cached != null)
+            {
+                url = cached.getURL();
+            }
+            else
+            {
+                context = new Context(Context.READ_ONLY);
+                url = handleService.resolveToURL(context, handle);
+            }
 
             if (url == null)
             {
@@ -10,17 +10,26 @@ package org.dspace.handle;
 import org.apache.commons.collections.CollectionUtils;
 import org.apache.log4j.Logger;
 import org.dspace.content.DSpaceObject;
+import org.dspace.content.factory.ContentServiceFactory;
+import org.dspace.content.service.DSpaceObjectService;
 import org.dspace.content.service.SiteService;
 import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Constants;
 import org.dspace.core.Context;
 import org.dspace.handle.dao.HandleDAO;
 import org.dspace.handle.service.HandleService;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
+import java.lang.management.ManagementFactory;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.UUID;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
 
 /**
  * Interface to the <a href="http://www.handle.net" target=_new>CNRI Handle
@@ -32,10 +41,18 @@ import java.util.List;
  * non-existent.
  * </p>
  *
+ * <p>
+ * Resolutions of handles to URLs and objects are kept in a {@link HandleCache},
+ * sized by <code>handle.cache.size</code> and expiring after
+ * <code>handle.cache.ttl</code> seconds (<code>handle.cache.negative.ttl</code>
+ * for handles which do not exist). Its statistics are published as the MBean
+ * {@link #CACHE_MBEAN_NAME}.
+ * </p>
+ *
  * @author Peter Breton
  * @version $Revision$
  */
-public class HandleServiceImpl implements HandleService
+public class HandleServiceImpl implements HandleService, InitializingBean, DisposableBean
 {
     /** log4j category */
     private static Logger log = Logger.getLogger(HandleServiceImpl.class);
@@ -50,24 +67,74 @@ public class HandleServiceImpl implements HandleService
     @Autowired
     protected SiteService siteService;
 
+    /** Name of the MBean with the statistics of the handle cache */
+    public static final String CACHE_MBEAN_NAME = "org.dspace:type=HandleCache";
+
+    protected HandleCache handleCache;
+
+    /** Name under which the MBean of the handle cache is registered, null if it is not */
+    protected ObjectName handleCacheMBeanName;
+
     /** Public Constructor */
     protected HandleServiceImpl()
     {
     }
 
     @Override
-    public String resolveToURL(Context context, String handle)
-            throws SQLException
+    public void afterPropertiesSet() throws Exception
     {
-        Handle dbhandle = findHandleInternal(context, handle);
+        handleCache = new HandleCache(ConfigurationManager.getIntProperty("handle.cache.size", 10000),
+                ConfigurationManager.getLongProperty("handle.cache.ttl", 300) * 1000,
+                ConfigurationManager.getLongProperty("handle.cache.negative.ttl", 60) * 1000);
+        if (handleCache.isEnabled())
+        {
+            try
+            {
+                // Each webapp has its own cache, and its own MBean
+                MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+                ObjectName name = new ObjectName(CACHE_MBEAN_NAME + ",instance="
+                        + Integer.toHexString(System.identityHashCode(handleCache)));
+                server.registerMBean(handleCache, name);
+                handleCacheMBeanName = name;
+            }
+            catch (JMException e)
+            {
+                log.warn("Unable to register the handle cache MBean: " + e.getMessage());
+            }
+        }
+    }
 
-        if (dbhandle == null)
+    @Override
+    public void destroy() throws Exception
+    {
+        // The platform MBean server outlives the webapp, which it would keep from being unloaded
+        if (handleCacheMBeanName != null)
         {
-            return null;
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(handleCacheMBeanName);
+            }
+            catch (JMException e)
+            {
+                log.warn("Unable to unregister the handle cache MBean: " + e.getMessage());
+            }
+            handleCacheMBeanName = null;
         }
+    }
 
-        String url = ConfigurationManager.getProperty("dspace.url")
-                + "/handle/" + handle;
+    @Override
+    public HandleCache getHandleCache()
+    {
+        return handleCache;
+    }
+
+    @Override
+    public String resolveToURL(Context context, String handle)
+            throws SQLException
+    {
+        HandleCache.Entry cached = lookup(context, handle);
+
+        String url = cached.getURL();
 
         if (log.isDebugEnabled())
         {
@@ -140,6 +207,7 @@ public class HandleServiceImpl implements HandleService
         dso.addHandle(handle);
         handle.setResourceTypeId(dso.getType());
         handleDAO.save(context, handle);
+        handleCache.changing(handleId);
 
         if (log.isDebugEnabled())
         {
@@ -203,6 +271,7 @@ public class HandleServiceImpl implements HandleService
         handle.setDSpaceObject(dso);
         dso.addHandle(handle);
         handleDAO.save(context, handle);
+        handleCache.changing(suppliedHandle);
 
         if (log.isDebugEnabled())
         {
@@ -228,6 +297,7 @@ public class HandleServiceImpl implements HandleService
                 // is reusing this handle!
                 handle.setDSpaceObject(null);
                 handleDAO.save(context, handle);
+                handleCache.changing(handle.getHandle());
 
                 if(log.isDebugEnabled())
                 {
@@ -245,18 +315,27 @@ public class HandleServiceImpl implements HandleService
     public DSpaceObject resolveToObject(Context context, String handle)
             throws IllegalStateException, SQLException
     {
-        Handle dbhandle = findHandleInternal(context, handle);
+        HandleCache.Entry cached = lookup(context, handle);
         // check if handle was allocated previously, but is currently not
         // associated with a DSpaceObject
         // (this may occur when 'unbindHandle()' is called for an obj that was removed)
-        if (dbhandle == null || (dbhandle.getDSpaceObject() == null)
-                || (dbhandle.getResourceTypeId() == null))
+        if (cached.getResourceId() == null || cached.getResourceTypeId() == null)
         {
             //if handle has been unbound, just return null (as this will result in a PageNotFound)
             return null;
         }
 
-        return dbhandle.getDSpaceObject();
+        DSpaceObjectService<? extends DSpaceObject> dsoService = ContentServiceFactory.getInstance()
+                .getDSpaceObjectService(cached.getResourceTypeId());
+        DSpaceObject dso = dsoService == null ? null : dsoService.find(context, cached.getResourceId());
+        if (dso == null)
+        {
+            // Stale entry, e.g. the object was deleted by another process
+            handleCache.invalidate(handle);
+            Handle dbhandle = findHandleInternal(context, handle);
+            return dbhandle == null || dbhandle.getResourceTypeId() == null ? null : dbhandle.getDSpaceObject();
+        }
+        return dso;
     }
 
     @Override
@@ -318,7 +397,9 @@ public class HandleServiceImpl implements HandleService
 
     @Override
     public int updateHandlesWithNewPrefix(Context context, String newPrefix, String oldPrefix) throws SQLException {
-        return handleDAO.updateHandlesWithNewPrefix(context, newPrefix, oldPrefix);
+        int updated = handleDAO.updateHandlesWithNewPrefix(context, newPrefix, oldPrefix);
+        handleCache.invalidateAll();
+        return updated;
     }
 
     @Override
@@ -338,6 +419,7 @@ public class HandleServiceImpl implements HandleService
             dbHandle.setResourceTypeId(newOwner.getType());
             newOwner.getHandles().add(0, dbHandle);
             handleDAO.save(context, dbHandle);
+            handleCache.changing(handle);
         }
 
     }
@@ -385,6 +467,48 @@ public class HandleServiceImpl implements HandleService
         return handleDAO.findByHandle(context, handle);
     }
 
+    /**
+     * Resolve a handle from the handle cache, or from the database when it is
+     * not cached.
+     *
+     * @param context
+     *            DSpace context
+     * @param handle
+     *            The handle to resolve
+     * @return The resolution of the handle, which does not exist if
+     *         {@link HandleCache.Entry#exists()} is false
+     * @exception SQLException
+     *                If a database error occurs
+     */
+    protected HandleCache.Entry lookup(Context context, String handle)
+            throws SQLException
+    {
+        HandleCache.Entry cached = handleCache.get(handle);
+        if (cached != null)
+        {
+            return cached;
+        }
+
+        long start = System.nanoTime();
+        long generation = handleCache.getGeneration();
+        Handle dbhandle = findHandleInternal(context, handle);
+        String url = null;
+        Integer resourceTypeId = null;
+        UUID resourceId = null;
+        if (dbhandle != null)
+        {
+            url = ConfigurationManager.getProperty("dspace.url") + "/handle/" + handle;
+            if (dbhandle.getDSpaceObject() != null)
+            {
+                resourceTypeId = dbhandle.getResourceTypeId();
+                resourceId = dbhandle.getDSpaceObject().getID();
+            }
+        }
+        handleCache.recordMiss(System.nanoTime() - start);
+        handleCache.put(handle, url, resourceTypeId, resourceId, generation);
+        return new HandleCache.Entry(url, resourceTypeId, resourceId, 0);
+    }
+
     /**
      * Create a new handle id. The implementation uses the PK of the RDBMS
      * Handle table.
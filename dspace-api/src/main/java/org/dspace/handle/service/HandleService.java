@@ -9,6 +9,7 @@ package org.dspace.handle.service;
 
 import org.dspace.content.DSpaceObject;
 import org.dspace.core.Context;
+import org.dspace.handle.HandleCache;
 
 import java.sql.SQLException;
 import java.util.List;
@@ -45,6 +46,15 @@ public interface HandleService {
     public String resolveToURL(Context context, String handle)
             throws SQLException;
 
+    /**
+     * Return the cache of handle resolutions used by this service. Callers
+     * which can answer from the cache, such as the handle server plugin, may
+     * consult it before opening a Context.
+     *
+     * @return the cache, which is disabled if handles are not cached
+     */
+    public HandleCache getHandleCache();
+
 
     /**
      * Try to detect a handle in a URL.
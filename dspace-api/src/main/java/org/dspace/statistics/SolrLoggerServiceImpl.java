@@ -48,6 +48,7 @@ import org.dspace.statistics.util.DnsLookup;
 import org.dspace.statistics.util.LocationUtils;
 import org.dspace.statistics.util.SpiderDetector;
 import org.dspace.usage.UsageWorkflowEvent;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -69,7 +70,7 @@ import java.util.*;
  * @author kevinvandevelde at atmire.com
  * @author mdiggory at atmire.com
  */
-public class SolrLoggerServiceImpl implements SolrLoggerService, InitializingBean
+public class SolrLoggerServiceImpl implements SolrLoggerService, InitializingBean, DisposableBean
 {
     private static final Logger log = Logger.getLogger(SolrLoggerServiceImpl.class);
 	
@@ -85,6 +86,9 @@ public class SolrLoggerServiceImpl implements SolrLoggerService, InitializingBea
 
     private static List<String> statisticYearCores = new ArrayList<String>();
 
+    /** Buffer the usage events are sent through, null to send every event immediately */
+    protected UsageEventBuffer usageEventBuffer;
+
     @Autowired(required = true)
     protected BitstreamService bitstreamService;
     @Autowired(required = true)
@@ -184,6 +188,55 @@ public class SolrLoggerServiceImpl implements SolrLoggerService, InitializingBea
 
         useProxies = configurationService.getBooleanProperty("useProxies");
         log.info("useProxies=" + useProxies);
+
+        if (solr != null && configurationService.getBooleanProperty("solr-statistics.buffer.enabled", false))
+        {
+            String spillDirectory = configurationService.getProperty("solr-statistics.buffer.spill.dir");
+            usageEventBuffer = new UsageEventBuffer(solr,
+                    configurationService.getIntProperty("solr-statistics.buffer.size", 10000),
+                    configurationService.getIntProperty("solr-statistics.buffer.batch.size", 100),
+                    configurationService.getLongProperty("solr-statistics.buffer.flush.interval", 1000),
+                    "block".equalsIgnoreCase(configurationService.getProperty("solr-statistics.buffer.overflow")),
+                    StringUtils.isBlank(spillDirectory) ? null : new File(spillDirectory),
+                    configurationService.getIntProperty("solr-statistics.buffer.threads", 1));
+            log.info("Usage events are buffered, spill directory: " + spillDirectory);
+        }
+    }
+
+    @Override
+    public void destroy() throws Exception
+    {
+        if (usageEventBuffer != null)
+        {
+            usageEventBuffer.shutdown(configurationService.getLongProperty("solr-statistics.buffer.flush.interval", 1000) * 10);
+        }
+    }
+
+    /**
+     * @return the buffer usage events are sent through, or null if they are sent immediately
+     */
+    public UsageEventBuffer getUsageEventBuffer()
+    {
+        return usageEventBuffer;
+    }
+
+    /**
+     * Send a usage event document to Solr, through the buffer if buffering is enabled.
+     *
+     * @param document the usage event
+     * @throws IOException A general class of exceptions produced by failed or interrupted I/O operations.
+     * @throws SolrServerException Exception from the Solr server to the solrj Java client.
+     */
+    protected void addDocument(SolrInputDocument document) throws IOException, SolrServerException
+    {
+        if (usageEventBuffer != null)
+        {
+            usageEventBuffer.add(document);
+        }
+        else
+        {
+            solr.add(document);
+        }
     }
 
     @Override
@@ -219,7 +272,7 @@ public class SolrLoggerServiceImpl implements SolrLoggerService, InitializingBea
             doc1.addField("statistics_type", StatisticsType.VIEW.text());
 
 
-            solr.add(doc1);
+            addDocument(doc1);
             //commits are executed automatically using the solr autocommit
 //            solr.commit(false, false);
 
@@ -256,7 +309,7 @@ public class SolrLoggerServiceImpl implements SolrLoggerService, InitializingBea
 
 			doc1.addField("statistics_type", StatisticsType.VIEW.text());
 
-			solr.add(doc1);
+			addDocument(doc1);
 			// commits are executed automatically using the solr autocommit
 			// solr.commit(false, false);
 
@@ -497,7 +550,7 @@ public class SolrLoggerServiceImpl implements SolrLoggerService, InitializingBea
                 solrDoc.addField("page", page);
             }
 
-            solr.add(solrDoc);
+            addDocument(solrDoc);
         }
         catch (RuntimeException re)
         {
@@ -548,7 +601,7 @@ public class SolrLoggerServiceImpl implements SolrLoggerService, InitializingBea
                 solrDoc.addField("actor", usageWorkflowEvent.getActor().getID());
             }
 
-            solr.add(solrDoc);
+            addDocument(solrDoc);
         }
         catch (Exception e)
         {
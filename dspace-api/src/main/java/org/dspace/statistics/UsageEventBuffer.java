@@ -0,0 +1,435 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics;
+
+import org.apache.log4j.Logger;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded buffer of usage statistics documents, sent to Solr in batches by background threads
+ * so that logging a view or a download never waits for the statistics core.
+ * <p>
+ * A batch is sent as soon as it is full or when the flush interval has passed since its first
+ * document was taken from the buffer. When the buffer is full, new documents are either dropped
+ * or the caller waits for room, depending on the overflow policy.
+ * <p>
+ * Batches that cannot be sent (e.g. while Solr is down) are written to the spill directory, one
+ * file per batch, and sent again once Solr accepts documents again. Without a spill directory
+ * such batches are lost. Spilled batches which Solr rejects (e.g. because they no longer match
+ * the schema) or which cannot be read are moved to the <code>rejected</code> subdirectory of the
+ * spill directory, so that they do not hold back the next ones.
+ */
+public class UsageEventBuffer
+{
+    private static final Logger log = Logger.getLogger(UsageEventBuffer.class);
+
+    /** Minimum time in milliseconds between two attempts to send the spilled batches */
+    protected static final long SPILL_RETRY_INTERVAL = 30000;
+
+    private static final String SPILL_PREFIX = "usage-events-";
+
+    private static final String SPILL_SUFFIX = ".ser";
+
+    /** Subdirectory of the spill directory for the batches which cannot be sent */
+    private static final String REJECTED_DIRECTORY = "rejected";
+
+    private final SolrServer solr;
+
+    private final BlockingQueue<SolrInputDocument> queue;
+
+    private final int batchSize;
+
+    private final long flushInterval;
+
+    private final boolean blockWhenFull;
+
+    private final File spillDirectory;
+
+    private final List<Thread> flushers = new ArrayList<>();
+
+    private volatile boolean running = true;
+
+    /** Serializes writing and replaying spill files */
+    private final Object spillLock = new Object();
+
+    private final AtomicBoolean spillPending = new AtomicBoolean(false);
+
+    private final AtomicLong spillSequence = new AtomicLong(0);
+
+    private volatile long lastSpillAttempt = 0;
+
+    private final AtomicLong flushed = new AtomicLong(0);
+
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    private final AtomicLong spilled = new AtomicLong(0);
+
+    private final AtomicLong failedFlushes = new AtomicLong(0);
+
+    private volatile long lastFlushDuration = 0;
+
+    /**
+     * Create the buffer and start its flusher threads.
+     *
+     * @param solr the statistics core
+     * @param capacity maximum number of documents waiting in the buffer
+     * @param batchSize maximum number of documents sent in one request
+     * @param flushInterval maximum time in milliseconds a document waits for its batch to fill
+     * @param blockWhenFull wait for room when the buffer is full instead of dropping the document
+     * @param spillDirectory directory to write unsent batches to, or null to drop them
+     * @param threads number of flusher threads
+     */
+    public UsageEventBuffer(SolrServer solr, int capacity, int batchSize, long flushInterval,
+                            boolean blockWhenFull, File spillDirectory, int threads)
+    {
+        this.solr = solr;
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, capacity));
+        this.batchSize = Math.max(1, batchSize);
+        this.flushInterval = Math.max(1, flushInterval);
+        this.blockWhenFull = blockWhenFull;
+        this.spillDirectory = spillDirectory;
+
+        if (spillDirectory != null)
+        {
+            if (!spillDirectory.isDirectory() && !spillDirectory.mkdirs())
+            {
+                log.error("Unable to create the usage statistics spill directory " + spillDirectory);
+            }
+            spillPending.set(0 < listSpillFiles().length);
+        }
+
+        for (int i = 0; i < Math.max(1, threads); i++)
+        {
+            Thread flusher = new Thread(new Flusher(), "usage-event-flusher-" + i);
+            flusher.setDaemon(true);
+            flusher.start();
+            flushers.add(flusher);
+        }
+    }
+
+    /**
+     * Add a document to the buffer. Depending on the overflow policy, the document is dropped
+     * or the caller waits when the buffer is full.
+     *
+     * @param document the usage event
+     */
+    public void add(SolrInputDocument document)
+    {
+        if (blockWhenFull)
+        {
+            try {
+                queue.put(document);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                dropped.incrementAndGet();
+            }
+        }
+        else if (!queue.offer(document))
+        {
+            if (dropped.incrementAndGet() % 1000 == 1)
+            {
+                log.warn("Usage statistics buffer is full, events are being dropped (" + dropped.get() + " so far)");
+            }
+        }
+    }
+
+    /**
+     * Stop the flusher threads once they have sent the documents still in the buffer.
+     *
+     * @param timeout maximum time in milliseconds to wait for each flusher thread
+     */
+    public void shutdown(long timeout)
+    {
+        running = false;
+        for (Thread flusher : flushers)
+        {
+            try {
+                flusher.join(timeout);
+            } catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * @return number of documents waiting in the buffer
+     */
+    public int getQueueLength()
+    {
+        return queue.size();
+    }
+
+    /**
+     * @return number of documents sent to Solr since startup, including replayed ones
+     */
+    public long getFlushedCount()
+    {
+        return flushed.get();
+    }
+
+    /**
+     * @return number of documents lost because the buffer was full or a batch could not be saved
+     */
+    public long getDroppedCount()
+    {
+        return dropped.get();
+    }
+
+    /**
+     * @return number of documents written to the spill directory since startup
+     */
+    public long getSpilledCount()
+    {
+        return spilled.get();
+    }
+
+    /**
+     * @return number of batches that could not be sent to Solr since startup
+     */
+    public long getFailedFlushCount()
+    {
+        return failedFlushes.get();
+    }
+
+    /**
+     * @return duration in milliseconds of the last batch sent to Solr
+     */
+    public long getLastFlushDuration()
+    {
+        return lastFlushDuration;
+    }
+
+    /**
+     * Send a batch to Solr, or spill it if that fails.
+     *
+     * @param batch the documents to send
+     */
+    protected void flush(List<SolrInputDocument> batch)
+    {
+        long start = System.currentTimeMillis();
+        try {
+            solr.add(batch);
+            flushed.addAndGet(batch.size());
+            lastFlushDuration = System.currentTimeMillis() - start;
+        } catch (Exception e)
+        {
+            failedFlushes.incrementAndGet();
+            log.error("Unable to send " + batch.size() + " usage events to Solr", e);
+            spill(batch);
+            return;
+        }
+        replaySpill(false);
+    }
+
+    /**
+     * Write a batch that could not be sent to a file of its own in the spill directory.
+     *
+     * @param batch the documents to save
+     */
+    protected void spill(List<SolrInputDocument> batch)
+    {
+        if (spillDirectory == null)
+        {
+            dropped.addAndGet(batch.size());
+            return;
+        }
+        synchronized (spillLock)
+        {
+            File file = new File(spillDirectory, String.format("%s%013d-%06d%s", SPILL_PREFIX,
+                    System.currentTimeMillis(), spillSequence.incrementAndGet() % 1000000, SPILL_SUFFIX));
+            try (ObjectOutputStream out = new ObjectOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+            {
+                out.writeObject(new ArrayList<>(batch));
+                spilled.addAndGet(batch.size());
+                spillPending.set(true);
+            } catch (IOException e)
+            {
+                log.error("Unable to write usage events to " + file + ", " + batch.size() + " events are lost", e);
+                dropped.addAndGet(batch.size());
+                file.delete();
+            }
+        }
+    }
+
+    /**
+     * Send the spilled batches to Solr, oldest first, deleting each file once it was sent.
+     * Stops at the first batch that cannot be sent because of Solr or the network; batches
+     * that Solr rejects or that cannot be read are moved out of the way.
+     *
+     * @param force try even if the last attempt was less than {@link #SPILL_RETRY_INTERVAL} ago
+     */
+    @SuppressWarnings("unchecked")
+    protected void replaySpill(boolean force)
+    {
+        if (!spillPending.get() || (!force && System.currentTimeMillis() - lastSpillAttempt < SPILL_RETRY_INTERVAL))
+        {
+            return;
+        }
+        synchronized (spillLock)
+        {
+            lastSpillAttempt = System.currentTimeMillis();
+            File[] files = listSpillFiles();
+            Arrays.sort(files);
+            for (File file : files)
+            {
+                List<SolrInputDocument> batch;
+                try (ObjectInputStream in = new ObjectInputStream(new BufferedInputStream(new FileInputStream(file))))
+                {
+                    batch = (List<SolrInputDocument>) in.readObject();
+                } catch (IOException | ClassNotFoundException | ClassCastException e)
+                {
+                    log.error("Unable to read spilled usage events from " + file, e);
+                    reject(file);
+                    continue;
+                }
+                try {
+                    solr.add(batch);
+                } catch (Exception e)
+                {
+                    if (isRejected(e))
+                    {
+                        log.error("Solr rejected the spilled usage events of " + file, e);
+                        reject(file);
+                        continue;
+                    }
+                    log.warn("Unable to send spilled usage events to Solr, will retry later: " + e.getMessage());
+                    return;
+                }
+                flushed.addAndGet(batch.size());
+                if (!file.delete())
+                {
+                    log.error("Unable to delete " + file + ", its usage events may be sent twice");
+                }
+            }
+            spillPending.set(false);
+        }
+    }
+
+    /**
+     * @param e the error sending a batch
+     * @return true if Solr refused the batch itself (a 4xx status), which will fail again if retried
+     */
+    protected boolean isRejected(Exception e)
+    {
+        for (Throwable cause = e; cause != null; cause = cause.getCause())
+        {
+            if (cause instanceof SolrException)
+            {
+                int code = ((SolrException) cause).code();
+                return 400 <= code && code < 500;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Move a spill file which cannot be sent to the rejected directory.
+     *
+     * @param file the spill file
+     */
+    protected void reject(File file)
+    {
+        File rejectedDirectory = new File(spillDirectory, REJECTED_DIRECTORY);
+        if ((!rejectedDirectory.isDirectory() && !rejectedDirectory.mkdirs())
+                || !file.renameTo(new File(rejectedDirectory, file.getName())))
+        {
+            log.error("Unable to move " + file + " to " + rejectedDirectory + ", it will be sent again");
+            return;
+        }
+        log.warn("Moved " + file.getName() + " to " + rejectedDirectory);
+    }
+
+    protected File[] listSpillFiles()
+    {
+        File[] files = spillDirectory.listFiles(new FilenameFilter()
+        {
+            @Override
+            public boolean accept(File dir, String name)
+            {
+                return name.startsWith(SPILL_PREFIX) && name.endsWith(SPILL_SUFFIX);
+            }
+        });
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Takes batches from the buffer and sends them until the buffer is shut down and empty.
+     */
+    protected class Flusher implements Runnable
+    {
+        @Override
+        public void run()
+        {
+            List<SolrInputDocument> batch = new ArrayList<>(batchSize);
+            while (running || !queue.isEmpty())
+            {
+                try {
+                    SolrInputDocument first = queue.poll(flushInterval, TimeUnit.MILLISECONDS);
+                    if (first == null)
+                    {
+                        replaySpill(false);
+                        continue;
+                    }
+                    batch.add(first);
+                    long deadline = System.currentTimeMillis() + flushInterval;
+                    while (batch.size() < batchSize)
+                    {
+                        if (queue.drainTo(batch, batchSize - batch.size()) > 0)
+                        {
+                            continue;
+                        }
+                        long wait = deadline - System.currentTimeMillis();
+                        SolrInputDocument next = wait > 0 && running ? queue.poll(wait, TimeUnit.MILLISECONDS) : null;
+                        if (next == null)
+                        {
+                            break;
+                        }
+                        batch.add(next);
+                    }
+                    flush(batch);
+                } catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    running = false;
+                    if (!batch.isEmpty())
+                    {
+                        flush(batch);
+                    }
+                } catch (Exception e)
+                {
+                    log.error("Unexpected error in the usage statistics flusher", e);
+                } finally {
+                    batch.clear();
+                }
+            }
+        }
+    }
+}
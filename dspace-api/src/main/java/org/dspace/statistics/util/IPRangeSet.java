@@ -0,0 +1,349 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Immutable set of IPv4 and IPv6 address ranges, stored as sorted, merged intervals of
+ * 128 bit addresses (IPv4 addresses are mapped to <code>::ffff:a.b.c.d</code>) in primitive
+ * arrays, so that a lookup is a binary search without any allocation besides parsing.
+ * <p>
+ * Ranges are parsed by {@link #parseRange(String)}, which accepts:
+ * <ul>
+ * <li>a single IPv4 or IPv6 address: <code>192.168.2.1</code>, <code>2001:db8::1</code></li>
+ * <li>the first three octets of an IPv4 address, matching the 256 addresses starting with
+ * them: <code>192.168.2</code>, as in the historical spider files. Shorter prefixes are
+ * rejected, as they are more likely typing errors than intended: use CIDR notation</li>
+ * <li>CIDR notation: <code>192.168.0.0/16</code>, <code>2001:db8::/32</code></li>
+ * <li>an explicit range of addresses: <code>192.168.2.1-192.168.2.10</code></li>
+ * </ul>
+ */
+public class IPRangeSet
+{
+    private static final long IPV4_MAPPED = 0x0000ffff00000000L;
+
+    /** Start and end of each interval, high and low 64 bits, sorted by start */
+    private final long[] startHigh;
+    private final long[] startLow;
+    private final long[] endHigh;
+    private final long[] endLow;
+
+    /**
+     * Create a set from parsed ranges. Overlapping and adjacent ranges are merged.
+     *
+     * @param ranges the ranges, see {@link #parseRange(String)}
+     */
+    public IPRangeSet(Collection<Range> ranges)
+    {
+        List<Range> sorted = new ArrayList<>(ranges);
+        Collections.sort(sorted, new Comparator<Range>()
+        {
+            @Override
+            public int compare(Range a, Range b)
+            {
+                return compareAddress(a.startHigh, a.startLow, b.startHigh, b.startLow);
+            }
+        });
+
+        List<Range> merged = new ArrayList<>();
+        for (Range range : sorted)
+        {
+            Range last = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (last != null && touches(last, range))
+            {
+                if (compareAddress(range.endHigh, range.endLow, last.endHigh, last.endLow) > 0)
+                {
+                    merged.set(merged.size() - 1, new Range(last.startHigh, last.startLow, range.endHigh, range.endLow));
+                }
+            }
+            else
+            {
+                merged.add(range);
+            }
+        }
+
+        int size = merged.size();
+        startHigh = new long[size];
+        startLow = new long[size];
+        endHigh = new long[size];
+        endLow = new long[size];
+        for (int i = 0; i < size; i++)
+        {
+            Range range = merged.get(i);
+            startHigh[i] = range.startHigh;
+            startLow[i] = range.startLow;
+            endHigh[i] = range.endHigh;
+            endLow[i] = range.endLow;
+        }
+    }
+
+    /**
+     * Check whether a range starts within, or right after, a range starting before it.
+     */
+    private static boolean touches(Range last, Range range)
+    {
+        if (compareAddress(range.startHigh, range.startLow, last.endHigh, last.endLow) <= 0)
+        {
+            return true;
+        }
+        if (last.endHigh == -1L && last.endLow == -1L)
+        {
+            return false;
+        }
+        long nextLow = last.endLow + 1;
+        long nextHigh = nextLow == 0 ? last.endHigh + 1 : last.endHigh;
+        return compareAddress(range.startHigh, range.startLow, nextHigh, nextLow) == 0;
+    }
+
+    /**
+     * @return number of disjoint intervals in this set
+     */
+    public int size()
+    {
+        return startHigh.length;
+    }
+
+    /**
+     * Check whether an address is contained in one of the ranges.
+     *
+     * @param ip IPv4 or IPv6 address, surrounding whitespace is ignored
+     * @return true if the address is in this set, false if it is not or is not a valid address
+     */
+    public boolean contains(String ip)
+    {
+        long[] address = parseAddress(ip == null ? null : ip.trim());
+        if (address == null)
+        {
+            return false;
+        }
+        return contains(address[0], address[1]);
+    }
+
+    protected boolean contains(long high, long low)
+    {
+        // Find the last interval starting at or before the address
+        int lo = 0;
+        int hi = startHigh.length - 1;
+        int found = -1;
+        while (lo <= hi)
+        {
+            int mid = (lo + hi) >>> 1;
+            if (compareAddress(startHigh[mid], startLow[mid], high, low) <= 0)
+            {
+                found = mid;
+                lo = mid + 1;
+            }
+            else
+            {
+                hi = mid - 1;
+            }
+        }
+        return found >= 0 && compareAddress(high, low, endHigh[found], endLow[found]) <= 0;
+    }
+
+    /**
+     * Parse a range specification.
+     *
+     * @param spec the range, see the class description for the accepted formats
+     * @return the range
+     * @throws IPTable.IPFormatException if the specification is not valid
+     */
+    public static Range parseRange(String spec) throws IPTable.IPFormatException
+    {
+        String trimmed = spec.trim();
+
+        int dash = trimmed.indexOf('-');
+        if (0 < dash)
+        {
+            long[] start = parseAddress(trimmed.substring(0, dash).trim());
+            long[] end = parseAddress(trimmed.substring(dash + 1).trim());
+            if (start == null || end == null || compareAddress(start[0], start[1], end[0], end[1]) > 0)
+            {
+                throw new IPTable.IPFormatException(spec + " - Ranges need two full addresses, lowest first");
+            }
+            return new Range(start[0], start[1], end[0], end[1]);
+        }
+
+        int slash = trimmed.indexOf('/');
+        if (0 < slash)
+        {
+            String network = trimmed.substring(0, slash);
+            long[] address = parseAddress(network);
+            int prefix;
+            try {
+                prefix = Integer.parseInt(trimmed.substring(slash + 1).trim());
+            } catch (NumberFormatException e)
+            {
+                throw new IPTable.IPFormatException(spec + " - Invalid network prefix length");
+            }
+            boolean ipv4 = network.indexOf(':') < 0;
+            if (address == null || prefix < 0 || prefix > (ipv4 ? 32 : 128))
+            {
+                throw new IPTable.IPFormatException(spec + " - Invalid CIDR notation");
+            }
+            return prefixRange(address, ipv4 ? 96 + prefix : prefix);
+        }
+
+        if (trimmed.indexOf(':') < 0)
+        {
+            // Partial IPv4 address: all addresses starting with the given octets
+            String[] octets = trimmed.split("\\.");
+            if (octets.length < 3)
+            {
+                throw new IPTable.IPFormatException(spec + " - Require three octets at least, or CIDR notation");
+            }
+            if (octets.length == 3)
+            {
+                long[] address = parseAddress(trimmed + ".0");
+                if (address == null)
+                {
+                    throw new IPTable.IPFormatException(spec + " - Invalid IPv4 address");
+                }
+                return prefixRange(address, 120);
+            }
+        }
+
+        long[] address = parseAddress(trimmed);
+        if (address == null)
+        {
+            throw new IPTable.IPFormatException(spec + " - Invalid IP address");
+        }
+        return new Range(address[0], address[1], address[0], address[1]);
+    }
+
+    private static Range prefixRange(long[] address, int prefix)
+    {
+        long maskHigh = prefix >= 64 ? -1L : (prefix == 0 ? 0 : -1L << (64 - prefix));
+        long maskLow = prefix <= 64 ? 0 : (prefix == 128 ? -1L : -1L << (128 - prefix));
+        return new Range(address[0] & maskHigh, address[1] & maskLow,
+                address[0] | ~maskHigh, address[1] | ~maskLow);
+    }
+
+    /**
+     * Parse a single IPv4 or IPv6 address into its high and low 64 bits.
+     * No name resolution is ever attempted.
+     *
+     * @param ip the address
+     * @return array of the high and low 64 bits, or null if the address is not valid
+     */
+    protected static long[] parseAddress(String ip)
+    {
+        if (ip == null || ip.isEmpty())
+        {
+            return null;
+        }
+        if (ip.indexOf(':') < 0)
+        {
+            long address = parseIPv4(ip);
+            return address < 0 ? null : new long[]{ 0, IPV4_MAPPED | address };
+        }
+
+        // Only IPv6 literals reach InetAddress, which therefore never does a lookup
+        String literal = ip.startsWith("[") && ip.endsWith("]") ? ip.substring(1, ip.length() - 1) : ip;
+        if (literal.isEmpty() || (literal.charAt(0) != ':' && Character.digit(literal.charAt(0), 16) < 0))
+        {
+            return null;
+        }
+        byte[] bytes;
+        try {
+            bytes = InetAddress.getByName(literal).getAddress();
+        } catch (UnknownHostException | SecurityException e)
+        {
+            return null;
+        }
+        if (bytes.length == 4)
+        {
+            // IPv4-mapped IPv6 addresses are returned as IPv4 addresses
+            return new long[]{ 0, IPV4_MAPPED | ((bytes[0] & 0xffL) << 24) | ((bytes[1] & 0xffL) << 16)
+                    | ((bytes[2] & 0xffL) << 8) | (bytes[3] & 0xffL) };
+        }
+        long high = 0;
+        long low = 0;
+        for (int i = 0; i < 8; i++)
+        {
+            high = (high << 8) | (bytes[i] & 0xffL);
+            low = (low << 8) | (bytes[i + 8] & 0xffL);
+        }
+        return new long[]{ high, low };
+    }
+
+    /**
+     * @return the 32 bit address, or -1 if it is not a dotted quad
+     */
+    private static long parseIPv4(String ip)
+    {
+        long address = 0;
+        int octets = 0;
+        int value = -1;
+        for (int i = 0; i <= ip.length(); i++)
+        {
+            char c = i < ip.length() ? ip.charAt(i) : '.';
+            if ('0' <= c && c <= '9')
+            {
+                value = (value < 0 ? 0 : value * 10) + (c - '0');
+                if (value > 255)
+                {
+                    return -1;
+                }
+            }
+            else if (c == '.' && value >= 0 && octets < 4)
+            {
+                address = (address << 8) | value;
+                octets++;
+                value = -1;
+            }
+            else
+            {
+                return -1;
+            }
+        }
+        return octets == 4 ? address : -1;
+    }
+
+    /**
+     * Compare two 128 bit addresses as unsigned numbers.
+     */
+    private static int compareAddress(long aHigh, long aLow, long bHigh, long bLow)
+    {
+        if (aHigh != bHigh)
+        {
+            return (aHigh ^ Long.MIN_VALUE) < (bHigh ^ Long.MIN_VALUE) ? -1 : 1;
+        }
+        if (aLow != bLow)
+        {
+            return (aLow ^ Long.MIN_VALUE) < (bLow ^ Long.MIN_VALUE) ? -1 : 1;
+        }
+        return 0;
+    }
+
+    /**
+     * An inclusive range of 128 bit addresses.
+     */
+    public static class Range
+    {
+        private final long startHigh;
+        private final long startLow;
+        private final long endHigh;
+        private final long endLow;
+
+        protected Range(long startHigh, long startLow, long endHigh, long endLow)
+        {
+            this.startHigh = startHigh;
+            this.startLow = startLow;
+            this.endHigh = endHigh;
+            this.endLow = endLow;
+        }
+    }
+}
@@ -0,0 +1,222 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Immutable, thread safe set of case insensitive regular expressions, matched with
+ * {@link java.util.regex.Matcher#find()} semantics: a string matches the set if any
+ * expression is found in it.
+ * <p>
+ * Expressions that only match a fixed string (e.g. <code>Googlebot</code> or
+ * <code>Pingdom\.com_bot</code>) are not run as regular expressions but looked up as
+ * substrings of the lower-cased input. All other expressions are combined into a single
+ * alternation, so the input is scanned by one matcher instead of one per expression.
+ * The verdicts for the most recently seen inputs are cached in two generations of
+ * concurrent maps: lookups never lock, a verdict found in the older generation is copied
+ * to the recent one, and once the recent generation is full it becomes the older one,
+ * dropping the verdicts which were not used since.
+ */
+public class PatternSet
+{
+    private static final Logger log = LoggerFactory.getLogger(PatternSet.class);
+
+    /** Maximum number of verdicts cached, half of them in each generation */
+    protected static final int MAX_CACHED_VERDICTS = 10000;
+
+    /** Lower-cased fixed strings */
+    private final String[] literals;
+
+    /** Expressions that could not be combined, or the combined expression */
+    private final Pattern[] patterns;
+
+    /** Verdicts by input, used or computed since the last rotation */
+    private volatile ConcurrentHashMap<String, Boolean> recentVerdicts = new ConcurrentHashMap<>();
+
+    /** Verdicts by input of the previous generation */
+    private volatile ConcurrentHashMap<String, Boolean> olderVerdicts = new ConcurrentHashMap<>();
+
+    /**
+     * Compile a set of expressions. Invalid expressions are logged and skipped.
+     *
+     * @param expressions the regular expressions
+     */
+    public PatternSet(Collection<String> expressions)
+    {
+        List<String> literalList = new ArrayList<>();
+        List<String> combinable = new ArrayList<>();
+        List<Pattern> patternList = new ArrayList<>();
+        for (String expression : expressions)
+        {
+            String literal = toLiteral(expression);
+            if (literal != null)
+            {
+                literalList.add(literal.toLowerCase(Locale.ROOT));
+                continue;
+            }
+            Pattern pattern;
+            try {
+                pattern = Pattern.compile(expression, Pattern.CASE_INSENSITIVE);
+            } catch (PatternSyntaxException e)
+            {
+                log.error("Invalid pattern {}:  {}", expression, e.getMessage());
+                continue;
+            }
+            // Back references would point to the wrong group once combined, an unterminated quote would swallow the rest
+            if (expression.matches(".*\\\\[1-9kQ].*"))
+            {
+                patternList.add(pattern);
+            }
+            else
+            {
+                combinable.add(expression);
+            }
+        }
+
+        if (!combinable.isEmpty())
+        {
+            StringBuilder combined = new StringBuilder();
+            for (String expression : combinable)
+            {
+                if (combined.length() > 0)
+                {
+                    combined.append('|');
+                }
+                combined.append("(?:").append(expression).append(')');
+            }
+            patternList.add(Pattern.compile(combined.toString(), Pattern.CASE_INSENSITIVE));
+        }
+
+        literals = literalList.toArray(new String[literalList.size()]);
+        patterns = patternList.toArray(new Pattern[patternList.size()]);
+    }
+
+    /**
+     * Check whether any expression is found in a string.
+     *
+     * @param input the string to check
+     * @return true if one of the expressions matches part of the input
+     */
+    public boolean matches(String input)
+    {
+        ConcurrentHashMap<String, Boolean> recent = recentVerdicts;
+        Boolean verdict = recent.get(input);
+        if (verdict == null)
+        {
+            verdict = olderVerdicts.get(input);
+            if (verdict == null)
+            {
+                verdict = evaluate(input);
+            }
+            recent.put(input, verdict);
+            if (recent.size() >= MAX_CACHED_VERDICTS / 2)
+            {
+                rotate(recent);
+            }
+        }
+        return verdict;
+    }
+
+    /**
+     * Make a full recent generation the older one. Only writers which filled it wait for this.
+     *
+     * @param full the recent generation found full
+     */
+    private synchronized void rotate(ConcurrentHashMap<String, Boolean> full)
+    {
+        if (recentVerdicts == full)
+        {
+            olderVerdicts = full;
+            recentVerdicts = new ConcurrentHashMap<>();
+        }
+    }
+
+    /**
+     * @return true if this set has no expressions
+     */
+    public boolean isEmpty()
+    {
+        return literals.length == 0 && patterns.length == 0;
+    }
+
+    protected boolean evaluate(String input)
+    {
+        if (literals.length > 0)
+        {
+            String lowerCased = input.toLowerCase(Locale.ROOT);
+            for (String literal : literals)
+            {
+                if (lowerCased.contains(literal))
+                {
+                    return true;
+                }
+            }
+        }
+        for (Pattern pattern : patterns)
+        {
+            if (pattern.matcher(input).find())
+            {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Get the fixed string an expression matches, if it only matches a fixed string.
+     *
+     * @param expression the regular expression
+     * @return the unescaped string, or null if the expression uses any regular expression construct
+     */
+    protected static String toLiteral(String expression)
+    {
+        StringBuilder literal = new StringBuilder(expression.length());
+        for (int i = 0; i < expression.length(); i++)
+        {
+            char c = expression.charAt(i);
+            if (c == '\\')
+            {
+                if (i + 1 == expression.length())
+                {
+                    return null;
+                }
+                char escaped = expression.charAt(++i);
+                if (Character.isLetterOrDigit(escaped))
+                {
+                    // Character classes (\s, \d, ...) and other escapes
+                    return null;
+                }
+                literal.append(escaped);
+            }
+            else if ("[](){}.*+?^$|".indexOf(c) >= 0)
+            {
+                return null;
+            }
+            else if (c > 127)
+            {
+                // Case folding of non ASCII characters may differ from the regular expression engine
+                return null;
+            }
+            else
+            {
+                literal.append(c);
+            }
+        }
+        return literal.length() == 0 ? null : literal.toString();
+    }
+}
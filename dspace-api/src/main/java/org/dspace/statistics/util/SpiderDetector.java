@@ -15,8 +15,7 @@ import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
-import java.util.Collections;
-import java.util.regex.Pattern;
+import java.util.concurrent.atomic.AtomicLong;
 import javax.servlet.http.HttpServletRequest;
 import org.dspace.services.factory.DSpaceServicesFactory;
 import org.slf4j.Logger;
@@ -37,18 +36,17 @@ public class SpiderDetector {
 
     private static Boolean useProxies;
 
+    /** Minimum time in milliseconds between two checks of the spider files for changes */
+    private static final long RELOAD_CHECK_INTERVAL = 60000;
+
     /**
-     * Sparse HashTable structure to hold IP address ranges.
+     * The compiled spider rules. They are loaded on first use and replaced as a whole by
+     * {@link #reload()}, so checking a request never needs a lock.
      */
-    private static IPTable table = null;
-
-    /** Collection of regular expressions to match known spiders' agents. */
-    private static final List<Pattern> agents
-            = Collections.synchronizedList(new ArrayList<Pattern>());
+    private static volatile SpiderRules rules = null;
 
-    /** Collection of regular expressions to match known spiders' domain names. */
-    private static final List<Pattern> domains
-            = Collections.synchronizedList(new ArrayList<Pattern>());
+    /** Time after which the spider files are next checked for changes */
+    private static final AtomicLong nextCheck = new AtomicLong(0);
 
     /**
      * Utility method which reads lines from a file & returns them in a Set.
@@ -94,55 +92,135 @@ public class SpiderDetector {
      */
     public static Set<String> getSpiderIpAddresses() {
 
-        loadSpiderIpAddresses();
-        return table.toSet();
+        return getRules().table.toSet();
+    }
+
+    /**
+     * Read the spider files again and replace the rules in use. The rules are also
+     * reloaded when the spider files change, e.g. after <code>stats-util -u</code>,
+     * at most {@link #RELOAD_CHECK_INTERVAL} milliseconds later.
+     */
+    public static void reload()
+    {
+        rules = loadRules();
+    }
+
+    private static SpiderRules getRules()
+    {
+        SpiderRules current = rules;
+        if (current == null)
+        {
+            synchronized (SpiderDetector.class)
+            {
+                current = rules;
+                if (current == null)
+                {
+                    current = loadRules();
+                    rules = current;
+                }
+            }
+        }
+        else
+        {
+            // a single thread checks the files for changes, the others use the current rules
+            long now = System.currentTimeMillis();
+            long next = nextCheck.get();
+            if (next <= now && nextCheck.compareAndSet(next, now + RELOAD_CHECK_INTERVAL)
+                    && getFilesStamp() != current.filesStamp)
+            {
+                log.info("The spider files changed, reloading them");
+                reload();
+                current = rules;
+            }
+        }
+        return current;
+    }
+
+    /**
+     * @return a value which changes when a spider file is added, removed or modified
+     */
+    private static long getFilesStamp()
+    {
+        String dspaceHome = DSpaceServicesFactory.getInstance().getConfigurationService().getProperty("dspace.dir");
+        File spidersDir = new File(dspaceHome, "config/spiders");
+        long stamp = 0;
+        for (File directory : new File[] { spidersDir, new File(spidersDir, "agents"), new File(spidersDir, "domains") })
+        {
+            File[] files = directory.listFiles();
+            if (files == null)
+            {
+                continue;
+            }
+            for (File file : files)
+            {
+                if (file.isFile())
+                {
+                    stamp += (31L * file.getPath().hashCode() + file.lastModified()) * 31L + file.length();
+                }
+            }
+        }
+        return stamp;
     }
 
     /*
-     *  private loader to populate the table from files.
+     *  private loader to compile the rules from files.
      */
 
-    private synchronized static void loadSpiderIpAddresses() {
-
-        if (table == null) {
-            table = new IPTable();
-
-            String filePath = DSpaceServicesFactory.getInstance().getConfigurationService().getProperty("dspace.dir");
-
-            try {
-                File spidersDir = new File(filePath, "config/spiders");
-
-                if (spidersDir.exists() && spidersDir.isDirectory()) {
-                    for (File file : spidersDir.listFiles()) {
-                        if (file.isFile())
-                        {
-                            for (String ip : readPatterns(file)) {
-                                log.debug("Loading {}", ip);
-                                if (!Character.isDigit(ip.charAt(0)))
-                                {
-                                    try {
-                                        ip = DnsLookup.forward(ip);
-                                        log.debug("Resolved to {}", ip);
-                                    } catch (IOException e) {
-                                        log.warn("Not loading {}:  {}", ip, e.getMessage());
-                                        continue;
-                                    }
+    private static SpiderRules loadRules()
+    {
+        // taken first, so that files changed while loading are loaded again
+        long filesStamp = getFilesStamp();
+        nextCheck.set(System.currentTimeMillis() + RELOAD_CHECK_INTERVAL);
+        IPTable table = new IPTable();
+        List<IPRangeSet.Range> ranges = new ArrayList<>();
+
+        String filePath = DSpaceServicesFactory.getInstance().getConfigurationService().getProperty("dspace.dir");
+
+        try {
+            File spidersDir = new File(filePath, "config/spiders");
+
+            if (spidersDir.exists() && spidersDir.isDirectory()) {
+                for (File file : spidersDir.listFiles()) {
+                    if (file.isFile())
+                    {
+                        for (String ip : readPatterns(file)) {
+                            log.debug("Loading {}", ip);
+                            if (!Character.isDigit(ip.charAt(0)) && ip.indexOf(':') < 0)
+                            {
+                                try {
+                                    ip = DnsLookup.forward(ip);
+                                    log.debug("Resolved to {}", ip);
+                                } catch (IOException e) {
+                                    log.warn("Not loading {}:  {}", ip, e.getMessage());
+                                    continue;
                                 }
+                            }
+                            try {
+                                ranges.add(IPRangeSet.parseRange(ip));
+                            } catch (IPTable.IPFormatException e) {
+                                log.warn("Not loading {}:  {}", ip, e.getMessage());
+                                continue;
+                            }
+                            // The table only lists the addresses it can represent, see getSpiderIpAddresses()
+                            try {
                                 table.add(ip);
+                            } catch (IPTable.IPFormatException | RuntimeException e) {
+                                log.debug("Not listing {}:  {}", ip, e.getMessage());
                             }
-                            log.info("Loaded Spider IP file: " + file);
                         }
+                        log.info("Loaded Spider IP file: " + file);
                     }
-                } else {
-                    log.info("No spider file loaded");
                 }
+            } else {
+                log.info("No spider file loaded");
             }
-            catch (IOException | IPTable.IPFormatException e) {
-                log.error("Error Loading Spiders:" + e.getMessage(), e);
-            }
-
+        }
+        catch (IOException e) {
+            log.error("Error Loading Spiders:" + e.getMessage(), e);
         }
 
+        return new SpiderRules(table, new IPRangeSet(ranges),
+                new PatternSet(loadPatterns("agents")), new PatternSet(loadPatterns("domains")), filesStamp);
     }
 
     /**
@@ -151,11 +229,11 @@ public class SpiderDetector {
      * @param directory simple directory name (e.g. "agents").
      *      "${dspace.dir}/config/spiders" will be prepended to yield the path to
      *      the directory of pattern files.
-     * @param patternList patterns read from the files in {@code directory} will
-     *      be added to this List.
+     * @return patterns read from the files in {@code directory}.
      */
-    private static void loadPatterns(String directory, List<Pattern> patternList)
+    private static List<String> loadPatterns(String directory)
     {
+        List<String> patternList = new ArrayList<>();
         String dspaceHome = DSpaceServicesFactory.getInstance().getConfigurationService().getProperty("dspace.dir");
         File spidersDir = new File(dspaceHome, "config/spiders");
         File patternsDir = new File(spidersDir, directory);
@@ -173,10 +251,7 @@ public class SpiderDetector {
                             file.getPath(), ex.getMessage());
                     continue;
                 }
-                for (String pattern : patterns)
-                {
-                    patternList.add(Pattern.compile(pattern,Pattern.CASE_INSENSITIVE));
-                }
+                patternList.addAll(patterns);
                 log.info("Loaded pattern file:  {}", file.getPath());
             }
         }
@@ -184,6 +259,7 @@ public class SpiderDetector {
         {
             log.info("No patterns loaded from {}", patternsDir.getPath());
         }
+        return patternList;
     }
 
     /**
@@ -201,54 +277,32 @@ public class SpiderDetector {
     public static boolean isSpider(String clientIP, String proxyIPs,
             String hostname, String agent)
     {
+        SpiderRules current = getRules();
+
         // See if any agent patterns match
-        if (null != agent)
+        if (null != agent && current.agents.matches(agent))
         {
-            synchronized(agents)
-            {
-                if (agents.isEmpty())
-                    loadPatterns("agents", agents);
-            }
-            for (Pattern candidate : agents)
-            {
-		// prevent matcher() invocation from a null Pattern object
-                if (null != candidate && candidate.matcher(agent).find())
-                {
-                    return true;
-                }
-            }
+            return true;
         }
 
         // No.  See if any IP addresses match
         if (isUseProxies() && proxyIPs != null) {
             /* This header is a comma delimited list */
             for (String xfip : proxyIPs.split(",")) {
-                if (isSpider(xfip))
+                if (current.ips.contains(xfip))
                 {
                     return true;
                 }
             }
         }
 
-        if (isSpider(clientIP))
+        if (clientIP != null && current.ips.contains(clientIP))
             return true;
 
         // No.  See if any DNS names match
-        if (null != hostname)
+        if (null != hostname && current.domains.matches(hostname))
         {
-            synchronized(domains)
-            {
-                if (domains.isEmpty())
-                    loadPatterns("domains", domains);
-            }
-            for (Pattern candidate : domains)
-            {
-		// prevent matcher() invocation from a null Pattern object
-		if (null != candidate && candidate.matcher(hostname).find())
-                {
-                    return true;
-                }
-            }
+            return true;
         }
 
         // Not a known spider.
@@ -277,21 +331,7 @@ public class SpiderDetector {
      */
     public static boolean isSpider(String ip) {
 
-        if (table == null) {
-            SpiderDetector.loadSpiderIpAddresses();
-        }
-
-        try {
-            if (table.contains(ip)) {
-                return true;
-            }
-        } catch (Exception e) {
-            return false;
-        }
-
-        return false;
-
-
+        return ip != null && getRules().ips.contains(ip);
     }
 
     private static boolean isUseProxies() {
@@ -302,4 +342,31 @@ public class SpiderDetector {
         return useProxies;
     }
 
+    /**
+     * Everything loaded from the spider files, compiled for matching.
+     */
+    private static class SpiderRules
+    {
+        /** Addresses as listed by {@link #getSpiderIpAddresses()} */
+        private final IPTable table;
+
+        private final IPRangeSet ips;
+
+        private final PatternSet agents;
+
+        private final PatternSet domains;
+
+        /** Stamp of the spider files these rules were loaded from */
+        private final long filesStamp;
+
+        private SpiderRules(IPTable table, IPRangeSet ips, PatternSet agents, PatternSet domains, long filesStamp)
+        {
+            this.table = table;
+            this.ips = ips;
+            this.agents = agents;
+            this.domains = domains;
+            this.filesStamp = filesStamp;
+        }
+    }
+
 }
@@ -0,0 +1,244 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.bitstore;
+
+import org.apache.commons.cli.*;
+import org.apache.log4j.Logger;
+import org.dspace.content.Bitstream;
+import org.dspace.core.Utils;
+import org.dspace.storage.bitstore.factory.StorageServiceFactory;
+import org.dspace.storage.bitstore.service.BitstreamStorageService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Command Line Utility to measure the throughput of the configured
+ * assetstores. Generated files are stored, checksummed and read back from
+ * each store, then removed; nothing is recorded in the database.
+ */
+public class BitStoreBenchmark {
+
+    /** log4j log */
+    private static Logger log = Logger.getLogger(BitStoreBenchmark.class);
+
+    private static final BitstreamStorageService bitstreamStorageService = StorageServiceFactory.getInstance().getBitstreamStorageService();
+
+    private static final long MEGABYTE = 1024L * 1024L;
+
+    /**
+     * Benchmarks the asset stores.
+     *
+     * @param argv -
+     *            Command-line arguments
+     */
+    public static void main(String[] argv)
+    {
+        try
+        {
+            log.info("Benchmark Assetstore");
+
+            // set up command line parser
+            CommandLineParser parser = new PosixParser();
+            CommandLine line = null;
+
+            // create an options object and populate it
+            Options options = new Options();
+
+            options.addOption("a", "assetstore", true, "Assetstore store_number to benchmark. (Default: every configured assetstore)");
+            options.addOption("n", "number", true, "Number of files to write. (Default: 10)");
+            options.addOption("m", "megabytes", true, "Size of each file in megabytes. (Default: 10)");
+            options.addOption("h", "help", false, "Help");
+
+            try
+            {
+                line = parser.parse(options, argv);
+            }
+            catch (ParseException e)
+            {
+                log.fatal(e);
+                System.exit(1);
+            }
+
+            // user asks for help
+            if (line.hasOption('h'))
+            {
+                printHelp(options);
+                System.exit(0);
+            }
+
+            int number = 10;
+            if (line.hasOption('n')) {
+                number = Integer.parseInt(line.getOptionValue('n'));
+            }
+            long size = 10 * MEGABYTE;
+            if (line.hasOption('m')) {
+                size = Long.parseLong(line.getOptionValue('m')) * MEGABYTE;
+            }
+
+            Map<Integer, BitStoreService> stores = bitstreamStorageService.getStores();
+            if (line.hasOption('a')) {
+                Integer storeNumber = Integer.valueOf(line.getOptionValue('a'));
+                if (!stores.containsKey(storeNumber)) {
+                    System.out.println("No assetstore " + storeNumber);
+                    System.exit(1);
+                }
+                benchmark(storeNumber, stores.get(storeNumber), number, size);
+            } else {
+                for (Map.Entry<Integer, BitStoreService> store : stores.entrySet()) {
+                    benchmark(store.getKey(), store.getValue(), number, size);
+                }
+            }
+
+            System.exit(0);
+        }
+        catch (Exception e)
+        {
+            log.fatal("Caught exception:", e);
+            System.out.println("Exception during BitStoreBenchmark: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Write, checksum and read files in a store, printing the throughput of
+     * each operation.
+     *
+     * @param storeNumber the number of the store
+     * @param store the store
+     * @param number the number of files
+     * @param size the size of each file in bytes
+     * @throws IOException if the store fails
+     */
+    protected static void benchmark(int storeNumber, BitStoreService store, int number, long size) throws IOException
+    {
+        System.out.println("Assetstore " + storeNumber + " (" + store.getClass().getSimpleName() + "): "
+                + number + " files of " + (size / MEGABYTE) + " MB");
+
+        List<Bitstream> bitstreams = new ArrayList<>(number);
+        try
+        {
+            long start = System.currentTimeMillis();
+            for (int i = 0; i < number; i++)
+            {
+                Bitstream bitstream = new ScratchBitstream(storeNumber);
+                bitstreams.add(bitstream);
+                store.put(bitstream, new GeneratedInputStream(size, i));
+            }
+            report("put", number * size, start);
+
+            start = System.currentTimeMillis();
+            for (Bitstream bitstream : bitstreams)
+            {
+                Map attrs = new HashMap();
+                attrs.put("checksum", null);
+                store.about(bitstream, attrs);
+            }
+            report("checksum", number * size, start);
+
+            start = System.currentTimeMillis();
+            byte[] buffer = new byte[64 * 1024];
+            for (Bitstream bitstream : bitstreams)
+            {
+                try (InputStream in = store.get(bitstream))
+                {
+                    while (in.read(buffer) != -1)
+                    {
+                        // read everything
+                    }
+                }
+            }
+            report("get", number * size, start);
+        }
+        finally
+        {
+            for (Bitstream bitstream : bitstreams)
+            {
+                try
+                {
+                    store.remove(bitstream);
+                }
+                catch (IOException e)
+                {
+                    log.warn("Unable to remove " + bitstream.getInternalId() + " from assetstore " + storeNumber, e);
+                }
+            }
+        }
+    }
+
+    private static void report(String operation, long bytes, long start)
+    {
+        long elapsed = Math.max(1, System.currentTimeMillis() - start);
+        double rate = (bytes / (double) MEGABYTE) / (elapsed / 1000.0);
+        System.out.println(String.format("  %-10s %8d ms %10.1f MB/s", operation, elapsed, rate));
+    }
+
+    private static void printHelp(Options options)
+    {
+        HelpFormatter myhelp = new HelpFormatter();
+        myhelp.printHelp("BitStoreBenchmark\n", options);
+    }
+
+    /**
+     * A bitstream which is only stored, never saved in the database.
+     */
+    private static class ScratchBitstream extends Bitstream
+    {
+        private ScratchBitstream(int storeNumber)
+        {
+            setInternalId(Utils.generateKey());
+            setStoreNumber(storeNumber);
+        }
+    }
+
+    /**
+     * A stream of pseudo-random bytes, generated as they are read.
+     */
+    private static class GeneratedInputStream extends InputStream
+    {
+        private final Random random;
+        private long remaining;
+
+        private GeneratedInputStream(long size, long seed)
+        {
+            this.random = new Random(seed);
+            this.remaining = size;
+        }
+
+        @Override
+        public int read()
+        {
+            if (remaining <= 0)
+            {
+                return -1;
+            }
+            remaining--;
+            return random.nextInt(256);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len)
+        {
+            if (remaining <= 0)
+            {
+                return -1;
+            }
+            int count = (int) Math.min(len, remaining);
+            byte[] bytes = new byte[count];
+            random.nextBytes(bytes);
+            System.arraycopy(bytes, 0, b, off, count);
+            remaining -= count;
+            return count;
+        }
+    }
+}
@@ -49,7 +49,11 @@ public class BitStoreMigrate {
             options.addOption("b", "destination", true, "Destination assetstore store_number (to gain content). This is a number such as 0 or 1.");
             options.addOption("d", "delete", false, "Delete file from losing assetstore. (Default: Keep bitstream in old assetstore)");
             options.addOption("p", "print", false, "Print out current assetstore information");
-            options.addOption("s", "size", true, "Batch commit size. (Default: 1, commit after each file transfer)");
+            options.addOption("s", "size", true, "Batch commit size, at least the number of threads. (Default: the number of threads, 1 commits after each file transfer)");
+            options.addOption("t", "threads", true, "Number of files copied concurrently. (Default: 1)");
+            options.addOption("l", "limit", true, "Limit of the total copy rate, in megabytes per second. (Default: no limit)");
+            options.addOption("v", "verify", false, "Read back each copy from the destination assetstore to verify its checksum");
+            options.addOption("n", "dry-run", true, "Estimate the migration time by copying this number of files, without migrating them");
             options.addOption("h", "help", false, "Help");
 
             try
@@ -90,13 +94,29 @@ public class BitStoreMigrate {
                 Integer sourceAssetstore = Integer.valueOf(line.getOptionValue('a'));
                 Integer destinationAssetstore = Integer.valueOf(line.getOptionValue('b'));
 
-                //Safe default, commit every time. TODO Performance Profile
-                Integer batchCommitSize = 1;
+                int threads = 1;
+                if(line.hasOption('t')) {
+                    threads = Integer.parseInt(line.getOptionValue('t'));
+                }
+
+                //Safe default, commit every time each thread copied a file
+                Integer batchCommitSize = Math.max(1, threads);
                 if(line.hasOption('s')) {
                     batchCommitSize = Integer.parseInt(line.getOptionValue('s'));
                 }
 
-                bitstreamStorageService.migrate(context, sourceAssetstore, destinationAssetstore, deleteOld, batchCommitSize);
+                long maxBytesPerSecond = 0;
+                if(line.hasOption('l')) {
+                    maxBytesPerSecond = Long.parseLong(line.getOptionValue('l')) * 1024 * 1024;
+                }
+
+                if(line.hasOption('n')) {
+                    int sampleSize = Integer.parseInt(line.getOptionValue('n'));
+                    bitstreamStorageService.estimateMigration(context, sourceAssetstore, destinationAssetstore, sampleSize, threads, maxBytesPerSecond);
+                } else {
+                    bitstreamStorageService.migrate(context, sourceAssetstore, destinationAssetstore, deleteOld, batchCommitSize,
+                            threads, maxBytesPerSecond, line.hasOption('v'));
+                }
             } else {
                 printHelp(options);
                 System.exit(0);
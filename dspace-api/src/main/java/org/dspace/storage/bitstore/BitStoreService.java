@@ -47,6 +47,26 @@ public interface BitStoreService
      */
 	public InputStream get(Bitstream bitstream) throws IOException;
 
+	/**
+     * Retrieve a range of the bits for bitstream. The stream starts at the first
+     * byte of the range but may go on past its end: callers stop reading after
+     * <code>length</code> bytes.
+     * 
+     * @param bitstream
+     *            The bitstream to read
+     * @param offset
+     *            The position of the first byte to read
+     * @param length
+     *            The number of bytes to read, or -1 to read to the end
+     *
+     * @exception java.io.IOException
+     *         If a problem occurs while retrieving the bits, or if no
+     *         asset with ID exists in the store
+     *
+     * @return The stream of bits in the range
+     */
+	public InputStream get(Bitstream bitstream, long offset, long length) throws IOException;
+
     /**
      * Store a stream of bits.
      *
@@ -16,6 +16,7 @@ import org.dspace.content.Item;
 import org.dspace.content.MetadataValue;
 import org.dspace.content.service.BitstreamService;
 import org.dspace.core.Context;
+import org.dspace.core.ThroughputLimiter;
 import org.dspace.core.Utils;
 import org.dspace.storage.bitstore.service.BitstreamStorageService;
 import org.springframework.beans.factory.InitializingBean;
@@ -23,8 +24,15 @@ import org.springframework.beans.factory.annotation.Autowired;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 /**
  * <P>
@@ -131,6 +139,41 @@ public class BitstreamStorageServiceImpl implements BitstreamStorageService, Ini
         return bitstreamId;
     }
 
+    @Override
+    public void put(Context context, Bitstream bitstream, InputStream is) throws SQLException, IOException
+    {
+        bitstream.setDeleted(true);
+        bitstream.setInternalId(Utils.generateKey());
+        bitstream.setStoreNumber(incoming);
+        // The cleanup finds the bits from the deleted entry, which must be committed first
+        update(context, bitstream);
+        context.commit();
+
+        //PUT sets the bitstream size_bytes, checksum, and checksum_algorithm
+        stores.get(incoming).put(bitstream, is);
+        update(context, bitstream);
+        context.commit();
+    }
+
+    private void update(Context context, Bitstream bitstream) throws SQLException
+    {
+        try {
+            context.turnOffAuthorisationSystem();
+            bitstreamService.update(context, bitstream);
+        } catch (AuthorizeException e) {
+            log.error(e);
+            //Can never happen since we turn off authorization before we update
+        } finally {
+            context.restoreAuthSystemState();
+        }
+    }
+
+    @Override
+    public void remove(Bitstream bitstream) throws IOException
+    {
+        stores.get(bitstream.getStoreNumber()).remove(bitstream);
+    }
+
 	/**
 	 * Register a bitstream already in storage.
 	 *
@@ -216,6 +259,14 @@ public class BitstreamStorageServiceImpl implements BitstreamStorageService, Ini
         return stores.get(storeNumber).get(bitstream);
     }
 
+    @Override
+    public InputStream retrieve(Context context, Bitstream bitstream, long offset, long length)
+            throws SQLException, IOException
+    {
+        Integer storeNumber = bitstream.getStoreNumber();
+        return stores.get(storeNumber).get(bitstream, offset, length);
+    }
+
     @Override
     public void cleanup(boolean deleteDbRecords, boolean verbose) throws SQLException, IOException, AuthorizeException {
         Context context = null;
@@ -358,33 +409,169 @@ public class BitstreamStorageServiceImpl implements BitstreamStorageService, Ini
      * @param assetstoreDestination
      */
     public void migrate(Context context, Integer assetstoreSource, Integer assetstoreDestination, boolean deleteOld, Integer batchCommitSize) throws IOException, SQLException, AuthorizeException {
-        //Find all the bitstreams on the old source, copy it to new destination, update store_number, save, remove old
-        Iterator<Bitstream> allBitstreamsInSource = bitstreamService.findByStoreNumber(context, assetstoreSource);
-        Integer processedCounter = 0;
+        migrate(context, assetstoreSource, assetstoreDestination, deleteOld, batchCommitSize, 1, 0, false);
+    }
 
-        while (allBitstreamsInSource.hasNext()) {
-            Bitstream bitstream = allBitstreamsInSource.next();
-            log.info("Copying bitstream:" + bitstream.getID() + " from assetstore[" + assetstoreSource + "] to assetstore[" + assetstoreDestination + "] Name:" + bitstream.getName() + ", SizeBytes:" + bitstream.getSize());
+    /**
+     * Migrates all assets off of one assetstore to another, copying several
+     * at a time. The database is committed after each batch, of at least one
+     * bitstream per thread; since a migrated bitstream is recorded in the new
+     * assetstore, an interrupted migration resumes where its last batch was
+     * committed when run again. Old assets are only deleted once their batch
+     * is committed.
+     * @param assetstoreSource
+     * @param assetstoreDestination
+     */
+    @Override
+    public void migrate(Context context, Integer assetstoreSource, Integer assetstoreDestination, boolean deleteOld, Integer batchCommitSize,
+                        int threads, long maxBytesPerSecond, boolean verify) throws IOException, SQLException, AuthorizeException {
+        BitStoreService source = stores.get(assetstoreSource);
+        BitStoreService destination = stores.get(assetstoreDestination);
+        long totalCount = bitstreamService.countByStoreNumber(context, assetstoreSource);
+        long totalBytes = bitstreamService.sumSizeByStoreNumber(context, assetstoreSource);
+        log.info("Migrating " + totalCount + " bitstreams (" + totalBytes + " bytes) from assetstore[" + assetstoreSource + "] to assetstore[" + assetstoreDestination + "] with " + threads + " threads");
+
+        // a batch waits for all its copies: give each thread at least one of them
+        int batchSize = Math.max(batchCommitSize, Math.max(1, threads));
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        ThroughputLimiter limiter = new ThroughputLimiter(maxBytesPerSecond);
+        long start = System.currentTimeMillis();
+        int processedCounter = 0;
+        long processedBytes = 0;
+        // bitstreams left in the source, which precede the next ones in the ordered source
+        int skipped = 0;
+        try {
+            List<Bitstream> batch;
+            while (!(batch = bitstreamService.findByStoreNumber(context, assetstoreSource, skipped, batchSize)).isEmpty()) {
+                List<Future<MigrationCopy>> copies = new ArrayList<>(batch.size());
+                for (Bitstream bitstream : batch) {
+                    if (isRegisteredBitstream(bitstream.getInternalId())) {
+                        // registered files are not in the assetstore
+                        copies.add(null);
+                        continue;
+                    }
+                    log.info("Copying bitstream:" + bitstream.getID() + " from assetstore[" + assetstoreSource + "] to assetstore[" + assetstoreDestination + "] Name:" + bitstream.getName() + ", SizeBytes:" + bitstream.getSize());
+                    copies.add(executor.submit(new MigrationCopy(source, destination, bitstream, assetstoreDestination, limiter, verify)));
+                }
 
-            InputStream inputStream = retrieve(context, bitstream);
-            stores.get(assetstoreDestination).put(bitstream, inputStream);
-            bitstream.setStoreNumber(assetstoreDestination);
-            bitstreamService.update(context, bitstream);
+                List<MigrationCopy> copied = new ArrayList<>(batch.size());
+                for (int i = 0; i < batch.size(); i++) {
+                    Bitstream bitstream = batch.get(i);
+                    MigrationCopy copy = getCopy(copies.get(i), bitstream);
+                    if (copy == null) {
+                        skipped++;
+                        continue;
+                    }
+                    bitstream.setStoreNumber(assetstoreDestination);
+                    bitstream.setSizeBytes(copy.copy.getSize());
+                    bitstream.setChecksum(copy.copy.getChecksum());
+                    bitstream.setChecksumAlgorithm(copy.copy.getChecksumAlgorithm());
+                    bitstreamService.update(context, bitstream);
+                    copied.add(copy);
+                    processedBytes += copy.copy.getSize();
+                }
+
+                context.commit();
+                processedCounter += copied.size();
+                if (deleteOld) {
+                    for (MigrationCopy copy : copied) {
+                        log.info("Removing bitstream:" + copy.copy.getInternalId() + " from assetstore[" + assetstoreSource + "]");
+                        source.remove(copy.original);
+                    }
+                }
 
-            if (deleteOld) {
-                log.info("Removing bitstream:" + bitstream.getID() + " from assetstore[" + assetstoreSource + "]");
-                stores.get(assetstoreSource).remove(bitstream);
+                long elapsed = Math.max(1, System.currentTimeMillis() - start);
+                log.info("Migration Commit Checkpoint: " + processedCounter + "/" + totalCount + " bitstreams, "
+                        + (processedBytes / 1024 / 1024) + "/" + (totalBytes / 1024 / 1024) + " MB at "
+                        + (processedBytes * 1000 / elapsed / 1024 / 1024) + " MB/s, " + skipped + " left in assetstore[" + assetstoreSource + "]");
+                context.clearCache();
             }
+        } finally {
+            executor.shutdownNow();
+        }
+
+        log.info("Assetstore Migration from assetstore[" + assetstoreSource + "] to assetstore[" + assetstoreDestination + "] completed. " + processedCounter + " objects were transferred, " + skipped + " were not.");
+    }
 
-            processedCounter++;
-            //modulo
-            if ((processedCounter % batchCommitSize) == 0) {
-                log.info("Migration Commit Checkpoint: " + processedCounter);
-                context.dispatchEvents();
+    @Override
+    public void estimateMigration(Context context, Integer assetstoreSource, Integer assetstoreDestination, int sampleSize,
+                                  int threads, long maxBytesPerSecond) throws IOException, SQLException {
+        BitStoreService source = stores.get(assetstoreSource);
+        BitStoreService destination = stores.get(assetstoreDestination);
+        long totalCount = bitstreamService.countByStoreNumber(context, assetstoreSource);
+        long totalBytes = bitstreamService.sumSizeByStoreNumber(context, assetstoreSource);
+
+        // copy a sample to new assets of the destination, which are then removed
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, threads));
+        ThroughputLimiter limiter = new ThroughputLimiter(maxBytesPerSecond);
+        List<Future<MigrationCopy>> copies = new ArrayList<>();
+        long start = System.currentTimeMillis();
+        try {
+            for (Bitstream bitstream : bitstreamService.findByStoreNumber(context, assetstoreSource, 0, sampleSize)) {
+                if (!isRegisteredBitstream(bitstream.getInternalId())) {
+                    MigrationCopy copy = new MigrationCopy(source, destination, bitstream, assetstoreDestination, limiter, false);
+                    copy.copy.setInternalId(Utils.generateKey());
+                    copies.add(executor.submit(copy));
+                }
+            }
+            long sampleBytes = 0;
+            for (Future<MigrationCopy> copy : copies) {
+                try {
+                    sampleBytes += copy.get().copy.getSize();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IOException(e);
+                } catch (ExecutionException e) {
+                    throw new IOException(e.getCause());
+                }
+            }
+            long elapsed = Math.max(1, System.currentTimeMillis() - start);
+
+            double bytesPerSecond = sampleBytes * 1000.0 / elapsed;
+            System.out.println("Copied " + copies.size() + " bitstreams (" + sampleBytes + " bytes) from assetstore[" + assetstoreSource + "] to assetstore[" + assetstoreDestination + "] in " + elapsed + " msecs: "
+                    + String.format("%.1f", bytesPerSecond / 1024 / 1024) + " MB/s");
+            System.out.println("assetstore[" + assetstoreSource + "] has " + totalCount + " bitstreams (" + totalBytes + " bytes)");
+            if (sampleBytes > 0) {
+                long seconds = (long) (totalBytes / bytesPerSecond);
+                System.out.println(String.format("Estimated migration time: %d:%02d:%02d", seconds / 3600, (seconds / 60) % 60, seconds % 60));
+            }
+        } finally {
+            executor.shutdownNow();
+            for (Future<MigrationCopy> copy : copies) {
+                if (!copy.isDone() || copy.isCancelled()) {
+                    continue;
+                }
+                try {
+                    destination.remove(copy.get().copy);
+                } catch (Exception e) {
+                    log.warn("Unable to remove a sample copy from assetstore[" + assetstoreDestination + "]", e);
+                }
             }
         }
+    }
 
-        log.info("Assetstore Migration from assetstore[" + assetstoreSource + "] to assetstore[" + assetstoreDestination + "] completed. " + processedCounter + " objects were transferred.");
+    /**
+     * Wait for the copy of a bitstream being migrated.
+     *
+     * @param future the copy, or <code>null</code> if it is not copied
+     * @param bitstream the bitstream
+     * @return the copy, or <code>null</code> if it failed
+     * @throws IOException if the migration is interrupted
+     */
+    protected MigrationCopy getCopy(Future<MigrationCopy> future, Bitstream bitstream) throws IOException {
+        if (future == null) {
+            log.warn("Not migrating registered bitstream:" + bitstream.getID());
+            return null;
+        }
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            log.error("Unable to migrate bitstream:" + bitstream.getID() + ", it remains in assetstore[" + bitstream.getStoreNumber() + "]", e.getCause());
+            return null;
+        }
     }
 
     public void printStores(Context context) {
@@ -412,6 +599,7 @@ public class BitstreamStorageServiceImpl implements BitstreamStorageService, Ini
         this.stores = stores;
     }
 
+    @Override
     public Map<Integer, BitStoreService> getStores() {
         return stores;
     }
@@ -420,6 +608,138 @@ public class BitstreamStorageServiceImpl implements BitstreamStorageService, Ini
     // Internal methods
     ////////////////////////////////////////
 
+    /**
+     * Copies an asset to another store, without touching the database. The
+     * bitstream being migrated is only read when the copy is created, and
+     * the copy is checked against its size and checksum. When the destination
+     * computes its checksums with another algorithm than the one recorded for
+     * the bitstream, the copy is read back to compute the recorded one.
+     */
+    protected static class MigrationCopy implements Callable<MigrationCopy>
+    {
+        private final BitStoreService source;
+        private final BitStoreService destination;
+        private final ThroughputLimiter limiter;
+        private final boolean verify;
+
+        /** the asset in the source store */
+        protected final Bitstream original;
+
+        /** the asset in the destination store, with its size and checksum once copied */
+        protected final Bitstream copy;
+
+        private final long size;
+        private final String checksum;
+        private final String checksumAlgorithm;
+
+        protected MigrationCopy(BitStoreService source, BitStoreService destination, Bitstream bitstream, int storeNumber,
+                                ThroughputLimiter limiter, boolean verify)
+        {
+            this.source = source;
+            this.destination = destination;
+            this.limiter = limiter;
+            this.verify = verify;
+            original = new AssetBitstream(bitstream.getInternalId(), bitstream.getStoreNumber());
+            copy = new AssetBitstream(bitstream.getInternalId(), storeNumber);
+            size = bitstream.getSize();
+            checksum = bitstream.getChecksum();
+            checksumAlgorithm = bitstream.getChecksumAlgorithm();
+        }
+
+        @Override
+        public MigrationCopy call() throws Exception
+        {
+            InputStream in = source.get(original);
+            if (in == null)
+            {
+                throw new IOException("No asset " + original.getInternalId());
+            }
+            destination.put(copy, limiter.wrap(in));
+            try
+            {
+                if (copy.getSize() != size)
+                {
+                    throw new IOException("Copied " + copy.getSize() + " bytes of " + size);
+                }
+                String copied = copy.getChecksum();
+                String copiedAlgorithm = copy.getChecksumAlgorithm();
+                if (verify)
+                {
+                    // read the copy back from the destination
+                    Map attrs = new HashMap();
+                    attrs.put("size_bytes", null);
+                    attrs.put("checksum", null);
+                    attrs.put("checksum_algorithm", null);
+                    attrs = destination.about(copy, attrs);
+                    if (attrs == null || size != Long.parseLong(String.valueOf(attrs.get("size_bytes"))))
+                    {
+                        throw new IOException("Copy not found or incomplete");
+                    }
+                    copied = (String) attrs.get("checksum");
+                    copiedAlgorithm = (String) attrs.get("checksum_algorithm");
+                }
+                if (checksum != null && checksumAlgorithm != null && !checksumAlgorithm.equals(copiedAlgorithm))
+                {
+                    // the destination uses another algorithm: read the copy back with the one of the source
+                    copied = digest(destination.get(copy), checksumAlgorithm);
+                }
+                if (checksum != null && checksumAlgorithm != null && !checksum.equals(copied))
+                {
+                    throw new IOException("Checksum " + copied + " of the copy does not match " + checksum);
+                }
+            }
+            catch (IOException e)
+            {
+                destination.remove(copy);
+                throw e;
+            }
+            return this;
+        }
+
+        /**
+         * Compute the checksum of a stream.
+         *
+         * @param in the stream, which is closed
+         * @param algorithm the checksum algorithm
+         * @return the checksum
+         * @throws IOException if the stream cannot be read or the algorithm is not supported
+         */
+        private String digest(InputStream in, String algorithm) throws IOException
+        {
+            if (in == null)
+            {
+                throw new IOException("Copy not found");
+            }
+            try (InputStream stream = in)
+            {
+                MessageDigest digest = MessageDigest.getInstance(algorithm);
+                byte[] buffer = new byte[64 * 1024];
+                int read;
+                while ((read = stream.read(buffer)) != -1)
+                {
+                    digest.update(buffer, 0, read);
+                }
+                return Utils.toHex(digest.digest());
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                throw new IOException("Unable to verify the copy with checksum algorithm " + algorithm, e);
+            }
+        }
+    }
+
+    /**
+     * The asset of a bitstream, not attached to the database.
+     */
+    protected static class AssetBitstream extends Bitstream
+    {
+        protected AssetBitstream(String internalId, int storeNumber)
+        {
+            setInternalId(internalId);
+            setStoreNumber(storeNumber);
+        }
+    }
+
     /**
      * Return true if this file is too recent to be deleted, false otherwise.
      * 
@@ -12,15 +12,37 @@ import org.dspace.content.Bitstream;
 import org.dspace.core.Utils;
 
 import java.io.*;
-import java.security.DigestInputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Native DSpace (or "Directory Scatter" if you prefer) asset store.
  * Implements a directory 'scatter' algorithm to avoid OS limits on
  * files per directory.
+ * <p>
+ * Files are copied and read through NIO channels with a direct buffer of
+ * {@link #setBufferSize(int) bufferSize} bytes per thread. Each of the configured
+ * {@link #setDigestAlgorithms(List) digestAlgorithms} is computed in the same
+ * pass, optionally on other threads while the data is written. The first one
+ * is the checksum of the bitstream; when there are others, all the digests are
+ * recorded in a ".digests" file next to the asset, so that {@link #about} can
+ * return them without reading the asset again.
  * 
  * @author Peter Breton, Robert Tansley, Richard Rodgers, Peter Dietz
  */
@@ -47,6 +69,41 @@ public class DSBitStoreService implements BitStoreService
     // Checksum algorithm
     private static final String CSA = "MD5";
 
+    /**
+     * Key of the {@link #about} attributes to get the digests of the asset,
+     * as a Map from algorithm to hexadecimal digest, for the configured
+     * digest algorithms
+     */
+    public static final String DIGESTS = "digests";
+
+    /**
+     * Key of the {@link #about} attributes allowing the checksum and digests
+     * recorded when the asset was stored to be returned, if its size has not
+     * changed, instead of reading it again. Not for integrity checks.
+     */
+    public static final String REUSE_CHECKSUM = "reuse_checksum";
+
+    /** Suffix of the file recording the digests of an asset */
+    private static final String DIGESTS_SUFFIX = ".digests";
+
+    /** Threads computing digests while the data is written, shared by all the stores */
+    private static ExecutorService digestExecutor;
+
+    /** Size of the buffers used to copy and read assets */
+    private int bufferSize = 1024 * 1024;
+
+    /**
+     * Buffer of each thread copying or reading assets. Direct buffers are
+     * only released by the garbage collector, so each thread reuses its own.
+     */
+    private final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<>();
+
+    /** Digest algorithms computed when storing, the first being the bitstream checksum */
+    private List<String> digestAlgorithms = Collections.singletonList(CSA);
+
+    /** Whether to compute the digests on other threads while writing */
+    private boolean concurrentDigests = false;
+
     /** the asset directory */
 	private File baseDir;
 	
@@ -96,6 +153,39 @@ public class DSBitStoreService implements BitStoreService
         }
 	}
 
+	/**
+     * Retrieve a range of the bits for the asset, reading the file from the
+     * first byte of the range. The file stream is returned as is, so that it can
+     * be written through its channel: it is not limited to the length of the range.
+     * 
+     * @param bitstream
+     *            The bitstream to read
+     * @param offset
+     *            The position of the first byte to read
+     * @param length
+     *            The number of bytes to read, or -1 to read to the end
+     * @exception java.io.IOException
+     *                If a problem occurs while retrieving the bits
+     *
+     * @return The stream of bits in the range
+     */
+	public InputStream get(Bitstream bitstream, long offset, long length) throws IOException
+	{
+        FileInputStream in = null;
+        try {
+            in = new FileInputStream(getFile(bitstream));
+            in.getChannel().position(offset);
+            return in;
+        } catch (Exception e)
+        {
+            if (in != null) {
+                in.close();
+            }
+            log.error("get(" + bitstream.getInternalId() + ", " + offset + ", " + length + ")", e);
+            throw new IOException(e);
+        }
+	}
+
     /**
      * Store a stream of bits.
      *
@@ -121,29 +211,31 @@ public class DSBitStoreService implements BitStoreService
             if (!parent.exists()) {
                 parent.mkdirs();
             }
-            //Create the corresponding file and open it
-            file.createNewFile();
-
-            FileOutputStream fos = new FileOutputStream(file);
 
-            // Read through a digest input stream that will work out the MD5
-            DigestInputStream dis = null;
-
-            try {
-                dis = new DigestInputStream(in, MessageDigest.getInstance(CSA));
+            // Compute the digests while copying the bits to the file
+            List<MessageDigest> digests = createDigests(digestAlgorithms);
+            long size;
+            try (ReadableByteChannel source = openChannel(in);
+                 FileChannel target = new FileOutputStream(file).getChannel())
+            {
+                size = transfer(source, target, digests);
             }
-            // Should never happen
-            catch (NoSuchAlgorithmException nsae) {
-                log.warn("Caught NoSuchAlgorithmException", nsae);
+            finally
+            {
+                in.close();
             }
 
-            Utils.bufferedCopy(dis, fos);
-            fos.close();
-            in.close();
-
-            bitstream.setSizeBytes(file.length());
-            bitstream.setChecksum(Utils.toHex(dis.getMessageDigest().digest()));
-            bitstream.setChecksumAlgorithm(CSA);
+            bitstream.setSizeBytes(size);
+            bitstream.setChecksum(Utils.toHex(digests.get(0).digest()));
+            bitstream.setChecksumAlgorithm(digestAlgorithms.get(0));
+            if (digests.size() > 1) {
+                Map<String, String> values = new LinkedHashMap<>();
+                values.put(digestAlgorithms.get(0), bitstream.getChecksum());
+                for (int i = 1; i < digests.size(); i++) {
+                    values.put(digestAlgorithms.get(i), Utils.toHex(digests.get(i).digest()));
+                }
+                writeDigests(file, size, values);
+            }
         } catch (Exception e) {
             log.error("put(" + bitstream.getInternalId() + ", inputstream)", e);
             throw new IOException(e);
@@ -172,27 +264,39 @@ public class DSBitStoreService implements BitStoreService
                 if (attrs.containsKey("size_bytes")) {
                     attrs.put("size_bytes", file.length());
                 }
-                if (attrs.containsKey("checksum")) {
-                    // generate checksum by reading the bytes
-                    DigestInputStream dis = null;
-                    try {
-                        FileInputStream fis = new FileInputStream(file);
-                        dis = new DigestInputStream(fis, MessageDigest.getInstance(CSA));
-                    } catch (NoSuchAlgorithmException e) {
-                        log.warn("Caught NoSuchAlgorithmException", e);
-                        throw new IOException("Invalid checksum algorithm");
+                boolean reuse = attrs.containsKey(REUSE_CHECKSUM) && file.length() == bitstream.getSize();
+                if (attrs.containsKey("checksum") || attrs.containsKey(DIGESTS)) {
+                    // the algorithm the checksum was recorded with, if this store can compute it
+                    String algorithm = bitstream.getChecksumAlgorithm();
+                    if (algorithm == null || !digestAlgorithms.contains(algorithm)) {
+                        algorithm = digestAlgorithms.get(0);
+                    }
+
+                    Map<String, String> values = reuse ? readDigests(file) : null;
+                    if (values == null && reuse && !attrs.containsKey(DIGESTS)
+                            && algorithm.equals(bitstream.getChecksumAlgorithm())
+                            && bitstream.getChecksum() != null) {
+                        values = Collections.singletonMap(algorithm, bitstream.getChecksum());
                     }
-                    final int BUFFER_SIZE = 1024 * 4;
-                    final byte[] buffer = new byte[BUFFER_SIZE];
-                    while (true) {
-                        final int count = dis.read(buffer, 0, BUFFER_SIZE);
-                        if (count == -1) {
-                            break;
+                    if (values == null) {
+                        // generate the digests by reading the bytes
+                        List<MessageDigest> digests = createDigests(digestAlgorithms);
+                        try (FileChannel source = new FileInputStream(file).getChannel()) {
+                            transfer(source, null, digests);
+                        }
+                        values = new LinkedHashMap<>();
+                        for (int i = 0; i < digests.size(); i++) {
+                            values.put(digestAlgorithms.get(i), Utils.toHex(digests.get(i).digest()));
                         }
                     }
-                    attrs.put("checksum", Utils.toHex(dis.getMessageDigest().digest()));
-                    attrs.put("checksum_algorithm", CSA);
-                    dis.close();
+
+                    if (attrs.containsKey("checksum")) {
+                        attrs.put("checksum", values.get(algorithm));
+                        attrs.put("checksum_algorithm", algorithm);
+                    }
+                    if (attrs.containsKey(DIGESTS)) {
+                        attrs.put(DIGESTS, values);
+                    }
                 }
                 if (attrs.containsKey("modified")) {
                     attrs.put("modified", String.valueOf(file.lastModified()));
@@ -219,6 +323,7 @@ public class DSBitStoreService implements BitStoreService
         try {
             File file = getFile(bitstream);
             if (file != null) {
+                new File(file.getPath() + DIGESTS_SUFFIX).delete();
                 if (file.delete()) {
                     deleteParents(file);
                 }
@@ -234,6 +339,246 @@ public class DSBitStoreService implements BitStoreService
     ////////////////////////////////////////
     // Internal methods
     ////////////////////////////////////////
+
+    /**
+     * Copy a channel to a file, and/or compute the digests of its data, a
+     * buffer at a time. When digests are computed concurrently, each buffer is
+     * digested by other threads while it is written.
+     *
+     * @param source
+     *            the data
+     * @param target
+     *            the file to write, or <code>null</code> to only compute the digests
+     * @param digests
+     *            the digests to update
+     * @return the number of bytes transferred
+     * @exception IOException
+     *                If a problem occurs while reading or writing
+     */
+    protected long transfer(ReadableByteChannel source, FileChannel target, List<MessageDigest> digests)
+            throws IOException
+    {
+        ByteBuffer buffer = getBuffer();
+        long size = 0;
+        boolean end = false;
+        while (!end)
+        {
+            // Fill the buffer, so that the file is written in large blocks
+            buffer.clear();
+            while (buffer.hasRemaining())
+            {
+                if (source.read(buffer) == -1)
+                {
+                    end = true;
+                    break;
+                }
+            }
+            buffer.flip();
+            if (!buffer.hasRemaining())
+            {
+                break;
+            }
+            size += buffer.remaining();
+
+            List<Future<?>> digesting = new ArrayList<>();
+            if (concurrentDigests && target != null)
+            {
+                for (MessageDigest digest : digests)
+                {
+                    digesting.add(getDigestExecutor().submit(new DigestUpdate(digest, buffer.duplicate())));
+                }
+            }
+            else
+            {
+                for (MessageDigest digest : digests)
+                {
+                    digest.update(buffer.duplicate());
+                }
+            }
+
+            if (target != null)
+            {
+                while (buffer.hasRemaining())
+                {
+                    target.write(buffer);
+                }
+            }
+
+            // The buffer is refilled once it has been digested
+            for (Future<?> update : digesting)
+            {
+                try
+                {
+                    update.get();
+                }
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted while computing digests");
+                }
+                catch (ExecutionException e)
+                {
+                    throw new IOException(e.getCause());
+                }
+            }
+        }
+        return size;
+    }
+
+    /**
+     * @param in
+     *            a stream
+     * @return a channel reading the stream, directly from the file for file streams
+     */
+    protected ReadableByteChannel openChannel(InputStream in)
+    {
+        if (in instanceof FileInputStream)
+        {
+            return ((FileInputStream) in).getChannel();
+        }
+        return Channels.newChannel(in);
+    }
+
+    protected List<MessageDigest> createDigests(List<String> algorithms) throws IOException
+    {
+        List<MessageDigest> digests = new ArrayList<>(algorithms.size());
+        for (String algorithm : algorithms)
+        {
+            try
+            {
+                digests.add(MessageDigest.getInstance(algorithm));
+            }
+            catch (NoSuchAlgorithmException e)
+            {
+                log.warn("Caught NoSuchAlgorithmException", e);
+                throw new IOException("Invalid checksum algorithm " + algorithm);
+            }
+        }
+        return digests;
+    }
+
+    /**
+     * Record the digests of an asset.
+     *
+     * @param file
+     *            the asset
+     * @param size
+     *            its size
+     * @param digests
+     *            its digests by algorithm
+     * @exception IOException
+     *                If a problem occurs while writing the digests
+     */
+    protected void writeDigests(File file, long size, Map<String, String> digests) throws IOException
+    {
+        Properties properties = new Properties();
+        properties.setProperty("size_bytes", String.valueOf(size));
+        for (Map.Entry<String, String> digest : digests.entrySet())
+        {
+            properties.setProperty(digest.getKey(), digest.getValue());
+        }
+        try (OutputStream out = new FileOutputStream(file.getPath() + DIGESTS_SUFFIX))
+        {
+            properties.store(out, null);
+        }
+    }
+
+    /**
+     * Read the digests recorded when an asset was stored.
+     *
+     * @param file
+     *            the asset
+     * @return its digests for the configured algorithms, or <code>null</code>
+     *         if they were not all recorded or the size of the asset has changed
+     */
+    protected Map<String, String> readDigests(File file)
+    {
+        File digestsFile = new File(file.getPath() + DIGESTS_SUFFIX);
+        if (!digestsFile.exists())
+        {
+            return null;
+        }
+        Properties properties = new Properties();
+        try (InputStream in = new FileInputStream(digestsFile))
+        {
+            properties.load(in);
+        }
+        catch (IOException e)
+        {
+            log.warn("Unable to read " + digestsFile, e);
+            return null;
+        }
+        if (!String.valueOf(file.length()).equals(properties.getProperty("size_bytes")))
+        {
+            return null;
+        }
+        Map<String, String> digests = new LinkedHashMap<>();
+        for (String algorithm : digestAlgorithms)
+        {
+            String digest = properties.getProperty(algorithm);
+            if (digest == null)
+            {
+                return null;
+            }
+            digests.put(algorithm, digest);
+        }
+        return digests;
+    }
+
+    private static synchronized ExecutorService getDigestExecutor()
+    {
+        if (digestExecutor == null)
+        {
+            digestExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "bitstore-digest-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return digestExecutor;
+    }
+
+    /**
+     * @return the buffer of the current thread, of {@link #setBufferSize(int) bufferSize} bytes
+     */
+    protected ByteBuffer getBuffer()
+    {
+        ByteBuffer buffer = buffers.get();
+        if (buffer == null || buffer.capacity() != bufferSize)
+        {
+            buffer = ByteBuffer.allocateDirect(bufferSize);
+            buffers.set(buffer);
+        }
+        return buffer;
+    }
+
+    /**
+     * Updates a digest with the content of a buffer.
+     */
+    private static class DigestUpdate implements Runnable
+    {
+        private final MessageDigest digest;
+        private final ByteBuffer data;
+
+        private DigestUpdate(MessageDigest digest, ByteBuffer data)
+        {
+            this.digest = digest;
+            this.data = data;
+        }
+
+        @Override
+        public void run()
+        {
+            digest.update(data);
+        }
+    }
 	
 	/**
      * Delete empty parent directories.
@@ -363,4 +708,42 @@ public class DSBitStoreService implements BitStoreService
     public void setBaseDir(File baseDir) {
         this.baseDir = baseDir;
     }
+
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    /**
+     * @param bufferSize size of the buffers used to copy and read assets, in bytes
+     */
+    public void setBufferSize(int bufferSize) {
+        this.bufferSize = bufferSize;
+    }
+
+    public List<String> getDigestAlgorithms() {
+        return digestAlgorithms;
+    }
+
+    /**
+     * @param digestAlgorithms digest algorithms to compute when storing, such as
+     *            MD5 and SHA-256. The first one is the checksum of the bitstream.
+     */
+    public void setDigestAlgorithms(List<String> digestAlgorithms) {
+        if (digestAlgorithms == null || digestAlgorithms.isEmpty()) {
+            throw new IllegalArgumentException("At least one digest algorithm is required");
+        }
+        this.digestAlgorithms = new ArrayList<>(digestAlgorithms);
+    }
+
+    public boolean isConcurrentDigests() {
+        return concurrentDigests;
+    }
+
+    /**
+     * @param concurrentDigests whether to compute the digests on other threads
+     *            while the data is written
+     */
+    public void setConcurrentDigests(boolean concurrentDigests) {
+        this.concurrentDigests = concurrentDigests;
+    }
 }
@@ -14,7 +14,7 @@ import com.amazonaws.regions.Regions;
 import com.amazonaws.services.s3.AmazonS3;
 import com.amazonaws.services.s3.AmazonS3Client;
 import com.amazonaws.services.s3.model.*;
-import org.apache.commons.io.FileUtils;
+import com.amazonaws.util.BinaryUtils;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.http.HttpStatus;
 import org.apache.log4j.Logger;
@@ -23,15 +23,33 @@ import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Utils;
 import org.springframework.beans.factory.annotation.Required;
 
-import java.io.File;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * Asset store using Amazon's Simple Storage Service (S3).
  * S3 is a commercial, web-service accessible, remote storage facility.
  * NB: you must have obtained an account with Amazon to use this store
+ * <p>
+ * Streams are uploaded as they are read, in parts of
+ * {@link #setPartSize(int) partSize} bytes sent by up to
+ * {@link #setUploadThreads(int) uploadThreads} concurrent requests, and their
+ * MD5 checksum is computed on the way. Streams smaller than a part are sent
+ * in a single request.
  * 
  * @author Richard Rodgers, Peter Dietz
  */ 
@@ -44,6 +62,18 @@ public class S3BitStoreService implements BitStoreService
     /** Checksum algorithm */
     private static final String CSA = "MD5";
 
+    /** Smallest part S3 accepts in a multipart upload, except for the last one */
+    private static final int MIN_PART_SIZE = 5 * 1024 * 1024;
+
+    /** Size of the parts of multipart uploads */
+    private int partSize = 16 * 1024 * 1024;
+
+    /** Number of parts uploaded concurrently by each put */
+    private int uploadThreads = 4;
+
+    /** Threads uploading parts */
+    private ExecutorService uploadExecutor = null;
+
     private String awsAccessKey;
     private String awsSecretKey;
     private String awsRegionName;
@@ -61,6 +91,17 @@ public class S3BitStoreService implements BitStoreService
     {
     }
 
+    /**
+     * Create a store using an existing client, such as a mock in tests.
+     * {@link #init()}, which creates the client, must not be called.
+     *
+     * @param s3Service the S3 client
+     */
+    protected S3BitStoreService(AmazonS3 s3Service)
+    {
+        this.s3Service = s3Service;
+    }
+
     /**
      * Initialize the asset store
      * S3 Requires:
@@ -148,6 +189,43 @@ public class S3BitStoreService implements BitStoreService
 		}
 	}
 
+	/**
+     * Retrieve a range of the bits for the asset, with a ranged GET request so
+     * that only the range is transferred.
+     * 
+     * @param bitstream
+     *            The asset to read
+     * @param offset
+     *            The position of the first byte to read
+     * @param length
+     *            The number of bytes to read, or -1 to read to the end
+     * @exception java.io.IOException
+     *                If a problem occurs while retrieving the bits
+     *
+     * @return The stream of bits in the range, or null
+     */
+	public InputStream get(Bitstream bitstream, long offset, long length) throws IOException
+	{
+        if (length == 0)
+        {
+            return new ByteArrayInputStream(new byte[0]);
+        }
+        String key = getFullKey(bitstream.getInternalId());
+		try
+		{
+            GetObjectRequest request = new GetObjectRequest(bucketName, key);
+            // the last position is inclusive, and S3 stops at the end of the object
+            request.setRange(offset, (length < 0) ? Long.MAX_VALUE - 1 : offset + length - 1);
+            S3Object object = s3Service.getObject(request);
+			return (object != null) ? object.getObjectContent() : null;
+		}
+        catch (Exception e)
+		{
+            log.error("get("+key+", "+offset+", "+length+")", e);
+        	throw new IOException(e);
+		}
+	}
+
     /**
      * Store a stream of bits.
      *
@@ -166,36 +244,144 @@ public class S3BitStoreService implements BitStoreService
 	public void put(Bitstream bitstream, InputStream in) throws IOException
 	{
         String key = getFullKey(bitstream.getInternalId());
-        //Copy istream to temp file, and send the file, with some metadata
-        File scratchFile = File.createTempFile(bitstream.getInternalId(), "s3bs");
         try {
-            FileUtils.copyInputStreamToFile(in, scratchFile);
-            Long contentLength = Long.valueOf(scratchFile.length());
-
-            PutObjectRequest putObjectRequest = new PutObjectRequest(bucketName, key, scratchFile);
-            PutObjectResult putObjectResult = s3Service.putObject(putObjectRequest);
+            // compute the MD5 of the stream as it is read: the ETag of a
+            // multipart upload is not the MD5 of the object
+            DigestInputStream dis = new DigestInputStream(in, MessageDigest.getInstance(CSA));
+            long contentLength;
+            try {
+                byte[] part = readPart(dis);
+                if (part.length < partSize) {
+                    // S3 checks the MD5 of a single upload
+                    byte[] md5 = dis.getMessageDigest().digest();
+                    ObjectMetadata objectMetadata = new ObjectMetadata();
+                    objectMetadata.setContentLength(part.length);
+                    objectMetadata.setContentMD5(BinaryUtils.toBase64(md5));
+                    s3Service.putObject(new PutObjectRequest(bucketName, key, new ByteArrayInputStream(part), objectMetadata));
+                    contentLength = part.length;
+                    bitstream.setChecksum(Utils.toHex(md5));
+                } else {
+                    contentLength = putParts(key, dis, part);
+                    bitstream.setChecksum(Utils.toHex(dis.getMessageDigest().digest()));
+                }
+            } finally {
+                in.close();
+            }
 
             bitstream.setSizeBytes(contentLength);
-            bitstream.setChecksum(putObjectResult.getETag());
             bitstream.setChecksumAlgorithm(CSA);
 
-            scratchFile.delete();
-
         } catch(Exception e) {
             log.error("put(" + bitstream.getInternalId() +", is)", e);
             throw new IOException(e);
-        } finally {
-            if(scratchFile.exists()) {
-                scratchFile.delete();
-            }
         }
 	}
 
+    /**
+     * Upload a stream in parts, several at a time. At most one part more than
+     * the number of upload threads is held in memory. The upload is aborted
+     * if any part fails.
+     *
+     * @param key
+     *            The key of the object
+     * @param in
+     *            The stream, positioned after the first part
+     * @param first
+     *            The first part
+     * @return The size of the object
+     * @exception Exception
+     *                If a part cannot be read or uploaded
+     */
+    protected long putParts(String key, InputStream in, byte[] first) throws Exception
+    {
+        String uploadId = s3Service.initiateMultipartUpload(new InitiateMultipartUploadRequest(bucketName, key)).getUploadId();
+        LinkedList<Future<PartETag>> uploading = new LinkedList<>();
+        try {
+            List<PartETag> partETags = new ArrayList<>();
+            long contentLength = 0;
+            int partNumber = 1;
+            for (byte[] part = first; part.length > 0; part = readPart(in))
+            {
+                final UploadPartRequest request = new UploadPartRequest()
+                        .withBucketName(bucketName)
+                        .withKey(key)
+                        .withUploadId(uploadId)
+                        .withPartNumber(partNumber++)
+                        .withInputStream(new ByteArrayInputStream(part))
+                        .withPartSize(part.length);
+                uploading.add(getUploadExecutor().submit(new Callable<PartETag>()
+                {
+                    @Override
+                    public PartETag call() throws Exception
+                    {
+                        return s3Service.uploadPart(request).getPartETag();
+                    }
+                }));
+                contentLength += part.length;
+
+                // wait for the oldest part before reading more
+                while (uploading.size() >= uploadThreads)
+                {
+                    partETags.add(uploading.removeFirst().get());
+                }
+            }
+            while (!uploading.isEmpty())
+            {
+                partETags.add(uploading.removeFirst().get());
+            }
+
+            s3Service.completeMultipartUpload(new CompleteMultipartUploadRequest(bucketName, key, uploadId, partETags));
+            return contentLength;
+        } catch (Exception e) {
+            for (Future<PartETag> part : uploading)
+            {
+                part.cancel(true);
+            }
+            try {
+                s3Service.abortMultipartUpload(new AbortMultipartUploadRequest(bucketName, key, uploadId));
+            } catch (Exception abortException) {
+                log.warn("Unable to abort the upload of " + key, abortException);
+            }
+            if (e instanceof ExecutionException && e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * Read the next part of a stream.
+     *
+     * @param in
+     *            The stream
+     * @return Up to partSize bytes, fewer only at the end of the stream
+     * @exception IOException
+     *                If the stream cannot be read
+     */
+    protected byte[] readPart(InputStream in) throws IOException
+    {
+        byte[] part = new byte[partSize];
+        int length = 0;
+        int count;
+        while (length < partSize && (count = in.read(part, length, partSize - length)) != -1)
+        {
+            length += count;
+        }
+        if (length < partSize)
+        {
+            byte[] last = new byte[length];
+            System.arraycopy(part, 0, last, 0, length);
+            return last;
+        }
+        return part;
+    }
+
     /**
      * Obtain technical metadata about an asset in the asset store.
      *
      * Checksum used is (ETag) hex encoded 128-bit MD5 digest of an object's content as calculated by Amazon S3
-     * (Does not use getContentMD5, as that is 128-bit MD5 digest calculated on caller's side)
+     * (Does not use getContentMD5, as that is 128-bit MD5 digest calculated on caller's side).
+     * The ETag of an object uploaded in parts is not its MD5, which is then computed by reading the object.
      *
      * @param bitstream
      *            The asset to describe
@@ -219,7 +405,7 @@ public class S3BitStoreService implements BitStoreService
                     attrs.put("size_bytes", objectMetadata.getContentLength());
                 }
                 if (attrs.containsKey("checksum")) {
-                    attrs.put("checksum", objectMetadata.getETag());
+                    attrs.put("checksum", getChecksum(key, objectMetadata));
                     attrs.put("checksum_algorithm", CSA);
                 }
                 if (attrs.containsKey("modified")) {
@@ -257,6 +443,54 @@ public class S3BitStoreService implements BitStoreService
         }
 	}
 
+    /**
+     * Get the MD5 checksum of an object: its ETag, unless it was uploaded in
+     * parts, in which case the object is read to compute it.
+     *
+     * @param key
+     *            The key of the object
+     * @param objectMetadata
+     *            Its metadata
+     * @return The hex encoded MD5 digest
+     * @exception Exception
+     *                If the object cannot be read
+     */
+    protected String getChecksum(String key, ObjectMetadata objectMetadata) throws Exception
+    {
+        String etag = objectMetadata.getETag();
+        if (etag != null && !etag.contains("-")) {
+            return etag;
+        }
+        MessageDigest md5 = MessageDigest.getInstance(CSA);
+        try (InputStream in = s3Service.getObject(bucketName, key).getObjectContent()) {
+            byte[] buffer = new byte[1024 * 64];
+            int count;
+            while ((count = in.read(buffer)) != -1) {
+                md5.update(buffer, 0, count);
+            }
+        }
+        return Utils.toHex(md5.digest());
+    }
+
+    private synchronized ExecutorService getUploadExecutor()
+    {
+        if (uploadExecutor == null) {
+            uploadExecutor = Executors.newCachedThreadPool(new ThreadFactory()
+            {
+                private final AtomicInteger count = new AtomicInteger(0);
+
+                @Override
+                public Thread newThread(Runnable runnable)
+                {
+                    Thread thread = new Thread(runnable, "s3-upload-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return uploadExecutor;
+    }
+
     /**
      * Utility Method: Prefix the key with a subfolder, if this instance assets are stored within subfolder
      * @param id
@@ -313,6 +547,31 @@ public class S3BitStoreService implements BitStoreService
         this.subfolder = subfolder;
     }
 
+    public int getPartSize() {
+        return partSize;
+    }
+
+    /**
+     * @param partSize size of the parts of multipart uploads, in bytes, at least 5 MB
+     */
+    public void setPartSize(int partSize) {
+        if (partSize < MIN_PART_SIZE) {
+            throw new IllegalArgumentException("S3 parts must be at least " + MIN_PART_SIZE + " bytes");
+        }
+        this.partSize = partSize;
+    }
+
+    public int getUploadThreads() {
+        return uploadThreads;
+    }
+
+    /**
+     * @param uploadThreads number of parts each put uploads concurrently
+     */
+    public void setUploadThreads(int uploadThreads) {
+        this.uploadThreads = Math.max(1, uploadThreads);
+    }
+
 	/**
 	 * Contains a command-line testing tool. Expects arguments:
 	 *  -a accessKey -s secretKey -f assetFileName
@@ -10,6 +10,7 @@ package org.dspace.storage.bitstore.service;
 import org.dspace.authorize.AuthorizeException;
 import org.dspace.content.Bitstream;
 import org.dspace.core.Context;
+import org.dspace.storage.bitstore.BitStoreService;
 
 import java.io.IOException;
 import java.io.InputStream;
@@ -86,6 +87,40 @@ public interface BitstreamStorageService {
      */
     public UUID store(Context context, Bitstream bitstream, InputStream is) throws SQLException, IOException;
 
+    /**
+     * Store bits in the incoming asset store for a bitstream which is left
+     * with the deleted flag set, until it is created. The RDBMS entry is
+     * committed before the bits are stored, and again once its internal ID,
+     * store number, size and checksum are set: if the bitstream is never
+     * created, even because the process stops, the bits are removed by
+     * {@link #cleanup(boolean, boolean)}. As the context is committed, it
+     * should be one used only to store bits, for instance by a concurrent
+     * thread.
+     *
+     * @param context
+     *            The context storing bits
+     * @param bitstream
+     *            The bitstream, with the deleted flag set
+     * @param is
+     *            The stream of bits to store
+     * @exception java.io.IOException
+     *                If a problem occurs while storing the bits
+     * @exception java.sql.SQLException
+     *                If a problem occurs accessing the RDBMS
+     */
+    public void put(Context context, Bitstream bitstream, InputStream is) throws SQLException, IOException;
+
+    /**
+     * Remove the bits of a bitstream from its asset store, without touching
+     * the RDBMS.
+     *
+     * @param bitstream
+     *            The bitstream whose bits are stored
+     * @exception java.io.IOException
+     *                If a problem occurs while removing the bits
+     */
+    public void remove(Bitstream bitstream) throws IOException;
+
 
     /**
    	 * Register a bitstream already in storage.
@@ -133,6 +168,29 @@ public interface BitstreamStorageService {
     public InputStream retrieve(Context context, Bitstream bitstream)
             throws SQLException, IOException;
 
+    /**
+     * Retrieve a range of the bits for the bitstream, read directly from
+     * that position by the stores which support it. The stream may go on past
+     * the end of the range: callers stop reading after <code>length</code> bytes.
+     *
+     * @param context
+     *            The current context
+     * @param bitstream
+     *            The bitstream to retrieve
+     * @param offset
+     *            The position of the first byte to read
+     * @param length
+     *            The number of bytes to read, or -1 to read to the end
+     * @exception IOException
+     *                If a problem occurs while retrieving the bits
+     * @exception SQLException
+     *                If a problem occurs accessing the RDBMS
+     *
+     * @return The stream of bits in the range
+     */
+    public InputStream retrieve(Context context, Bitstream bitstream, long offset, long length)
+            throws SQLException, IOException;
+
     /**
      * Clean up the bitstream storage area. This method deletes any bitstreams
      * which are more than 1 hour old and marked deleted. The deletions cannot
@@ -166,4 +224,41 @@ public interface BitstreamStorageService {
      */
     public void migrate(Context context, Integer assetstoreSource, Integer assetstoreDestination, boolean deleteOld, Integer batchCommitSize) throws IOException, SQLException, AuthorizeException;
 
+    /**
+     * Migrate all the assets from assetstoreSource to assetstoreDestination,
+     * copying several at a time and checking each copy. The database is
+     * committed after each batch, so that an interrupted migration resumes
+     * from its last batch when run again.
+     * @param context
+     * @param assetstoreSource
+     * @param assetstoreDestination
+     * @param deleteOld
+     * @param batchCommitSize number of assets committed together, raised to the number of threads
+     * @param threads number of assets copied concurrently
+     * @param maxBytesPerSecond limit of the total copy rate, or 0 for no limit
+     * @param verify whether to read back each copy from the destination to check its checksum
+     */
+    public void migrate(Context context, Integer assetstoreSource, Integer assetstoreDestination, boolean deleteOld, Integer batchCommitSize,
+                        int threads, long maxBytesPerSecond, boolean verify) throws IOException, SQLException, AuthorizeException;
+
+    /**
+     * Estimate the time a migration would take, by copying a sample of the
+     * assets of assetstoreSource to assetstoreDestination, without changing
+     * the bitstreams. The sample copies are removed.
+     * @param context
+     * @param assetstoreSource
+     * @param assetstoreDestination
+     * @param sampleSize number of assets to copy
+     * @param threads number of assets copied concurrently
+     * @param maxBytesPerSecond limit of the total copy rate, or 0 for no limit
+     */
+    public void estimateMigration(Context context, Integer assetstoreSource, Integer assetstoreDestination, int sampleSize,
+                                  int threads, long maxBytesPerSecond) throws IOException, SQLException;
+
+    /**
+     * Get the configured assetstores
+     * @return the stores by store number
+     */
+    public Map<Integer, BitStoreService> getStores();
+
 }
@@ -0,0 +1,117 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.bulkedit;
+
+import java.io.*;
+
+import org.dspace.AbstractUnitTest;
+
+import org.junit.*;
+import static org.junit.Assert.* ;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for class ChunkedDSpaceCSV
+ */
+public class ChunkedDSpaceCSVTest extends AbstractUnitTest
+{
+    private static final String[] CSV = {"id,collection,\"dc.title[en]\",dc.contributor.author",
+                                         "+,56599ad5-c7d2-4ac3-8354-a1f277d5a31f,First,\"Lewis, Stuart\"",
+                                         "+,56599ad5-c7d2-4ac3-8354-a1f277d5a31f,\"Two line\ntitle\",\"Lewis, Stuart\"",
+                                         "+,56599ad5-c7d2-4ac3-8354-a1f277d5a31f,Third,\"Lewis, Stuart||Bloggs, Joe\"",
+                                         "+,56599ad5-c7d2-4ac3-8354-a1f277d5a31f,Fourth,\"Bloggs, Joe\"",
+                                         "+,56599ad5-c7d2-4ac3-8354-a1f277d5a31f,Fifth,\"Loaf, Meat\""};
+
+    private File file;
+
+    @Before
+    @Override
+    public void init()
+    {
+        super.init();
+        try
+        {
+            file = File.createTempFile("chunked", ".csv");
+            BufferedWriter out = new BufferedWriter(
+                                 new OutputStreamWriter(
+                                 new FileOutputStream(file), "UTF-8"));
+            for (String csvLine : CSV) {
+                out.write(csvLine + "\n");
+            }
+            out.close();
+        }
+        catch (IOException ex)
+        {
+            fail("IO Error while creating test CSV file");
+        }
+    }
+
+    @After
+    @Override
+    public void destroy()
+    {
+        file.delete();
+        super.destroy();
+    }
+
+    /**
+     * Test reading the lines a chunk at a time
+     */
+    @Test
+    public void testNextChunk() throws Exception
+    {
+        ChunkedDSpaceCSV csv = new ChunkedDSpaceCSV(file, context);
+        try
+        {
+            assertThat("testNextChunk headings", csv.getHeadings().size(), equalTo(3));
+
+            assertTrue("testNextChunk first chunk", csv.nextChunk(2));
+            assertThat("testNextChunk first chunk size", csv.getCSVLines().size(), equalTo(2));
+            assertThat("testNextChunk multi-line value", csv.getCSVLines().get(1).get("dc.title[en]").get(0),
+                       equalTo("Two line\ntitle"));
+
+            assertTrue("testNextChunk second chunk", csv.nextChunk(2));
+            assertThat("testNextChunk second chunk size", csv.getCSVLines().size(), equalTo(2));
+            assertThat("testNextChunk second chunk values", csv.getCSVLines().get(0).get("dc.contributor.author").size(),
+                       equalTo(2));
+
+            assertTrue("testNextChunk last chunk", csv.nextChunk(2));
+            assertThat("testNextChunk last chunk size", csv.getCSVLines().size(), equalTo(1));
+            assertThat("testNextChunk position", csv.getPosition(), equalTo(5));
+
+            assertFalse("testNextChunk end", csv.nextChunk(2));
+            assertThat("testNextChunk end size", csv.getCSVLines().size(), equalTo(0));
+        }
+        finally
+        {
+            csv.close();
+        }
+    }
+
+    /**
+     * Test skipping the lines of an interrupted import
+     */
+    @Test
+    public void testSkip() throws Exception
+    {
+        ChunkedDSpaceCSV csv = new ChunkedDSpaceCSV(file, context);
+        try
+        {
+            assertThat("testSkip skipped", csv.skip(3), equalTo(3));
+            assertTrue("testSkip chunk", csv.nextChunk(10));
+            assertThat("testSkip chunk size", csv.getCSVLines().size(), equalTo(2));
+            assertThat("testSkip first line", csv.getCSVLines().get(0).get("dc.title[en]").get(0), equalTo("Fourth"));
+            assertThat("testSkip position", csv.getPosition(), equalTo(5));
+            assertThat("testSkip past the end", csv.skip(1), equalTo(0));
+        }
+        finally
+        {
+            csv.close();
+        }
+    }
+}
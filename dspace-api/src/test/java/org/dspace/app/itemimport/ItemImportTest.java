@@ -0,0 +1,208 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.itemimport;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.log4j.Logger;
+import org.dspace.AbstractUnitTest;
+import org.dspace.app.itemimport.factory.ItemImportServiceFactory;
+import org.dspace.app.itemimport.service.ItemImportService;
+import org.dspace.authorize.AuthorizeException;
+import org.dspace.content.Collection;
+import org.dspace.content.Community;
+import org.dspace.content.factory.ContentServiceFactory;
+import org.dspace.content.service.CollectionService;
+import org.dspace.content.service.CommunityService;
+import org.dspace.content.service.ItemService;
+import org.dspace.core.Context;
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for the concurrent import of Simple Archive Format directories,
+ * and the map file it writes
+ */
+public class ItemImportTest extends AbstractUnitTest
+{
+    private static final Logger log = Logger.getLogger(ItemImportTest.class);
+
+    protected CommunityService communityService = ContentServiceFactory.getInstance().getCommunityService();
+    protected CollectionService collectionService = ContentServiceFactory.getInstance().getCollectionService();
+    protected ItemService itemService = ContentServiceFactory.getInstance().getItemService();
+    protected ItemImportService itemImportService = ItemImportServiceFactory.getInstance().getItemImportService();
+
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private Community owningCommunity;
+
+    private Collection collection;
+
+    private File sourceDir;
+
+    private File mapFile;
+
+    @Before
+    @Override
+    public void init()
+    {
+        super.init();
+        try {
+            context.turnOffAuthorisationSystem();
+            owningCommunity = communityService.create(null, context);
+            collection = collectionService.create(context, owningCommunity);
+            context.restoreAuthSystemState();
+
+            sourceDir = testFolder.newFolder("source");
+            mapFile = new File(testFolder.getRoot(), "mapfile");
+        }
+        catch (SQLException | AuthorizeException | IOException ex)
+        {
+            log.error("Error in init", ex);
+            fail("Error in init: " + ex.getMessage());
+        }
+        itemImportService.setThreads(2);
+        itemImportService.setBatchSize(2);
+    }
+
+    @After
+    @Override
+    public void destroy()
+    {
+        itemImportService.setThreads(0);
+        itemImportService.setBatchSize(100);
+        itemImportService.setResume(false);
+        try {
+            context.turnOffAuthorisationSystem();
+            communityService.delete(context, context.reloadEntity(owningCommunity));
+            context.restoreAuthSystemState();
+        } catch (SQLException | AuthorizeException | IOException ex) {
+            log.error("SQL Error in destroy", ex);
+            fail("SQL Error in destroy: " + ex.getMessage());
+            context.abort();
+        }
+        super.destroy();
+    }
+
+    /**
+     * Create an item directory with a title and a content file
+     */
+    private void createItem(String name, String dublinCore) throws IOException
+    {
+        File dir = new File(sourceDir, name);
+        FileUtils.writeStringToFile(new File(dir, "dublin_core.xml"), dublinCore, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(dir, "content.txt"), "Content of " + name, StandardCharsets.UTF_8);
+        FileUtils.writeStringToFile(new File(dir, "contents"), "content.txt\n", StandardCharsets.UTF_8);
+    }
+
+    private void createItem(String name) throws IOException
+    {
+        createItem(name, "<dublin_core><dcvalue element=\"title\" qualifier=\"none\">" + name
+                + "</dcvalue></dublin_core>");
+    }
+
+    private List<String> mappedItems() throws IOException
+    {
+        List<String> names = new ArrayList<>();
+        for (String line : FileUtils.readLines(mapFile, StandardCharsets.UTF_8))
+        {
+            names.add(line.split(" ")[0]);
+        }
+        return names;
+    }
+
+    private void addItems() throws Exception
+    {
+        itemImportService.addItems(context, Arrays.asList(context.reloadEntity(collection)),
+                sourceDir.getAbsolutePath(), mapFile.getAbsolutePath(), false);
+    }
+
+    /**
+     * Test that all the items are imported and mapped
+     */
+    @Test
+    public void testAddItems() throws Exception
+    {
+        createItem("item_000");
+        createItem("item_001");
+        createItem("item_002");
+        addItems();
+
+        assertThat("testAddItems 0", mappedItems(), equalTo(Arrays.asList("item_000", "item_001", "item_002")));
+        assertThat("testAddItems 1", itemService.countItems(context, context.reloadEntity(collection)), equalTo(3));
+    }
+
+    /**
+     * Test that the map file only lists the items of the committed batches
+     * when the import fails
+     */
+    @Test
+    public void testFailedBatchNotMapped() throws Exception
+    {
+        createItem("item_000");
+        createItem("item_001");
+        createItem("item_002");
+        createItem("item_003", "<dublin_core><dcvalue");
+        try
+        {
+            addItems();
+            fail("testFailedBatchNotMapped import of an invalid item");
+        }
+        catch (Exception e)
+        {
+            // Expected, item_002 is rolled back
+        }
+        context.abort();
+        context = new Context();
+
+        assertThat("testFailedBatchNotMapped 0", mappedItems(), equalTo(Arrays.asList("item_000", "item_001")));
+        assertThat("testFailedBatchNotMapped 1", itemService.countItems(context, context.reloadEntity(collection)),
+                equalTo(2));
+    }
+
+    /**
+     * Test that a resumed import skips the mapped items only
+     */
+    @Test
+    public void testResume() throws Exception
+    {
+        createItem("item_000");
+        createItem("item_001");
+        createItem("item_002");
+        createItem("item_003", "<dublin_core><dcvalue");
+        try
+        {
+            addItems();
+            fail("testResume import of an invalid item");
+        }
+        catch (Exception e)
+        {
+            // Expected, item_002 is rolled back
+        }
+        context.abort();
+        context = new Context();
+
+        createItem("item_003");
+        itemImportService.setResume(true);
+        addItems();
+
+        assertThat("testResume 0", mappedItems(),
+                equalTo(Arrays.asList("item_000", "item_001", "item_002", "item_003")));
+        assertThat("testResume 1", itemService.countItems(context, context.reloadEntity(collection)), equalTo(4));
+    }
+}
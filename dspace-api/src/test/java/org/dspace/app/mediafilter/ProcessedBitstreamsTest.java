@@ -0,0 +1,83 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.mediafilter;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.UUID;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ProcessedBitstreams}.
+ */
+public class ProcessedBitstreamsTest
+{
+    private static final String PDF = PDFFilter.class.getName();
+
+    private static final String THUMBNAIL = JPEGFilter.class.getName();
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        file = File.createTempFile("processed", ".txt");
+        file.delete();
+    }
+
+    @After
+    public void tearDown()
+    {
+        file.delete();
+    }
+
+    @Test
+    public void testRecord() throws IOException
+    {
+        UUID bitstream = UUID.randomUUID();
+        ProcessedBitstreams processed = new ProcessedBitstreams(file);
+        assertFalse("Unknown bitstream processed", processed.contains(bitstream, PDF));
+
+        processed.add(bitstream, PDF);
+        assertTrue("Added bitstream not processed", processed.contains(bitstream, PDF));
+        assertFalse("Bitstream processed by another filter", processed.contains(bitstream, THUMBNAIL));
+    }
+
+    @Test
+    public void testSave() throws IOException
+    {
+        UUID first = UUID.randomUUID();
+        UUID second = UUID.randomUUID();
+        ProcessedBitstreams processed = new ProcessedBitstreams(file);
+        processed.add(first, PDF);
+        processed.save();
+        processed.add(second, THUMBNAIL);
+        processed.add(second, THUMBNAIL);
+        processed.save();
+
+        ProcessedBitstreams reloaded = new ProcessedBitstreams(file);
+        assertEquals("Wrong number of records", 2, reloaded.size());
+        assertTrue("First run not saved", reloaded.contains(first, PDF));
+        assertTrue("Second run not saved", reloaded.contains(second, THUMBNAIL));
+    }
+
+    @Test
+    public void testUnsaved() throws IOException
+    {
+        ProcessedBitstreams processed = new ProcessedBitstreams(file);
+        processed.add(UUID.randomUUID(), PDF);
+        assertEquals("Unsaved records written", 0, new ProcessedBitstreams(file).size());
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.util;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.dspace.AbstractDSpaceTest;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link BitstreamDownload}.
+ */
+public class BitstreamDownloadTest extends AbstractDSpaceTest
+{
+    private static final byte[] CONTENT = "0123456789abcdefghij".getBytes(StandardCharsets.US_ASCII);
+
+    private static final long MODIFIED = 1400000000000L;
+
+    private BitstreamDownload download()
+    {
+        return new BitstreamDownload(CONTENT.length, "abc123", MODIFIED, "text/plain");
+    }
+
+    private String body(BitstreamDownload download) throws Exception
+    {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        download.write(new ByteArrayInputStream(CONTENT), out);
+        return new String(out.toByteArray(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void testFullDownload() throws Exception
+    {
+        BitstreamDownload download = download();
+        assertEquals(200, download.evaluate(null, -1, null, null));
+        assertEquals("\"abc123\"", download.getHeaders().get("ETag"));
+        assertEquals("20", download.getHeaders().get("Content-Length"));
+        assertEquals(new String(CONTENT, StandardCharsets.US_ASCII), body(download));
+    }
+
+    @Test
+    public void testConditional() throws Exception
+    {
+        assertEquals(304, download().evaluate("\"abc123\"", -1, null, null));
+        assertEquals(304, download().evaluate("\"other\", W/\"abc123\"", -1, null, null));
+        assertEquals(200, download().evaluate("\"other\"", MODIFIED + 5000, null, null));
+        assertEquals(304, download().evaluate(null, MODIFIED + 500, null, null));
+        assertEquals(200, download().evaluate(null, MODIFIED - 1000, null, null));
+    }
+
+    @Test
+    public void testIsView() throws Exception
+    {
+        BitstreamDownload download = download();
+        download.evaluate(null, -1, null, null);
+        assertTrue(download.isView());
+
+        download = download();
+        download.evaluate("\"abc123\"", -1, null, null);
+        assertFalse(download.isView());
+
+        download = download();
+        download.evaluate(null, -1, "bytes=0-4", null);
+        assertTrue(download.isView());
+
+        download = download();
+        download.evaluate(null, -1, "bytes=5-9", null);
+        assertFalse(download.isView());
+
+        download = download();
+        download.evaluate(null, -1, "bytes=30-40", null);
+        assertFalse(download.isView());
+    }
+
+    @Test
+    public void testSingleRange() throws Exception
+    {
+        BitstreamDownload download = download();
+        assertEquals(206, download.evaluate(null, -1, "bytes=5-9", null));
+        assertEquals("bytes 5-9/20", download.getHeaders().get("Content-Range"));
+        assertEquals("5", download.getHeaders().get("Content-Length"));
+        assertEquals("56789", body(download));
+
+        download = download();
+        assertEquals(206, download.evaluate(null, -1, "bytes=-3", null));
+        assertEquals("hij", body(download));
+
+        download = download();
+        assertEquals(206, download.evaluate(null, -1, "bytes=15-", null));
+        assertEquals("fghij", body(download));
+    }
+
+    @Test
+    public void testMultipleRanges() throws Exception
+    {
+        BitstreamDownload download = download();
+        assertEquals(206, download.evaluate(null, -1, "bytes=10-12,0-1,2-3", null));
+        assertTrue(download.getHeaders().get("Content-Type").startsWith("multipart/byteranges; boundary="));
+        String body = body(download);
+        assertEquals(Long.parseLong(download.getHeaders().get("Content-Length")), body.length());
+        assertTrue(body.contains("Content-Range: bytes 0-3/20\r\n\r\n0123\r\n"));
+        assertTrue(body.contains("Content-Range: bytes 10-12/20\r\n\r\nabc\r\n"));
+    }
+
+    @Test
+    public void testInvalidRanges() throws Exception
+    {
+        BitstreamDownload download = download();
+        assertEquals(416, download.evaluate(null, -1, "bytes=30-40", null));
+        assertEquals("bytes */20", download.getHeaders().get("Content-Range"));
+        assertFalse(download.hasBody());
+
+        assertEquals(200, download().evaluate(null, -1, "bytes=9-5", null));
+        assertEquals(200, download().evaluate(null, -1, "items=1-2", null));
+        assertEquals(200, download().evaluate(null, -1, "bytes=1-2", "\"other\""));
+        assertEquals(206, download().evaluate(null, -1, "bytes=1-2", "\"abc123\""));
+    }
+}
@@ -0,0 +1,65 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.authorize;
+
+import org.dspace.core.Constants;
+import org.junit.Test;
+
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link AuthorizationDecisionCache}.
+ */
+public class AuthorizationDecisionCacheTest
+{
+    private final UUID eperson = UUID.randomUUID();
+    private final UUID dso = UUID.randomUUID();
+
+    @Test
+    public void testGetPut()
+    {
+        AuthorizationDecisionCache cache = new AuthorizationDecisionCache();
+        assertNull(cache.get(eperson, dso, Constants.READ, true));
+
+        cache.put(eperson, dso, Constants.READ, true, true);
+        cache.put(null, dso, Constants.READ, true, false);
+
+        assertTrue(cache.get(eperson, dso, Constants.READ, true));
+        assertFalse(cache.get(null, dso, Constants.READ, true));
+        assertNull(cache.get(eperson, dso, Constants.READ, false));
+        assertNull(cache.get(eperson, dso, Constants.WRITE, true));
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    @Test
+    public void testClear()
+    {
+        AuthorizationDecisionCache cache = new AuthorizationDecisionCache();
+        cache.put(eperson, dso, Constants.READ, true, true);
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertNull(cache.get(eperson, dso, Constants.READ, true));
+    }
+
+    @Test
+    public void testEviction()
+    {
+        AuthorizationDecisionCache cache = new AuthorizationDecisionCache();
+        for (int i = 0; i <= AuthorizationDecisionCache.MAX_SIZE; i++)
+        {
+            cache.put(eperson, UUID.randomUUID(), Constants.READ, true, true);
+        }
+        assertEquals(AuthorizationDecisionCache.MAX_SIZE, cache.size());
+    }
+}
@@ -0,0 +1,195 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.Required;
+import org.dspace.AbstractIntegrationTest;
+import org.dspace.authorize.AuthorizeException;
+import org.dspace.content.factory.ContentServiceFactory;
+import org.dspace.content.service.ItemService;
+import org.dspace.core.Context;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Performance tests of the metadata lookups of items with 10, 1,000 and
+ * 10,000 values. Lookups of a field only check the values of that field, the
+ * lookups with a wildcard schema still check all the values, as every lookup
+ * did before.
+ */
+public class ITMetadataLookup extends AbstractIntegrationTest
+{
+    /** Lookups per invocation */
+    private static final int LOOKUPS = 1000;
+
+    /** Set once the kernel is started */
+    protected static ItemService itemService;
+
+    /** Context of the items, aborted once all tests ran */
+    private static Context itemContext;
+
+    private static Item small;
+
+    private static Item medium;
+
+    private static Item large;
+
+    /**
+     * Create the items once for all tests: one title, the other values spread
+     * over subjects, descriptions and authors.
+     */
+    @BeforeClass
+    public static void setUpItems() throws SQLException, AuthorizeException
+    {
+        itemService = ContentServiceFactory.getInstance().getItemService();
+        itemContext = new Context();
+        itemContext.turnOffAuthorisationSystem();
+        Community community = ContentServiceFactory.getInstance().getCommunityService().create(null, itemContext);
+        Collection collection = ContentServiceFactory.getInstance().getCollectionService()
+                .create(itemContext, community);
+        small = createItem(collection, 10);
+        medium = createItem(collection, 1000);
+        large = createItem(collection, 10000);
+    }
+
+    private static Item createItem(Collection collection, int size) throws SQLException, AuthorizeException
+    {
+        Item item = ContentServiceFactory.getInstance().getWorkspaceItemService()
+                .create(itemContext, collection, false).getItem();
+        itemService.addMetadata(itemContext, item, "dc", "title", null, null, "Item with " + size + " values");
+        String[][] fields = { { "subject", null }, { "description", null }, { "contributor", "author" } };
+        for (int f = 0; f < fields.length; f++)
+        {
+            List<String> values = new ArrayList<>();
+            for (int i = f; i < size - 1; i += fields.length)
+            {
+                values.add(fields[f][0] + " " + i);
+            }
+            itemService.addMetadata(itemContext, item, "dc", fields[f][0], fields[f][1], null, values);
+        }
+        // Load everything the lookups use while the context is open
+        assertThat("createItem size", itemService.getMetadata(item, Item.ANY, Item.ANY, Item.ANY, Item.ANY).size(),
+                equalTo(size));
+        assertThat("createItem title", itemService.getMetadata(item, "dc", "title", null, Item.ANY).size(), equalTo(1));
+        return item;
+    }
+
+    @AfterClass
+    public static void tearDownItems()
+    {
+        if (itemContext != null && itemContext.isValid())
+        {
+            itemContext.abort();
+        }
+        itemContext = null;
+        small = null;
+        medium = null;
+        large = null;
+    }
+
+    /**
+     * The items are created once for the class, in a context of their own:
+     * no context is opened for each invocation, so that only the lookups are
+     * timed.
+     */
+    @Override
+    public void init()
+    {
+    }
+
+    @Override
+    public void destroy()
+    {
+    }
+
+    private static void lookup(Item item)
+    {
+        for (int i = 0; i < LOOKUPS; i++)
+        {
+            itemService.getMetadata(item, "dc", "title", null, Item.ANY);
+            itemService.getMetadataByMetadataString(item, "dc.contributor.author");
+        }
+    }
+
+    private static void scan(Item item)
+    {
+        for (int i = 0; i < LOOKUPS; i++)
+        {
+            itemService.getMetadata(item, Item.ANY, "title", null, Item.ANY);
+            itemService.getMetadata(item, Item.ANY, "contributor", "author", Item.ANY);
+        }
+    }
+
+    /**
+     * Test that the lookups of a field and the wildcard scans find the same values
+     */
+    @Test
+    public void testSameValues()
+    {
+        for (Item item : new Item[]{ small, medium, large })
+        {
+            assertThat("testSameValues title", itemService.getMetadata(item, "dc", "title", null, Item.ANY),
+                    equalTo(itemService.getMetadata(item, Item.ANY, "title", null, Item.ANY)));
+            assertThat("testSameValues author", itemService.getMetadataByMetadataString(item, "dc.contributor.author"),
+                    equalTo(itemService.getMetadata(item, Item.ANY, "contributor", "author", Item.ANY)));
+        }
+    }
+
+    @Test
+    @PerfTest(invocations = 50, threads = 1)
+    @Required(percentile95 = 100, average = 50)
+    public void testLookup10()
+    {
+        lookup(small);
+    }
+
+    @Test
+    @PerfTest(invocations = 50, threads = 1)
+    @Required(percentile95 = 500, average = 200)
+    public void testLookup1000()
+    {
+        lookup(medium);
+    }
+
+    @Test
+    @PerfTest(invocations = 50, threads = 1)
+    @Required(percentile95 = 5000, average = 2000)
+    public void testLookup10000()
+    {
+        lookup(large);
+    }
+
+    @Test
+    @PerfTest(invocations = 50, threads = 1)
+    public void testScan10()
+    {
+        scan(small);
+    }
+
+    @Test
+    @PerfTest(invocations = 50, threads = 1)
+    public void testScan1000()
+    {
+        scan(medium);
+    }
+
+    @Test
+    @PerfTest(invocations = 10, threads = 1)
+    public void testScan10000()
+    {
+        scan(large);
+    }
+}
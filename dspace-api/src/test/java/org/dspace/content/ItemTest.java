@@ -215,6 +215,24 @@ public class ItemTest  extends AbstractDSpaceObjectTest
         assertFalse("testFindBySubmitter 3", all.hasNext());
     }
 
+    /**
+     * Test of findByIdsWithMetadata method, of class Item.
+     */
+    @Test
+    public void testFindByIdsWithMetadata() throws Exception
+    {
+        context.turnOffAuthorisationSystem();
+        itemService.addMetadata(context, it, "dc", "title", null, null, "title0");
+        itemService.update(context, it);
+        context.restoreAuthSystemState();
+
+        List<Item> found = itemService.findByIdsWithMetadata(context, Arrays.asList(it.getID(), UUID.randomUUID()));
+        assertThat("testFindByIdsWithMetadata 0", found.size(), equalTo(1));
+        assertThat("testFindByIdsWithMetadata 1", found.get(0), equalTo(it));
+        assertThat("testFindByIdsWithMetadata 2", itemService.getMetadataFirstValue(found.get(0), "dc", "title", null, Item.ANY), equalTo("title0"));
+        assertTrue("testFindByIdsWithMetadata 3", itemService.findByIdsWithMetadata(context, new ArrayList<UUID>()).isEmpty());
+    }
+
     /**
      * Test of getID method, of class Item.
      */
@@ -342,6 +360,28 @@ public class ItemTest  extends AbstractDSpaceObjectTest
         assertTrue("testGetMetadata_String 5",dc.size() == 0);
     }
 
+    /**
+     * Test that the metadata lookups of Item see values added and cleared after a lookup.
+     */
+    @Test
+    public void testGetMetadata_AfterChanges() throws SQLException
+    {
+        assertTrue("testGetMetadata_AfterChanges 0",itemService.getMetadata(it, "dc", "contributor", Item.ANY, Item.ANY).size() == 0);
+
+        itemService.addMetadata(context, it, "dc", "contributor", "author", null, Arrays.asList("author0", "author1"));
+        itemService.addMetadata(context, it, "dc", "contributor", null, null, "contributor0");
+        assertTrue("testGetMetadata_AfterChanges 1",itemService.getMetadata(it, "dc", "contributor", "author", Item.ANY).size() == 2);
+        assertTrue("testGetMetadata_AfterChanges 2",itemService.getMetadata(it, "dc", "contributor", null, Item.ANY).size() == 1);
+        assertTrue("testGetMetadata_AfterChanges 3",itemService.getMetadata(it, "dc", "contributor", Item.ANY, Item.ANY).size() == 3);
+        assertTrue("testGetMetadata_AfterChanges 4",itemService.getMetadataByMetadataString(it, "dc.contributor.*").size() == 3);
+        assertThat("testGetMetadata_AfterChanges 5",itemService.getMetadataByMetadataString(it, "dc.contributor.author").get(1).getValue(),equalTo("author1"));
+
+        itemService.clearMetadata(context, it, "dc", "contributor", "author", Item.ANY);
+        assertTrue("testGetMetadata_AfterChanges 6",itemService.getMetadata(it, "dc", "contributor", "author", Item.ANY).size() == 0);
+        assertTrue("testGetMetadata_AfterChanges 7",itemService.getMetadata(it, "dc", "contributor", Item.ANY, Item.ANY).size() == 1);
+        assertTrue("testGetMetadata_AfterChanges 8",itemService.getMetadata(it, Item.ANY, "contributor", Item.ANY, Item.ANY).size() == 1);
+    }
+
     /**
      * A test for DS-806: Item.match() incorrect logic for schema testing
      */
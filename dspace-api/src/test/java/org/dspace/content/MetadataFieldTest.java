@@ -276,6 +276,35 @@ public class MetadataFieldTest extends AbstractUnitTest
         assertThat("testFindByElement 3",found.getQualifier(), equalTo(mf.getQualifier()));        
     }
 
+    /**
+     * Test that findByElement follows the changes to the registry
+     */
+    @Test
+    public void testFindByElementUpdated() throws Exception
+    {
+        new NonStrictExpectations(authorizeService.getClass())
+        {{
+            // Allow full admin permissions
+            authorizeService.isAdmin(context); result = true;
+        }};
+
+        String elem = "elem4";
+        String qual = "qual4";
+        assertThat("testFindByElementUpdated 0", metadataFieldService.findByElement(context, MetadataSchema.DC_SCHEMA, elem, qual), nullValue());
+
+        MetadataField m = metadataFieldService.create(context, dcSchema, elem, qual, null);
+        assertThat("testFindByElementUpdated 1", metadataFieldService.findByElement(context, MetadataSchema.DC_SCHEMA, elem, qual), equalTo(m));
+        assertThat("testFindByElementUpdated 2", MetadataRegistrySnapshot.get(context).getFieldID(MetadataSchema.DC_SCHEMA, elem, qual), equalTo(m.getID()));
+
+        m.setQualifier(null);
+        metadataFieldService.update(context, m);
+        assertThat("testFindByElementUpdated 3", metadataFieldService.findByElement(context, MetadataSchema.DC_SCHEMA, elem, qual), nullValue());
+        assertThat("testFindByElementUpdated 4", metadataFieldService.findByElement(context, MetadataSchema.DC_SCHEMA, elem, null), equalTo(m));
+
+        metadataFieldService.delete(context, m);
+        assertThat("testFindByElementUpdated 5", metadataFieldService.findByElement(context, MetadataSchema.DC_SCHEMA, elem, null), nullValue());
+    }
+
     /**
      * Test of findAll method, of class MetadataField.
      */
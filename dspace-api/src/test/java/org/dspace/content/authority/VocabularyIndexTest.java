@@ -0,0 +1,85 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.content.authority;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Tests for {@link VocabularyIndex}.
+ */
+public class VocabularyIndexTest
+{
+    private static final String VOCABULARY =
+            "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+            + "<node id=\"sciences\" label=\"Sciences\"><isComposedBy>"
+            + "<node id=\"bio\" label=\"Biologie\"/>"
+            + "<node id=\"chem\" label=\"Chimie organique\"><isComposedBy>"
+            + "<node id=\"poly\" label=\"Polym\u00e8res\"/>"
+            + "</isComposedBy></node>"
+            + "<node label=\"\u00c9cologie\"/>"
+            + "</isComposedBy></node>";
+
+    private VocabularyIndex index;
+
+    @Before
+    public void setUp() throws IOException
+    {
+        index = VocabularyIndex.load(new ByteArrayInputStream(VOCABULARY.getBytes(StandardCharsets.UTF_8)), "::");
+    }
+
+    @Test
+    public void testTerms()
+    {
+        assertEquals("Wrong number of terms", 5, index.size());
+        assertEquals("Wrong label", "Polym\u00e8res", index.getLabel(3));
+        assertEquals("Wrong hierarchy", "Sciences::Chimie organique::Polym\u00e8res", index.getPath(3));
+        assertEquals("Wrong identifier", "poly", index.getId(3));
+        assertEquals("Identifier of a term without one", null, index.getId(4));
+        assertEquals("Term not found by identifier", 2, index.indexOf("chem"));
+        assertEquals("Unknown identifier found", -1, index.indexOf("physics"));
+    }
+
+    @Test
+    public void testInfix()
+    {
+        assertArrayEquals("Short query", new int[] { 1, 4 }, index.search("gie", false, 0));
+        assertArrayEquals("Long query", new int[] { 2 }, index.search("organ", false, 0));
+        assertArrayEquals("Single character", new int[] { 0, 2, 4 }, index.search("c", false, 0));
+        assertArrayEquals("No match", new int[0], index.search("physique", false, 0));
+    }
+
+    @Test
+    public void testPrefix()
+    {
+        assertArrayEquals("Short prefix", new int[] { 2 }, index.search("chi", true, 0));
+        assertArrayEquals("Long prefix", new int[] { 2 }, index.search("chimie o", true, 0));
+        assertArrayEquals("Infix matched as a prefix", new int[0], index.search("organ", true, 0));
+    }
+
+    @Test
+    public void testFolding()
+    {
+        assertArrayEquals("Diacritics not ignored", new int[] { 3 }, index.search("polymeres", false, 0));
+        assertArrayEquals("Case not ignored", new int[] { 4 }, index.search("\u00c9COL", true, 0));
+    }
+
+    @Test
+    public void testMax()
+    {
+        assertArrayEquals("Maximum ignored", new int[] { 0, 1 }, index.search("", false, 2));
+        assertEquals("Empty query does not match everything", 5, index.search("", false, 0).length);
+    }
+}
@@ -8,6 +8,7 @@
 package org.dspace.core;
 
 import java.sql.SQLException;
+import java.util.ArrayList;
 import java.util.List;
 import java.util.Locale;
 import java.util.UUID;
@@ -289,6 +290,46 @@ public class ContextTest extends AbstractUnitTest
         cleanupContext(instance);
     }
 
+    /**
+     * Test of runAfterCommit method, of class Context.
+     */
+    @Test
+    public void testRunAfterCommit() throws SQLException
+    {
+        final List<String> ran = new ArrayList<String>();
+        Context instance = new Context();
+        instance.runAfterCommit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ran.add("committed");
+            }
+        });
+        assertTrue("testRunAfterCommit 0", ran.isEmpty());
+
+        instance.commit();
+        assertThat("testRunAfterCommit 1", ran.size(), equalTo(1));
+
+        // A task only runs after the next commit
+        instance.commit();
+        assertThat("testRunAfterCommit 2", ran.size(), equalTo(1));
+
+        // Tasks are dropped when the transaction is aborted
+        instance.runAfterCommit(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                ran.add("aborted");
+            }
+        });
+        instance.abort();
+        assertThat("testRunAfterCommit 3", ran.size(), equalTo(1));
+
+        cleanupContext(instance);
+    }
+
     /**
      * Test of isValid method, of class Context.
      */
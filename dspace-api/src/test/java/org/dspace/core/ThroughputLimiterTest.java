@@ -0,0 +1,96 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.core;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link ThroughputLimiter}.
+ */
+public class ThroughputLimiterTest
+{
+    private static final long SECOND = 1000000000L;
+
+    @Test
+    public void testUnlimited()
+    {
+        ThroughputLimiter limiter = new ThroughputLimiter(0);
+        assertFalse("Limited without a limit", limiter.isLimited());
+        assertEquals("Waiting without a limit", 0, limiter.reserve(Long.MAX_VALUE, 0));
+    }
+
+    @Test
+    public void testMegabytes()
+    {
+        ThroughputLimiter limiter = ThroughputLimiter.ofMegabytesPerSecond(2);
+        assertTrue("Not limited", limiter.isLimited());
+        assertEquals("Wrong rate", 2 * 1024 * 1024, limiter.getBytesPerSecond());
+    }
+
+    @Test
+    public void testRate()
+    {
+        ThroughputLimiter limiter = new ThroughputLimiter(1000);
+        long now = System.nanoTime() + 10 * SECOND;
+        // One second of bandwidth is saved up
+        assertEquals("Waiting for saved up bandwidth", 0, limiter.reserve(1000, now));
+        assertEquals("Not waiting for the second second", SECOND, limiter.reserve(1000, now));
+        assertEquals("Not waiting for the next half second", 3 * SECOND / 2, limiter.reserve(500, now));
+        // Once the reserved time has passed nothing is waited for
+        assertEquals("Waiting after the reserved time", 0, limiter.reserve(1000, now + 3 * SECOND));
+    }
+
+    @Test
+    public void testIdleTimeNotSaved()
+    {
+        ThroughputLimiter limiter = new ThroughputLimiter(1000);
+        long later = System.nanoTime() + 60 * SECOND;
+        assertEquals("Waiting for saved up bandwidth", 0, limiter.reserve(1000, later));
+        assertEquals("A minute of idle time was saved up", SECOND, limiter.reserve(1000, later));
+    }
+
+    @Test
+    public void testWrapReservesEachRead() throws IOException
+    {
+        final List<Long> reserved = new ArrayList<>();
+        ThroughputLimiter limiter = new ThroughputLimiter(Long.MAX_VALUE)
+        {
+            @Override
+            protected synchronized long reserve(long bytes, long now)
+            {
+                reserved.add(bytes);
+                return 0;
+            }
+        };
+        InputStream in = limiter.wrap(new ByteArrayInputStream(new byte[10]));
+        byte[] buffer = new byte[4];
+        while (in.read(buffer) != -1)
+        {
+            // read the stream
+        }
+        assertEquals("Reads not reserved one by one", Arrays.asList(4L, 4L, 2L), reserved);
+    }
+
+    @Test
+    public void testWrapUnlimited()
+    {
+        InputStream in = new ByteArrayInputStream(new byte[10]);
+        assertTrue("Unlimited stream wrapped", new ThroughputLimiter(0).wrap(in) == in);
+    }
+}
@@ -0,0 +1,81 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.discovery;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import org.dspace.core.Constants;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for the IndexingQueue
+ */
+public class IndexingQueueTest
+{
+    /**
+     * Queue which records the entries it indexes
+     */
+    private static class RecordingQueue extends IndexingQueue
+    {
+        private final List<Entry> indexed = new ArrayList<>();
+
+        RecordingQueue(long delay, int batchSize)
+        {
+            super(delay, batchSize);
+        }
+
+        @Override
+        protected int process(List<Entry> batch)
+        {
+            synchronized (indexed)
+            {
+                indexed.addAll(batch);
+            }
+            return 0;
+        }
+    }
+
+    /**
+     * Test that an object queued twice is indexed once
+     */
+    @Test
+    public void testQueueUpdateTwice()
+    {
+        RecordingQueue queue = new RecordingQueue(60000, 10);
+        UUID id = UUID.randomUUID();
+        queue.queueUpdate(Constants.ITEM, id);
+        queue.queueUpdate(Constants.ITEM, id);
+        queue.queueDelete("123456789/1");
+
+        assertThat("testQueueUpdateTwice 0", queue.size(), equalTo(2));
+    }
+
+    /**
+     * Test that the entries still waiting are indexed when the queue is stopped
+     */
+    @Test
+    public void testStop()
+    {
+        RecordingQueue queue = new RecordingQueue(60000, 2);
+        queue.start();
+        for (int i = 0; i < 5; i++)
+        {
+            queue.queueUpdate(Constants.ITEM, UUID.randomUUID());
+        }
+        queue.stop();
+
+        assertThat("testStop 0", queue.indexed.size(), equalTo(5));
+        assertThat("testStop 1", queue.size(), equalTo(0));
+        assertThat("testStop 2", queue.getProcessedCount(), equalTo(5L));
+    }
+}
@@ -0,0 +1,88 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.eperson;
+
+import org.apache.commons.lang3.tuple.ImmutablePair;
+import org.apache.commons.lang3.tuple.Pair;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Unit tests for {@link GroupMembershipIndex}.
+ */
+public class GroupMembershipIndexTest
+{
+    private final UUID admin = UUID.randomUUID();
+    private final UUID editors = UUID.randomUUID();
+    private final UUID reviewers = UUID.randomUUID();
+    private final UUID students = UUID.randomUUID();
+    private final UUID unrelated = UUID.randomUUID();
+
+    /**
+     * admin contains editors, editors contains reviewers, admin also contains reviewers directly.
+     */
+    private GroupMembershipIndex buildIndex()
+    {
+        List<Pair<UUID, UUID>> relations = new ArrayList<>();
+        relations.add(new ImmutablePair<>(admin, editors));
+        relations.add(new ImmutablePair<>(editors, reviewers));
+        relations.add(new ImmutablePair<>(admin, reviewers));
+        return GroupMembershipIndex.build(relations);
+    }
+
+    @Test
+    public void testIsMember()
+    {
+        GroupMembershipIndex index = buildIndex();
+        assertTrue(index.isMember(Collections.singletonList(reviewers), admin));
+        assertTrue(index.isMember(Collections.singletonList(reviewers), editors));
+        assertTrue(index.isMember(Collections.singletonList(editors), editors));
+        assertFalse(index.isMember(Collections.singletonList(admin), editors));
+        assertFalse(index.isMember(Arrays.asList(students, unrelated), admin));
+    }
+
+    @Test
+    public void testGetAncestors()
+    {
+        GroupMembershipIndex index = buildIndex();
+        Set<UUID> ancestors = index.getAncestors(Arrays.asList(reviewers, students));
+        assertEquals(4, ancestors.size());
+        assertTrue(ancestors.containsAll(Arrays.asList(reviewers, students, editors, admin)));
+    }
+
+    @Test
+    public void testGetClosure()
+    {
+        Set<Pair<UUID, UUID>> closure = buildIndex().getClosure();
+        assertEquals(3, closure.size());
+        assertTrue(closure.contains(Pair.of(admin, reviewers)));
+        assertTrue(closure.contains(Pair.of(editors, reviewers)));
+        assertTrue(closure.contains(Pair.of(admin, editors)));
+    }
+
+    @Test
+    public void testCycle()
+    {
+        List<Pair<UUID, UUID>> relations = new ArrayList<>();
+        relations.add(new ImmutablePair<>(admin, editors));
+        relations.add(new ImmutablePair<>(editors, admin));
+        GroupMembershipIndex index = GroupMembershipIndex.build(relations);
+        assertTrue(index.isMember(Collections.singletonList(editors), admin));
+        assertTrue(index.isMember(Collections.singletonList(admin), editors));
+    }
+}
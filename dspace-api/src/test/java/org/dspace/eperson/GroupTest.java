@@ -499,6 +499,16 @@ public class GroupTest extends AbstractUnitTest {
         assertTrue(groupService.isEmpty(level2Group));
     }
 
+    @Test
+    public void uncommittedHierarchyNotShared() throws SQLException {
+        GroupMembershipIndex index = context.getGroupMembershipIndex();
+        assertNotNull(index);
+        assertTrue(index.isMember(Arrays.asList(level2Group.getID()), topGroup.getID()));
+
+        GroupMembershipIndex shared = ((GroupServiceImpl) groupService).membershipIndex;
+        assertTrue(shared == null || !shared.isMember(Arrays.asList(level2Group.getID()), topGroup.getID()));
+    }
+
 
 
     protected Group createGroup(String name) throws SQLException, AuthorizeException {
@@ -0,0 +1,237 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import org.dspace.AbstractUnitTest;
+import org.dspace.core.Constants;
+import org.dspace.core.Context;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for the lanes of the AsyncDispatcher: order, retries and dead letters
+ */
+public class AsyncDispatcherTest extends AbstractUnitTest
+{
+    private final UUID item = UUID.randomUUID();
+
+    /**
+     * Consumer recording the details of the events of the batches it ends,
+     * failing a number of times first
+     */
+    private static class RecordingConsumer implements Consumer
+    {
+        private final List<String> consumed = Collections.synchronizedList(new ArrayList<String>());
+
+        private final List<String> pending = new ArrayList<String>();
+
+        private volatile int failures;
+
+        private volatile int attempts = 0;
+
+        private RecordingConsumer(int failures)
+        {
+            this.failures = failures;
+        }
+
+        @Override
+        public void initialize() throws Exception
+        {
+        }
+
+        @Override
+        public void consume(Context ctx, Event event) throws Exception
+        {
+            pending.add(event.getDetail());
+        }
+
+        @Override
+        public void end(Context ctx) throws Exception
+        {
+            attempts++;
+            if (failures > 0)
+            {
+                failures--;
+                pending.clear();
+                throw new Exception("failure");
+            }
+            consumed.addAll(pending);
+            pending.clear();
+        }
+
+        @Override
+        public void finish(Context ctx) throws Exception
+        {
+        }
+    }
+
+    /**
+     * Lane using a single consumer, and recording its dead letters
+     */
+    private static class TestLane extends AsyncDispatcher.Lane
+    {
+        private final Consumer consumer;
+
+        private final List<AsyncDispatcher.Batch> deadLetters
+                = Collections.synchronizedList(new ArrayList<AsyncDispatcher.Batch>());
+
+        private TestLane(Consumer consumer, int retries)
+        {
+            super(10, retries, 1, 10000);
+            this.consumer = consumer;
+        }
+
+        @Override
+        protected Consumer getConsumer(String name)
+        {
+            return consumer;
+        }
+
+        @Override
+        protected void deadLetter(AsyncDispatcher.Batch batch, Exception cause)
+        {
+            deadLetters.add(batch);
+        }
+    }
+
+    private AsyncDispatcher.Batch batch(TestLane lane, String... details)
+    {
+        AsyncDispatcher.Batch batch = new AsyncDispatcher.Batch(lane, "test");
+        for (String detail : details)
+        {
+            batch.events.add(new Event(Event.MODIFY_METADATA, Constants.ITEM, item, detail));
+        }
+        return batch;
+    }
+
+    /**
+     * Test that the batches of a lane are consumed in order
+     */
+    @Test
+    public void testOrder()
+    {
+        RecordingConsumer consumer = new RecordingConsumer(0);
+        TestLane lane = new TestLane(consumer, 0);
+        lane.start("test-lane");
+        lane.submit(batch(lane, "1", "2"));
+        lane.submit(batch(lane, "3"));
+        lane.submit(batch(lane, "4"));
+        lane.stop();
+        lane.awaitStop();
+
+        assertThat("testOrder 0", consumer.consumed, equalTo(Arrays.asList("1", "2", "3", "4")));
+        assertTrue("testOrder 1", lane.deadLetters.isEmpty());
+    }
+
+    /**
+     * Test that the events of an object always go to the same lane
+     */
+    @Test
+    public void testLaneOf()
+    {
+        Event first = new Event(Event.MODIFY, Constants.ITEM, item, null);
+        Event second = new Event(Event.MODIFY_METADATA, Constants.ITEM, UUID.fromString(item.toString()), "dc.title");
+
+        assertThat("testLaneOf 0", AsyncDispatcher.laneOf(first, 7), equalTo(AsyncDispatcher.laneOf(second, 7)));
+        assertThat("testLaneOf 1", AsyncDispatcher.laneOf(new Event(Event.MODIFY, Constants.SITE, null, null), 7),
+                equalTo(0));
+
+        // the item added to a collection is routed by the item
+        for (int i = 0; i < 20; i++)
+        {
+            Event added = new Event(Event.ADD, Constants.COLLECTION, UUID.randomUUID(), Constants.ITEM, item, null);
+            assertThat("testLaneOf 2", AsyncDispatcher.laneOf(added, 7), equalTo(AsyncDispatcher.laneOf(first, 7)));
+        }
+    }
+
+    /**
+     * Test that stopping a lane with a full queue still consumes all its batches
+     */
+    @Test
+    public void testStopFullQueue()
+    {
+        RecordingConsumer consumer = new RecordingConsumer(0);
+        TestLane lane = new TestLane(consumer, 0);
+        List<String> expected = new ArrayList<String>();
+        for (int i = 0; i < 10; i++)
+        {
+            lane.submit(batch(lane, String.valueOf(i)));
+            expected.add(String.valueOf(i));
+        }
+        lane.stop();
+        lane.start("test-lane");
+        lane.awaitStop();
+
+        assertThat("testStopFullQueue 0", consumer.consumed, equalTo(expected));
+        assertTrue("testStopFullQueue 1", lane.deadLetters.isEmpty());
+    }
+
+    /**
+     * Test that a failing batch is retried
+     */
+    @Test
+    public void testRetry()
+    {
+        RecordingConsumer consumer = new RecordingConsumer(2);
+        TestLane lane = new TestLane(consumer, 3);
+        lane.start("test-lane");
+        lane.submit(batch(lane, "1"));
+        lane.stop();
+        lane.awaitStop();
+
+        assertThat("testRetry 0", consumer.consumed, equalTo(Arrays.asList("1")));
+        assertThat("testRetry 1", consumer.attempts, equalTo(3));
+        assertTrue("testRetry 2", lane.deadLetters.isEmpty());
+    }
+
+    /**
+     * Test that a batch is dead lettered once all its attempts failed, and
+     * the next batches are still consumed
+     */
+    @Test
+    public void testDeadLetter()
+    {
+        RecordingConsumer consumer = new RecordingConsumer(2);
+        TestLane lane = new TestLane(consumer, 1);
+        lane.start("test-lane");
+        AsyncDispatcher.Batch failing = batch(lane, "1");
+        lane.submit(failing);
+        lane.submit(batch(lane, "2"));
+        lane.stop();
+        lane.awaitStop();
+
+        assertThat("testDeadLetter 0", consumer.consumed, equalTo(Arrays.asList("2")));
+        assertThat("testDeadLetter 1", lane.deadLetters.size(), equalTo(1));
+        assertThat("testDeadLetter 2", lane.deadLetters.get(0), sameInstance(failing));
+    }
+
+    /**
+     * Test that the batches submitted to a stopped lane are dead lettered
+     */
+    @Test
+    public void testSubmitAfterStop()
+    {
+        RecordingConsumer consumer = new RecordingConsumer(0);
+        TestLane lane = new TestLane(consumer, 0);
+        lane.start("test-lane");
+        lane.stop();
+        lane.awaitStop();
+        lane.submit(batch(lane, "1"));
+
+        assertTrue("testSubmitAfterStop 0", consumer.consumed.isEmpty());
+        assertThat("testSubmitAfterStop 1", lane.deadLetters.size(), equalTo(1));
+    }
+}
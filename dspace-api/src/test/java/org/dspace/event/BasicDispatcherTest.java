@@ -0,0 +1,99 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.event;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.UUID;
+
+import org.dspace.core.Constants;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for the coalescing and routing of events by the BasicDispatcher
+ */
+public class BasicDispatcherTest
+{
+    private final UUID item = UUID.randomUUID();
+
+    private final UUID bundle = UUID.randomUUID();
+
+    /**
+     * Test that events with the same type, subject and object are coalesced
+     */
+    @Test
+    public void testCoalesce()
+    {
+        Event title = new Event(Event.MODIFY_METADATA, Constants.ITEM, item, "dc.title");
+        Event author = new Event(Event.MODIFY_METADATA, Constants.ITEM, UUID.fromString(item.toString()), "dc.contributor.author, dc.title");
+        Event other = new Event(Event.MODIFY_METADATA, Constants.ITEM, UUID.randomUUID(), "dc.title");
+        Event add = new Event(Event.ADD, Constants.ITEM, item, Constants.BUNDLE, bundle, null);
+        Event addAgain = new Event(Event.ADD, Constants.ITEM, item, Constants.BUNDLE, bundle, null);
+
+        Map<Event, Event> coalesced = BasicDispatcher.coalesce(Arrays.asList(title, other, add, author, addAgain),
+                Event.MODIFY_METADATA | Event.ADD);
+
+        Event merged = coalesced.get(title);
+        assertThat("testCoalesce 0", merged, notNullValue());
+        assertThat("testCoalesce 1", merged.getDetail(), equalTo("dc.title, dc.contributor.author"));
+        assertThat("testCoalesce 2", merged.getSubjectID(), equalTo(item));
+        assertTrue("testCoalesce 3", coalesced.containsKey(author));
+        assertThat("testCoalesce 4", coalesced.get(author), nullValue());
+        assertFalse("testCoalesce 5", coalesced.containsKey(other));
+        assertThat("testCoalesce 6", coalesced.get(add), sameInstance(add));
+        assertThat("testCoalesce 7", coalesced.get(addAgain), nullValue());
+    }
+
+    /**
+     * Test that only the configured event types are coalesced
+     */
+    @Test
+    public void testCoalesceTypes()
+    {
+        Event first = new Event(Event.MODIFY, Constants.ITEM, item, null);
+        Event second = new Event(Event.MODIFY, Constants.ITEM, item, null);
+
+        assertTrue("testCoalesceTypes 0", BasicDispatcher.coalesce(Arrays.asList(first, second), Event.MODIFY_METADATA).isEmpty());
+    }
+
+    /**
+     * Test that routing masks give the same result as filters
+     */
+    @Test
+    public void testRoutingMask()
+    {
+        int filter[] = new int[2];
+        filter[Event.SUBJECT_MASK] = Event.parseObjectType("Item") | Event.parseObjectType("Bundle");
+        filter[Event.EVENT_MASK] = Event.parseEventType("Modify_Metadata") | Event.parseEventType("Add");
+
+        long routingMask = 0;
+        for (int s = 0; s < Constants.typeText.length; ++s)
+        {
+            for (int e = 0; e < Event.eventTypeText.length; ++e)
+            {
+                if ((filter[Event.SUBJECT_MASK] & (1 << s)) != 0 && (filter[Event.EVENT_MASK] & (1 << e)) != 0)
+                {
+                    routingMask |= Event.routingMask(1 << s, 1 << e);
+                }
+            }
+        }
+
+        for (int s = 0; s < Constants.typeText.length; ++s)
+        {
+            for (int e = 0; e < Event.eventTypeText.length; ++e)
+            {
+                Event event = new Event(1 << e, s, item, null);
+                assertThat("testRoutingMask " + s + "," + e, (routingMask & event.getRoutingMask()) != 0,
+                        equalTo(event.pass(Arrays.asList(filter))));
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.handle;
+
+import java.util.UUID;
+
+import org.dspace.core.Constants;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link HandleCache}.
+ */
+public class HandleCacheTest
+{
+    private static final String URL = "http://localhost/handle/123456789/1";
+
+    private long now;
+
+    private HandleCache cache;
+
+    @Before
+    public void setUp()
+    {
+        now = 1000;
+        cache = new HandleCache(2, 300, 60)
+        {
+            @Override
+            protected long currentTime()
+            {
+                return now;
+            }
+        };
+    }
+
+    @Test
+    public void testHit()
+    {
+        UUID id = UUID.randomUUID();
+        assertNull("Empty cache hit", cache.get("123456789/1"));
+        cache.recordMiss(1000000);
+        cache.put("123456789/1", URL, Constants.ITEM, id, cache.getGeneration());
+
+        HandleCache.Entry entry = cache.get("123456789/1");
+        assertNotNull("Cached handle missed", entry);
+        assertTrue("Handle does not exist", entry.exists());
+        assertEquals("Wrong URL", URL, entry.getURL());
+        assertEquals("Wrong object", id, entry.getResourceId());
+        assertEquals("Wrong type", Integer.valueOf(Constants.ITEM), entry.getResourceTypeId());
+        assertEquals("Wrong hit count", 1, cache.getHitCount());
+        assertEquals("Wrong miss count", 1, cache.getMissCount());
+        assertEquals("Wrong miss time", 1.0, cache.getAverageMissTime(), 0.001);
+    }
+
+    @Test
+    public void testExpiry()
+    {
+        cache.put("123456789/1", URL, null, null, cache.getGeneration());
+        cache.put("123456789/2", null, null, null, cache.getGeneration());
+        now += 60;
+        assertNotNull("Handle expired too early", cache.get("123456789/1"));
+        assertNull("Unknown handle did not expire", cache.get("123456789/2"));
+        now += 240;
+        assertNull("Handle did not expire", cache.get("123456789/1"));
+    }
+
+    @Test
+    public void testNegative()
+    {
+        cache.put("123456789/2", null, null, null, cache.getGeneration());
+        HandleCache.Entry entry = cache.get("123456789/2");
+        assertNotNull("Unknown handle not cached", entry);
+        assertFalse("Unknown handle exists", entry.exists());
+        assertEquals("Wrong negative hit count", 1, cache.getNegativeHitCount());
+    }
+
+    @Test
+    public void testEviction()
+    {
+        cache.put("123456789/1", URL, null, null, cache.getGeneration());
+        cache.put("123456789/2", URL, null, null, cache.getGeneration());
+        cache.get("123456789/1");
+        cache.put("123456789/3", URL, null, null, cache.getGeneration());
+        assertEquals("Wrong size", 2, cache.getSize());
+        assertNull("Least recently used handle kept", cache.get("123456789/2"));
+        assertNotNull("Recently used handle evicted", cache.get("123456789/1"));
+        assertEquals("Wrong eviction count", 1, cache.getEvictionCount());
+    }
+
+    @Test
+    public void testChange()
+    {
+        cache.put("123456789/1", URL, null, null, cache.getGeneration());
+        cache.changing("123456789/1");
+        assertNull("Changing handle still cached", cache.get("123456789/1"));
+        cache.put("123456789/1", null, null, null, cache.getGeneration());
+        assertNull("Uncommitted resolution cached", cache.get("123456789/1"));
+
+        cache.invalidate("123456789/1");
+        cache.put("123456789/1", URL, null, null, cache.getGeneration());
+        assertNotNull("Committed handle not cached", cache.get("123456789/1"));
+        assertEquals("Wrong invalidation count", 1, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void testInvalidatedWhileResolving()
+    {
+        long generation = cache.getGeneration();
+        cache.invalidate("123456789/1");
+        cache.put("123456789/1", null, null, null, generation);
+        assertNull("Resolution read before the invalidation cached", cache.get("123456789/1"));
+
+        cache.put("123456789/1", URL, null, null, cache.getGeneration());
+        assertNotNull("Resolution read after the invalidation not cached", cache.get("123456789/1"));
+    }
+
+    @Test
+    public void testDisabled()
+    {
+        HandleCache disabled = new HandleCache(0, 300, 60);
+        assertFalse("Cache enabled", disabled.isEnabled());
+        disabled.put("123456789/1", URL, null, null, disabled.getGeneration());
+        assertNull("Disabled cache hit", disabled.get("123456789/1"));
+    }
+}
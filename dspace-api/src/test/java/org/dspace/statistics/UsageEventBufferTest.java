@@ -0,0 +1,288 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.solr.client.solrj.SolrRequest;
+import org.apache.solr.client.solrj.SolrServer;
+import org.apache.solr.client.solrj.SolrServerException;
+import org.apache.solr.client.solrj.response.UpdateResponse;
+import org.apache.solr.common.SolrException;
+import org.apache.solr.common.SolrInputDocument;
+import org.apache.solr.common.util.NamedList;
+
+import org.junit.*;
+import org.junit.rules.TemporaryFolder;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for the spilling of the usage events which cannot be sent to
+ * Solr, and their replay once Solr is back
+ */
+public class UsageEventBufferTest
+{
+    @Rule
+    public TemporaryFolder testFolder = new TemporaryFolder();
+
+    private StubSolrServer solr;
+
+    private File spillDirectory;
+
+    private UsageEventBuffer buffer;
+
+    /**
+     * Statistics core recording the ids of the batches it is sent, or
+     * failing while it is down
+     */
+    private static class StubSolrServer extends SolrServer
+    {
+        private final List<List<String>> batches = Collections.synchronizedList(new ArrayList<List<String>>());
+
+        /** Thrown for every batch while set */
+        private volatile Exception failure = null;
+
+        /** Batches containing this id are refused as a bad request */
+        private volatile String rejectedId = null;
+
+        @Override
+        public UpdateResponse add(Collection<SolrInputDocument> docs) throws SolrServerException, IOException
+        {
+            List<String> ids = new ArrayList<>();
+            for (SolrInputDocument doc : docs)
+            {
+                ids.add((String) doc.getFieldValue("id"));
+            }
+            if (failure instanceof IOException)
+            {
+                throw (IOException) failure;
+            }
+            if (failure instanceof SolrServerException)
+            {
+                throw (SolrServerException) failure;
+            }
+            if (failure instanceof RuntimeException)
+            {
+                throw (RuntimeException) failure;
+            }
+            if (ids.contains(rejectedId))
+            {
+                throw new SolrException(SolrException.ErrorCode.BAD_REQUEST, "unknown field in " + ids);
+            }
+            batches.add(ids);
+            return new UpdateResponse();
+        }
+
+        @Override
+        public NamedList<Object> request(SolrRequest request) throws SolrServerException, IOException
+        {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void shutdown()
+        {
+        }
+    }
+
+    @Before
+    public void init() throws IOException
+    {
+        solr = new StubSolrServer();
+        spillDirectory = testFolder.newFolder("spill");
+    }
+
+    @After
+    public void destroy()
+    {
+        if (buffer != null)
+        {
+            buffer.shutdown(10);
+        }
+    }
+
+    /**
+     * Create the buffer, with a flush interval long enough for its flusher
+     * thread to stay out of the way of the batches the tests flush themselves
+     */
+    private void createBuffer()
+    {
+        buffer = new UsageEventBuffer(solr, 100, 10, 600000, false, spillDirectory, 1);
+    }
+
+    private static List<SolrInputDocument> batch(String... ids)
+    {
+        List<SolrInputDocument> batch = new ArrayList<>();
+        for (String id : ids)
+        {
+            SolrInputDocument doc = new SolrInputDocument();
+            doc.addField("id", id);
+            batch.add(doc);
+        }
+        return batch;
+    }
+
+    private File[] rejectedFiles()
+    {
+        File[] files = new File(spillDirectory, "rejected").listFiles();
+        return files == null ? new File[0] : files;
+    }
+
+    /**
+     * Test that the batches which cannot be sent are written to a file each
+     */
+    @Test
+    public void testSpill()
+    {
+        createBuffer();
+        solr.failure = new SolrServerException("connection refused");
+        buffer.flush(batch("1", "2"));
+        buffer.flush(batch("3"));
+
+        assertThat("testSpill files", buffer.listSpillFiles().length, equalTo(2));
+        assertThat("testSpill spilled", buffer.getSpilledCount(), equalTo(3L));
+        assertThat("testSpill failed", buffer.getFailedFlushCount(), equalTo(2L));
+        assertThat("testSpill flushed", buffer.getFlushedCount(), equalTo(0L));
+        assertThat("testSpill dropped", buffer.getDroppedCount(), equalTo(0L));
+        assertTrue("testSpill sent", solr.batches.isEmpty());
+    }
+
+    /**
+     * Test that the spilled batches are sent in order after the next batch
+     * which Solr accepts, and their files deleted
+     */
+    @Test
+    public void testReplay()
+    {
+        createBuffer();
+        solr.failure = new SolrServerException("connection refused");
+        buffer.flush(batch("1", "2"));
+        buffer.flush(batch("3"));
+
+        solr.failure = null;
+        buffer.flush(batch("4"));
+
+        assertThat("testReplay batches", solr.batches, equalTo(Arrays.asList(
+                Arrays.asList("4"), Arrays.asList("1", "2"), Arrays.asList("3"))));
+        assertThat("testReplay files", buffer.listSpillFiles().length, equalTo(0));
+        assertThat("testReplay rejected", rejectedFiles().length, equalTo(0));
+        assertThat("testReplay flushed", buffer.getFlushedCount(), equalTo(4L));
+    }
+
+    /**
+     * Test that the batches spilled before a restart are sent by the next buffer
+     */
+    @Test
+    public void testReplayAfterRestart()
+    {
+        createBuffer();
+        solr.failure = new SolrServerException("connection refused");
+        buffer.flush(batch("1"));
+        buffer.shutdown(10);
+
+        solr.failure = null;
+        createBuffer();
+        buffer.replaySpill(true);
+
+        assertThat("testReplayAfterRestart batches", solr.batches, equalTo(Arrays.asList(Arrays.asList("1"))));
+        assertThat("testReplayAfterRestart files", buffer.listSpillFiles().length, equalTo(0));
+    }
+
+    /**
+     * Test that the spilled batches are kept, and not rejected, while Solr
+     * or the network fail
+     */
+    @Test
+    public void testReplayStillDown()
+    {
+        createBuffer();
+        solr.failure = new IOException("connection reset");
+        buffer.flush(batch("1"));
+        buffer.flush(batch("2"));
+
+        buffer.replaySpill(true);
+        solr.failure = new SolrException(SolrException.ErrorCode.SERVER_ERROR, "out of memory");
+        buffer.replaySpill(true);
+
+        assertTrue("testReplayStillDown sent", solr.batches.isEmpty());
+        assertThat("testReplayStillDown files", buffer.listSpillFiles().length, equalTo(2));
+        assertThat("testReplayStillDown rejected", rejectedFiles().length, equalTo(0));
+
+        solr.failure = null;
+        buffer.replaySpill(true);
+
+        assertThat("testReplayStillDown batches", solr.batches, equalTo(Arrays.asList(
+                Arrays.asList("1"), Arrays.asList("2"))));
+        assertThat("testReplayStillDown replayed files", buffer.listSpillFiles().length, equalTo(0));
+    }
+
+    /**
+     * Test that a spilled batch which Solr refuses is moved to the rejected
+     * directory, and does not hold back the next ones
+     */
+    @Test
+    public void testReplayRejected()
+    {
+        createBuffer();
+        solr.failure = new SolrServerException("connection refused");
+        buffer.flush(batch("1", "bad"));
+        buffer.flush(batch("2"));
+        File[] spilled = buffer.listSpillFiles();
+        Arrays.sort(spilled);
+        File refused = spilled[0];
+
+        solr.failure = null;
+        solr.rejectedId = "bad";
+        buffer.replaySpill(true);
+
+        assertThat("testReplayRejected batches", solr.batches, equalTo(Arrays.asList(Arrays.asList("2"))));
+        assertThat("testReplayRejected files", buffer.listSpillFiles().length, equalTo(0));
+        assertThat("testReplayRejected rejected", rejectedFiles().length, equalTo(1));
+        assertThat("testReplayRejected rejected file", rejectedFiles()[0].getName(), equalTo(refused.getName()));
+
+        // the rejected batch is not sent again
+        solr.rejectedId = null;
+        buffer.flush(batch("3"));
+        buffer.replaySpill(true);
+
+        assertThat("testReplayRejected later batches", solr.batches, equalTo(Arrays.asList(
+                Arrays.asList("2"), Arrays.asList("3"))));
+        assertThat("testReplayRejected kept", rejectedFiles().length, equalTo(1));
+    }
+
+    /**
+     * Test that a spill file which cannot be read is moved to the rejected
+     * directory, and does not hold back the next ones
+     */
+    @Test
+    public void testReplayUnreadable() throws IOException
+    {
+        File unreadable = new File(spillDirectory, "usage-events-0000000000000-000000.ser");
+        FileUtils.writeStringToFile(unreadable, "not a batch", StandardCharsets.UTF_8);
+        createBuffer();
+        solr.failure = new SolrServerException("connection refused");
+        buffer.flush(batch("1"));
+
+        solr.failure = null;
+        buffer.replaySpill(true);
+
+        assertThat("testReplayUnreadable batches", solr.batches, equalTo(Arrays.asList(Arrays.asList("1"))));
+        assertThat("testReplayUnreadable files", buffer.listSpillFiles().length, equalTo(0));
+        assertThat("testReplayUnreadable rejected", rejectedFiles().length, equalTo(1));
+        assertThat("testReplayUnreadable rejected file", rejectedFiles()[0].getName(), equalTo(unreadable.getName()));
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link IPRangeSet}.
+ */
+public class IPRangeSetTest
+{
+    private IPRangeSet build(String... specs) throws IPTable.IPFormatException
+    {
+        List<IPRangeSet.Range> ranges = new ArrayList<>();
+        for (String spec : specs)
+        {
+            ranges.add(IPRangeSet.parseRange(spec));
+        }
+        return new IPRangeSet(ranges);
+    }
+
+    @Test
+    public void testSingleAddress() throws Exception
+    {
+        IPRangeSet set = build("192.168.2.1");
+        assertTrue("192.168.2.1 not found", set.contains("192.168.2.1"));
+        assertTrue("192.168.2.1 with whitespace not found", set.contains(" 192.168.2.1 "));
+        assertFalse("192.168.2.2 found", set.contains("192.168.2.2"));
+        assertFalse("192.168.2.0 found", set.contains("192.168.2.0"));
+    }
+
+    @Test
+    public void testPartialAddress() throws Exception
+    {
+        IPRangeSet set = build("10.1.2");
+        assertTrue("10.1.2.0 not found", set.contains("10.1.2.0"));
+        assertTrue("10.1.2.255 not found", set.contains("10.1.2.255"));
+        assertFalse("10.1.3.0 found", set.contains("10.1.3.0"));
+    }
+
+    @Test(expected = IPTable.IPFormatException.class)
+    public void testShortPartialAddress() throws Exception
+    {
+        IPRangeSet.parseRange("10.1");
+    }
+
+    @Test(expected = IPTable.IPFormatException.class)
+    public void testSingleOctet() throws Exception
+    {
+        IPRangeSet.parseRange("10");
+    }
+
+    @Test
+    public void testCidr() throws Exception
+    {
+        IPRangeSet set = build("172.16.0.0/12", "2001:db8::/32");
+        assertTrue("172.31.255.255 not found", set.contains("172.31.255.255"));
+        assertFalse("172.32.0.0 found", set.contains("172.32.0.0"));
+        assertTrue("2001:db8:ffff::1 not found", set.contains("2001:db8:ffff::1"));
+        assertFalse("2001:db9::1 found", set.contains("2001:db9::1"));
+    }
+
+    @Test
+    public void testExplicitRange() throws Exception
+    {
+        IPRangeSet set = build("192.168.1.250-192.168.2.5");
+        assertTrue("192.168.1.250 not found", set.contains("192.168.1.250"));
+        assertTrue("192.168.2.0 not found", set.contains("192.168.2.0"));
+        assertTrue("192.168.2.5 not found", set.contains("192.168.2.5"));
+        assertFalse("192.168.2.6 found", set.contains("192.168.2.6"));
+    }
+
+    @Test
+    public void testMerge() throws Exception
+    {
+        IPRangeSet set = build("10.0.0.0/24", "10.0.1.0/24", "10.0.0.5", "10.0.3.0/24");
+        assertEquals("Adjacent and overlapping ranges not merged", 2, set.size());
+        assertTrue("10.0.1.255 not found", set.contains("10.0.1.255"));
+        assertFalse("10.0.2.0 found", set.contains("10.0.2.0"));
+        assertTrue("10.0.3.1 not found", set.contains("10.0.3.1"));
+    }
+
+    @Test
+    public void testIPv4MappedIPv6() throws Exception
+    {
+        IPRangeSet set = build("192.168.2.1");
+        assertTrue("::ffff:192.168.2.1 not found", set.contains("::ffff:192.168.2.1"));
+    }
+
+    @Test
+    public void testInvalidAddresses() throws Exception
+    {
+        IPRangeSet set = build("0.0.0.0/0");
+        assertFalse("Host name found", set.contains("www.example.com"));
+        assertFalse("Invalid address found", set.contains("256.1.1.1"));
+        assertFalse("Null found", set.contains(null));
+    }
+
+    @Test(expected = IPTable.IPFormatException.class)
+    public void testInvalidRange() throws Exception
+    {
+        IPRangeSet.parseRange("192.168.2.10-192.168.2.1");
+    }
+
+    @Test(expected = IPTable.IPFormatException.class)
+    public void testInvalidPrefix() throws Exception
+    {
+        IPRangeSet.parseRange("192.168.2.0/33");
+    }
+}
@@ -0,0 +1,162 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.regex.Pattern;
+
+import org.databene.contiperf.PerfTest;
+import org.databene.contiperf.Required;
+import org.databene.contiperf.junit.ContiPerfRule;
+import org.junit.*;
+import static org.junit.Assert.*;
+
+/**
+ * Performance tests comparing the spider matching of {@link PatternSet} and
+ * {@link IPRangeSet} with the previous matching, which ran every agent pattern in turn
+ * under a lock and looked addresses up in an {@link IPTable}.
+ */
+public class ITSpiderDetector
+{
+    @Rule
+    public ContiPerfRule contiperfRules = new ContiPerfRule();
+
+    private static final int PATTERNS = 1000;
+
+    private static final int RANGES = 5000;
+
+    private static final int SAMPLES = 500;
+
+    private static final List<String> expressions = new ArrayList<>();
+
+    private static final List<String> ranges = new ArrayList<>();
+
+    private static final List<String> agents = new ArrayList<>();
+
+    private static final List<String> addresses = new ArrayList<>();
+
+    /** Agent patterns as matched before */
+    private static final List<Pattern> legacyPatterns = new ArrayList<>();
+
+    /** Addresses as looked up before */
+    private static final IPTable legacyTable = new IPTable();
+
+    private static PatternSet patternSet;
+
+    private static IPRangeSet rangeSet;
+
+    /**
+     * Build the patterns, ranges and requests, the same for every run
+     */
+    @BeforeClass
+    public static void setUpClass() throws IPTable.IPFormatException
+    {
+        Random random = new Random(42);
+        for (int i = 0; i < PATTERNS; i++)
+        {
+            // Mostly fixed names, as in the shipped lists, with some real expressions
+            expressions.add(i % 4 == 0 ? "crawler-" + i + "/[0-9]+\\.[0-9]+" : "Bot" + i + "\\.example");
+        }
+        for (int i = 0; i < RANGES; i++)
+        {
+            ranges.add(random.nextInt(224) + "." + random.nextInt(256) + "." + random.nextInt(256));
+        }
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            int pattern = random.nextInt(PATTERNS * 10);
+            agents.add(pattern >= PATTERNS
+                    ? "Mozilla/5.0 (X11; Linux x86_64; rv:" + i + ".0) Gecko/20100101 Firefox/" + i + ".0"
+                    : pattern % 4 == 0 ? "crawler-" + pattern + "/1.0" : "Mozilla/5.0 (compatible; bot" + pattern + ".example)");
+            addresses.add(i % 10 == 0
+                    ? ranges.get(random.nextInt(RANGES)) + "." + random.nextInt(256)
+                    : random.nextInt(224) + "." + random.nextInt(256) + "." + random.nextInt(256) + "." + random.nextInt(256));
+        }
+
+        List<IPRangeSet.Range> parsed = new ArrayList<>();
+        for (String expression : expressions)
+        {
+            legacyPatterns.add(Pattern.compile(expression, Pattern.CASE_INSENSITIVE));
+        }
+        for (String range : ranges)
+        {
+            legacyTable.add(range);
+            parsed.add(IPRangeSet.parseRange(range));
+        }
+        patternSet = new PatternSet(expressions);
+        rangeSet = new IPRangeSet(parsed);
+    }
+
+    private static boolean isLegacySpider(String agent, String ip) throws IPTable.IPFormatException
+    {
+        if (legacyTable.contains(ip))
+        {
+            return true;
+        }
+        synchronized (legacyPatterns)
+        {
+            for (Pattern candidate : legacyPatterns)
+            {
+                if (candidate.matcher(agent).find())
+                {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSpider(String agent, String ip)
+    {
+        return rangeSet.contains(ip) || patternSet.matches(agent);
+    }
+
+    /**
+     * Test that both matchings give the same verdicts
+     */
+    @Test
+    public void testSameVerdicts() throws IPTable.IPFormatException
+    {
+        int spiders = 0;
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            boolean legacy = isLegacySpider(agents.get(i), addresses.get(i));
+            assertEquals("testSameVerdicts " + i, legacy, isSpider(agents.get(i), addresses.get(i)));
+            spiders += legacy ? 1 : 0;
+        }
+        assertTrue("testSameVerdicts spiders", spiders > 0 && spiders < SAMPLES);
+    }
+
+    /**
+     * Times the previous matching of all the requests
+     */
+    @Test
+    @PerfTest(invocations = 20, threads = 4)
+    public void testLegacyMatching() throws IPTable.IPFormatException
+    {
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            isLegacySpider(agents.get(i), addresses.get(i));
+        }
+    }
+
+    /**
+     * Times the matching of all the requests
+     */
+    @Test
+    @PerfTest(invocations = 20, threads = 4)
+    @Required(percentile95 = 200, average = 50)
+    public void testMatching()
+    {
+        for (int i = 0; i < SAMPLES; i++)
+        {
+            isSpider(agents.get(i), addresses.get(i));
+        }
+    }
+}
@@ -0,0 +1,87 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.statistics.util;
+
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Tests for {@link PatternSet}.
+ */
+public class PatternSetTest
+{
+    @Test
+    public void testToLiteral()
+    {
+        assertEquals("Googlebot", PatternSet.toLiteral("Googlebot"));
+        assertEquals("Pingdom.com_bot", PatternSet.toLiteral("Pingdom\\.com_bot"));
+        assertEquals("LWP::Simple", PatternSet.toLiteral("LWP\\:\\:Simple"));
+        assertNull(PatternSet.toLiteral("^msnbot"));
+        assertNull(PatternSet.toLiteral("Demo\\sBot"));
+        assertNull(PatternSet.toLiteral("FDM(\\s|\\+)1"));
+    }
+
+    @Test
+    public void testMatches()
+    {
+        PatternSet set = new PatternSet(Arrays.asList("Googlebot", "^msnbot", "FDM(\\s|\\+)1", "(a)\\1x"));
+        assertTrue("Literal not matched case insensitively", set.matches("Mozilla/5.0 (compatible; googlebot/2.1)"));
+        assertTrue("Anchored pattern not matched", set.matches("MSNBot is watching you"));
+        assertFalse("Anchored pattern matched in the middle", set.matches("not msnbot"));
+        assertTrue("Alternation not matched", set.matches("FDM+1"));
+        assertTrue("Back reference not matched", set.matches("aax"));
+        assertFalse("Firefox matched", set.matches("Firefox"));
+        // Cached verdict
+        assertFalse("Firefox matched", set.matches("Firefox"));
+    }
+
+    @Test
+    public void testVerdictCacheKeepsRecentlyUsed()
+    {
+        final int[] evaluated = new int[1];
+        PatternSet set = new PatternSet(Arrays.asList("crawler"))
+        {
+            @Override
+            protected boolean evaluate(String input)
+            {
+                evaluated[0]++;
+                return super.evaluate(input);
+            }
+        };
+        int generation = PatternSet.MAX_CACHED_VERDICTS / 2;
+        set.matches("kept");
+        for (int i = 1; i < generation; i++)
+        {
+            set.matches("agent " + i);
+        }
+        // The first generation is full: used again, the verdict moves to the next one
+        set.matches("kept");
+        for (int i = generation; i < 2 * generation - 1; i++)
+        {
+            set.matches("agent " + i);
+        }
+        set.matches("kept");
+        assertEquals("Recently used verdict evicted", 2 * generation - 1, evaluated[0]);
+        set.matches("agent 1");
+        assertEquals("Unused verdict not evicted", 2 * generation, evaluated[0]);
+    }
+
+    @Test
+    public void testInvalidPattern()
+    {
+        PatternSet set = new PatternSet(Arrays.asList("bot(", "crawler"));
+        assertTrue("Valid pattern not used", set.matches("a crawler"));
+        assertFalse("Empty set", set.isEmpty());
+    }
+}
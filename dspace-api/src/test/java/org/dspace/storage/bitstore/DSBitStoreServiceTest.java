@@ -0,0 +1,167 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.bitstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.dspace.content.Bitstream;
+import org.dspace.core.Utils;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for class DSBitStoreService
+ */
+public class DSBitStoreServiceTest
+{
+    private static final byte[] DATA = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+    private File baseDir;
+
+    private DSBitStoreService store;
+
+    @Before
+    public void init() throws Exception
+    {
+        baseDir = File.createTempFile("assetstore", "");
+        baseDir.delete();
+        baseDir.mkdirs();
+
+        store = new DSBitStoreService();
+        store.setBaseDir(baseDir);
+        // smaller than the data, so that it is copied in several buffers
+        store.setBufferSize(8);
+        store.setDigestAlgorithms(Arrays.asList("MD5", "SHA-256"));
+        store.setConcurrentDigests(true);
+        store.init();
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    /**
+     * Test storing and reading back the bits, with their digests
+     */
+    @Test
+    public void testPut() throws Exception
+    {
+        Bitstream bitstream = new TestBitstream();
+        store.put(bitstream, new ByteArrayInputStream(DATA));
+
+        assertThat("testPut size", bitstream.getSize(), equalTo((long) DATA.length));
+        assertThat("testPut checksum", bitstream.getChecksum(), equalTo(digest("MD5")));
+        assertThat("testPut checksum algorithm", bitstream.getChecksumAlgorithm(), equalTo("MD5"));
+
+        InputStream in = store.get(bitstream);
+        try
+        {
+            assertArrayEquals("testPut content", DATA, IOUtils.toByteArray(in));
+        }
+        finally
+        {
+            in.close();
+        }
+
+        Map attrs = new HashMap();
+        attrs.put("checksum", null);
+        attrs.put(DSBitStoreService.DIGESTS, null);
+        store.about(bitstream, attrs);
+        assertThat("testPut about checksum", (String) attrs.get("checksum"), equalTo(digest("MD5")));
+        Map digests = (Map) attrs.get(DSBitStoreService.DIGESTS);
+        assertThat("testPut about SHA-256", (String) digests.get("SHA-256"), equalTo(digest("SHA-256")));
+    }
+
+    /**
+     * Test that the recorded checksum is only trusted when asked for
+     */
+    @Test
+    public void testReuseChecksum() throws Exception
+    {
+        Bitstream bitstream = new TestBitstream();
+        store.put(bitstream, new ByteArrayInputStream(DATA));
+        bitstream.setChecksum("recorded");
+
+        Map attrs = new HashMap();
+        attrs.put("checksum", null);
+        store.about(bitstream, attrs);
+        assertThat("testReuseChecksum reread", (String) attrs.get("checksum"), equalTo(digest("MD5")));
+
+        // without the digests file, the checksum of the bitstream is returned
+        new File(store.getFile(bitstream).getPath() + ".digests").delete();
+        attrs.put(DSBitStoreService.REUSE_CHECKSUM, null);
+        store.about(bitstream, attrs);
+        assertThat("testReuseChecksum reused", (String) attrs.get("checksum"), equalTo("recorded"));
+
+        store.remove(bitstream);
+        assertNull("testReuseChecksum removed", store.about(bitstream, new HashMap()));
+    }
+
+    /**
+     * Test reading ranges of the bits
+     */
+    @Test
+    public void testGetRange() throws Exception
+    {
+        Bitstream bitstream = new TestBitstream();
+        store.put(bitstream, new ByteArrayInputStream(DATA));
+
+        InputStream in = store.get(bitstream, 4, 5);
+        try
+        {
+            assertThat("testGetRange middle", new String(IOUtils.toByteArray(in, 5), StandardCharsets.UTF_8),
+                       equalTo("quick"));
+            assertTrue("testGetRange channel", in instanceof FileInputStream);
+        }
+        finally
+        {
+            in.close();
+        }
+
+        in = store.get(bitstream, 40, -1);
+        try
+        {
+            assertThat("testGetRange end", new String(IOUtils.toByteArray(in), StandardCharsets.UTF_8),
+                       equalTo("dog"));
+        }
+        finally
+        {
+            in.close();
+        }
+    }
+
+    private static String digest(String algorithm) throws Exception
+    {
+        return Utils.toHex(MessageDigest.getInstance(algorithm).digest(DATA));
+    }
+
+    /**
+     * A bitstream which is only stored, never saved in the database.
+     */
+    private static class TestBitstream extends Bitstream
+    {
+        private TestBitstream()
+        {
+            setInternalId(Utils.generateKey());
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.bitstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+
+import org.apache.commons.io.FileUtils;
+import org.dspace.content.Bitstream;
+import org.dspace.core.ThroughputLimiter;
+import org.dspace.core.Utils;
+import org.dspace.storage.bitstore.BitstreamStorageServiceImpl.AssetBitstream;
+import org.dspace.storage.bitstore.BitstreamStorageServiceImpl.MigrationCopy;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for the copies of assets made by assetstore migrations
+ */
+public class MigrationCopyTest
+{
+    private static final byte[] DATA = "The quick brown fox jumps over the lazy dog".getBytes(StandardCharsets.UTF_8);
+
+    private File baseDir;
+
+    private DSBitStoreService source;
+
+    private DSBitStoreService destination;
+
+    private Bitstream bitstream;
+
+    @Before
+    public void init() throws Exception
+    {
+        baseDir = File.createTempFile("assetstores", "");
+        baseDir.delete();
+        source = new DSBitStoreService();
+        source.setBaseDir(new File(baseDir, "0"));
+        destination = new DSBitStoreService();
+        destination.setBaseDir(new File(baseDir, "1"));
+
+        bitstream = new AssetBitstream(Utils.generateKey(), 0);
+        source.put(bitstream, new ByteArrayInputStream(DATA));
+    }
+
+    @After
+    public void destroy() throws Exception
+    {
+        FileUtils.deleteDirectory(baseDir);
+    }
+
+    /**
+     * Test copying and verifying an asset
+     */
+    @Test
+    public void testCopy() throws Exception
+    {
+        MigrationCopy copy = new MigrationCopy(source, destination, bitstream, 1, new ThroughputLimiter(0), true).call();
+
+        assertThat("testCopy store", copy.copy.getStoreNumber(), equalTo(1));
+        assertThat("testCopy checksum", copy.copy.getChecksum(), equalTo(bitstream.getChecksum()));
+        assertNotNull("testCopy copied", destination.about(copy.copy, new HashMap()));
+        assertNotNull("testCopy original kept", source.about(copy.original, new HashMap()));
+    }
+
+    /**
+     * Test that a copy which does not match the recorded checksum is removed
+     */
+    @Test
+    public void testChecksumMismatch() throws Exception
+    {
+        bitstream.setChecksum("0123456789abcdef0123456789abcdef");
+        MigrationCopy copy = new MigrationCopy(source, destination, bitstream, 1, new ThroughputLimiter(0), false);
+        try
+        {
+            copy.call();
+            fail("testChecksumMismatch copied");
+        }
+        catch (IOException e)
+        {
+            assertNull("testChecksumMismatch removed", destination.about(copy.copy, new HashMap()));
+        }
+    }
+
+    /**
+     * Test that the copy rate is limited
+     */
+    @Test
+    public void testThrottle() throws Exception
+    {
+        // 43 bytes at 20 bytes per second, less the second saved up by the limiter
+        long start = System.currentTimeMillis();
+        new MigrationCopy(source, destination, bitstream, 1, new ThroughputLimiter(20), false).call();
+        assertTrue("testThrottle rate", System.currentTimeMillis() - start >= 1000);
+    }
+}
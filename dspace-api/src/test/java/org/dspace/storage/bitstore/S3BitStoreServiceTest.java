@@ -0,0 +1,274 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.storage.bitstore;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+
+import com.amazonaws.AmazonServiceException;
+import com.amazonaws.services.s3.AmazonS3;
+import com.amazonaws.services.s3.model.AbortMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadRequest;
+import com.amazonaws.services.s3.model.CompleteMultipartUploadResult;
+import com.amazonaws.services.s3.model.GetObjectRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadRequest;
+import com.amazonaws.services.s3.model.InitiateMultipartUploadResult;
+import com.amazonaws.services.s3.model.PartETag;
+import com.amazonaws.services.s3.model.PutObjectRequest;
+import com.amazonaws.services.s3.model.PutObjectResult;
+import com.amazonaws.services.s3.model.S3Object;
+import com.amazonaws.services.s3.model.UploadPartRequest;
+import com.amazonaws.services.s3.model.UploadPartResult;
+import mockit.Mock;
+import mockit.MockUp;
+import org.apache.commons.io.IOUtils;
+import org.dspace.content.Bitstream;
+import org.dspace.core.Utils;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+import static org.hamcrest.CoreMatchers.*;
+
+/**
+ * Unit Tests for class S3BitStoreService, against a mocked S3 client
+ */
+public class S3BitStoreServiceTest
+{
+    private static final int PART_SIZE = 5 * 1024 * 1024;
+
+    private static final String BUCKET = "test-bucket";
+
+    private static final String UPLOAD_ID = "test-upload";
+
+    /** Mocked S3, recording the requests it is sent */
+    private FakeS3 s3;
+
+    private S3BitStoreService store;
+
+    /**
+     * In memory S3 bucket, holding the objects put in a single request and
+     * the parts of one multipart upload.
+     */
+    private static class FakeS3 extends MockUp<AmazonS3>
+    {
+        private final Map<String, byte[]> objects = Collections.synchronizedMap(new TreeMap<String, byte[]>());
+
+        private final Map<Integer, byte[]> parts = Collections.synchronizedMap(new TreeMap<Integer, byte[]>());
+
+        private final List<GetObjectRequest> gets = Collections.synchronizedList(new ArrayList<GetObjectRequest>());
+
+        private volatile int failingPart = -1;
+
+        private volatile List<PartETag> completed = null;
+
+        private volatile boolean aborted = false;
+
+        @Mock
+        public PutObjectResult putObject(PutObjectRequest request) throws IOException
+        {
+            objects.put(request.getKey(), IOUtils.toByteArray(request.getInputStream()));
+            return new PutObjectResult();
+        }
+
+        @Mock
+        public InitiateMultipartUploadResult initiateMultipartUpload(InitiateMultipartUploadRequest request)
+        {
+            InitiateMultipartUploadResult result = new InitiateMultipartUploadResult();
+            result.setUploadId(UPLOAD_ID);
+            return result;
+        }
+
+        @Mock
+        public UploadPartResult uploadPart(UploadPartRequest request) throws IOException
+        {
+            assertThat("uploadPart upload", request.getUploadId(), equalTo(UPLOAD_ID));
+            if (request.getPartNumber() == failingPart)
+            {
+                throw new AmazonServiceException("Part " + failingPart + " failed");
+            }
+            parts.put(request.getPartNumber(), IOUtils.toByteArray(request.getInputStream()));
+            UploadPartResult result = new UploadPartResult();
+            result.setPartNumber(request.getPartNumber());
+            result.setETag("etag-" + request.getPartNumber());
+            return result;
+        }
+
+        @Mock
+        public CompleteMultipartUploadResult completeMultipartUpload(CompleteMultipartUploadRequest request)
+                throws IOException
+        {
+            completed = request.getPartETags();
+            ByteArrayOutputStream object = new ByteArrayOutputStream();
+            for (byte[] part : parts.values())
+            {
+                object.write(part);
+            }
+            objects.put(request.getKey(), object.toByteArray());
+            return new CompleteMultipartUploadResult();
+        }
+
+        @Mock
+        public void abortMultipartUpload(AbortMultipartUploadRequest request)
+        {
+            assertThat("abortMultipartUpload upload", request.getUploadId(), equalTo(UPLOAD_ID));
+            aborted = true;
+        }
+
+        @Mock
+        public S3Object getObject(GetObjectRequest request)
+        {
+            gets.add(request);
+            byte[] object = objects.get(request.getKey());
+            int start = 0;
+            int end = object.length;
+            if (request.getRange() != null)
+            {
+                start = (int) Math.min(request.getRange()[0], object.length);
+                end = (int) Math.min(request.getRange()[1] + 1, object.length);
+            }
+            S3Object result = new S3Object();
+            result.setObjectContent(new ByteArrayInputStream(Arrays.copyOfRange(object, start, end)));
+            return result;
+        }
+    }
+
+    @Before
+    public void init()
+    {
+        s3 = new FakeS3();
+        store = new S3BitStoreService(s3.getMockInstance());
+        store.setBucketName(BUCKET);
+        store.setPartSize(PART_SIZE);
+        store.setUploadThreads(2);
+    }
+
+    /**
+     * Test that a stream smaller than a part is put in a single request
+     */
+    @Test
+    public void testPutSingle() throws Exception
+    {
+        byte[] data = data(1000);
+        Bitstream bitstream = new TestBitstream();
+        store.put(bitstream, new ByteArrayInputStream(data));
+
+        assertArrayEquals("testPutSingle object", data, s3.objects.get(bitstream.getInternalId()));
+        assertTrue("testPutSingle parts", s3.parts.isEmpty());
+        assertThat("testPutSingle size", bitstream.getSize(), equalTo((long) data.length));
+        assertThat("testPutSingle checksum", bitstream.getChecksum(), equalTo(md5(data)));
+    }
+
+    /**
+     * Test that a stream larger than a part is uploaded in parts, in order
+     */
+    @Test
+    public void testPutMultipart() throws Exception
+    {
+        byte[] data = data(2 * PART_SIZE + 1000);
+        Bitstream bitstream = new TestBitstream();
+        store.put(bitstream, new ByteArrayInputStream(data));
+
+        assertThat("testPutMultipart parts", s3.parts.size(), equalTo(3));
+        assertThat("testPutMultipart last part", s3.parts.get(3).length, equalTo(1000));
+        assertThat("testPutMultipart completed", s3.completed.size(), equalTo(3));
+        for (int i = 0; i < 3; i++)
+        {
+            assertThat("testPutMultipart part number", s3.completed.get(i).getPartNumber(), equalTo(i + 1));
+            assertThat("testPutMultipart part etag", s3.completed.get(i).getETag(), equalTo("etag-" + (i + 1)));
+        }
+        assertFalse("testPutMultipart aborted", s3.aborted);
+        assertArrayEquals("testPutMultipart object", data, s3.objects.get(bitstream.getInternalId()));
+        assertThat("testPutMultipart size", bitstream.getSize(), equalTo((long) data.length));
+        assertThat("testPutMultipart checksum", bitstream.getChecksum(), equalTo(md5(data)));
+    }
+
+    /**
+     * Test that a multipart upload is aborted, and not completed, when a part fails
+     */
+    @Test
+    public void testPutMultipartFailure() throws Exception
+    {
+        s3.failingPart = 2;
+        Bitstream bitstream = new TestBitstream();
+        try
+        {
+            store.put(bitstream, new ByteArrayInputStream(data(3 * PART_SIZE)));
+            fail("testPutMultipartFailure put did not fail");
+        }
+        catch (IOException e)
+        {
+            assertThat("testPutMultipartFailure cause", e.getCause(), instanceOf(AmazonServiceException.class));
+        }
+        assertTrue("testPutMultipartFailure aborted", s3.aborted);
+        assertNull("testPutMultipartFailure completed", s3.completed);
+        assertFalse("testPutMultipartFailure object", s3.objects.containsKey(bitstream.getInternalId()));
+    }
+
+    /**
+     * Test that reading a range only asks S3 for that range
+     */
+    @Test
+    public void testGetRange() throws Exception
+    {
+        byte[] data = data(1000);
+        Bitstream bitstream = new TestBitstream();
+        store.put(bitstream, new ByteArrayInputStream(data));
+
+        try (InputStream in = store.get(bitstream, 100, 50))
+        {
+            assertArrayEquals("testGetRange middle", Arrays.copyOfRange(data, 100, 150), IOUtils.toByteArray(in));
+        }
+        assertThat("testGetRange middle range", s3.gets.get(0).getRange(), equalTo(new long[]{ 100, 149 }));
+        assertThat("testGetRange middle bucket", s3.gets.get(0).getBucketName(), equalTo(BUCKET));
+
+        try (InputStream in = store.get(bitstream, 900, -1))
+        {
+            assertArrayEquals("testGetRange end", Arrays.copyOfRange(data, 900, 1000), IOUtils.toByteArray(in));
+        }
+        assertThat("testGetRange end range", s3.gets.get(1).getRange()[0], equalTo(900L));
+
+        try (InputStream in = store.get(bitstream, 100, 0))
+        {
+            assertThat("testGetRange empty", in.read(), equalTo(-1));
+        }
+        assertThat("testGetRange empty request", s3.gets.size(), equalTo(2));
+    }
+
+    private static byte[] data(int length)
+    {
+        byte[] data = new byte[length];
+        new Random(length).nextBytes(data);
+        return data;
+    }
+
+    private static String md5(byte[] data) throws Exception
+    {
+        return Utils.toHex(MessageDigest.getInstance("MD5").digest(data));
+    }
+
+    /**
+     * A bitstream which is only stored, never saved in the database.
+     */
+    private static class TestBitstream extends Bitstream
+    {
+        private TestBitstream()
+        {
+            setInternalId(Utils.generateKey());
+        }
+    }
+}
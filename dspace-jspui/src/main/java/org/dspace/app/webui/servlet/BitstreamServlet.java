@@ -11,6 +11,7 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.sql.SQLException;
 import java.util.List;
+import java.util.Map;
 
 import javax.servlet.ServletConfig;
 import javax.servlet.ServletException;
@@ -18,6 +19,7 @@ import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 
 import org.apache.log4j.Logger;
+import org.dspace.app.util.BitstreamDownload;
 import org.dspace.app.webui.util.JSPManager;
 import org.dspace.app.webui.util.UIUtil;
 import org.dspace.authorize.AuthorizeException;
@@ -25,22 +27,19 @@ import org.dspace.content.Bitstream;
 import org.dspace.content.Bundle;
 import org.dspace.content.DSpaceObject;
 import org.dspace.content.Item;
-import org.dspace.content.factory.ContentServiceFactory;
-import org.dspace.content.service.BitstreamService;
 import org.dspace.core.ConfigurationManager;
 import org.dspace.core.Constants;
 import org.dspace.core.Context;
 import org.dspace.core.LogManager;
-import org.dspace.core.Utils;
 import org.dspace.handle.factory.HandleServiceFactory;
 import org.dspace.handle.service.HandleService;
 import org.dspace.services.factory.DSpaceServicesFactory;
 import org.dspace.usage.UsageEvent;
 
 /**
- * Servlet for retrieving bitstreams. The bits are simply piped to the user. If
- * there is an <code>If-Modified-Since</code> header, only a 304 status code
- * is returned if the containing item has not been modified since that date.
+ * Servlet for retrieving bitstreams. The bits are simply piped to the user.
+ * Conditional (<code>If-None-Match</code>, <code>If-Modified-Since</code>) and
+ * range requests are handled by {@link BitstreamDownload}.
  * <P>
  * <code>/bitstream/handle/sequence_id/filename</code>
  * 
@@ -61,9 +60,6 @@ public class BitstreamServlet extends DSpaceServlet
     private final transient HandleService handleService
              = HandleServiceFactory.getInstance().getHandleService();
     
-    private final transient BitstreamService bitstreamService
-             = ContentServiceFactory.getInstance().getBitstreamService();
-    
     @Override
 	public void init(ServletConfig arg0) throws ServletException {
 		super.init(arg0);
@@ -180,16 +176,6 @@ public class BitstreamServlet extends DSpaceServlet
         log.info(LogManager.getHeader(context, "view_bitstream",
                 "bitstream_id=" + bitstream.getID()));
         
-        //new UsageEvent().fire(request, context, AbstractUsageEvent.VIEW,
-		//		Constants.BITSTREAM, bitstream.getID());
-
-        DSpaceServicesFactory.getInstance().getEventService().fireEvent(
-        		new UsageEvent(
-        				UsageEvent.Action.VIEW, 
-        				request, 
-        				context, 
-        				bitstream));
-        
         // Modification date
         // Only use last-modified if this is an anonymous access
         // - caching content that may be generated under authorisation
@@ -200,28 +186,48 @@ public class BitstreamServlet extends DSpaceServlet
             // for files
             response.setDateHeader("Last-Modified", item.getLastModified()
                     .getTime());
+        }
 
-            // Check for if-modified-since header
-            long modSince = request.getDateHeader("If-Modified-Since");
+        // Conditional and range requests are answered for all users, once
+        // access to the bitstream has been authorized
+        authorizeService.authorizeAction(context, bitstream, Constants.READ);
+        BitstreamDownload download = new BitstreamDownload(bitstream.getSize(),
+                bitstream.getChecksum(), item.getLastModified().getTime(),
+                bitstream.getFormat(context).getMIMEType());
+        download.evaluate(request.getHeader("If-None-Match"),
+                request.getDateHeader("If-Modified-Since"),
+                request.getHeader("Range"), request.getHeader("If-Range"));
+
+        response.setStatus(download.getStatus());
+        for (Map.Entry<String, String> header : download.getHeaders().entrySet())
+        {
+            response.setHeader(header.getKey(), header.getValue());
+        }
 
-            if (modSince != -1 && item.getLastModified().getTime() < modSince)
-            {
-                // Item has not been modified since requested date,
-                // hence bitstream has not; return 304
-                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-                return;
-            }
+        // Not modified answers and ranges after the first byte are not views
+        if (download.isView())
+        {
+            DSpaceServicesFactory.getInstance().getEventService().fireEvent(
+                    new UsageEvent(
+                            UsageEvent.Action.VIEW,
+                            request,
+                            context,
+                            bitstream));
         }
-        
-        // Pipe the bits
-        InputStream is = bitstreamService.retrieve(context, bitstream);
-     
-		// Set the response MIME type
-        response.setContentType(bitstream.getFormat(context).getMIMEType());
+        if (!download.hasBody())
+        {
+            // Not modified, or the range is not satisfiable: the bits are not read
+            return;
+        }
+
+        // Pipe the bits, or only the range asked for
+        InputStream is = download.retrieve(context, bitstream);
 
-        // Response length
-        response.setHeader("Content-Length", String
-                .valueOf(bitstream.getSize()));
+		// Set the response MIME type, unless several ranges are sent
+        if (!download.getHeaders().containsKey("Content-Type"))
+        {
+            response.setContentType(bitstream.getFormat(context).getMIMEType());
+        }
 
 		if(threshold != -1 && bitstream.getSize() >= threshold)
 		{
@@ -231,8 +237,13 @@ public class BitstreamServlet extends DSpaceServlet
         //DO NOT REMOVE IT - WE NEED TO FREE DB CONNECTION TO AVOID CONNECTION POOL EXHAUSTION FOR BIG FILES AND SLOW DOWNLOADS
         context.complete();
 
-        Utils.bufferedCopy(is, response.getOutputStream());
-        is.close();
-        response.getOutputStream().flush();
+        try
+        {
+            download.write(is, response.getOutputStream());
+        }
+        finally
+        {
+            is.close();
+        }
     }
 }
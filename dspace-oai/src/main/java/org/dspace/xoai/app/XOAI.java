@@ -13,7 +13,12 @@ import com.lyncode.xoai.dataprovider.exceptions.WritingXmlException;
 import com.lyncode.xoai.dataprovider.xml.XmlOutputContext;
 
 import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.ConnectException;
 import java.sql.SQLException;
 import java.text.ParseException;
@@ -21,7 +26,17 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import javax.xml.stream.XMLStreamException;
 
 import org.apache.commons.cli.CommandLine;
@@ -79,6 +94,7 @@ public class XOAI {
     private boolean optimize;
     private final boolean verbose;
     private boolean clean;
+    private boolean resume;
 
     @Autowired
     private SolrServerResolver solrServerResolver;
@@ -93,7 +109,7 @@ public class XOAI {
     private final ItemService itemService;
 
 
-    private List<String> getFileFormats(Item item) {
+    private List<String> getFileFormats(Context context, Item item) {
         List<String> formats = new ArrayList<>();
         try {
             for (Bundle b : itemService.getBundles(item, "ORIGINAL")) {
@@ -133,11 +149,30 @@ public class XOAI {
         System.out.println(line);
     }
 
+    /**
+     * Continue an interrupted import from its checkpoint, if there is one,
+     * instead of clearing the index or looking for modified items.
+     *
+     * @param resume true to resume an interrupted import
+     */
+    public void setResume(boolean resume) {
+        this.resume = resume;
+    }
+
     public int index() throws DSpaceSolrIndexerException {
         int result = 0;
         try {
-
-            if (clean) {
+            Properties checkpoint = resume ? readCheckpoint() : null;
+
+            if (checkpoint != null) {
+                String since = checkpoint.getProperty("since", "");
+                Date last = since.isEmpty() ? null : new Date(Long.parseLong(since));
+                UUID after = UUID.fromString(checkpoint.getProperty("after"));
+                System.out.println("Resuming import"
+                        + (last == null ? "" : " of documents modified after " + last)
+                        + " after item " + after);
+                result = this.index(last, after);
+            } else if (clean) {
                 clearIndex();
                 System.out.println("Using full import.");
                 result = this.indexAll();
@@ -166,7 +201,7 @@ public class XOAI {
             // Set last compilation date
             xoaiLastCompilationCacheService.put(new Date());
             return result;
-        } catch (DSpaceSolrException | SolrServerException | IOException ex) {
+        } catch (DSpaceSolrException | SolrServerException | IOException | IllegalArgumentException ex) {
             throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
         }
     }
@@ -175,57 +210,131 @@ public class XOAI {
         System.out
                 .println("Incremental import. Searching for documents modified after: "
                         + last.toString());
-        // Index both in_archive items AND withdrawn items. Withdrawn items will be flagged withdrawn
-        // (in order to notify external OAI harvesters of their new status)
-        try {
-            Iterator<Item> iterator = itemService.findInArchiveOrWithdrawnDiscoverableModifiedSince(
-                    context, last);
-            return this.index(iterator);
-        } catch (SQLException ex) {
-            throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
-        }
+        return this.index(last, null);
     }
 
     private int indexAll() throws DSpaceSolrIndexerException {
         System.out.println("Full import");
+        return this.index(null, null);
+    }
+
+    /**
+     * Index items in pages of <code>oai.import.page.size</code> item identifiers. Each page
+     * is converted by one of <code>oai.import.threads</code> workers with a Context of its
+     * own, which is discarded afterwards, and its documents are sent to Solr in batches of
+     * <code>oai.import.batch.size</code>. Only a few pages are waiting for a worker at any
+     * time, so memory use does not depend on the number of items.
+     * <p>
+     * The last item of the completed pages is recorded in a checkpoint file, so that an
+     * interrupted import can be resumed. The file is removed once the import is complete.
+     *
+     * @param last only index items modified after this date, or null for all items
+     * @param after only index items with a greater identifier, or null to start at the beginning
+     * @return number of items processed
+     * @throws DSpaceSolrIndexerException if the items cannot be read or sent to Solr
+     */
+    private int index(Date last, UUID after) throws DSpaceSolrIndexerException {
+        int threads = Math.max(1, ConfigurationManager.getIntProperty("oai", "import.threads", 1));
+        int pageSize = Math.max(1, ConfigurationManager.getIntProperty("oai", "import.page.size", 500));
+        final int batchSize = Math.max(1, ConfigurationManager.getIntProperty("oai", "import.batch.size", 100));
+
+        final AtomicInteger processed = new AtomicInteger(0);
+        final AtomicReference<Exception> failure = new AtomicReference<>();
+        final Checkpoint checkpoint = new Checkpoint(last);
+        final Semaphore pending = new Semaphore(threads * 2);
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
         try {
             // Index both in_archive items AND withdrawn items. Withdrawn items will be flagged withdrawn
             // (in order to notify external OAI harvesters of their new status)
-            Iterator<Item> iterator = itemService.findInArchiveOrWithdrawnDiscoverableModifiedSince(
-                    context, null);
-            return this.index(iterator);
-        } catch (SQLException ex) {
+            List<UUID> page = itemService.findInArchiveOrWithdrawnDiscoverableModifiedSinceIds(
+                    context, last, after, pageSize);
+            while (!page.isEmpty() && failure.get() == null) {
+                final List<UUID> ids = page;
+                final UUID end = page.get(page.size() - 1);
+                checkpoint.started(end);
+                pending.acquire();
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            indexPage(ids, batchSize, processed);
+                            checkpoint.completed(end);
+                        } catch (Exception ex) {
+                            failure.compareAndSet(null, ex);
+                        } finally {
+                            pending.release();
+                        }
+                    }
+                });
+                page = itemService.findInArchiveOrWithdrawnDiscoverableModifiedSinceIds(
+                        context, last, end, pageSize);
+            }
+
+            executor.shutdown();
+            while (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                System.out.println(processed.get() + " items imported so far...");
+            }
+            if (failure.get() != null) {
+                throw new DSpaceSolrIndexerException(failure.get().getMessage(), failure.get());
+            }
+
+            System.out.println("Total: " + processed.get() + " items");
+            solrServerResolver.getServer().commit();
+            checkpoint.delete();
+            return processed.get();
+        } catch (SQLException | SolrServerException | IOException ex) {
+            throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
             throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
+        } finally {
+            executor.shutdownNow();
         }
     }
 
-    private int index(Iterator<Item> iterator)
-            throws DSpaceSolrIndexerException {
+    /**
+     * Convert a page of items in a Context of its own and send them to Solr in batches.
+     * Items that cannot be converted are logged and skipped.
+     *
+     * @param ids the item identifiers
+     * @param batchSize number of documents per Solr request
+     * @param processed counter of items processed
+     */
+    private void indexPage(List<UUID> ids, int batchSize, AtomicInteger processed)
+            throws SolrServerException, IOException {
+        Context pageContext = new Context(Context.READ_ONLY);
         try {
-            int i = 0;
             SolrServer server = solrServerResolver.getServer();
-            while (iterator.hasNext()) {
+            List<SolrInputDocument> batch = new ArrayList<>(batchSize);
+            for (UUID id : ids) {
                 try {
-                    server.add(this.index(iterator.next()));
+                    Item item = itemService.find(pageContext, id);
+                    if (item != null) {
+                        batch.add(this.index(pageContext, item));
+                    }
                 } catch (SQLException | MetadataBindException | ParseException
                         | XMLStreamException | WritingXmlException ex) {
                     log.error(ex.getMessage(), ex);
                 }
-                i++;
+                if (batch.size() >= batchSize) {
+                    server.add(batch);
+                    batch.clear();
+                }
+                int i = processed.incrementAndGet();
                 if (i % 100 == 0) System.out.println(i + " items imported so far...");
             }
-            System.out.println("Total: " + i + " items");
-            server.commit();
-            return i;
-        } catch (SolrServerException | IOException ex) {
-            throw new DSpaceSolrIndexerException(ex.getMessage(), ex);
+            if (!batch.isEmpty()) {
+                server.add(batch);
+            }
+        } finally {
+            pageContext.abort();
         }
     }
 
-    private SolrInputDocument index(Item item) throws SQLException, MetadataBindException, ParseException, XMLStreamException, WritingXmlException {
+    private SolrInputDocument index(Context context, Item item) throws SQLException, MetadataBindException, ParseException, XMLStreamException, WritingXmlException {
         SolrInputDocument doc = new SolrInputDocument();
         doc.addField("item.id", item.getID());
-        boolean pub = this.isPublic(item);
+        boolean pub = this.isPublic(context, item);
         doc.addField("item.public", pub);
         String handle = item.getHandle();
         doc.addField("item.handle", handle);
@@ -258,7 +367,7 @@ public class XOAI {
             }
         }
 
-        for (String f : getFileFormats(item)) {
+        for (String f : getFileFormats(context, item)) {
             doc.addField("metadata.dc.format.mimetype", f);
         }
 
@@ -277,7 +386,7 @@ public class XOAI {
         return doc;
     }
 
-    private boolean isPublic(Item item) {
+    private boolean isPublic(Context context, Item item) {
         boolean pub = false;
         try {
             //Check if READ access allowed on this Item
@@ -289,6 +398,91 @@ public class XOAI {
     }
 
 
+    private static File getCheckpointFile() {
+        String file = ConfigurationManager.getProperty("oai", "import.checkpoint.file");
+        if (file == null) {
+            file = ConfigurationManager.getProperty("dspace.dir") + File.separator + "var"
+                    + File.separator + "oai-import.checkpoint";
+        }
+        return new File(file);
+    }
+
+    private static Properties readCheckpoint() {
+        File file = getCheckpointFile();
+        if (!file.exists()) {
+            System.out.println("No interrupted import to resume.");
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            Properties checkpoint = new Properties();
+            checkpoint.load(in);
+            return checkpoint.getProperty("after") == null ? null : checkpoint;
+        } catch (IOException ex) {
+            log.error("Unable to read the import checkpoint " + file, ex);
+            return null;
+        }
+    }
+
+    /**
+     * Tracks the pages of an import, recording the end of the completed pages that
+     * precede all pending ones. The Solr core is committed before the checkpoint is
+     * written, at most once per {@link #INTERVAL}.
+     */
+    private class Checkpoint {
+        private static final long INTERVAL = 60000;
+
+        private final Date since;
+        /** End of each started page, and whether it is complete, in page order */
+        private final Map<UUID, Boolean> pages = new LinkedHashMap<>();
+        private UUID completed = null;
+        private long written = System.currentTimeMillis();
+
+        private Checkpoint(Date since) {
+            this.since = since;
+        }
+
+        private synchronized void started(UUID end) {
+            pages.put(end, false);
+        }
+
+        private synchronized void completed(UUID end) {
+            pages.put(end, true);
+            Iterator<Map.Entry<UUID, Boolean>> iterator = pages.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<UUID, Boolean> page = iterator.next();
+                if (!page.getValue()) {
+                    break;
+                }
+                completed = page.getKey();
+                iterator.remove();
+            }
+            if (completed != null && System.currentTimeMillis() - written >= INTERVAL) {
+                write();
+            }
+        }
+
+        private void write() {
+            File file = getCheckpointFile();
+            Properties checkpoint = new Properties();
+            checkpoint.setProperty("since", since == null ? "" : String.valueOf(since.getTime()));
+            checkpoint.setProperty("after", completed.toString());
+            try (OutputStream out = new FileOutputStream(file)) {
+                solrServerResolver.getServer().commit();
+                checkpoint.store(out, "OAI import checkpoint");
+            } catch (IOException | SolrServerException ex) {
+                log.warn("Unable to write the import checkpoint " + file, ex);
+            }
+            written = System.currentTimeMillis();
+        }
+
+        private void delete() {
+            File file = getCheckpointFile();
+            if (file.exists() && !file.delete()) {
+                log.warn("Unable to delete the import checkpoint " + file);
+            }
+        }
+    }
+
     private static boolean getKnownExplanation(Throwable t) {
         if (t instanceof ConnectException) {
             System.err.println("Solr server ("
@@ -350,6 +544,7 @@ public class XOAI {
             options.addOption("o", "optimize", false,
                     "Optimize index at the end");
             options.addOption("v", "verbose", false, "Verbose output");
+            options.addOption("r", "resume", false, "Resume an interrupted import");
             options.addOption("h", "help", false, "Shows some help");
             options.addOption("n", "number", true, "FOR DEVELOPMENT MUST DELETE");
             CommandLine line = parser.parse(options, argv);
@@ -387,6 +582,7 @@ public class XOAI {
                             line.hasOption('o'),
                             line.hasOption('c'),
                             line.hasOption('v'));
+                    indexer.setResume(line.hasOption('r'));
 
                     applicationContext.getAutowireCapableBeanFactory().autowireBean(indexer);
 
@@ -472,6 +668,7 @@ public class XOAI {
             System.out.println("> Parameters:");
             System.out.println("     -o Optimize index after indexing (" + COMMAND_IMPORT + " only)");
             System.out.println("     -c Clear index (" + COMMAND_IMPORT + " only)");
+            System.out.println("     -r Resume an interrupted import (" + COMMAND_IMPORT + " only)");
             System.out.println("     -v Verbose output");
             System.out.println("     -h Shows this text");
         } else {
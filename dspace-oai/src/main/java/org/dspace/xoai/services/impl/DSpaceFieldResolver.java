@@ -17,39 +17,31 @@ import org.dspace.xoai.services.api.FieldResolver;
 import java.sql.SQLException;
 import java.util.regex.Pattern;
 
+/**
+ * Resolves fields with the metadata field service, which looks them up in the
+ * snapshot of the metadata registry shared by all services.
+ */
 public class DSpaceFieldResolver implements FieldResolver {
-    private MetadataFieldCache metadataFieldCache = null;
-
     private static final MetadataFieldService metadataFieldService
             = ContentServiceFactory.getInstance().getMetadataFieldService();
 
     @Override
     public int getFieldID(Context context, String field) throws InvalidMetadataFieldException, SQLException {
-        if (metadataFieldCache == null)
-            metadataFieldCache = new MetadataFieldCache();
-        if (!metadataFieldCache.hasField(field))
+        String[] pieces = field.split(Pattern.quote("."));
+        if (pieces.length > 1)
         {
-            String[] pieces = field.split(Pattern.quote("."));
-            if (pieces.length > 1)
-            {
-                String schema = pieces[0];
-                String element = pieces[1];
-                String qualifier = null;
-                if (pieces.length > 2)
-                    qualifier = pieces[2];
-
-                MetadataField metadataField = metadataFieldService.findByElement(context, schema, element, qualifier);
-                if (null != metadataField)
-                {
-                    metadataFieldCache.add(field, metadataField.getID());
-                }
-                else
-                    throw new InvalidMetadataFieldException();
+            String schema = pieces[0];
+            String element = pieces[1];
+            String qualifier = null;
+            if (pieces.length > 2)
+                qualifier = pieces[2];
 
+            MetadataField metadataField = metadataFieldService.findByElement(context, schema, element, qualifier);
+            if (null != metadataField)
+            {
+                return metadataField.getID();
             }
-            else
-                throw new InvalidMetadataFieldException();
         }
-        return metadataFieldCache.getField(field);
+        throw new InvalidMetadataFieldException();
     }
 }
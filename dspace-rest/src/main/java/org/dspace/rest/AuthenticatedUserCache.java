@@ -0,0 +1,153 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.rest;
+
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.dspace.core.Context;
+import org.dspace.eperson.EPerson;
+import org.dspace.eperson.Group;
+import org.dspace.eperson.factory.EPersonServiceFactory;
+import org.dspace.eperson.service.EPersonService;
+import org.dspace.eperson.service.GroupService;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+
+/**
+ * Identifiers of the user and special groups of authenticated sessions, kept
+ * for a short time so that they are not looked up by email address and group
+ * name for every request. Only identifiers are kept: the user is loaded in the
+ * database session of each request.
+ */
+public class AuthenticatedUserCache
+{
+    /** Number of sessions above which expired entries are purged */
+    private static final int PURGE_SIZE = 10000;
+
+    private final EPersonService ePersonService = EPersonServiceFactory.getInstance().getEPersonService();
+
+    private final GroupService groupService = EPersonServiceFactory.getInstance().getGroupService();
+
+    private final ConcurrentMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final long timeToLive;
+
+    /**
+     * @param timeToLive milliseconds an entry is used for, or 0 to look up every time
+     */
+    public AuthenticatedUserCache(long timeToLive)
+    {
+        this.timeToLive = timeToLive;
+    }
+
+    /**
+     * Set the user and special groups of an authenticated session on a context.
+     *
+     * @param context the context of the request
+     * @param authentication the authentication of the session
+     * @throws SQLException if the user or groups cannot be read
+     */
+    public void authenticate(Context context, Authentication authentication) throws SQLException
+    {
+        String key = getKey(authentication);
+        long now = System.currentTimeMillis();
+        Entry entry = entries.get(key);
+        if (entry == null || entry.expires < now)
+        {
+            entry = lookup(context, authentication, now + timeToLive);
+            if (timeToLive > 0)
+            {
+                if (entries.size() >= PURGE_SIZE)
+                {
+                    purge(now);
+                }
+                entries.put(key, entry);
+            }
+        }
+
+        for (UUID group : entry.groups)
+        {
+            context.setSpecialGroup(group);
+        }
+        if (entry.ePerson != null)
+        {
+            context.setCurrentUser(ePersonService.find(context, entry.ePerson));
+        }
+    }
+
+    protected Entry lookup(Context context, Authentication authentication, long expires) throws SQLException
+    {
+        List<UUID> groups = new ArrayList<>();
+        for (GrantedAuthority authority : authentication.getAuthorities())
+        {
+            Group group = groupService.findByName(context, authority.getAuthority());
+            if (group != null)
+            {
+                groups.add(group.getID());
+            }
+        }
+        EPerson ePerson = ePersonService.findByEmail(context, authentication.getName());
+        return new Entry(ePerson == null ? null : ePerson.getID(), groups, expires);
+    }
+
+    protected void purge(long now)
+    {
+        Iterator<Map.Entry<String, Entry>> iterator = entries.entrySet().iterator();
+        while (iterator.hasNext())
+        {
+            if (iterator.next().getValue().expires < now)
+            {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * @return the user name and the special groups of the session, which may depend on
+     *         the address it was opened from
+     */
+    protected String getKey(Authentication authentication)
+    {
+        StringBuilder key = new StringBuilder(authentication.getName());
+        Collection<? extends GrantedAuthority> authorities = authentication.getAuthorities();
+        TreeSet<String> names = new TreeSet<>();
+        for (GrantedAuthority authority : authorities)
+        {
+            names.add(authority.getAuthority());
+        }
+        for (String name : names)
+        {
+            key.append('\n').append(name);
+        }
+        return key.toString();
+    }
+
+    protected static class Entry
+    {
+        private final UUID ePerson;
+        private final List<UUID> groups;
+        private final long expires;
+
+        protected Entry(UUID ePerson, List<UUID> groups, long expires)
+        {
+            this.ePerson = ePerson;
+            this.groups = Collections.unmodifiableList(groups);
+            this.expires = expires;
+        }
+    }
+}
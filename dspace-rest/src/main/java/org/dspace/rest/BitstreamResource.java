@@ -9,10 +9,12 @@ package org.dspace.rest;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.net.URLConnection;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.UUID;
 
 import javax.servlet.http.HttpServletRequest;
@@ -32,8 +34,10 @@ import javax.ws.rs.core.HttpHeaders;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.Response.Status;
+import javax.ws.rs.core.StreamingOutput;
 
 import org.apache.log4j.Logger;
+import org.dspace.app.util.BitstreamDownload;
 import org.dspace.authorize.AuthorizeException;
 import org.dspace.authorize.factory.AuthorizeServiceFactory;
 import org.dspace.authorize.service.AuthorizeService;
@@ -270,7 +274,8 @@ public class BitstreamResource extends Resource
     }
 
     /**
-     * Read bitstream data. May throw WebApplicationException with the
+     * Read bitstream data. Byte range (Range, If-Range) and conditional
+     * (If-None-Match) requests are supported. May throw WebApplicationException with the
      * INTERNAL_SERVER_ERROR(500) code. Caused by three exceptions: IOException if
      * there was a problem with reading bitstream file. SQLException if there was
      * a problem while reading from database. And AuthorizeException if there was
@@ -302,19 +307,31 @@ public class BitstreamResource extends Resource
         org.dspace.core.Context context = null;
         InputStream inputStream = null;
         String type = null;
+        BitstreamDownload download = null;
 
         try
         {
             context = createContext();
             org.dspace.content.Bitstream dspaceBitstream = findBitstream(context, bitstreamId, org.dspace.core.Constants.READ);
 
-            writeStats(dspaceBitstream, UsageEvent.Action.VIEW, user_ip, user_agent, xforwardedfor, headers,
-                    request, context);
-
             log.trace("Bitsream(id=" + bitstreamId + ") data was successfully read.");
-            inputStream = bitstreamService.retrieve(context, dspaceBitstream);
             type = dspaceBitstream.getFormat(context).getMIMEType();
 
+            download = new BitstreamDownload(dspaceBitstream.getSize(), dspaceBitstream.getChecksum(), -1, type);
+            download.evaluate(request.getHeader("If-None-Match"), -1,
+                    request.getHeader("Range"), request.getHeader("If-Range"));
+            if (download.hasBody())
+            {
+                inputStream = download.retrieve(context, dspaceBitstream);
+            }
+
+            // Not modified answers and ranges after the first byte are not views
+            if (download.isView())
+            {
+                writeStats(dspaceBitstream, UsageEvent.Action.VIEW, user_ip, user_agent, xforwardedfor, headers,
+                        request, context);
+            }
+
             context.complete();
         }
         catch (IOException e)
@@ -342,7 +359,48 @@ public class BitstreamResource extends Resource
             processFinally(context);
         }
 
-        return Response.ok(inputStream).type(type).build();
+        Response.ResponseBuilder builder = Response.status(download.getStatus());
+        for (Map.Entry<String, String> header : download.getHeaders().entrySet())
+        {
+            builder.header(header.getKey(), header.getValue());
+        }
+        if (!download.hasBody())
+        {
+            return builder.build();
+        }
+        if (!download.getHeaders().containsKey("Content-Type"))
+        {
+            builder.type(type);
+        }
+        return builder.entity(new BitstreamDownloadOutput(download, inputStream)).build();
+    }
+
+    /**
+     * Writes the content of a bitstream download, then closes its stream.
+     */
+    private static class BitstreamDownloadOutput implements StreamingOutput
+    {
+        private final BitstreamDownload download;
+        private final InputStream inputStream;
+
+        private BitstreamDownloadOutput(BitstreamDownload download, InputStream inputStream)
+        {
+            this.download = download;
+            this.inputStream = inputStream;
+        }
+
+        @Override
+        public void write(OutputStream output) throws IOException
+        {
+            try
+            {
+                download.write(inputStream, output);
+            }
+            finally
+            {
+                inputStream.close();
+            }
+        }
     }
 
     /**
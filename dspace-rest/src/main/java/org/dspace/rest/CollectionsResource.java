@@ -14,6 +14,7 @@ import java.util.Iterator;
 import java.util.List;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.Consumes;
 import javax.ws.rs.DELETE;
 import javax.ws.rs.DefaultValue;
@@ -232,15 +233,24 @@ public class CollectionsResource extends Resource
      *            Limit value for items in array. Default value is 100.
      * @param offset
      *            Offset of start index in array of items of collection. Default
-     *            value is 0.
+     *            value is 0. Ignored if a cursor is given.
+     * @param cursor
+     *            Position of the page in the items of the collection: "*" for
+     *            the first page, then the value of the "rest-dspace-next-cursor"
+     *            header of the previous page (see {@link ItemCursor}). Unlike
+     *            offset, the cost of a page does not grow with its position.
+     * @param sort
+     *            "lastModified" to list items by last modification date instead
+     *            of identifier, when starting a listing with cursor "*".
      * @param headers
      *            If you want to access to collection under logged user into
      *            context. In headers must be set header "rest-dspace-token"
      *            with passed token from login method.
      * @return Return array of items, on which has logged user permission to
      *         read. It can also return status code NOT_FOUND(404) if id of
-     *         collection is incorrect or status code UNATHORIZED(401) if user
-     *         has no permission to read collection.
+     *         collection is incorrect, status code UNATHORIZED(401) if user
+     *         has no permission to read collection or status code
+     *         BAD_REQUEST(400) if the cursor is not valid.
      * @throws WebApplicationException
      *             It is thrown when was problem with database reading
      *             (SQLException) or problem with creating
@@ -252,14 +262,28 @@ public class CollectionsResource extends Resource
     @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
     public org.dspace.rest.common.Item[] getCollectionItems(@PathParam("collection_id") String collectionId,
             @QueryParam("expand") String expand, @QueryParam("limit") @DefaultValue("100") Integer limit,
-            @QueryParam("offset") @DefaultValue("0") Integer offset, @QueryParam("userIP") String user_ip,
+            @QueryParam("offset") @DefaultValue("0") Integer offset, @QueryParam("cursor") String cursor,
+            @QueryParam("sort") String sort, @QueryParam("userIP") String user_ip,
             @QueryParam("userAgent") String user_agent, @QueryParam("xforwardedfor") String xforwardedfor,
-            @Context HttpHeaders headers, @Context HttpServletRequest request) throws WebApplicationException
+            @Context HttpHeaders headers, @Context HttpServletRequest request,
+            @Context HttpServletResponse response) throws WebApplicationException
     {
 
         log.info("Reading collection(id=" + collectionId + ") items.");
         org.dspace.core.Context context = null;
         List<Item> items = null;
+        ItemCursor position = null;
+        if (cursor != null)
+        {
+            try
+            {
+                position = ItemCursor.parse(cursor, sort);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+        }
 
         try
         {
@@ -270,6 +294,18 @@ public class CollectionsResource extends Resource
                     headers, request, context);
 
             items = new ArrayList<Item>();
+            if (position != null)
+            {
+                // Only the page itself is read, and filtered for the user
+                int pageSize = (limit == null || limit < 1) ? 100 : limit;
+                List<org.dspace.content.Item> page = itemService.findByCollectionAfter(context, dspaceCollection,
+                        position.isByLastModified(), position.getLastModified(), position.getAfter(), pageSize);
+                addListedItems(page, pageSize, position, items, expand, user_ip, user_agent, xforwardedfor,
+                        headers, request, response, context);
+                context.complete();
+                return items.toArray(new Item[0]);
+            }
+
             Iterator<org.dspace.content.Item> dspaceItems = itemService.findByCollection(context, dspaceCollection);
             for (int i = 0; (dspaceItems.hasNext()) && (i < (limit + offset)); i++)
             {
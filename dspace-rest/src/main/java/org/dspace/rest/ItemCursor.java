@@ -0,0 +1,122 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.rest;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.UUID;
+
+import org.apache.commons.codec.binary.Base64;
+
+/**
+ * Position in a listing of items, passed between requests as an opaque token. A listing
+ * starts with the token {@link #START} and each response gives the token of the next page
+ * in its {@link #NEXT_CURSOR_HEADER} header, until there are no more items.
+ * <p>
+ * Items are listed by identifier, or by last modification date (then identifier) when
+ * the listing is started with <code>sort=lastModified</code>. A page only reads the items it
+ * returns, whatever its position in the listing.
+ */
+public class ItemCursor
+{
+    /** Token of the first page */
+    public static final String START = "*";
+
+    /** Response header with the token of the next page, absent on the last page */
+    public static final String NEXT_CURSOR_HEADER = "rest-dspace-next-cursor";
+
+    /** Value of the sort parameter to list items by last modification date */
+    public static final String SORT_LAST_MODIFIED = "lastModified";
+
+    private final boolean byLastModified;
+
+    private final Date lastModified;
+
+    private final UUID after;
+
+    protected ItemCursor(boolean byLastModified, Date lastModified, UUID after)
+    {
+        this.byLastModified = byLastModified;
+        this.lastModified = lastModified;
+        this.after = after;
+    }
+
+    /**
+     * Decode a token.
+     *
+     * @param token {@link #START} or a token returned by {@link #toString()}
+     * @param sort order of a new listing, <code>lastModified</code> or null for identifier order
+     * @return the position
+     * @throws IllegalArgumentException if the token is not valid
+     */
+    public static ItemCursor parse(String token, String sort)
+    {
+        if (START.equals(token))
+        {
+            return new ItemCursor(SORT_LAST_MODIFIED.equals(sort), null, null);
+        }
+        String[] parts = new String(Base64.decodeBase64(token), StandardCharsets.UTF_8).split(":");
+        try
+        {
+            if (parts.length == 2 && "i".equals(parts[0]))
+            {
+                return new ItemCursor(false, null, UUID.fromString(parts[1]));
+            }
+            if (parts.length == 3 && "m".equals(parts[0]))
+            {
+                return new ItemCursor(true, new Date(Long.parseLong(parts[1])), UUID.fromString(parts[2]));
+            }
+        }
+        catch (IllegalArgumentException e)
+        {
+            // Reported below
+        }
+        throw new IllegalArgumentException("Invalid cursor: " + token);
+    }
+
+    /**
+     * @param item the last item of the current page
+     * @return the position after it
+     */
+    public ItemCursor next(org.dspace.content.Item item)
+    {
+        return new ItemCursor(byLastModified, item.getLastModified(), item.getID());
+    }
+
+    public boolean isByLastModified()
+    {
+        return byLastModified;
+    }
+
+    public Date getLastModified()
+    {
+        return lastModified;
+    }
+
+    /**
+     * @return identifier of the last item of the previous page, null for the first page
+     */
+    public UUID getAfter()
+    {
+        return after;
+    }
+
+    /**
+     * @return the token of this position
+     */
+    @Override
+    public String toString()
+    {
+        if (after == null)
+        {
+            return START;
+        }
+        String position = byLastModified ? "m:" + lastModified.getTime() + ":" + after : "i:" + after;
+        return Base64.encodeBase64URLSafeString(position.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -24,6 +24,7 @@ import org.dspace.rest.exceptions.ContextException;
 import org.dspace.usage.UsageEvent;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.*;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.HttpHeaders;
@@ -133,13 +134,23 @@ public class ItemsResource extends Resource
      * @param limit
      *            How many items in array will be. Default value is 100.
      * @param offset
-     *            On which index will array start. Default value is 0.
+     *            On which index will array start. Default value is 0. Ignored
+     *            if a cursor is given.
+     * @param cursor
+     *            Position of the page in the items: "*" for the first page,
+     *            then the value of the "rest-dspace-next-cursor" header of the
+     *            previous page (see {@link ItemCursor}). Unlike offset, the
+     *            cost of a page does not grow with its position.
+     * @param sort
+     *            "lastModified" to list items by last modification date instead
+     *            of identifier, when starting a listing with cursor "*".
      * @param headers
      *            If you want to access to item under logged user into context.
      *            In headers must be set header "rest-dspace-token" with passed
      *            token from login method.
      * @return Return array of items, on which has logged user into context
-     *         permission.
+     *         permission. It can also return status code BAD_REQUEST(400) if
+     *         the cursor is not valid.
      * @throws WebApplicationException
      *             It can be thrown by SQLException, when was problem with
      *             reading items from database or ContextException, when was
@@ -148,19 +159,46 @@ public class ItemsResource extends Resource
     @GET
     @Produces({ MediaType.APPLICATION_JSON, MediaType.APPLICATION_XML })
     public Item[] getItems(@QueryParam("expand") String expand, @QueryParam("limit") @DefaultValue("100") Integer limit,
-            @QueryParam("offset") @DefaultValue("0") Integer offset, @QueryParam("userIP") String user_ip,
+            @QueryParam("offset") @DefaultValue("0") Integer offset, @QueryParam("cursor") String cursor,
+            @QueryParam("sort") String sort, @QueryParam("userIP") String user_ip,
             @QueryParam("userAgent") String user_agent, @QueryParam("xforwardedfor") String xforwardedfor,
-            @Context HttpHeaders headers, @Context HttpServletRequest request) throws WebApplicationException
+            @Context HttpHeaders headers, @Context HttpServletRequest request,
+            @Context HttpServletResponse response) throws WebApplicationException
     {
 
-        log.info("Reading items.(offset=" + offset + ",limit=" + limit + ").");
+        log.info("Reading items.(offset=" + offset + ",limit=" + limit + ",cursor=" + cursor + ").");
         org.dspace.core.Context context = null;
         List<Item> items = null;
+        ItemCursor position = null;
+        if (cursor != null)
+        {
+            try
+            {
+                position = ItemCursor.parse(cursor, sort);
+            }
+            catch (IllegalArgumentException e)
+            {
+                throw new WebApplicationException(Response.Status.BAD_REQUEST);
+            }
+        }
 
         try
         {
             context = createContext();
 
+            if (position != null)
+            {
+                // Only the page itself is read, and filtered for the user
+                int pageSize = (limit == null || limit < 1) ? 100 : limit;
+                List<org.dspace.content.Item> page = itemService.findAllUnfilteredAfter(context,
+                        position.isByLastModified(), position.getLastModified(), position.getAfter(), pageSize);
+                items = new ArrayList<Item>();
+                addListedItems(page, pageSize, position, items, expand, user_ip, user_agent, xforwardedfor,
+                        headers, request, response, context);
+                context.complete();
+                return items.toArray(new Item[0]);
+            }
+
             Iterator<org.dspace.content.Item> dspaceItems = itemService.findAllUnfiltered(context);
             items = new ArrayList<Item>();
 
@@ -0,0 +1,107 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.rest;
+
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Time spent by the request being processed by the current thread, in each of
+ * its phases. The time left when the phases are subtracted from the total is
+ * the time of the resource method itself.
+ *
+ * @see RequestTimingFilter
+ */
+public class RequestTimer
+{
+    /** Phase creating the context and authenticating its user */
+    public static final String CONTEXT = "context";
+
+    /** Phase recording usage statistics */
+    public static final String STATISTICS = "stats";
+
+    private static final ThreadLocal<RequestTimer> current = new ThreadLocal<>();
+
+    private final long start = System.nanoTime();
+
+    private final Map<String, Long> phases = new LinkedHashMap<>();
+
+    /**
+     * Start timing the request of the current thread.
+     *
+     * @return the timer of the request
+     */
+    public static RequestTimer start()
+    {
+        RequestTimer timer = new RequestTimer();
+        current.set(timer);
+        return timer;
+    }
+
+    /**
+     * Stop timing the request of the current thread.
+     *
+     * @return the timer of the request, or null if it was not timed
+     */
+    public static RequestTimer stop()
+    {
+        RequestTimer timer = current.get();
+        current.remove();
+        return timer;
+    }
+
+    /**
+     * Add the time since a start to a phase of the request of the current thread, if it is timed.
+     *
+     * @param phase the phase
+     * @param startNanos start of the phase, from {@link System#nanoTime()}
+     */
+    public static void record(String phase, long startNanos)
+    {
+        RequestTimer timer = current.get();
+        if (timer != null)
+        {
+            timer.add(phase, System.nanoTime() - startNanos);
+        }
+    }
+
+    public void add(String phase, long nanos)
+    {
+        Long total = phases.get(phase);
+        phases.put(phase, (total == null) ? nanos : total + nanos);
+    }
+
+    /**
+     * @return the phases, the resource method and the total, in the format of
+     *         a Server-Timing header
+     */
+    public String toServerTiming()
+    {
+        long total = System.nanoTime() - start;
+        long resource = total;
+        StringBuilder timing = new StringBuilder();
+        for (Map.Entry<String, Long> phase : phases.entrySet())
+        {
+            append(timing, phase.getKey(), phase.getValue());
+            resource -= phase.getValue();
+        }
+        append(timing, "resource", resource);
+        append(timing, "total", total);
+        return timing.toString();
+    }
+
+    private static void append(StringBuilder timing, String phase, long nanos)
+    {
+        if (timing.length() > 0)
+        {
+            timing.append(", ");
+        }
+        timing.append(phase).append(";dur=").append(String.format(Locale.ROOT, "%.2f", nanos / 1000000.0));
+    }
+}
@@ -0,0 +1,59 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.rest;
+
+import java.io.IOException;
+
+import javax.ws.rs.container.ContainerRequestContext;
+import javax.ws.rs.container.ContainerRequestFilter;
+import javax.ws.rs.container.ContainerResponseContext;
+import javax.ws.rs.container.ContainerResponseFilter;
+import javax.ws.rs.ext.Provider;
+
+import org.apache.log4j.Logger;
+import org.dspace.services.factory.DSpaceServicesFactory;
+
+/**
+ * Times the phases of each request with a {@link RequestTimer}. The timing is
+ * logged at debug level and, if <code>rest.server-timing</code> is enabled,
+ * returned in the Server-Timing header of the response.
+ */
+@Provider
+public class RequestTimingFilter implements ContainerRequestFilter, ContainerResponseFilter
+{
+    private static Logger log = Logger.getLogger(RequestTimingFilter.class);
+
+    private static final boolean serverTiming = DSpaceServicesFactory.getInstance().getConfigurationService()
+            .getBooleanProperty("rest.server-timing", false);
+
+    @Override
+    public void filter(ContainerRequestContext requestContext) throws IOException
+    {
+        RequestTimer.start();
+    }
+
+    @Override
+    public void filter(ContainerRequestContext requestContext, ContainerResponseContext responseContext) throws IOException
+    {
+        RequestTimer timer = RequestTimer.stop();
+        if (timer == null)
+        {
+            return;
+        }
+        if (serverTiming || log.isDebugEnabled())
+        {
+            String timing = timer.toServerTiming();
+            if (serverTiming)
+            {
+                responseContext.getHeaders().add("Server-Timing", timing);
+            }
+            log.debug(requestContext.getMethod() + " " + requestContext.getUriInfo().getPath() + " "
+                    + responseContext.getStatus() + ": " + timing);
+        }
+    }
+}
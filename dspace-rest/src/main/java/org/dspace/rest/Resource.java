@@ -10,12 +10,12 @@ package org.dspace.rest;
 import java.net.CookieHandler;
 import java.sql.SQLException;
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.Iterator;
 import java.util.List;
 
 import javax.servlet.ServletContext;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.ws.rs.WebApplicationException;
 import javax.ws.rs.core.Cookie;
 import javax.ws.rs.core.HttpHeaders;
@@ -24,16 +24,17 @@ import javax.ws.rs.core.Response;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.log4j.Logger;
 import org.dspace.content.DSpaceObject;
+import org.dspace.content.factory.ContentServiceFactory;
 import org.dspace.core.Context;
 import org.dspace.eperson.EPerson;
-import org.dspace.eperson.factory.EPersonServiceFactory;
 import org.dspace.rest.exceptions.ContextException;
+import org.dspace.services.ConfigurationService;
 import org.dspace.services.factory.DSpaceServicesFactory;
+import org.dspace.services.model.Request;
 import org.dspace.usage.UsageEvent;
 import org.dspace.utils.DSpace;
 import org.springframework.security.core.Authentication;
 import org.springframework.security.core.GrantedAuthority;
-import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContext;
 import org.springframework.security.core.context.SecurityContextHolder;
 
@@ -54,14 +55,23 @@ public class Resource
     private static Logger log = Logger.getLogger(Resource.class);
 
     private static final boolean writeStatistics;
+    private static final UsageEventDispatcher usageEventDispatcher;
+    private static final AuthenticatedUserCache authenticatedUserCache;
     static
     {
-        writeStatistics = DSpaceServicesFactory.getInstance().getConfigurationService().getBooleanProperty("rest.stats", false);
+        ConfigurationService configurationService = DSpaceServicesFactory.getInstance().getConfigurationService();
+        writeStatistics = configurationService.getBooleanProperty("rest.stats", false);
+        usageEventDispatcher = configurationService.getBooleanProperty("rest.stats.async", false)
+                ? new UsageEventDispatcher(configurationService.getIntProperty("rest.stats.async.queue", 10000))
+                : null;
+        authenticatedUserCache = new AuthenticatedUserCache(
+                configurationService.getLongProperty("rest.authentication-cache.ttl", 60) * 1000);
     }
 
     /**
      * Create context to work with DSpace database. It can create context
-     * with or without a logged in user (parameter user is null). Throws
+     * with or without a logged in user (parameter user is null). The context
+     * of a GET or HEAD request is read-only. Throws
      * WebApplicationException caused by: SQLException if there was a problem
      * with reading from database. Throws AuthorizeException if there was
      * a problem with authorization to read from the database. Throws Exception
@@ -78,22 +88,36 @@ public class Resource
      *             problem authorizing the found user.
      */
     protected static org.dspace.core.Context createContext() throws ContextException, SQLException {
-        org.dspace.core.Context context = new org.dspace.core.Context();
+        long start = System.nanoTime();
+        org.dspace.core.Context context = isReadOnlyRequest()
+                ? new org.dspace.core.Context(org.dspace.core.Context.READ_ONLY)
+                : new org.dspace.core.Context();
         //context.getDBConnection().setAutoCommit(false); // Disable autocommit.
 
         Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
         if(authentication != null)
         {
-            Collection<SimpleGrantedAuthority> specialGroups = (Collection<SimpleGrantedAuthority>) authentication.getAuthorities();
-            for (SimpleGrantedAuthority grantedAuthority : specialGroups) {
-                context.setSpecialGroup(EPersonServiceFactory.getInstance().getGroupService().findByName(context, grantedAuthority.getAuthority()).getID());
-            }
-            context.setCurrentUser(EPersonServiceFactory.getInstance().getEPersonService().findByEmail(context, authentication.getName()));
+            authenticatedUserCache.authenticate(context, authentication);
         }
 
+        RequestTimer.record(RequestTimer.CONTEXT, start);
         return context;
     }
 
+    /**
+     * @return true if the current request is a GET or HEAD request, which does not change anything
+     */
+    private static boolean isReadOnlyRequest()
+    {
+        Request request = new DSpace().getRequestService().getCurrentRequest();
+        if (request == null || request.getHttpServletRequest() == null)
+        {
+            return false;
+        }
+        String method = request.getHttpServletRequest().getMethod();
+        return "GET".equals(method) || "HEAD".equals(method);
+    }
+
     /**
      * Records a statistics event about an object used via REST API.
      * @param dspaceObject
@@ -115,7 +139,21 @@ public class Resource
             return;
         }
 
-        if ((user_ip == null) || (user_ip.length() == 0))
+        long start = System.nanoTime();
+        if (usageEventDispatcher != null)
+        {
+            // the request is finished by the time the event is fired
+            if ((user_ip == null) || (user_ip.length() == 0))
+            {
+                usageEventDispatcher.dispatch(action, request.getRemoteAddr(), request.getHeader("User-Agent"),
+                        request.getHeader("X-Forwarded-For"), context, dspaceObject);
+            }
+            else
+            {
+                usageEventDispatcher.dispatch(action, user_ip, user_agent, xforwardedfor, context, dspaceObject);
+            }
+        }
+        else if ((user_ip == null) || (user_ip.length() == 0))
         {
             DSpaceServicesFactory.getInstance().getEventService().fireEvent(new UsageEvent(action, request, context, dspaceObject));
         }
@@ -124,6 +162,7 @@ public class Resource
             DSpaceServicesFactory.getInstance().getEventService().fireEvent(
                     new UsageEvent(action, user_ip, user_agent, xforwardedfor, context, dspaceObject));
         }
+        RequestTimer.record(RequestTimer.STATISTICS, start);
 
         log.debug("fired event");
     }
@@ -235,4 +274,54 @@ public class Resource
         return actionStr;
     }
 
+    /**
+     * Convert the items of a page read with an {@link ItemCursor} that are listed for the
+     * current user, and give the position of the next page in the
+     * {@link ItemCursor#NEXT_CURSOR_HEADER} response header, unless this page is the last one.
+     * Authorization is only checked for the items of the page, so a page may contain fewer
+     * items than requested even if it is not the last one.
+     *
+     * @param page
+     *            Items read for the page, at most limit.
+     * @param limit
+     *            Number of items requested for the page.
+     * @param position
+     *            Position of the page.
+     * @param items
+     *            List to add the converted items to.
+     * @param expand
+     *            String in which is what you want to add to returned items.
+     * @param user_ip
+     * @param user_agent
+     * @param xforwardedfor
+     * @param headers
+     * @param request
+     * @param response
+     *            Response to set the next cursor header on.
+     * @param context
+     *            Context of the request.
+     * @throws SQLException
+     *             Thrown if there was a problem reading the items.
+     */
+    protected void addListedItems(List<org.dspace.content.Item> page, int limit, ItemCursor position,
+            List<org.dspace.rest.common.Item> items, String expand, String user_ip, String user_agent,
+            String xforwardedfor, HttpHeaders headers, HttpServletRequest request, HttpServletResponse response,
+            Context context) throws SQLException
+    {
+        org.dspace.content.service.ItemService itemService = ContentServiceFactory.getInstance().getItemService();
+        for (org.dspace.content.Item dspaceItem : page)
+        {
+            if (itemService.isItemListedForUser(context, dspaceItem))
+            {
+                items.add(new org.dspace.rest.common.Item(dspaceItem, servletContext, expand, context));
+                writeStats(dspaceItem, UsageEvent.Action.VIEW, user_ip, user_agent, xforwardedfor,
+                        headers, request, context);
+            }
+        }
+        if (!page.isEmpty() && page.size() >= limit)
+        {
+            response.setHeader(ItemCursor.NEXT_CURSOR_HEADER, position.next(page.get(page.size() - 1)).toString());
+        }
+    }
+
 }
@@ -0,0 +1,137 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.rest;
+
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.log4j.Logger;
+import org.dspace.content.DSpaceObject;
+import org.dspace.content.factory.ContentServiceFactory;
+import org.dspace.content.service.DSpaceObjectService;
+import org.dspace.core.Context;
+import org.dspace.eperson.factory.EPersonServiceFactory;
+import org.dspace.services.factory.DSpaceServicesFactory;
+import org.dspace.usage.UsageEvent;
+
+/**
+ * Fires usage events on a background thread, so that recording statistics
+ * does not delay responses. The events only carry the address and user agent
+ * of the request, not the request itself, which is finished when they are
+ * fired; the object and user are loaded again in a context of the background
+ * thread. Events are dropped when too many are waiting.
+ */
+public class UsageEventDispatcher
+{
+    private static Logger log = Logger.getLogger(UsageEventDispatcher.class);
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * @param capacity the number of events which can be waiting
+     */
+    public UsageEventDispatcher(int capacity)
+    {
+        executor = new ThreadPoolExecutor(1, 1, 0, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>(capacity),
+                new ThreadFactory()
+                {
+                    @Override
+                    public Thread newThread(Runnable runnable)
+                    {
+                        Thread thread = new Thread(runnable, "rest-usage-events");
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+    }
+
+    /**
+     * Fire a usage event later.
+     *
+     * @param action the action performed
+     * @param ip the address of the client
+     * @param userAgent the user agent of the client
+     * @param xforwardedfor the addresses the request was forwarded for
+     * @param context the context of the request, for its current user
+     * @param dspaceObject the object the action was performed on
+     */
+    public void dispatch(UsageEvent.Action action, String ip, String userAgent, String xforwardedfor,
+                         Context context, DSpaceObject dspaceObject)
+    {
+        UUID user = (context.getCurrentUser() == null) ? null : context.getCurrentUser().getID();
+        try
+        {
+            executor.execute(new Dispatch(action, ip, userAgent, xforwardedfor, user,
+                    dspaceObject.getType(), dspaceObject.getID()));
+        }
+        catch (RejectedExecutionException e)
+        {
+            log.warn("Dropped usage event on " + dspaceObject.getID() + ": too many events waiting");
+        }
+    }
+
+    private static class Dispatch implements Runnable
+    {
+        private final UsageEvent.Action action;
+        private final String ip;
+        private final String userAgent;
+        private final String xforwardedfor;
+        private final UUID user;
+        private final int type;
+        private final UUID id;
+
+        private Dispatch(UsageEvent.Action action, String ip, String userAgent, String xforwardedfor,
+                         UUID user, int type, UUID id)
+        {
+            this.action = action;
+            this.ip = ip;
+            this.userAgent = userAgent;
+            this.xforwardedfor = xforwardedfor;
+            this.user = user;
+            this.type = type;
+            this.id = id;
+        }
+
+        @Override
+        public void run()
+        {
+            Context context = null;
+            try
+            {
+                context = new Context(Context.READ_ONLY);
+                if (user != null)
+                {
+                    context.setCurrentUser(EPersonServiceFactory.getInstance().getEPersonService().find(context, user));
+                }
+                DSpaceObjectService<? extends DSpaceObject> service = ContentServiceFactory.getInstance().getDSpaceObjectService(type);
+                DSpaceObject dspaceObject = service.find(context, id);
+                if (dspaceObject != null)
+                {
+                    DSpaceServicesFactory.getInstance().getEventService().fireEvent(
+                            new UsageEvent(action, ip, userAgent, xforwardedfor, context, dspaceObject));
+                }
+                context.complete();
+            }
+            catch (Exception e)
+            {
+                log.error("Unable to record usage event on " + id, e);
+            }
+            finally
+            {
+                if (context != null && context.isValid())
+                {
+                    context.abort();
+                }
+            }
+        }
+    }
+}
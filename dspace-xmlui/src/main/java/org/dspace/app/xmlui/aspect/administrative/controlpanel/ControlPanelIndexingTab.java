@@ -0,0 +1,121 @@
+/**
+ * The contents of this file are subject to the license and copyright
+ * detailed in the LICENSE and NOTICE files at the root of the source
+ * tree and available online at
+ *
+ * http://www.dspace.org/license/
+ */
+package org.dspace.app.xmlui.aspect.administrative.controlpanel;
+
+import java.util.Map;
+
+import org.dspace.app.xmlui.wing.Message;
+import org.dspace.app.xmlui.wing.WingException;
+import org.dspace.app.xmlui.wing.element.Division;
+import org.dspace.app.xmlui.wing.element.List;
+import org.dspace.discovery.IndexingQueue;
+import org.dspace.services.ConfigurationService;
+import org.dspace.services.factory.DSpaceServicesFactory;
+import org.dspace.statistics.SolrLoggerServiceImpl;
+import org.dspace.statistics.UsageEventBuffer;
+import org.dspace.statistics.factory.StatisticsServiceFactory;
+import org.dspace.statistics.service.SolrLoggerService;
+
+/**
+ * Control panel tab that displays the state of the asynchronous Discovery indexing queue
+ * and of the usage statistics buffer.
+ */
+public class ControlPanelIndexingTab extends AbstractControlPanelTab
+{
+
+    private static final Message T_INDEXING_HEAD = message("xmlui.administrative.ControlPanel.indexing_head");
+
+    private static final Message T_INDEXING_MODE = message("xmlui.administrative.ControlPanel.indexing_mode");
+
+    private static final Message T_INDEXING_MODE_ASYNC = message("xmlui.administrative.ControlPanel.indexing_mode_async");
+
+    private static final Message T_INDEXING_MODE_SYNC = message("xmlui.administrative.ControlPanel.indexing_mode_sync");
+
+    private static final Message T_INDEXING_QUEUE_SIZE = message("xmlui.administrative.ControlPanel.indexing_queue_size");
+
+    private static final Message T_INDEXING_QUEUE_LAG = message("xmlui.administrative.ControlPanel.indexing_queue_lag");
+
+    private static final Message T_INDEXING_PROCESSED = message("xmlui.administrative.ControlPanel.indexing_processed");
+
+    private static final Message T_INDEXING_FAILED = message("xmlui.administrative.ControlPanel.indexing_failed");
+
+    private static final Message T_INDEXING_LAST_BATCH = message("xmlui.administrative.ControlPanel.indexing_last_batch");
+
+    private static final Message T_USAGE_HEAD = message("xmlui.administrative.ControlPanel.indexing_usage_head");
+
+    private static final Message T_USAGE_QUEUE_LENGTH = message("xmlui.administrative.ControlPanel.indexing_usage_queue_length");
+
+    private static final Message T_USAGE_FLUSHED = message("xmlui.administrative.ControlPanel.indexing_usage_flushed");
+
+    private static final Message T_USAGE_DROPPED = message("xmlui.administrative.ControlPanel.indexing_usage_dropped");
+
+    private static final Message T_USAGE_SPILLED = message("xmlui.administrative.ControlPanel.indexing_usage_spilled");
+
+    private static final Message T_USAGE_FAILED_FLUSHES = message("xmlui.administrative.ControlPanel.indexing_usage_failed_flushes");
+
+    private static final Message T_USAGE_LAST_FLUSH = message("xmlui.administrative.ControlPanel.indexing_usage_last_flush");
+
+    protected ConfigurationService configurationService = DSpaceServicesFactory.getInstance().getConfigurationService();
+
+    @Override
+    public void addBody(Map objectModel, Division div) throws WingException
+    {
+        boolean async = configurationService.getBooleanProperty("discovery.index.async", false);
+
+        List list = div.addList("discovery-indexing");
+        list.setHead(T_INDEXING_HEAD);
+        list.addLabel(T_INDEXING_MODE);
+        list.addItem(async ? T_INDEXING_MODE_ASYNC : T_INDEXING_MODE_SYNC);
+
+        if (async && IndexingQueue.isStarted())
+        {
+            IndexingQueue queue = IndexingQueue.getInstance();
+            list.addLabel(T_INDEXING_QUEUE_SIZE);
+            list.addItem(String.valueOf(queue.size()));
+            list.addLabel(T_INDEXING_QUEUE_LAG);
+            list.addItem(String.valueOf(queue.getLag() / 1000) + " s");
+            list.addLabel(T_INDEXING_PROCESSED);
+            list.addItem(String.valueOf(queue.getProcessedCount()));
+            list.addLabel(T_INDEXING_FAILED);
+            list.addItem(String.valueOf(queue.getFailedCount()));
+            list.addLabel(T_INDEXING_LAST_BATCH);
+            list.addItem(String.valueOf(queue.getLastBatchDuration()) + " ms");
+        }
+
+        if (configurationService.getBooleanProperty("solr-statistics.buffer.enabled", false))
+        {
+            addUsageEventBuffer(div);
+        }
+    }
+
+    protected void addUsageEventBuffer(Division div) throws WingException
+    {
+        SolrLoggerService solrLoggerService = StatisticsServiceFactory.getInstance().getSolrLoggerService();
+        if (!(solrLoggerService instanceof SolrLoggerServiceImpl)
+                || ((SolrLoggerServiceImpl) solrLoggerService).getUsageEventBuffer() == null)
+        {
+            return;
+        }
+        UsageEventBuffer buffer = ((SolrLoggerServiceImpl) solrLoggerService).getUsageEventBuffer();
+
+        List list = div.addList("usage-event-buffer");
+        list.setHead(T_USAGE_HEAD);
+        list.addLabel(T_USAGE_QUEUE_LENGTH);
+        list.addItem(String.valueOf(buffer.getQueueLength()));
+        list.addLabel(T_USAGE_FLUSHED);
+        list.addItem(String.valueOf(buffer.getFlushedCount()));
+        list.addLabel(T_USAGE_DROPPED);
+        list.addItem(String.valueOf(buffer.getDroppedCount()));
+        list.addLabel(T_USAGE_SPILLED);
+        list.addItem(String.valueOf(buffer.getSpilledCount()));
+        list.addLabel(T_USAGE_FAILED_FLUSHES);
+        list.addItem(String.valueOf(buffer.getFailedFlushCount()));
+        list.addLabel(T_USAGE_LAST_FLUSH);
+        list.addItem(String.valueOf(buffer.getLastFlushDuration()) + " ms");
+    }
+}
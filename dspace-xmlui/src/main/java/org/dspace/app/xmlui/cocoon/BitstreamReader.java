@@ -25,10 +25,9 @@ import org.apache.cocoon.environment.Request;
 import org.apache.cocoon.environment.Response;
 import org.apache.cocoon.environment.SourceResolver;
 import org.apache.cocoon.environment.http.HttpEnvironment;
-import org.apache.cocoon.environment.http.HttpResponse;
 import org.apache.cocoon.reading.AbstractReader;
-import org.apache.cocoon.util.ByteRange;
 import org.apache.commons.lang.StringUtils;
+import org.dspace.app.util.BitstreamDownload;
 import org.dspace.app.xmlui.utils.AuthenticationUtil;
 import org.dspace.app.xmlui.utils.ContextUtil;
 import org.dspace.authorize.AuthorizeException;
@@ -126,12 +125,6 @@ public class BitstreamReader extends AbstractReader implements Recyclable
     private static final String AUTH_REQUIRED_HEADER = "xmlui.BitstreamReader.auth_header";
     private static final String AUTH_REQUIRED_MESSAGE = "xmlui.BitstreamReader.auth_message";
         
-    /**
-     * How big a buffer should we use when reading from the bitstream before
-     * writing to the HTTP response?
-     */
-    protected static final int BUFFER_SIZE = 8192;
-
     /**
      * When should a bitstream expire in milliseconds. This should be set to
      * some low value just to prevent someone hiting DSpace repeatedy from
@@ -172,6 +165,9 @@ public class BitstreamReader extends AbstractReader implements Recyclable
     /** TEMP file for citation PDF. We will save here, so we can delete the temp file when done.  */
     private File tempFile;
 
+    /** How to answer the request: conditional and range headers */
+    protected BitstreamDownload download;
+
     protected AuthorizeService authorizeService = AuthorizeServiceFactory.getInstance().getAuthorizeService();
     protected BitstreamService bitstreamService = ContentServiceFactory.getInstance().getBitstreamService();
     protected HandleService handleService = HandleServiceFactory.getInstance().getHandleService();
@@ -221,6 +217,9 @@ public class BitstreamReader extends AbstractReader implements Recyclable
         
             this.isSpider = par.getParameter("userAgent", "").equals("spider");
 
+            // Checksum of the content sent, used as ETag (none for generated citation documents)
+            String bitstreamChecksum = null;
+
             // Resolve the bitstream
             Bitstream bitstream = null;
             DSpaceObject dso = null;
@@ -359,7 +358,8 @@ public class BitstreamReader extends AbstractReader implements Recyclable
             // 1) Intercepting Enabled
             // 2) This User is not an admin
             // 3) This object is citation-able
-            if (citationDocumentService.isCitationEnabledForBitstream(bitstream, context)) {
+            boolean citation = citationDocumentService.isCitationEnabledForBitstream(bitstream, context);
+            if (citation) {
                 // on-the-fly citation generator
                 log.info(item.getHandle() + " - " + bitstream.getName() + " is citable.");
 
@@ -389,8 +389,10 @@ public class BitstreamReader extends AbstractReader implements Recyclable
 
                 //End of CitationDocument
             } else {
-                this.bitstreamInputStream = bitstreamService.retrieve(context, bitstream);
+                // the bits are opened once the range to send is known
+                authorizeService.authorizeAction(context, bitstream, Constants.READ);
                 this.bitstreamSize = bitstream.getSize();
+                bitstreamChecksum = bitstream.getChecksum();
             }
 
             this.bitstreamMimeType = bitstream.getFormat(context).getMIMEType();
@@ -435,14 +437,30 @@ public class BitstreamReader extends AbstractReader implements Recyclable
                 }
             }
             
+            // Decide now on conditional and range requests, as the MIME type depends on them.
+            // They are answered for all users, as access to the bitstream has been authorized.
+            download = new BitstreamDownload(this.bitstreamSize, bitstreamChecksum,
+                    item != null ? item.getLastModified().getTime() : -1, this.bitstreamMimeType);
+            download.evaluate(request.getHeader("If-None-Match"), request.getDateHeader("If-Modified-Since"),
+                    request.getHeader("Range"), request.getHeader("If-Range"));
+            if (!citation)
+            {
+                // only the range asked for is read, when a single one is sent
+                this.bitstreamInputStream = download.retrieve(context, bitstream);
+            }
+
             // Log that the bitstream has been viewed, this is non-cached and the complexity
-            // of adding it to the sitemap for every possible bitstream uri is not very tractable
-            DSpaceServicesFactory.getInstance().getEventService().fireEvent(
+            // of adding it to the sitemap for every possible bitstream uri is not very tractable.
+            // Not modified answers and ranges after the first byte are not views.
+            if (download.isView())
+            {
+                DSpaceServicesFactory.getInstance().getEventService().fireEvent(
                                 new UsageEvent(
                                                 UsageEvent.Action.VIEW,
                                                 ObjectModelHelper.getRequest(objectModel),
                                                 ContextUtil.obtainContext(ObjectModelHelper.getRequest(objectModel)),
                                                 bitstream));
+            }
             
             // If we created the database connection close it, otherwise leave it open.
             if (BitstreamReaderOpenedContext)
@@ -596,22 +614,6 @@ public class BitstreamReader extends AbstractReader implements Recyclable
             return;
         }
         
-        // Only allow If-Modified-Since protocol if request is from a spider
-        // since response headers would encourage a browser to cache results
-        // that might change with different authentication.
-        if (isSpider)
-        {
-            // Check for if-modified-since header -- ONLY if not authenticated
-            long modSince = request.getDateHeader("If-Modified-Since");
-            if (modSince != -1 && item != null && item.getLastModified().getTime() < modSince)
-            {
-                // Item has not been modified since requested date,
-                // hence bitstream has not been, either; return 304
-                response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
-                return;
-            }
-        }
-
         // Only set Last-Modified: header for spiders or anonymous
         // access, since it might encourage browse to cache the result
         // which might leave a result only available to authenticated
@@ -631,9 +633,6 @@ public class BitstreamReader extends AbstractReader implements Recyclable
             throw new ProcessingException(e);
         }
 
-        byte[] buffer = new byte[BUFFER_SIZE];
-        int length = -1;
-
         // Only encourage caching if this is not a restricted resource, i.e.
         // if it is accessed anonymously or is readable by Anonymous:
         if (isAnonymouslyReadable)
@@ -666,82 +665,22 @@ public class BitstreamReader extends AbstractReader implements Recyclable
                 response.setHeader("Content-Disposition", "attachment;filename=" + '"' + name + '"');
         }
 
-        ByteRange byteRange = null;
-
-        // Turn off partial downloads, they cause problems
-        // and are only rarely used. Specifically some windows pdf
-        // viewers are incapable of handling this request. You can
-        // uncomment the following lines to turn this feature back on.
-
-//        response.setHeader("Accept-Ranges", "bytes");
-//        String ranges = request.getHeader("Range");
-//        if (ranges != null)
-//        {
-//            try
-//            {
-//                ranges = ranges.substring(ranges.indexOf('=') + 1);
-//                byteRange = new ByteRange(ranges);
-//            }
-//            catch (NumberFormatException e)
-//            {
-//                byteRange = null;
-//                if (response instanceof HttpResponse)
-//                {
-//                    // Respond with status 416 (Request range not
-//                    // satisfiable)
-//                    response.setStatus(416);
-//                }
-//            }
-//        }
-
-        try
+        // Status and headers decided in setup(): ETag, ranges, length
+        if (download.getStatus() != HttpServletResponse.SC_OK)
         {
-            if (byteRange != null)
+            response.setStatus(download.getStatus());
+        }
+        for (Map.Entry<String, String> header : download.getHeaders().entrySet())
+        {
+            if (!"Content-Type".equals(header.getKey()))
             {
-                String entityLength;
-                String entityRange;
-                if (this.bitstreamSize != -1)
-                {
-                    entityLength = "" + this.bitstreamSize;
-                    entityRange = byteRange.intersection(
-                            new ByteRange(0, this.bitstreamSize)).toString();
-                }
-                else
-                {
-                    entityLength = "*";
-                    entityRange = byteRange.toString();
-                }
-
-                response.setHeader("Content-Range", entityRange + "/" + entityLength);
-                if (response instanceof HttpResponse)
-                {
-                    // Response with status 206 (Partial content)
-                    response.setStatus(206);
-                }
-
-                int pos = 0;
-                int posEnd;
-                while ((length = this.bitstreamInputStream.read(buffer)) > -1)
-                {
-                    posEnd = pos + length - 1;
-                    ByteRange intersection = byteRange.intersection(new ByteRange(pos, posEnd));
-                    if (intersection != null)
-                    {
-                        out.write(buffer, (int) intersection.getStart() - pos, (int) intersection.length());
-                    }
-                    pos += length;
-                }
+                response.setHeader(header.getKey(), header.getValue());
             }
-            else
-            {
-                response.setHeader("Content-Length", String.valueOf(this.bitstreamSize));
+        }
 
-                while ((length = this.bitstreamInputStream.read(buffer)) > -1)
-                {
-                    out.write(buffer, 0, length);
-                }
-                out.flush();
-            }
+        try
+        {
+            download.write(this.bitstreamInputStream, out);
         }
         finally
         {
@@ -770,6 +709,11 @@ public class BitstreamReader extends AbstractReader implements Recyclable
     @Override
     public String getMimeType()
     {
+        // Several ranges are sent as a multipart body
+        if (download != null && download.getHeaders().containsKey("Content-Type"))
+        {
+            return download.getHeaders().get("Content-Type");
+        }
         return this.bitstreamMimeType;
     }
     
@@ -783,6 +727,7 @@ public class BitstreamReader extends AbstractReader implements Recyclable
         this.bitstreamInputStream = null;
         this.bitstreamSize = 0;
         this.bitstreamMimeType = null;
+        this.download = null;
     }
 
 